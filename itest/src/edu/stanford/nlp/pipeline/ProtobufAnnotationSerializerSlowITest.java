@@ -285,6 +285,11 @@ public class ProtobufAnnotationSerializerSlowITest {
     testAnnotators("tokenize,ssplit,pos,lemma,depparse,natlog,openie");
   }
 
+  @Test
+  public void testOpenieWithSearchBudget() {
+    testAnnotators("tokenize,ssplit,pos,lemma,depparse,natlog,openie", Pair.makePair("openie.max_search_millis", "1000"));
+  }
+
   @Test
   public void testQuote() {
     testAnnotators("quote");
@@ -39,6 +39,7 @@ import edu.stanford.nlp.ling.Word;
 import edu.stanford.nlp.objectbank.ObjectBank;
 import edu.stanford.nlp.optimization.DiffFunction;
 import edu.stanford.nlp.optimization.Minimizer;
+import edu.stanford.nlp.optimization.SGDMinimizer;
 import edu.stanford.nlp.process.PTBTokenizer;
 import edu.stanford.nlp.process.Tokenizer;
 import edu.stanford.nlp.process.TokenizerFactory;
@@ -51,6 +52,7 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -226,6 +228,9 @@ import edu.stanford.nlp.util.logging.Redwood;
  * <tr><td> epsilon</td><td>double</td><td>0.01</td><td>Used only as a parameter in the Huber loss: this is the distance from 0 at which the loss changes from quadratic to linear</td></tr>
  * <tr><td>useQN</td><td>boolean</td><td>true</td><td>Use Quasi-Newton optimization if true, otherwise use Conjugate Gradient optimization.  Recommended.</td></tr>
  * <tr><td>QNsize</td><td>int</td><td>15</td><td>Number of previous iterations of Quasi-Newton to store (this increases memory use, but speeds convergence by letting the Quasi-Newton optimization more effectively approximate the second derivative).</td></tr>
+ * <tr><td>featureHashBuckets</td><td>int</td><td>0</td><td>If positive, the default (LinearClassifierFactory) classifier hashes its features into this many buckets with signed hashing, and the model stores no feature strings. This makes models of very many features much smaller, at some cost in accuracy (which {@link FeatureHashingEvaluator} measures).</td></tr>
+ * <tr><td>mappedDatasetFile</td><td>String</td><td>null</td><td>If non-null, the training data is not read into memory: it is featurized in one streaming pass into a {@link MappedDataset} in this (scratch) file, which is read from disk, by memory-mapping it, during training. For training on more data than fits in memory. Only the default (LinearClassifierFactory) classifier can be trained this way, and cross-validation, shuffleTrainingData, featureMinimumSupport and printSVMLightFormatTo are not done. The file is deleted after training.</td></tr>
+ * <tr><td>mappedDatasetBatchSize</td><td>int</td><td>0</td><td>If positive, a classifier trained from a mappedDatasetFile is trained by in-place stochastic gradient descent over minibatches of this many examples, rather than by passes over all the data.</td></tr>
  * <tr><td>featureFormat</td><td>boolean</td><td>false</td><td>Assumes the input file isn't text strings but already featurized.  One column is treated as the class column (as defined by {@code goldAnswerColumn}, and all other columns are treated as features of the instance.  (If answers are not present, set {@code goldAnswerColumn} to a negative number.)</td></tr>
  * <tr><td>trainFromSVMLight</td><td>boolean</td><td>false</td><td>Assumes the trainFile is in SVMLight format (see <a href="http://svmlight.joachims.org/">SVMLight web page</a> for more information)</td></tr>
  * <tr><td>testFromSVMLight</td><td>boolean</td><td>false</td><td>Assumes the testFile is in SVMLight format</td></tr>
@@ -433,46 +438,14 @@ public class ColumnDataClassifier  {
         } else {
           dataset = new Dataset<>();
         }
-        int lineNo = 0;
-        int minColumns = Integer.MAX_VALUE;
-        int maxColumns = 0;
-        for (String line : ObjectBank.getLineIterator(new File(filename), Flags.encoding)) {
-          lineNo++;
-          if (Flags.inputFormat == InputFormat.HEADER) {
-            if (lineNo == 1) {
-              if (storedHeader == null) {
-                storedHeader = line; // store it because need elements of it to print header in output
-              }
-              continue;
-            }
-          } else if (Flags.inputFormat == InputFormat.COMMENTS) {
-            if (line.matches("\\s#.*")) {
-              continue;
-            }
-          }
-          String[] strings = splitLineToFields(line);
-          if (strings.length < 2) {
-            throw new RuntimeException("Line format error at line " + lineNo + ": " + line);
-          }
-          if (strings.length < minColumns) {
-            minColumns = strings.length;
+        final GeneralDataset<String,String> data = dataset;
+        final List<String[]> infos = lineInfos;
+        forEachExample(filename, strings -> {
+          if (infos != null) {
+            infos.add(strings);
           }
-          if (strings.length > maxColumns) {
-            maxColumns = strings.length;
-          }
-          if (inTestPhase) {
-            lineInfos.add(strings);
-          }
-          if (strings.length < flags.length) {
-            throw new RuntimeException("Error: Line has too few tab-separated columns (" + maxColumns +
-                    ") for " + flags.length + " columns required by specified properties: " + line);
-          }
-          dataset.add(makeDatumFromStrings(strings));
-        }
-        if (lineNo > 0 && minColumns != maxColumns) {
-          logger.info("WARNING: Number of tab-separated columns in " +
-                  filename + " varies between " + minColumns + " and " + maxColumns);
-        }
+          data.add(makeDatumFromStrings(strings));
+        });
       } catch (Exception e) {
         throw new RuntimeException("Dataset could not be loaded", e);
       }
@@ -481,6 +454,49 @@ public class ColumnDataClassifier  {
     return new Pair<>(dataset, lineInfos);
   }
 
+  /** Reads the lines of a tab-separated (or csv) data file, split into columns, and passes
+   *  each one which is an example to {@code consumer}.
+   */
+  private void forEachExample(String filename, Consumer<String[]> consumer) {
+    int lineNo = 0;
+    int minColumns = Integer.MAX_VALUE;
+    int maxColumns = 0;
+    for (String line : ObjectBank.getLineIterator(new File(filename), Flags.encoding)) {
+      lineNo++;
+      if (Flags.inputFormat == InputFormat.HEADER) {
+        if (lineNo == 1) {
+          if (storedHeader == null) {
+            storedHeader = line; // store it because need elements of it to print header in output
+          }
+          continue;
+        }
+      } else if (Flags.inputFormat == InputFormat.COMMENTS) {
+        if (line.matches("\\s#.*")) {
+          continue;
+        }
+      }
+      String[] strings = splitLineToFields(line);
+      if (strings.length < 2) {
+        throw new RuntimeException("Line format error at line " + lineNo + ": " + line);
+      }
+      if (strings.length < minColumns) {
+        minColumns = strings.length;
+      }
+      if (strings.length > maxColumns) {
+        maxColumns = strings.length;
+      }
+      if (strings.length < flags.length) {
+        throw new RuntimeException("Error: Line has too few tab-separated columns (" + maxColumns +
+                ") for " + flags.length + " columns required by specified properties: " + line);
+      }
+      consumer.accept(strings);
+    }
+    if (lineNo > 0 && minColumns != maxColumns) {
+      logger.info("WARNING: Number of tab-separated columns in " +
+              filename + " varies between " + minColumns + " and " + maxColumns);
+    }
+  }
+
   /** Split according to whether we are using tsv file (default) or csv files. */
   private String[] splitLineToFields(String line) {
     if (globalFlags.csvInput) {
@@ -1465,23 +1481,29 @@ public class ColumnDataClassifier  {
     } else if (globalFlags.useAdaptL1 && globalFlags.limitFeatures > 0) {
       lc = makeClassifierAdaptL1(train);
     } else {
-      LinearClassifierFactory<String,String> lcf;
-      if (globalFlags.l1reg > 0.0) {
-        Minimizer<DiffFunction> minim = ReflectionLoading.loadByReflection("edu.stanford.nlp.optimization.OWLQNMinimizer", globalFlags.l1reg);
-        lcf = new LinearClassifierFactory<>(minim, globalFlags.tolerance, globalFlags.useSum, globalFlags.prior, globalFlags.sigma, globalFlags.epsilon);
-      } else {
-        lcf  = new LinearClassifierFactory<>(globalFlags.tolerance, globalFlags.useSum, globalFlags.prior, globalFlags.sigma, globalFlags.epsilon, globalFlags.QNsize);
-      }
-      lcf.setVerbose(globalFlags.verboseOptimization);
-      if ( ! globalFlags.useQN) {
-        lcf.useConjugateGradientAscent();
-      }
-
+      LinearClassifierFactory<String,String> lcf = makeLinearClassifierFactory();
+      lcf.setFeatureHashing(globalFlags.featureHashBuckets);
       lc = lcf.trainClassifier(train);
     }
     return lc;
   }
 
+  /** Makes the LinearClassifierFactory of the default classifier, as set up by the flags. */
+  private LinearClassifierFactory<String,String> makeLinearClassifierFactory() {
+    LinearClassifierFactory<String,String> lcf;
+    if (globalFlags.l1reg > 0.0) {
+      Minimizer<DiffFunction> minim = ReflectionLoading.loadByReflection("edu.stanford.nlp.optimization.OWLQNMinimizer", globalFlags.l1reg);
+      lcf = new LinearClassifierFactory<>(minim, globalFlags.tolerance, globalFlags.useSum, globalFlags.prior, globalFlags.sigma, globalFlags.epsilon);
+    } else {
+      lcf  = new LinearClassifierFactory<>(globalFlags.tolerance, globalFlags.useSum, globalFlags.prior, globalFlags.sigma, globalFlags.epsilon, globalFlags.QNsize);
+    }
+    lcf.setVerbose(globalFlags.verboseOptimization);
+    if ( ! globalFlags.useQN) {
+      lcf.useConjugateGradientAscent();
+    }
+    return lcf;
+  }
+
 
   private static String[] regexpTokenize(Pattern tokenizerRegexp, Pattern ignoreRegexp, String inWord) {
     List<String> al = new ArrayList<>();
@@ -1833,6 +1855,10 @@ public class ColumnDataClassifier  {
         Flags.encoding = val;
       } else if (key.equals("printSVMLightFormatTo")) {
         Flags.printSVMLightFormatTo = val;
+      } else if (key.equals("mappedDatasetFile")) {
+        Flags.mappedDatasetFile = val;
+      } else if (key.equals("mappedDatasetBatchSize")) {
+        Flags.mappedDatasetBatchSize = Integer.parseInt(val);
       } else if (key.equals("displayedColumn")) {
         myFlags[col].displayedColumn = Integer.parseInt(val);
       } else if (key.equals("groupingColumn")) {
@@ -1850,6 +1876,8 @@ public class ColumnDataClassifier  {
         myFlags[col].useQN = Boolean.parseBoolean(val);
       } else if (key.equals("QNsize")) {
         myFlags[col].QNsize = Integer.parseInt(val);
+      } else if (key.equals("featureHashBuckets")) {
+        myFlags[col].featureHashBuckets = Integer.parseInt(val);
       } else if (key.equals("featureFormat")) {
         myFlags[col].featureFormat = Boolean.parseBoolean(val);
       } else if (key.equals("significantColumnId")) {
@@ -2038,6 +2066,9 @@ public class ColumnDataClassifier  {
 
 
   public boolean trainClassifier(String path) throws IOException {
+    if (Flags.mappedDatasetFile != null) {
+      return trainClassifierFromMappedDataset(path);
+    }
     // build dataset of training data featurized
     Pair<GeneralDataset<String,String>, List<String[]>> dataInfo = readAndReturnTrainingExamples(path);
     GeneralDataset<String,String> train = dataInfo.first();
@@ -2097,6 +2128,76 @@ public class ColumnDataClassifier  {
     return true;
   }
 
+  /** Trains the default classifier without reading the training data into memory. The data is
+   *  featurized in one streaming pass into a {@link MappedDataset} in {@code mappedDatasetFile},
+   *  which the training then reads from disk. The file is deleted after training.
+   *
+   *  @param path File with supervised training examples.
+   *  @return Whether a classifier was trained
+   *  @throws IOException If the dataset can't be written
+   */
+  private boolean trainClassifierFromMappedDataset(String path) throws IOException {
+    if (Flags.trainFromSVMLight) {
+      throw new IllegalArgumentException("mappedDatasetFile can't be used with trainFromSVMLight");
+    }
+    if (globalFlags.useClassifierFactory != null || globalFlags.useNB || globalFlags.useBinary || globalFlags.biased ||
+        (globalFlags.useAdaptL1 && globalFlags.limitFeatures > 0)) {
+      throw new IllegalArgumentException("mappedDatasetFile can only be used with the default LinearClassifierFactory classifier");
+    }
+    if (globalFlags.crossValidationFolds > 1 || globalFlags.shuffleTrainingData || globalFlags.featureMinimumSupport > 1 ||
+        Flags.printSVMLightFormatTo != null) {
+      logger.warn("Cross-validation, shuffleTrainingData, featureMinimumSupport and printSVMLightFormatTo are ignored with a mappedDatasetFile");
+    }
+    if (globalFlags.printFeatures != null) {
+      newFeaturePrinter(globalFlags.printFeatures, "train", Flags.encoding);
+    }
+
+    Timing tim = new Timing();
+    Index<String> featureIndex;
+    if (globalFlags.featureHashBuckets > 0) {
+      featureIndex = new HashedFeatureIndex(globalFlags.featureHashBuckets);
+    } else {
+      featureIndex = new HashIndex<>();
+    }
+    MappedDataset<String,String> train;
+    try (MappedDataset.Writer<String,String> writer = MappedDataset.writer(new File(Flags.mappedDatasetFile),
+        featureIndex, new HashIndex<>(), globalFlags.usesRealValues)) {
+      forEachExample(path, strings -> {
+        try {
+          writer.add(makeDatumFromStrings(strings));
+        } catch (IOException e) {
+          throw new RuntimeIOException(e);
+        }
+      });
+      train = writer.finish();
+    }
+    logger.info("Writing dataset from " + path + " to " + Flags.mappedDatasetFile + " ... done [" +
+        tim.toSecondsString() + "s, " + train.size() + " items].");
+
+    try {
+      if (globalFlags.exitAfterTrainingFeaturization) {
+        return false; // ENDS PROCESSING
+      }
+      LinearClassifierFactory<String,String> lcf = makeLinearClassifierFactory();
+      if (Flags.mappedDatasetBatchSize > 0) {
+        final double sigma = globalFlags.sigma;
+        final int batchSize = Flags.mappedDatasetBatchSize;
+        lcf.setMinimizerCreator(() -> new SGDMinimizer<>(sigma, -1, -1, batchSize));
+      }
+      classifier = lcf.trainClassifier(train);
+    } finally {
+      train.close();
+    }
+    printClassifier(classifier);
+
+    // serialize the classifier
+    String serializeTo = Flags.serializeTo;
+    if (serializeTo != null) {
+      serializeClassifier(serializeTo);
+    }
+    return true;
+  }
+
   /** Serialize a classifier to a file. This writes to the file both a LinearClassifier and the
    *  Flags[] object from a ColumnDataClassifier. The latter captures all the information about
    *  how the ColumnDataClassifier is extracting features from data items for the classifier.
@@ -2387,6 +2488,11 @@ public class ColumnDataClassifier  {
 
     boolean verboseOptimization = false;
 
+    int featureHashBuckets = 0;
+
+    static String mappedDatasetFile = null;
+    static int mappedDatasetBatchSize = 0;
+
     @Override
     public String toString() {
       return "Flags[" +
@@ -0,0 +1,114 @@
+package edu.stanford.nlp.classify;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.Timing;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * Measures what hashing the features of a {@link ColumnDataClassifier} (its {@code featureHashBuckets}
+ * property) costs in accuracy, and what it saves in model size and loading time. A classifier is
+ * trained with the given properties without feature hashing, and then with each given number of
+ * buckets; each one is serialized, loaded back and tested, and a table of the results is printed.
+ * <br>
+ * Usage: {@code java edu.stanford.nlp.classify.FeatureHashingEvaluator -prop cdc.prop -buckets 65536,1048576}
+ * <br>
+ * The properties must include a trainFile and a testFile.
+ */
+public class FeatureHashingEvaluator {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels logger = Redwood.channels(FeatureHashingEvaluator.class);
+
+  private FeatureHashingEvaluator() {} // static methods only
+
+  /** How a classifier did with some number of buckets (0 for no hashing). */
+  public static class Result {
+
+    public final int buckets;
+    public final double accuracy;
+    public final double macroF1;
+    public final long modelBytes;
+    public final double loadSeconds;
+
+    Result(int buckets, double accuracy, double macroF1, long modelBytes, double loadSeconds) {
+      this.buckets = buckets;
+      this.accuracy = accuracy;
+      this.macroF1 = macroF1;
+      this.modelBytes = modelBytes;
+      this.loadSeconds = loadSeconds;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%10s %10.4f %10.4f %14d %10.2f", buckets == 0 ? "none" : Integer.toString(buckets),
+          accuracy, macroF1, modelBytes, loadSeconds);
+    }
+
+  } // end static class Result
+
+  /**
+   * Trains and tests a classifier with the given properties and {@code featureHashBuckets} set to
+   * each of {@code buckets} in turn.
+   */
+  public static List<Result> evaluate(Properties props, int... buckets) throws IOException {
+    String trainFile = props.getProperty("trainFile");
+    String testFile = props.getProperty("testFile");
+    if (trainFile == null || testFile == null) {
+      throw new IllegalArgumentException("The properties need a trainFile and a testFile");
+    }
+    List<Result> results = new ArrayList<>();
+    for (int numBuckets : buckets) {
+      Properties trialProps = new Properties();
+      trialProps.putAll(props);
+      trialProps.setProperty("featureHashBuckets", Integer.toString(numBuckets));
+      ColumnDataClassifier cdc = new ColumnDataClassifier(trialProps);
+      cdc.trainClassifier(trainFile);
+
+      File model = File.createTempFile("hashedClassifier", ".ser.gz");
+      try {
+        cdc.serializeClassifier(model.getPath());
+        Timing timer = new Timing();
+        ColumnDataClassifier loaded = ColumnDataClassifier.getClassifier(model.getPath());
+        double loadSeconds = timer.stop() / 1000.0;
+        Pair<Double, Double> accuracy = loaded.testClassifier(testFile);
+        Result result = new Result(numBuckets, accuracy.first(), accuracy.second(), model.length(), loadSeconds);
+        logger.info(result);
+        results.add(result);
+      } finally {
+        if ( ! model.delete()) {
+          model.deleteOnExit();
+        }
+      }
+    }
+    return results;
+  }
+
+  public static void main(String[] args) throws IOException {
+    Properties props = StringUtils.argsToProperties(args);
+    String buckets = props.getProperty("buckets");
+    if (buckets == null) {
+      logger.error("Usage: java edu.stanford.nlp.classify.FeatureHashingEvaluator -prop file -buckets n1,n2,...");
+      return;
+    }
+    props.remove("buckets");
+    String[] bucketStrings = buckets.split(",");
+    int[] numBuckets = new int[bucketStrings.length + 1];  // numBuckets[0] = 0: no hashing
+    for (int i = 0; i < bucketStrings.length; i++) {
+      numBuckets[i + 1] = Integer.parseInt(bucketStrings[i].trim());
+    }
+
+    List<Result> results = evaluate(props, numBuckets);
+    System.out.println(String.format("%10s %10s %10s %14s %10s", "buckets", "accuracy", "macroF1", "modelBytes", "loadSecs"));
+    for (Result result : results) {
+      System.out.println(result);
+    }
+  }
+
+}
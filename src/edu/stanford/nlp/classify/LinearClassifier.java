@@ -111,13 +111,21 @@ public class LinearClassifier<L, F> implements ProbabilisticClassifier<L, F>, RV
 
   private double weight(F feature, int iLabel) {
     int f = featureIndex.indexOf(feature);
-    return weight(f, iLabel);
+    return weight(f, iLabel) * featureSign(feature);
   }
 
   public double weight(F feature, L label) {
     int f = featureIndex.indexOf(feature);
     int iLabel = labelIndex.indexOf(label);
-    return weight(f, iLabel);
+    return weight(f, iLabel) * featureSign(feature);
+  }
+
+  /** What the value of a feature is multiplied by: 1, or its sign if the features are hashed. */
+  private double featureSign(F feature) {
+    if (featureIndex instanceof HashedFeatureIndex) {
+      return ((HashedFeatureIndex) featureIndex).sign((String) feature);
+    }
+    return 1.0;
   }
 
   /* --- obsolete method from before this class was rewritten using arrays
@@ -136,6 +144,10 @@ public class LinearClassifier<L, F> implements ProbabilisticClassifier<L, F>, RV
   @Override
   public Counter<L> scoresOf(Datum<L, F> example) {
     if(example instanceof RVFDatum<?, ?>)return scoresOfRVFDatum((RVFDatum<L,F>)example);
+    if (featureIndex instanceof HashedFeatureIndex) {
+      // hashed features have signs, which the int[] of their indices can't hold
+      return scoresOfRVFDatum(new RVFDatum<>(example));
+    }
     Collection<F> feats = example.asFeatures();
     int[] features = new int[feats.size()];
     int i = 0;
@@ -169,6 +181,54 @@ public class LinearClassifier<L, F> implements ProbabilisticClassifier<L, F>, RV
     return scores;
   }
 
+  /** Scores a batch of Datums in a single pass over their features.
+   *  Each Datum's features are looked up in the feature index once (rather
+   *  than once per label), and their weights for every label are accumulated
+   *  together, which is considerably cheaper than calling
+   *  {@link #scoresOf(Datum)} on each Datum when there are many labels.
+   *  Features of an RVFDatum are weighted by their values.
+   *
+   *  @param examples The Datums to score. Their labels are ignored.
+   *  @return The scores, where <code>scores[i][j]</code> is the score of the i-th
+   *          Datum for the j-th label of {@link #labelIndex()}.
+   */
+  public double[][] scoresOf(List<? extends Datum<L, F>> examples) {
+    int numLabels = labelIndex.size();
+    double[][] scores = new double[examples.size()][];
+    for (int i = 0; i < scores.length; ++i) {
+      Datum<L, F> example = examples.get(i);
+      double[] datumScores = new double[numLabels];
+      if (example instanceof RVFDatum<?, ?>) {
+        for (Map.Entry<F, Double> entry : ((RVFDatum<L, F>) example).asFeaturesCounter().entrySet()) {
+          int f = featureIndex.indexOf(entry.getKey());
+          if (f >= 0) {
+            double value = entry.getValue() * featureSign(entry.getKey());
+            double[] featureWeights = weights[f];
+            for (int l = 0; l < numLabels; ++l) {
+              datumScores[l] += featureWeights[l] * value;
+            }
+          }
+        }
+      } else {
+        for (F feature : example.asFeatures()) {
+          int f = featureIndex.indexOf(feature);
+          if (f >= 0) {
+            double value = featureSign(feature);
+            double[] featureWeights = weights[f];
+            for (int l = 0; l < numLabels; ++l) {
+              datumScores[l] += featureWeights[l] * value;
+            }
+          }
+        }
+      }
+      for (int l = 0; l < numLabels; ++l) {
+        datumScores[l] += thresholds[l];
+      }
+      scores[i] = datumScores;
+    }
+    return scores;
+  }
+
   /** Returns of the score of the Datum for the specified label.
    *  Ignores the true label of the Datum.
    */
@@ -209,7 +269,8 @@ public class LinearClassifier<L, F> implements ProbabilisticClassifier<L, F>, RV
     Counter<F> asCounter = example.asFeaturesCounter();
     Counter<Integer> asIndexedCounter = new ClassicCounter<>(asCounter.size());
     for (Map.Entry<F, Double> entry : asCounter.entrySet()) {
-      asIndexedCounter.setCount(featureIndex.indexOf(entry.getKey()), entry.getValue());
+      // (hashed features may share an index)
+      asIndexedCounter.incrementCount(featureIndex.indexOf(entry.getKey()), entry.getValue() * featureSign(entry.getKey()));
     }
     // Set the scores appropriately
     for (L l : labels()) {
@@ -1146,8 +1207,8 @@ public class LinearClassifier<L, F> implements ProbabilisticClassifier<L, F>, RV
       int labelID = labelIndex.indexOf(label);
       Counter<F> c = new ClassicCounter<>();
       mapOfCounters.put(label, c);
-      for (F f : featureIndex) {
-        c.incrementCount(f, weights[featureIndex.indexOf(f)][labelID]);
+      for (int f = 0, numFeatures = featureIndex.size(); f < numFeatures; f++) {
+        c.incrementCount(featureIndex.get(f), weights[f][labelID]);
       }
     }
     return mapOfCounters;
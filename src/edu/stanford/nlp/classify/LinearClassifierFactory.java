@@ -29,12 +29,14 @@ package edu.stanford.nlp.classify;
 
 import java.io.BufferedReader;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.function.ToDoubleFunction;
 
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.ling.Datum;
+import edu.stanford.nlp.ling.RVFDatum;
 import edu.stanford.nlp.math.ArrayMath;
 import edu.stanford.nlp.optimization.*;
 import edu.stanford.nlp.stats.ClassicCounter;
@@ -87,6 +89,7 @@ public class LinearClassifierFactory<L, F> extends AbstractLinearClassifierFacto
 
   private Factory<Minimizer<DiffFunction>> minimizerCreator = null;
   private int evalIters = -1;
+  private int featureHashBuckets; // = 0
   private Evaluator[] evaluators; // = null;
 
   /** A logger for this class */
@@ -871,6 +874,35 @@ public class LinearClassifierFactory<L, F> extends AbstractLinearClassifierFacto
     this.retrainFromScratchAfterSigmaTuning = retrainFromScratchAfterSigmaTuning;
   }
 
+  /**
+   * If {@code numBuckets} is positive, then {@link #trainClassifier(GeneralDataset, double[])} trains
+   * over a hashed feature space of that many buckets (see {@link HashedFeatureIndex}), rather than over
+   * the features of the dataset, and the classifier stores no feature strings.
+   * This needs the features to be Strings. 0, the default, turns feature hashing off.
+   */
+  public void setFeatureHashing(int numBuckets) {
+    this.featureHashBuckets = numBuckets;
+  }
+
+  /**
+   * Returns a copy of a dataset over a {@link HashedFeatureIndex} of {@code numBuckets} buckets,
+   * in which each feature has its value in the dataset times its sign.
+   * Weights of the datums (as in a {@link WeightedDataset}) are not kept.
+   */
+  public static <L> RVFDataset<L, String> hashFeatures(GeneralDataset<L, String> dataset, int numBuckets) {
+    HashedFeatureIndex featureIndex = new HashedFeatureIndex(numBuckets);
+    RVFDataset<L, String> hashed = new RVFDataset<>(dataset.size(), featureIndex, dataset.labelIndex());
+    for (int i = 0, size = dataset.size(); i < size; i++) {
+      RVFDatum<L, String> datum = dataset.getRVFDatum(i);
+      Counter<String> features = new ClassicCounter<>();
+      for (Map.Entry<String, Double> entry : datum.asFeaturesCounter().entrySet()) {
+        features.setCount(entry.getKey(), entry.getValue() * featureIndex.sign(entry.getKey()));
+      }
+      hashed.add(new RVFDatum<>(features, datum.label()));
+    }
+    return hashed;
+  }
+
 
   public Classifier<L, F> trainClassifier(Iterable<Datum<L, F>> dataIterable) {
     Minimizer<DiffFunction> minimizer = getMinimizer();
@@ -893,6 +925,25 @@ public class LinearClassifierFactory<L, F> extends AbstractLinearClassifierFacto
     return classifier;
   }
 
+  /**
+   * Trains a classifier on a dataset kept on disk. The whole dataset is never in memory at
+   * once: a minimizer which works on batches of the data, such as the one set by
+   * {@link #useInPlaceStochasticGradientDescent()}, reads only a batch at a time, and otherwise
+   * each pass over the data reads it from disk (or from the operating system's page cache).
+   * Sigma tuning isn't done for such datasets.
+   */
+  public LinearClassifier<L, F> trainClassifier(MappedDataset<L, F> dataset) {
+    Minimizer<DiffFunction> minimizer = getMinimizer();
+    logger.info(String.format("Training linear classifier on %d datums on disk with %d features and %d labels",
+        dataset.size(), dataset.numFeatures(), dataset.numClasses()));
+    LogConditionalObjectiveFunction<L, F> objective = new LogConditionalObjectiveFunction<>(dataset, logPrior);
+
+    double[] initial = objective.initial();
+    double[] weights = minimizer.minimize(objective, TOL, initial);
+
+    return new LinearClassifier<>(objective.to2D(weights), dataset.featureIndex(), dataset.labelIndex());
+  }
+
   public Classifier<L, F> trainClassifier(GeneralDataset<L, F> dataset, float[] dataWeights, LogPrior prior) {
     Minimizer<DiffFunction> minimizer = getMinimizer();
     if (dataset instanceof RVFDataset) {
@@ -914,6 +965,10 @@ public class LinearClassifierFactory<L, F> extends AbstractLinearClassifierFacto
   }
 
   public LinearClassifier<L, F> trainClassifier(GeneralDataset<L, F> dataset, double[] initial) {
+    if (featureHashBuckets > 0 && ! (dataset.featureIndex() instanceof HashedFeatureIndex)) {
+      logger.info("Hashing " + dataset.numFeatures() + " features into " + featureHashBuckets + " buckets");
+      dataset = ErasureUtils.uncheckedCast(hashFeatures(ErasureUtils.uncheckedCast(dataset), featureHashBuckets));
+    }
     // Sanity check
     if (dataset instanceof RVFDataset) {
       ((RVFDataset<L, F>) dataset).ensureRealValues();
@@ -58,6 +58,9 @@ public class LogConditionalObjectiveFunction<L, F> extends AbstractStochasticCac
 
   protected final float[] dataWeights;
 
+  /** Or the data may be on disk, in a dataset read by memory-mapping it. Then data, values and labels are null. */
+  protected final MappedDataset<L, F> mappedData;
+
   protected final boolean useSummedConditionalLikelihood; //whether to use sumConditional or logConditional
 
   /** This is used to cache the numerator in batch methods. */
@@ -81,7 +84,7 @@ public class LogConditionalObjectiveFunction<L, F> extends AbstractStochasticCac
 
   @Override
   public int dataDimension(){
-    return data.length;
+    return mappedData != null ? mappedData.size() : data.length;
   }
 
   private int classOf(int index) {
@@ -208,7 +211,9 @@ public class LogConditionalObjectiveFunction<L, F> extends AbstractStochasticCac
    * conditional estimates. Full dataset batch estimation.
    */
   private void calculateCL(double[] x) {
-    if (values != null) {
+    if (mappedData != null) {
+      calculateCLmapped(x);
+    } else if (values != null) {
       rvfcalculate(x);
     } else if (dataIterable != null) {
       calculateCLiterable(x);
@@ -462,7 +467,123 @@ public class LogConditionalObjectiveFunction<L, F> extends AbstractStochasticCac
   }
 
 
+  /**
+   * Calculates the negative log likelihood of some datums of a MappedDataset and, if a
+   * derivative array is given, adds its derivative to it. Each thread reads a contiguous part
+   * of the datums (or of the batch) with its own cursor.
+   */
+  private class MappedDerivativeCalculation implements Runnable {
+    int from;
+    int to;
+    int[] batch;
+    double[] x;
+    double xscale;
+    double localValue = 0.0;
+    double[] localDerivative;
+    CountDownLatch latch;
+
+    public MappedDerivativeCalculation(int from, int to, int[] batch, double[] x, double xscale, boolean withDerivative, CountDownLatch latch) {
+      this.from = from;
+      this.to = to;
+      this.batch = batch;
+      this.x = x;
+      this.xscale = xscale;
+      this.localDerivative = withDerivative ? new double[x.length] : null;
+      this.latch = latch;
+    }
+
+    @Override
+    public void run() {
+      MappedDataset<L, F>.Cursor cursor = mappedData.cursor();
+      double[] sums = new double[numClasses];
+      double[] probs = new double[numClasses];
+
+      for (int m = from; m < to; m++) {
+        cursor.moveTo(batch == null ? m : batch[m]);
+        int numDatumFeatures = cursor.numFeatures();
+        // activation
+        Arrays.fill(sums, 0.0);
+        for (int f = 0; f < numDatumFeatures; f++) {
+          int feature = cursor.feature(f);
+          double v = cursor.value(f) * xscale;
+          for (int c = 0; c < numClasses; c++) {
+            sums[c] += x[indexOf(feature, c)] * v;
+          }
+        }
+        double total = ArrayMath.logSum(sums);
+        int label = cursor.label();
+        localValue -= sums[label] - total;
+
+        if (localDerivative != null) {
+          for (int c = 0; c < numClasses; c++) {
+            probs[c] = Math.exp(sums[c] - total);
+          }
+          probs[label] -= 1.0;
+          for (int f = 0; f < numDatumFeatures; f++) {
+            int feature = cursor.feature(f);
+            double v = cursor.value(f);
+            for (int c = 0; c < numClasses; c++) {
+              localDerivative[indexOf(feature, c)] += probs[c] * v;
+            }
+          }
+        }
+      }
+
+      latch.countDown();
+    }
+  }
+
+  /**
+   * Returns the negative log likelihood of the datums of the mapped dataset in the batch (or
+   * of all of them if the batch is null) at x times xscale, and, if derivative isn't null, adds
+   * its derivative to it.
+   */
+  private double calculateMapped(double[] x, double xscale, int[] batch, double[] derivative) {
+    int batchSize = batch == null ? mappedData.size() : batch.length;
+    int numThreads = parallelGradientCalculation ? Math.max(1, Math.min(threads, batchSize)) : 1;
+    @SuppressWarnings("unchecked")
+    MappedDerivativeCalculation[] runnables = (MappedDerivativeCalculation[])Array.newInstance(MappedDerivativeCalculation.class, numThreads);
+    CountDownLatch latch = new CountDownLatch(numThreads);
+    for (int i = 0; i < numThreads; i++) {
+      runnables[i] = new MappedDerivativeCalculation((int) ((long) batchSize * i / numThreads),
+          (int) ((long) batchSize * (i + 1) / numThreads), batch, x, xscale, derivative != null, latch);
+    }
+    if (numThreads == 1) {
+      runnables[0].run();
+    } else {
+      for (int i = 0; i < numThreads; i++) {
+        new Thread(runnables[i]).start();
+      }
+      try {
+        latch.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeInterruptedException(e);
+      }
+    }
+
+    double mappedValue = 0.0;
+    for (int i = 0; i < numThreads; i++) {
+      mappedValue += runnables[i].localValue;
+      if (derivative != null) {
+        for (int j = 0; j < derivative.length; j++) {
+          derivative[j] += runnables[i].localDerivative[j];
+        }
+      }
+    }
+    return mappedValue;
+  }
+
+  /** Full dataset batch estimation over a MappedDataset. */
+  private void calculateCLmapped(double[] x) {
+    Arrays.fill(derivative, 0.0);
+    value = calculateMapped(x, 1.0, null, derivative);
+    value += prior.compute(x, derivative);
+  }
+
   public void calculateStochasticFiniteDifference(double[] x,double[] v, double h, int[] batch){
+    if (mappedData != null) {
+      throw new UnsupportedOperationException("Hessian-vector products aren't supported for a MappedDataset");
+    }
     //  THOUGHTS:
     //  does applying the renormalization (g(x+hv)-g(x)) / h at each step along the way
     //  introduce too much error to makes this method numerically accurate?
@@ -554,6 +675,16 @@ public class LogConditionalObjectiveFunction<L, F> extends AbstractStochasticCac
 
 
   public void calculateStochasticGradientLocal(double[] x, int[] batch) {
+    if (mappedData != null) {
+      if (priorDerivative == null) {
+        priorDerivative = new double[x.length];
+      }
+      double priorFactor = batch.length / (mappedData.size() * prior.getSigma() * prior.getSigma());
+      derivative = ArrayMath.multiply(x, priorFactor);
+      value = calculateMapped(x, 1.0, batch, derivative);
+      value += ((double) batch.length) / ((double) mappedData.size()) * prior.compute(x, priorDerivative);
+      return;
+    }
     if (values != null) {
       rvfcalculate(x);
       return;
@@ -627,6 +758,10 @@ public class LogConditionalObjectiveFunction<L, F> extends AbstractStochasticCac
 
   @Override
   public double valueAt(double[] x, double xscale, int[] batch) {
+    if (mappedData != null) {
+      value = calculateMapped(x, xscale, batch, null);
+      return value;
+    }
     value = 0.0;
     double[] sums = new double[numClasses];
 
@@ -658,6 +793,15 @@ public class LogConditionalObjectiveFunction<L, F> extends AbstractStochasticCac
 
   @Override
   public double calculateStochasticUpdate(double[] x, double xscale, int[] batch, double gain) {
+    if (mappedData != null) {
+      // all of the batch is scored with the same x, and then x is updated
+      double[] gradient = new double[x.length];
+      value = calculateMapped(x, xscale, batch, gradient);
+      for (int j = 0; j < x.length; j++) {
+        x[j] -= gradient[j] * gain;
+      }
+      return value;
+    }
     value = 0.0;
 
     // Double check that we don't have a mismatch between parallel and batch size settings
@@ -763,6 +907,10 @@ public class LogConditionalObjectiveFunction<L, F> extends AbstractStochasticCac
     Arrays.fill(derivative, 0.0);
     double[] sums = new double[numClasses];
     double[] probs = new double[numClasses];
+    if (mappedData != null) {
+      calculateStochasticGradientMapped(x, batch, sums, probs);
+      return;
+    }
     //double[] counts = new double[numClasses];
     // Arrays.fill(counts, 0.0); // not needed; Java arrays zero initialized
     for (int d : batch) {
@@ -800,7 +948,39 @@ public class LogConditionalObjectiveFunction<L, F> extends AbstractStochasticCac
   }
 
 
+  /** calculateStochasticGradient over a MappedDataset. */
+  private void calculateStochasticGradientMapped(double[] x, int[] batch, double[] sums, double[] probs) {
+    MappedDataset<L, F>.Cursor cursor = mappedData.cursor();
+    for (int d : batch) {
+      cursor.moveTo(d);
+      int numDatumFeatures = cursor.numFeatures();
+      Arrays.fill(sums, 0.0);
+      for (int f = 0; f < numDatumFeatures; f++) {
+        for (int c = 0; c < numClasses; c++) {
+          sums[c] += x[indexOf(cursor.feature(f), c)] * cursor.value(f);
+        }
+      }
+      double total = ArrayMath.logSum(sums);
+      int ld = cursor.label();
+      for (int c = 0; c < numClasses; c++) {
+        probs[c] = Math.exp(sums[c] - total);
+      }
+      for (int f = 0; f < numDatumFeatures; f++) {
+        int feature = cursor.feature(f);
+        double v = cursor.value(f);
+        for (int c = 0; c < numClasses; c++) {
+          derivative[indexOf(feature, c)] += probs[ld] * probs[c] * v;
+        }
+        // observed
+        derivative[indexOf(feature, ld)] -= probs[ld] * v;
+      }
+    }
+  }
+
   protected void calculateStochasticAlgorithmicDifferentiation(double[] x, double[] v, int[] batch) {
+    if (mappedData != null) {
+      throw new UnsupportedOperationException("Hessian-vector products aren't supported for a MappedDataset");
+    }
 
     log.info("*");
 
@@ -1111,6 +1291,26 @@ public class LogConditionalObjectiveFunction<L, F> extends AbstractStochasticCac
     this.labelIndex = null;
     this.featureIndex = null;
     this.dataIterable = null;
+    this.mappedData = null;
+  }
+
+  /**
+   * Version over a dataset on disk, which is read (by memory-mapping it) as it is needed, for
+   * datasets too large to fit in memory. Doesn't support dataWeights or summed conditional likelihood.
+   */
+  public LogConditionalObjectiveFunction(MappedDataset<L, F> dataset, LogPrior prior) {
+    this.prior = prior;
+    this.useSummedConditionalLikelihood = false;
+    this.numFeatures = dataset.numFeatures();
+    this.numClasses = dataset.numClasses();
+    this.mappedData = dataset;
+    this.data = null;
+    this.labels = null;
+    this.values = null;
+    this.dataWeights = null;
+    this.labelIndex = dataset.labelIndex();
+    this.featureIndex = dataset.featureIndex();
+    this.dataIterable = null;
   }
 
   //TODO: test this [none of our code actually even uses it].
@@ -1128,6 +1328,7 @@ public class LogConditionalObjectiveFunction<L, F> extends AbstractStochasticCac
     this.labels = null;//dataset.getLabelsArray();
     this.values = null;//dataset.getValuesArray();
     this.dataWeights = null;
+    this.mappedData = null;
   }
 
   public LogConditionalObjectiveFunction(int numFeatures, int numClasses, int[][] data, int[] labels, boolean useSumCondObjFun) {
@@ -1163,6 +1364,7 @@ public class LogConditionalObjectiveFunction<L, F> extends AbstractStochasticCac
     this.labelIndex = null;
     this.featureIndex = null;
     this.dataIterable = null;
+    this.mappedData = null;
     this.useSummedConditionalLikelihood = useSummedConditionalLikelihood;
   }
 
@@ -1183,6 +1385,7 @@ public class LogConditionalObjectiveFunction<L, F> extends AbstractStochasticCac
     this.dataIterable = null;
     this.useSummedConditionalLikelihood = false;
     this.dataWeights = null;
+    this.mappedData = null;
   }
 
 }
@@ -0,0 +1,342 @@
+package edu.stanford.nlp.classify;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.ling.BasicDatum;
+import edu.stanford.nlp.ling.Datum;
+import edu.stanford.nlp.ling.RVFDatum;
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.util.HashedFeatureIndex;
+import edu.stanford.nlp.util.Index;
+
+/**
+ * A dataset kept on disk rather than in memory, for training on more data than fits in memory.
+ * It is written one datum at a time, in one streaming pass, by a {@link Writer}, and then read by
+ * memory-mapping the file, so only the parts of it being read at the time need to be in memory
+ * (and the operating system decides which of those stay there). Datums are read through a
+ * {@link Cursor}; each thread reading the dataset should have its own. Only the feature and label
+ * indices are in memory: use a {@link HashedFeatureIndex} to not have an index of feature strings either.
+ * <br>
+ * A {@link LogConditionalObjectiveFunction} can be made over a MappedDataset, and
+ * {@link LinearClassifierFactory#trainClassifier(MappedDataset)} trains a classifier on one.
+ * <br>
+ * The file holds, for each datum, its label, its number of features, their indices, and, if the
+ * dataset is real-valued, their values. A second file (the name of the first plus ".offsets")
+ * holds where each datum starts. The files are deleted when the dataset is closed.
+ *
+ * @param <L> The type of the labels
+ * @param <F> The type of the features
+ */
+public class MappedDataset<L, F> implements Closeable {
+
+  /** The largest part of a file mapped at once; datums don't straddle these segments */
+  private static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+  private final File file;
+  private final File offsetsFile;
+  private final Index<F> featureIndex;
+  private final Index<L> labelIndex;
+  private final boolean realValued;
+  private final int size;
+  private final int segmentSize;
+  private MappedByteBuffer[] dataSegments;
+  private MappedByteBuffer[] offsetSegments;
+
+  private MappedDataset(File file, File offsetsFile, Index<F> featureIndex, Index<L> labelIndex,
+                        boolean realValued, int size, int segmentSize) throws IOException {
+    this.file = file;
+    this.offsetsFile = offsetsFile;
+    this.featureIndex = featureIndex;
+    this.labelIndex = labelIndex;
+    this.realValued = realValued;
+    this.size = size;
+    this.segmentSize = segmentSize;
+    this.dataSegments = map(file, segmentSize);
+    this.offsetSegments = map(offsetsFile, segmentSize);
+  }
+
+  private static MappedByteBuffer[] map(File file, int segmentSize) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long length = channel.size();
+      MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + segmentSize - 1) / segmentSize)];
+      for (int i = 0; i < segments.length; i++) {
+        long start = (long) i * segmentSize;
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, length - start));
+      }
+      return segments;
+    }
+  }
+
+  /**
+   * Starts writing a dataset to a file.
+   *
+   * @param file Where to write the dataset
+   * @param featureIndex The index features are added to (or looked up in, if it is locked)
+   * @param labelIndex The index labels are added to
+   * @param realValued Whether to keep the values of the features of {@link RVFDatum}s; if not,
+   *                   every feature has value 1. Features hashed by a {@link HashedFeatureIndex}
+   *                   are always real-valued, as their values are their signs.
+   */
+  public static <L, F> Writer<L, F> writer(File file, Index<F> featureIndex, Index<L> labelIndex, boolean realValued) throws IOException {
+    return new Writer<>(file, featureIndex, labelIndex, realValued, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /** Writes a MappedDataset one datum at a time. */
+  public static class Writer<L, F> implements Closeable {
+
+    private final File file;
+    private final File offsetsFile;
+    private final Index<F> featureIndex;
+    private final Index<L> labelIndex;
+    private final boolean realValued;
+    private final int segmentSize;
+    private final DataOutputStream data;
+    private final DataOutputStream offsets;
+    private long position = 0;
+    private int size = 0;
+    private boolean done = false;
+
+    Writer(File file, Index<F> featureIndex, Index<L> labelIndex, boolean realValued, int segmentSize) throws IOException {
+      if (segmentSize % Long.BYTES != 0) {
+        throw new IllegalArgumentException("The segment size must be a multiple of " + Long.BYTES);
+      }
+      this.file = file;
+      this.offsetsFile = new File(file.getPath() + ".offsets");
+      this.featureIndex = featureIndex;
+      this.labelIndex = labelIndex;
+      this.realValued = realValued || featureIndex instanceof HashedFeatureIndex;
+      this.segmentSize = segmentSize;
+      this.data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+      this.offsets = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(offsetsFile), 1 << 16));
+    }
+
+    /** Adds a datum to the end of the dataset. Features not in a locked feature index are left out. */
+    public void add(Datum<L, F> datum) throws IOException {
+      if (done) {
+        throw new IllegalStateException("This dataset has already been written");
+      }
+      HashedFeatureIndex hashedIndex = (featureIndex instanceof HashedFeatureIndex) ? (HashedFeatureIndex) featureIndex : null;
+      List<F> features;
+      Counter<F> values = null;
+      if (realValued && datum instanceof RVFDatum) {
+        values = ((RVFDatum<L, F>) datum).asFeaturesCounter();
+        features = new ArrayList<>(values.keySet());
+      } else {
+        features = new ArrayList<>(datum.asFeatures());
+      }
+      int[] indices = new int[features.size()];
+      double[] featureValues = realValued ? new double[features.size()] : null;
+      int n = 0;
+      for (F feature : features) {
+        int index = featureIndex.addToIndex(feature);
+        if (index >= 0) {
+          indices[n] = index;
+          if (realValued) {
+            featureValues[n] = (values == null) ? 1.0 : values.getCount(feature);
+            if (hashedIndex != null) {
+              featureValues[n] *= hashedIndex.sign((String) feature);
+            }
+          }
+          n++;
+        }
+      }
+
+      long recordSize = (2L + n) * Integer.BYTES + (realValued ? (long) n * Double.BYTES : 0);
+      if (recordSize > segmentSize) {
+        throw new IllegalArgumentException("Datum " + size + " has too many features: " + n);
+      }
+      long spaceLeft = segmentSize - position % segmentSize;
+      if (recordSize > spaceLeft) {
+        // pad to the next segment, so that every datum can be read from one mapped buffer
+        for (long i = 0; i < spaceLeft; i++) {
+          data.writeByte(0);
+        }
+        position += spaceLeft;
+      }
+      offsets.writeLong(position);
+      data.writeInt(labelIndex.addToIndex(datum.label()));
+      data.writeInt(n);
+      for (int i = 0; i < n; i++) {
+        data.writeInt(indices[i]);
+      }
+      if (realValued) {
+        for (int i = 0; i < n; i++) {
+          data.writeDouble(featureValues[i]);
+        }
+      }
+      position += recordSize;
+      size++;
+    }
+
+    /** Returns the number of datums added so far. */
+    public int size() {
+      return size;
+    }
+
+    /** Finishes writing the dataset, and opens it for reading. */
+    public MappedDataset<L, F> finish() throws IOException {
+      done = true;
+      data.close();
+      offsets.close();
+      return new MappedDataset<>(file, offsetsFile, featureIndex, labelIndex, realValued, size, segmentSize);
+    }
+
+    /** If the dataset has not been finished, stops writing it and deletes it. */
+    @Override
+    public void close() throws IOException {
+      if ( ! done) {
+        done = true;
+        data.close();
+        offsets.close();
+        delete(file);
+        delete(offsetsFile);
+      }
+    }
+
+  } // end static class Writer
+
+  /** The datums of a dataset, read one at a time into reusable arrays. Not threadsafe. */
+  public class Cursor {
+
+    private int label;
+    private int numFeatures;
+    private int[] features = new int[16];
+    private double[] values = realValued ? new double[16] : null;
+
+    /** Reads the datum with this index. */
+    public Cursor moveTo(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Datum " + index + " of a dataset of " + size);
+      }
+      long offsetPosition = (long) index * Long.BYTES;
+      long position = offsetSegments[(int) (offsetPosition / segmentSize)].getLong((int) (offsetPosition % segmentSize));
+      MappedByteBuffer segment = dataSegments[(int) (position / segmentSize)];
+      int p = (int) (position % segmentSize);
+      label = segment.getInt(p);
+      numFeatures = segment.getInt(p + Integer.BYTES);
+      p += 2 * Integer.BYTES;
+      if (features.length < numFeatures) {
+        features = new int[Math.max(numFeatures, 2 * features.length)];
+        if (realValued) {
+          values = new double[features.length];
+        }
+      }
+      for (int i = 0; i < numFeatures; i++, p += Integer.BYTES) {
+        features[i] = segment.getInt(p);
+      }
+      if (realValued) {
+        for (int i = 0; i < numFeatures; i++, p += Double.BYTES) {
+          values[i] = segment.getDouble(p);
+        }
+      }
+      return this;
+    }
+
+    /** The index of the label of the datum. */
+    public int label() {
+      return label;
+    }
+
+    /** The number of features of the datum. */
+    public int numFeatures() {
+      return numFeatures;
+    }
+
+    /** The index of the i-th feature of the datum. */
+    public int feature(int i) {
+      return features[i];
+    }
+
+    /** The value of the i-th feature of the datum. */
+    public double value(int i) {
+      return realValued ? values[i] : 1.0;
+    }
+
+  } // end class Cursor
+
+  /** Returns a new cursor over this dataset. */
+  public Cursor cursor() {
+    if (dataSegments == null) {
+      throw new IllegalStateException("This dataset has been closed");
+    }
+    return new Cursor();
+  }
+
+  /** Reads a datum into a new RVFDatum (of value 1 for each feature if the dataset isn't real-valued). */
+  public RVFDatum<L, F> getRVFDatum(int index) {
+    Cursor cursor = cursor().moveTo(index);
+    Counter<F> features = new ClassicCounter<>();
+    for (int i = 0; i < cursor.numFeatures(); i++) {
+      features.incrementCount(featureIndex.get(cursor.feature(i)), cursor.value(i));
+    }
+    return new RVFDatum<>(features, labelIndex.get(cursor.label()));
+  }
+
+  /** Reads a datum into a new Datum, without any values of its features. */
+  public Datum<L, F> getDatum(int index) {
+    Cursor cursor = cursor().moveTo(index);
+    List<F> features = new ArrayList<>(cursor.numFeatures());
+    for (int i = 0; i < cursor.numFeatures(); i++) {
+      features.add(featureIndex.get(cursor.feature(i)));
+    }
+    return new BasicDatum<>(features, labelIndex.get(cursor.label()));
+  }
+
+  /** The number of datums. */
+  public int size() {
+    return size;
+  }
+
+  public boolean isRealValued() {
+    return realValued;
+  }
+
+  public Index<F> featureIndex() {
+    return featureIndex;
+  }
+
+  public Index<L> labelIndex() {
+    return labelIndex;
+  }
+
+  public int numFeatures() {
+    return featureIndex.size();
+  }
+
+  public int numClasses() {
+    return labelIndex.size();
+  }
+
+  /** Stops reading the dataset and deletes its files. */
+  @Override
+  public void close() {
+    dataSegments = null;
+    offsetSegments = null;
+    delete(file);
+    delete(offsetsFile);
+  }
+
+  private static void delete(File file) {
+    // (a file which is still mapped can't be deleted on some platforms)
+    if (file.exists() && ! file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "MappedDataset[" + file + ", " + size + " datums, " + numFeatures() + " features, " + numClasses() + " classes]";
+  }
+
+}
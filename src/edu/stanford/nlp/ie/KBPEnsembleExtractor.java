@@ -12,6 +12,7 @@ import edu.stanford.nlp.util.logging.Redwood;
 import edu.stanford.nlp.util.logging.RedwoodConfiguration;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -58,15 +59,43 @@ public class KBPEnsembleExtractor implements KBPRelationExtractor {
   public Pair<String, Double> classify(KBPInput input) {
     Pair<String, Double> prediction = Pair.makePair(KBPRelationExtractor.NO_RELATION, 1.0);
     for (KBPRelationExtractor extractor : extractors) {
-      Pair<String, Double> classifierPrediction = extractor.classify(input);
-      if (prediction.first.equals(KBPRelationExtractor.NO_RELATION) ||
-          (!classifierPrediction.first.equals(KBPRelationExtractor.NO_RELATION) &&
-              classifierPrediction.second > prediction.second)
-          ){
-        // The last prediction was NO_RELATION, or this is not NO_RELATION and has a higher score
-        prediction = classifierPrediction;
+      prediction = merge(prediction, extractor.classify(input));
+    }
+    return prediction;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Each extractor classifies the whole batch at once, so that extractors which can share work
+   * across inputs (e.g., {@link KBPStatisticalExtractor}) do so.
+   */
+  @Override
+  public List<Pair<String, Double>> classify(List<KBPInput> inputs) {
+    List<Pair<String, Double>> predictions = new ArrayList<>(inputs.size());
+    for (int i = 0; i < inputs.size(); ++i) {
+      predictions.add(Pair.makePair(KBPRelationExtractor.NO_RELATION, 1.0));
+    }
+    for (KBPRelationExtractor extractor : extractors) {
+      List<Pair<String, Double>> classifierPredictions = extractor.classify(inputs);
+      for (int i = 0; i < inputs.size(); ++i) {
+        predictions.set(i, merge(predictions.get(i), classifierPredictions.get(i)));
       }
     }
+    return predictions;
+  }
+
+  /**
+   * Union the prediction so far with the prediction of the next extractor.
+   */
+  private static Pair<String, Double> merge(Pair<String, Double> prediction, Pair<String, Double> classifierPrediction) {
+    if (prediction.first.equals(KBPRelationExtractor.NO_RELATION) ||
+        (!classifierPrediction.first.equals(KBPRelationExtractor.NO_RELATION) &&
+            classifierPrediction.second > prediction.second)
+        ){
+      // The last prediction was NO_RELATION, or this is not NO_RELATION and has a higher score
+      return classifierPrediction;
+    }
     return prediction;
   }
 
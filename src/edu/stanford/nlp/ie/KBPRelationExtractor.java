@@ -34,6 +34,19 @@ public interface KBPRelationExtractor {
    */
   Pair<String,Double> classify(KBPInput input);
 
+  /**
+   * Classify a batch of inputs, e.g., all the candidate entity pairs of a sentence.
+   * This returns exactly what calling {@link KBPRelationExtractor#classify(KBPInput)} on each
+   * input would, in the same order, but allows extractors to share work across the batch.
+   */
+  default List<Pair<String,Double>> classify(List<KBPInput> inputs) {
+    List<Pair<String, Double>> predictions = new ArrayList<>(inputs.size());
+    for (KBPInput input : inputs) {
+      predictions.add(classify(input));
+    }
+    return predictions;
+  }
+
 
   /**
    * The special tag for no relation.
@@ -282,12 +295,40 @@ public interface KBPRelationExtractor {
      * @return True if there is a plausible relation which could occur between these two types.
      */
     public static boolean plausiblyHasRelation(NERTag entityType, NERTag slotValueType) {
+      return plausibleTypeSignatures[entityType.ordinal()][slotValueType.ordinal()];
+    }
+
+    /**
+     * Returns whether an entity of this type can be the entity (left argument) of any relation.
+     * Mentions which cannot be never need to be paired up as a subject.
+     */
+    public static boolean plausiblyHasRelationAsEntity(NERTag entityType) {
+      return plausibleEntityTypes[entityType.ordinal()];
+    }
+
+    /**
+     * Returns whether an entity of this type can be the slot value (right argument) of any relation.
+     * Mentions which cannot be never need to be paired up as an object.
+     */
+    public static boolean plausiblyHasRelationAsSlotValue(NERTag slotValueType) {
+      return plausibleSlotValueTypes[slotValueType.ordinal()];
+    }
+
+    /** The type signatures which some relation holds for, indexed by the ordinals of the entity and slot value types */
+    private static final boolean[][] plausibleTypeSignatures = new boolean[NERTag.values().length][NERTag.values().length];
+    /** The types which are the entity type of some relation, indexed by ordinal */
+    private static final boolean[] plausibleEntityTypes = new boolean[NERTag.values().length];
+    /** The types which are a valid slot value type of some relation, indexed by ordinal */
+    private static final boolean[] plausibleSlotValueTypes = new boolean[NERTag.values().length];
+
+    static {
       for (RelationType rel : RelationType.values()) {
-        if (rel.entityType == entityType && rel.validNamedEntityLabels.contains(slotValueType)) {
-          return true;
+        for (NERTag slotValueType : rel.validNamedEntityLabels) {
+          plausibleTypeSignatures[rel.entityType.ordinal()][slotValueType.ordinal()] = true;
+          plausibleEntityTypes[rel.entityType.ordinal()] = true;
+          plausibleSlotValueTypes[slotValueType.ordinal()] = true;
         }
       }
-      return false;
     }
   }
 
@@ -11,6 +11,7 @@ import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
 import edu.stanford.nlp.semgraph.semgrex.SemgrexBatchParser;
 import edu.stanford.nlp.semgraph.semgrex.SemgrexMatcher;
 import edu.stanford.nlp.semgraph.semgrex.SemgrexPattern;
+import edu.stanford.nlp.semgraph.semgrex.SemgrexPatternSet;
 import edu.stanford.nlp.simple.Sentence;
 import edu.stanford.nlp.util.ArgumentParser;
 import edu.stanford.nlp.util.CoreMap;
@@ -38,7 +39,7 @@ public class KBPSemgrexExtractor implements KBPRelationExtractor {
   @ArgumentParser.Option(name="predictions", gloss="Dump model predictions to this file")
   public static Optional<String> PREDICTIONS = Optional.empty();
 
-  private final Map<RelationType, Collection<SemgrexPattern> > rules = new HashMap<>();
+  private final Map<RelationType, SemgrexPatternSet> rules = new HashMap<>();
 
   public KBPSemgrexExtractor(String semgrexdir) throws IOException {
     this(semgrexdir, false);
@@ -55,7 +56,7 @@ public class KBPSemgrexExtractor implements KBPRelationExtractor {
         List<SemgrexPattern> rulesforrel = SemgrexBatchParser.compileStream(IOUtils.getInputStreamFromURLOrClasspathOrFileSystem(filename));
         if (verbose)
           logger.log("Read " + rulesforrel.size() + " rules from " + filename + " for relation " + rel);
-        rules.put(rel, rulesforrel);
+        rules.put(rel, new SemgrexPatternSet(rulesforrel));
       }
     }
   }
@@ -68,7 +69,7 @@ public class KBPSemgrexExtractor implements KBPRelationExtractor {
       if (rules.containsKey(rel) &&
           rel.entityType == input.subjectType &&
           rel.validNamedEntityLabels.contains(input.objectType)) {
-        Collection<SemgrexPattern> rulesForRel = rules.get(rel);
+        SemgrexPatternSet rulesForRel = rules.get(rel);
         CoreMap sentence = input.sentence.asCoreMap(Sentence::nerTags, Sentence::dependencyGraph);
         boolean matches
             = matches(sentence, rulesForRel, input,
@@ -89,7 +90,7 @@ public class KBPSemgrexExtractor implements KBPRelationExtractor {
   /**
    * Returns whether any of the given patterns match this tree.
    */
-  private boolean matches(CoreMap sentence, Collection<SemgrexPattern> rulesForRel,
+  private boolean matches(CoreMap sentence, SemgrexPatternSet rulesForRel,
                           KBPInput input, SemanticGraph graph) {
     if (graph == null || graph.isEmpty()) {
       return false;
@@ -107,10 +108,8 @@ public class KBPSemgrexExtractor implements KBPRelationExtractor {
       }
     }
 
-    for (SemgrexPattern p : rulesForRel) {
-
-      try {
-        SemgrexMatcher n = p.matcher(graph);
+    try {
+      for (SemgrexMatcher n : rulesForRel.matchers(graph)) {
         while (n.find()) {
           IndexedWord entity = n.getNode("entity");
           IndexedWord slot = n.getNode("slot");
@@ -121,10 +120,10 @@ public class KBPSemgrexExtractor implements KBPRelationExtractor {
             return true;
           }
         }
-      } catch (Exception e) {
-        //Happens when graph has no roots
-        return false;
       }
+    } catch (Exception e) {
+      //Happens when graph has no roots
+      return false;
     }
     return false;
   }
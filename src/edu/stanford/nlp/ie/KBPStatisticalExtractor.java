@@ -664,6 +664,49 @@ public class KBPStatisticalExtractor implements KBPRelationExtractor, Serializab
   public Pair<String,Double> classify(KBPInput input) {
     RVFDatum<String, String> datum = new RVFDatum<>(features(input));
     Counter<String> scores =  classifier.scoresOf(datum);
+    return bestTypeCheckingRelation(input, scores);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * If the implementing classifier is a {@link LinearClassifier}, the inputs are
+   * featurized up front and scored against the classifier's weights together,
+   * looking up every feature once for all of the relations.
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<Pair<String, Double>> classify(List<KBPInput> inputs) {
+    if ( ! (classifier instanceof LinearClassifier)) {
+      return KBPRelationExtractor.super.classify(inputs);
+    }
+    LinearClassifier<String, String> linearClassifier = (LinearClassifier<String, String>) classifier;
+    List<RVFDatum<String, String>> data = new ArrayList<>(inputs.size());
+    for (KBPInput input : inputs) {
+      data.add(new RVFDatum<>(features(input)));
+    }
+    double[][] scoreMatrix = linearClassifier.scoresOf(data);
+    Index<String> labelIndex = linearClassifier.labelIndex();
+    List<Pair<String, Double>> predictions = new ArrayList<>(inputs.size());
+    for (int i = 0; i < inputs.size(); ++i) {
+      Counter<String> scores = new ClassicCounter<>(labelIndex.size());
+      for (int label = 0; label < labelIndex.size(); ++label) {
+        scores.setCount(labelIndex.get(label), scoreMatrix[i][label]);
+      }
+      predictions.add(bestTypeCheckingRelation(inputs.get(i), scores));
+    }
+    return predictions;
+  }
+
+  /**
+   * Find the most probable relation for the given input which type checks, from
+   * the classifier's scores for each relation.
+   *
+   * @param input The input which was classified.
+   * @param scores The unnormalized log probability of each relation. This is modified in place.
+   * @return A pair with the relation we classified into, along with its confidence.
+   */
+  private static Pair<String, Double> bestTypeCheckingRelation(KBPInput input, Counter<String> scores) {
     Counters.expInPlace(scores);
     Counters.normalize(scores);
     String best = Counters.argmax(scores);
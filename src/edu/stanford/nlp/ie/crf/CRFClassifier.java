@@ -44,6 +44,7 @@ import edu.stanford.nlp.util.logging.Redwood;
 
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
@@ -197,7 +198,11 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       this.knownLCWords = new MaxSizeConcurrentHashSet<>(crf.knownLCWords);
       this.knownLCWords.setMaxSize(this.knownLCWords.size() + crf.flags.maxAdditionalKnownLCWords);
     }
-    this.featureIndex = (crf.featureIndex != null) ? new HashIndex<>(crf.featureIndex.objectsList()) : null;
+    if (crf.featureIndex instanceof HashedFeatureIndex) {
+      this.featureIndex = crf.featureIndex; // (immutable)
+    } else {
+      this.featureIndex = (crf.featureIndex != null) ? new HashIndex<>(crf.featureIndex.objectsList()) : null;
+    }
     this.classIndex = (crf.classIndex != null) ? new HashIndex<>(crf.classIndex.objectsList()) : null;
     if (crf.labelIndices != null) {
       this.labelIndices = new ArrayList<>(crf.labelIndices.size());
@@ -445,6 +450,8 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     // position j of document
     int[] labels = new int[docSize];
 
+    HashedFeatureIndex hashedIndex = (featureIndex instanceof HashedFeatureIndex) ? (HashedFeatureIndex) featureIndex : null;
+
     if (flags.useReverse) {
       Collections.reverse(document);
     }
@@ -461,11 +468,19 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
         if(featureValList != null) { // CRFBiasedClassifier.makeDatum causes null
           featureVals[j][k] = featureValList.get(k);
         }
+        if (hashedIndex != null && featureVals[j][k] == null) {
+          // hashed features have values: their signs
+          featureVals[j][k] = new double[cliqueFeatures.size()];
+          Arrays.fill(featureVals[j][k], 1.0);
+        }
         int m = 0;
         for (String feature : cliqueFeatures) {
-          int index = featureIndex.indexOf(feature);
+          int index = (hashedIndex != null) ? hashedIndex.indexOf(feature, k) : featureIndex.indexOf(feature);
           if (index >= 0) {
             data[j][k][m] = index;
+            if (hashedIndex != null) {
+              featureVals[j][k][m] *= hashedIndex.sign(feature);
+            }
             m++;
           } else {
             // this is where we end up when we do feature threshold cutoffs
@@ -626,7 +641,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       Triple<int[][][], int[], double[][][]> docTriple = documentToDataAndLabels(doc);
       data.add(docTriple.first());
       labels.add(docTriple.second());
-      if (flags.useEmbedding)
+      if (flags.useEmbedding || featureIndex instanceof HashedFeatureIndex)
         featureVal.add(docTriple.third());
       numDatums += doc.size();
     }
@@ -638,7 +653,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     printFeatures();
 
     double[][][][] featureValArr = null;
-    if (flags.useEmbedding)
+    if (flags.useEmbedding || featureIndex instanceof HashedFeatureIndex)
       featureValArr = featureVal.toArray(new double[data.size()][][][]);
 
 
@@ -764,6 +779,9 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       for (int j = 0, docSize = doc.size(); j < docSize; j++) {
         CRFDatum<List<String>, CRFLabel> d = makeDatum(doc, j, featureFactories);
         labelIndex.add(d.label());
+        if (flags.featureHashBuckets > 0) {
+          continue; // the features will be hashed, so there is no need to collect them
+        }
 
         List<List<String>> features = d.asFeatures();
         for (int k = 0, fSize = features.size(); k < fSize; k++) {
@@ -832,73 +850,89 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       }
     }
 
-    if (useFeatureCountThresh) {
-      int numFeatures = 0;
-      for (int i = 0; i < windowSize; i++) {
-        numFeatures += featureCountIndices[i].size();
+    if (flags.featureHashBuckets > 0) {
+      // One block of buckets for each clique size
+      featureIndex = new HashedFeatureIndex(flags.featureHashBuckets, windowSize);
+      map = new int[featureIndex.size()];
+      for (int i = 0; i < map.length; i++) {
+        map[i] = i / flags.featureHashBuckets;
       }
-      log.info("Before feature count thresholding, numFeatures = " + numFeatures);
-      for (int i = 0; i < windowSize; i++) {
-        for(Iterator<Map.Entry<String, Integer>> it = featureCountIndices[i].entrySet().iterator(); it.hasNext(); ) {
-          Map.Entry<String, Integer> entry = it.next();
-          if(entry.getValue() < flags.featureCountThresh) {
-            it.remove();
+      log.info("numFeatures = " + featureIndex.size() + " (hashed)");
+      if (flags.groupByFeatureTemplate || flags.numTimesPruneFeatures > 0) {
+        throw new IllegalArgumentException("groupByFeatureTemplate and numTimesPruneFeatures don't work with featureHashBuckets");
+      }
+      if (useFeatureCountThresh || flags.numOfFeatureSlices > 0) {
+        log.warn("Ignoring featureCountThresh and numOfFeatureSlices, which don't work with featureHashBuckets");
+      }
+    } else {
+      if (useFeatureCountThresh) {
+        int numFeatures = 0;
+        for (int i = 0; i < windowSize; i++) {
+          numFeatures += featureCountIndices[i].size();
+        }
+        log.info("Before feature count thresholding, numFeatures = " + numFeatures);
+        for (int i = 0; i < windowSize; i++) {
+          for(Iterator<Map.Entry<String, Integer>> it = featureCountIndices[i].entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Integer> entry = it.next();
+            if(entry.getValue() < flags.featureCountThresh) {
+              it.remove();
+            }
           }
+          featureIndices[i].addAll(featureCountIndices[i].keySet());
+          featureCountIndices[i] = null;
         }
-        featureIndices[i].addAll(featureCountIndices[i].keySet());
-        featureCountIndices[i] = null;
       }
-    }
 
-    int numFeatures = 0;
-    for (int i = 0; i < windowSize; i++) {
-      numFeatures += featureIndices[i].size();
-    }
-    log.info("numFeatures = " + numFeatures);
+      int numFeatures = 0;
+      for (int i = 0; i < windowSize; i++) {
+        numFeatures += featureIndices[i].size();
+      }
+      log.info("numFeatures = " + numFeatures);
 
-    featureIndex = new HashIndex<>();
-    map = new int[numFeatures];
+      featureIndex = new HashIndex<>();
+      map = new int[numFeatures];
 
-    if (flags.groupByFeatureTemplate) {
-      templateGroupIndex = new HashIndex<>();
-      featureIndexToTemplateIndex = new HashMap<>();
-    }
+      if (flags.groupByFeatureTemplate) {
+        templateGroupIndex = new HashIndex<>();
+        featureIndexToTemplateIndex = new HashMap<>();
+      }
 
-    for (int i = 0; i < windowSize; i++) {
-      Index<Integer> featureIndexMap = new HashIndex<>();
-
-      featureIndex.addAll(featureIndices[i]);
-      for (String str : featureIndices[i]) {
-        int index = featureIndex.indexOf(str);
-        map[index] = i;
-        featureIndexMap.add(index);
-
-        // grouping features by template
-        if (flags.groupByFeatureTemplate) {
-          Matcher m = suffixPatt.matcher(str);
-          String groupSuffix = "NoTemplate";
-          if (m.matches()) {
-            groupSuffix = m.group(1);
-          }
-          groupSuffix += "-c:"+i;
+      for (int i = 0; i < windowSize; i++) {
+        Index<Integer> featureIndexMap = new HashIndex<>();
+
+        featureIndex.addAll(featureIndices[i]);
+        for (String str : featureIndices[i]) {
+          int index = featureIndex.indexOf(str);
+          map[index] = i;
+          featureIndexMap.add(index);
+
+          // grouping features by template
+          if (flags.groupByFeatureTemplate) {
+            Matcher m = suffixPatt.matcher(str);
+            String groupSuffix = "NoTemplate";
+            if (m.matches()) {
+              groupSuffix = m.group(1);
+            }
+            groupSuffix += "-c:"+i;
 
-          int groupIndex = templateGroupIndex.addToIndex(groupSuffix);
-          featureIndexToTemplateIndex.put(index, groupIndex);
+            int groupIndex = templateGroupIndex.addToIndex(groupSuffix);
+            featureIndexToTemplateIndex.put(index, groupIndex);
+          }
+        }
+        // todo [cdm 2014]: Talk to Mengqiu about this; it seems like it only supports first order CRF
+        if (i == 0) {
+          nodeFeatureIndicesMap = featureIndexMap;
+          // log.info("setting nodeFeatureIndicesMap, size="+nodeFeatureIndicesMap.size());
+        } else {
+          edgeFeatureIndicesMap = featureIndexMap;
+          // log.info("setting edgeFeatureIndicesMap, size="+edgeFeatureIndicesMap.size());
         }
       }
-      // todo [cdm 2014]: Talk to Mengqiu about this; it seems like it only supports first order CRF
-      if (i == 0) {
-        nodeFeatureIndicesMap = featureIndexMap;
-        // log.info("setting nodeFeatureIndicesMap, size="+nodeFeatureIndicesMap.size());
-      } else {
-        edgeFeatureIndicesMap = featureIndexMap;
-        // log.info("setting edgeFeatureIndicesMap, size="+edgeFeatureIndicesMap.size());
-      }
-    }
 
-    if (flags.numOfFeatureSlices > 0) {
-      log.info("Taking " + flags.numOfFeatureSlices + " out of " + flags.totalFeatureSlice + " slices of node features for training");
-      pruneNodeFeatureIndices(flags.totalFeatureSlice, flags.numOfFeatureSlices);
+      if (flags.numOfFeatureSlices > 0) {
+        log.info("Taking " + flags.numOfFeatureSlices + " out of " + flags.totalFeatureSlice + " slices of node features for training");
+        pruneNodeFeatureIndices(flags.totalFeatureSlice, flags.numOfFeatureSlices);
+      }
     }
 
     if (flags.useObservedSequencesOnly) {
@@ -1606,6 +1640,11 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       dumpFeatures(docs);
     }
 
+    if (flags.trainingWorkers > 0) {
+      trainWithWorkers(docs);
+      return;
+    }
+
     for (int i = 0; i <= flags.numTimesPruneFeatures; i++) {
       timer.start();
       Triple<int[][][][], int[][], double[][][][]> dataAndLabelsAndFeatureVals = documentsToDataAndLabels(docs);
@@ -1790,14 +1829,136 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     featureIndex = newFeatureIndex;
   }
 
+  /**
+   * Trains the weights with the documents shared out among {@code flags.trainingWorkers}
+   * worker processes, each of which computes the gradient on its share (see
+   * {@link ShardedCRFObjectiveFunction}). Shares have about the same number of tokens.
+   * Only the data arrays of one share at a time are made in this process, and they are passed to
+   * the workers through temporary files. Feature pruning, evaluation during training and
+   * loadProcessedData are not available in this mode.
+   */
+  private void trainWithWorkers(Collection<List<IN>> docs) {
+    if (flags.numTimesPruneFeatures > 0 || flags.evaluateIters > 0 || flags.loadProcessedData != null) {
+      log.warn("Ignoring numTimesPruneFeatures, evaluateIters and loadProcessedData, which don't work with trainingWorkers");
+    }
+    Minimizer<DiffFunction> minimizer = getMinimizer(0, null);
+    if ( ! (minimizer instanceof QNMinimizer)) {
+      throw new IllegalArgumentException("trainingWorkers only works with the QN minimizer (useQN)");
+    }
+    int numWorkers = Math.max(1, Math.min(flags.trainingWorkers, docs.size()));
+    long totalTokens = 0;
+    for (List<IN> doc : docs) {
+      totalTokens += doc.size();
+    }
+
+    File shardDir = null;
+    try {
+      shardDir = Files.createTempDirectory("crfShards").toFile();
+      Timing timer = new Timing();
+      List<File> shardFiles = new ArrayList<>();
+      List<int[][][]> data = new ArrayList<>();
+      List<int[]> labels = new ArrayList<>();
+      // the signs of the features, if they are hashed
+      List<double[][][]> featureVals = (featureIndex instanceof HashedFeatureIndex) ? new ArrayList<>() : null;
+      long tokens = 0;
+      for (List<IN> doc : docs) {
+        Triple<int[][][], int[], double[][][]> docTriple = documentToDataAndLabels(doc);
+        data.add(docTriple.first());
+        labels.add(docTriple.second());
+        if (featureVals != null) {
+          featureVals.add(docTriple.third());
+        }
+        tokens += doc.size();
+        if (shardFiles.size() < numWorkers - 1 && tokens * numWorkers >= totalTokens * (shardFiles.size() + 1)) {
+          shardFiles.add(writeShard(shardDir, shardFiles.size(), data, labels, featureVals));
+        }
+      }
+      if ( ! data.isEmpty() || shardFiles.isEmpty()) {
+        shardFiles.add(writeShard(shardDir, shardFiles.size(), data, labels, featureVals));
+      }
+      log.info("Time to convert docs to data/labels for " + shardFiles.size() + " workers: " + Timing.toSecondsString(timer.stop()) + " seconds");
+      log.info("numDocuments: " + docs.size() + "; numDatums: " + totalTokens + "; numFeatures: " + featureIndex.size());
+
+      int domainDimension = 0;
+      for (int dim : map) {
+        domainDimension += labelIndices.get(dim).size();
+      }
+      try (ShardedCRFObjectiveFunction func = ShardedCRFObjectiveFunction.start(shardFiles, domainDimension,
+          flags.priorType, flags.sigma, flags.trainingWorkerJavaOptions, flags.multiThreadGrad)) {
+        double[] initialWeights = initialWeights(func, minimizer);
+        log.info("numWeights: " + initialWeights.length);
+        double[] oneDimWeights = minimizer.minimize(func, flags.tolerance, initialWeights);
+        this.weights = to2D(oneDimWeights, labelIndices, map);
+      }
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    } finally {
+      if (shardDir != null) {
+        IOUtils.deleteRecursively(shardDir);
+      }
+    }
+  }
+
+  /** Writes the data arrays of a share of the documents for a training worker, and clears them. */
+  private File writeShard(File dir, int shardIndex, List<int[][][]> data, List<int[]> labels,
+                          List<double[][][]> featureVals) throws IOException {
+    File file = new File(dir, "shard" + shardIndex + ".ser");
+    CRFGradientWorker.writeShard(file, data.toArray(new int[data.size()][][][]), labels.toArray(new int[labels.size()][]),
+        featureVals == null ? null : featureVals.toArray(new double[featureVals.size()][][][]),
+        windowSize, classIndex, labelIndices, map, flags.backgroundSymbol);
+    data.clear();
+    labels.clear();
+    if (featureVals != null) {
+      featureVals.clear();
+    }
+    return file;
+  }
+
+  /**
+   * The weights to start training from: those saved in {@code flags.qnCheckpoint} if it exists
+   * (in which case the minimizer carries on from the checkpoint), else those read from
+   * {@code flags.initialWeights}, else the function's usual initial weights.
+   */
+  private double[] initialWeights(AbstractCachingDiffFunction func, Minimizer<DiffFunction> minimizer) {
+    double[] initialWeights;
+    if (flags.qnCheckpoint != null && minimizer instanceof QNMinimizer && new File(flags.qnCheckpoint).exists()) {
+      initialWeights = ((QNMinimizer) minimizer).resumeFromCheckpoint(flags.qnCheckpoint);
+      if (initialWeights.length != func.domainDimension()) {
+        throw new IllegalArgumentException("QN checkpoint " + flags.qnCheckpoint + " has " + initialWeights.length +
+            " weights, but this model has " + func.domainDimension());
+      }
+    } else if (flags.initialWeights == null) {
+      initialWeights = func.initial();
+    } else {
+      try {
+        log.info("Reading initial weights from file " + flags.initialWeights);
+        DataInputStream dis = IOUtils.getDataInputStream(flags.initialWeights);
+        initialWeights = ConvertByteArray.readDoubleArr(dis);
+      } catch (IOException e) {
+        throw new RuntimeException("Could not read from double initial weight file " + flags.initialWeights);
+      }
+    }
+    return initialWeights;
+  }
+
   protected CRFLogConditionalObjectiveFunction getObjectiveFunction(int[][][][] data, int[][] labels) {
     return new CRFLogConditionalObjectiveFunction(data, labels, windowSize, classIndex,
       labelIndices, map, flags.priorType, flags.backgroundSymbol, flags.sigma, null, flags.multiThreadGrad);
   }
 
+  /**
+   * The objective function of a CRF whose features are hashed, which has the signs of the features
+   * as their values. Subclasses with their own objective function don't hash features.
+   */
+  private CRFLogConditionalObjectiveFunction getHashedObjectiveFunction(int[][][][] data, int[][] labels, double[][][][] featureVals) {
+    return new CRFLogConditionalObjectiveFunction(data, labels, windowSize, classIndex,
+      labelIndices, map, flags.priorType, flags.backgroundSymbol, flags.sigma, featureVals, flags.multiThreadGrad);
+  }
+
   protected double[] trainWeights(int[][][][] data, int[][] labels, Evaluator[] evaluators, int pruneFeatureItr, double[][][][] featureVals) {
 
-    CRFLogConditionalObjectiveFunction func = getObjectiveFunction(data, labels);
+    CRFLogConditionalObjectiveFunction func = (featureIndex instanceof HashedFeatureIndex) ?
+        getHashedObjectiveFunction(data, labels, featureVals) : getObjectiveFunction(data, labels);
     cliquePotentialFunctionHelper = func;
 
     // create feature grouping
@@ -1874,18 +2035,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
     Minimizer<DiffFunction> minimizer = getMinimizer(pruneFeatureItr, evaluators);
 
-    double[] initialWeights;
-    if (flags.initialWeights == null) {
-      initialWeights = func.initial();
-    } else {
-      try {
-        log.info("Reading initial weights from file " + flags.initialWeights);
-        DataInputStream dis = IOUtils.getDataInputStream(flags.initialWeights);
-        initialWeights = ConvertByteArray.readDoubleArr(dis);
-      } catch (IOException e) {
-        throw new RuntimeException("Could not read from double initial weight file " + flags.initialWeights);
-      }
-    }
+    double[] initialWeights = initialWeights(func, minimizer);
     log.info("numWeights: " + initialWeights.length);
 
     if (flags.testObjFunction) {
@@ -1936,9 +2086,16 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       qnMinimizer.terminateOnEvalImprovement(flags.terminateOnEvalImprovement);
       qnMinimizer.setTerminateOnEvalImprovementNumOfEpoch(flags.terminateOnEvalImprovementNumOfEpoch);
       qnMinimizer.suppressTestPrompt(flags.suppressTestDebug);
+      if (flags.qnCheckpoint != null) {
+        qnMinimizer.setCheckpoint(flags.qnCheckpoint, flags.qnCheckpointFreq);
+      }
       if (flags.useOWLQN) {
         qnMinimizer.useOWLQN(flags.useOWLQN, flags.priorLambda);
       }
+      if (flags.qnVectorThreads > 0) {
+        qnMinimizer.setVectorOps(new ParallelVectorOps(flags.qnVectorThreads));
+      }
+      qnMinimizer.useFloatHistory(flags.qnFloatHistory);
     }
 
     if (flags.useQN) {
@@ -2330,6 +2487,9 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   }
 
   protected void serializeTextClassifier(PrintWriter pw) throws Exception {
+    if (featureIndex instanceof HashedFeatureIndex) {
+      throw new UnsupportedOperationException("A CRF with hashed features can't be serialized as text");
+    }
     pw.printf("labelIndices.length=\t%d%n", labelIndices.size());
     for (int i = 0; i < labelIndices.size(); i++) {
       pw.printf("labelIndices[%d].size()=\t%d%n", i, labelIndices.get(i).size());
@@ -2738,8 +2898,8 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   }
 
   public void writeWeights(PrintStream p) {
-    for (String feature : featureIndex) {
-      int index = featureIndex.indexOf(feature);
+    for (int index = 0, numFeatures = featureIndex.size(); index < numFeatures; index++) {
+      String feature = featureIndex.get(index);
       // line.add(feature+"["+(-p)+"]");
       // rowHeaders.add(feature + '[' + (-p) + ']');
       double[] v = weights[index];
@@ -2755,8 +2915,8 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
   public Map<String, Counter<String>> topWeights() {
     Map<String, Counter<String>> w = new HashMap<>();
-    for (String feature : featureIndex) {
-      int index = featureIndex.indexOf(feature);
+    for (int index = 0, numFeatures = featureIndex.size(); index < numFeatures; index++) {
+      String feature = featureIndex.get(index);
       // line.add(feature+"["+(-p)+"]");
       // rowHeaders.add(feature + '[' + (-p) + ']');
       double[] v = weights[index];
@@ -0,0 +1,119 @@
+package edu.stanford.nlp.ie.crf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import edu.stanford.nlp.io.NullOutputStream;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.Timing;
+import edu.stanford.nlp.util.Triple;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * Measures what hashing the features of a {@link CRFClassifier} (the {@code featureHashBuckets}
+ * flag) costs in accuracy, and what it saves in model size and loading time. A CRF is trained
+ * with the given properties without feature hashing, and then with each given number of
+ * buckets; each one is serialized, loaded back and tested, and a table of the results is printed.
+ * <br>
+ * Usage: {@code java edu.stanford.nlp.ie.crf.CRFFeatureHashingEvaluator -prop ner.prop -buckets 1048576,4194304}
+ * <br>
+ * The properties must include a trainFile (or trainFiles) and a testFile.
+ */
+public class CRFFeatureHashingEvaluator {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(CRFFeatureHashingEvaluator.class);
+
+  private CRFFeatureHashingEvaluator() {} // static methods only
+
+  /** How a CRF did with some number of buckets (0 for no hashing). */
+  public static class Result {
+
+    public final int buckets;
+    public final double precision;
+    public final double recall;
+    public final double f1;
+    public final long modelBytes;
+    public final double loadSeconds;
+
+    Result(int buckets, double precision, double recall, double f1, long modelBytes, double loadSeconds) {
+      this.buckets = buckets;
+      this.precision = precision;
+      this.recall = recall;
+      this.f1 = f1;
+      this.modelBytes = modelBytes;
+      this.loadSeconds = loadSeconds;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%10s %10.2f %10.2f %10.2f %14d %10.2f", buckets == 0 ? "none" : Integer.toString(buckets),
+          precision, recall, f1, modelBytes, loadSeconds);
+    }
+
+  } // end static class Result
+
+  /**
+   * Trains and tests a CRF with the given properties and {@code featureHashBuckets} set to
+   * each of {@code buckets} in turn.
+   */
+  public static List<Result> evaluate(Properties props, int... buckets) throws IOException, ClassNotFoundException {
+    String testFile = props.getProperty("testFile");
+    if (testFile == null) {
+      throw new IllegalArgumentException("The properties need a testFile");
+    }
+    List<Result> results = new ArrayList<>();
+    for (int numBuckets : buckets) {
+      Properties trialProps = new Properties();
+      trialProps.putAll(props);
+      trialProps.setProperty("featureHashBuckets", Integer.toString(numBuckets));
+      CRFClassifier<CoreLabel> crf = new CRFClassifier<>(trialProps);
+      crf.train();
+
+      File model = File.createTempFile("hashedCRF", ".ser.gz");
+      try {
+        crf.serializeClassifier(model.getPath());
+        Timing timer = new Timing();
+        CRFClassifier<CoreLabel> loaded = CRFClassifier.getClassifier(model);
+        double loadSeconds = timer.stop() / 1000.0;
+        Triple<Double, Double, Double> prf = loaded.classifyAndWriteAnswers(testFile, new NullOutputStream(),
+            loaded.makeReaderAndWriter(), false);
+        Result result = (prf == null) ? new Result(numBuckets, 0.0, 0.0, 0.0, model.length(), loadSeconds) :
+            new Result(numBuckets, prf.first(), prf.second(), prf.third(), model.length(), loadSeconds);
+        log.info(result);
+        results.add(result);
+      } finally {
+        if ( ! model.delete()) {
+          model.deleteOnExit();
+        }
+      }
+    }
+    return results;
+  }
+
+  public static void main(String[] args) throws IOException, ClassNotFoundException {
+    Properties props = StringUtils.argsToProperties(args);
+    String buckets = props.getProperty("buckets");
+    if (buckets == null) {
+      log.error("Usage: java edu.stanford.nlp.ie.crf.CRFFeatureHashingEvaluator -prop file -buckets n1,n2,...");
+      return;
+    }
+    props.remove("buckets");
+    String[] bucketStrings = buckets.split(",");
+    int[] numBuckets = new int[bucketStrings.length + 1];  // numBuckets[0] = 0: no hashing
+    for (int i = 0; i < bucketStrings.length; i++) {
+      numBuckets[i + 1] = Integer.parseInt(bucketStrings[i].trim());
+    }
+
+    List<Result> results = evaluate(props, numBuckets);
+    System.out.println(String.format("%10s %10s %10s %10s %14s %10s", "buckets", "P", "R", "F1", "modelBytes", "loadSecs"));
+    for (Result result : results) {
+      System.out.println(result);
+    }
+  }
+
+}
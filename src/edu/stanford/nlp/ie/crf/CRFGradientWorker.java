@@ -0,0 +1,99 @@
+package edu.stanford.nlp.ie.crf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.List;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.util.Index;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * A process which holds one shard of the training data of a CRF, and computes the log likelihood
+ * of that shard and its gradient whenever the {@link ShardedCRFObjectiveFunction} in the training
+ * process asks for them. It is started by that process, with the arguments
+ * {@code port shardIndex shardFile threads}, and exits when training is done or the connection is lost.
+ */
+public class CRFGradientWorker {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(CRFGradientWorker.class);
+
+  private CRFGradientWorker() {} // static main method only
+
+  /** The data arrays of some documents, and what is needed to make their objective function. */
+  private static class Shard implements Serializable {
+
+    private final int[][][][] data;
+    private final int[][] labels;
+    private final double[][][][] featureVals;
+    private final int window;
+    private final Index<String> classIndex;
+    private final List<Index<CRFLabel>> labelIndices;
+    private final int[] map;
+    private final String backgroundSymbol;
+
+    Shard(int[][][][] data, int[][] labels, double[][][][] featureVals, int window, Index<String> classIndex,
+          List<Index<CRFLabel>> labelIndices, int[] map, String backgroundSymbol) {
+      this.data = data;
+      this.labels = labels;
+      this.featureVals = featureVals;
+      this.window = window;
+      this.classIndex = classIndex;
+      this.labelIndices = labelIndices;
+      this.map = map;
+      this.backgroundSymbol = backgroundSymbol;
+    }
+
+    private static final long serialVersionUID = 1L;
+
+  } // end static class Shard
+
+  /**
+   * Writes the data arrays of some documents, as made by {@link CRFClassifier#documentToDataAndLabels},
+   * to a file for a worker to load. The feature values may be null.
+   */
+  static void writeShard(File file, int[][][][] data, int[][] labels, double[][][][] featureVals, int window, Index<String> classIndex,
+                         List<Index<CRFLabel>> labelIndices, int[] map, String backgroundSymbol) throws IOException {
+    IOUtils.writeObjectToFile(new Shard(data, labels, featureVals, window, classIndex, labelIndices, map, backgroundSymbol), file);
+  }
+
+  public static void main(String[] args) throws IOException, ClassNotFoundException {
+    if (args.length != 4) {
+      log.error("Usage: CRFGradientWorker port shardIndex shardFile threads");
+      System.exit(1);
+    }
+    int port = Integer.parseInt(args[0]);
+    int shardIndex = Integer.parseInt(args[1]);
+    int threads = Integer.parseInt(args[3]);
+
+    Shard shard = IOUtils.readObjectFromFile(args[2]);
+    // No prior: it is added once, to the sum of all the shards
+    CRFLogConditionalObjectiveFunction func = new CRFLogConditionalObjectiveFunction(shard.data, shard.labels,
+        shard.window, shard.classIndex, shard.labelIndices, shard.map, "NONE", shard.backgroundSymbol, 1.0, shard.featureVals, threads);
+    log.info("Training worker " + shardIndex + " loaded " + shard.data.length + " documents");
+
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+      out.writeInt(shardIndex);
+      out.writeInt(func.domainDimension());
+      out.flush();
+      double[] x = new double[func.domainDimension()];
+      while (in.readByte() == ShardedCRFObjectiveFunction.CALCULATE) {
+        ShardedCRFObjectiveFunction.readDoubles(in, x);
+        out.writeDouble(func.valueAt(x));
+        ShardedCRFObjectiveFunction.writeDoubles(out, func.derivativeAt(x));
+        out.flush();
+      }
+    }
+  }
+
+}
@@ -42,7 +42,8 @@ public class CRFLogConditionalObjectiveFunction extends AbstractStochasticCachin
 
   protected final int prior;
   protected final double sigma;
-  protected final double epsilon = 0.1; // You can't actually set this at present
+  static final double HUBER_EPSILON = 0.1;
+  protected final double epsilon = HUBER_EPSILON; // You can't actually set this at present
   /** label indices - for all possible label sequences - for each feature */
   protected final List<Index<CRFLabel>> labelIndices;
   protected final Index<String> classIndex;  // didn't have <String> before. Added since that's what is assumed everywhere.
@@ -185,7 +186,7 @@ public class CRFLogConditionalObjectiveFunction extends AbstractStochasticCachin
         //log.info(crfLabel + " " + labelIndex);
         for (int n = 0; n < docData[i][j].length; n++) {
           double fVal = 1.0;
-          if (featureValArr != null && j == 0) // j == 0 because only node features gets feature values
+          if (featureValArr != null && featureValArr[i][j] != null) // usually only node features have feature values
             fVal = featureValArr[i][j][n];
           eHat[docData[i][j][n]][labelIndex] += fVal;
         }
@@ -250,7 +251,7 @@ public class CRFLogConditionalObjectiveFunction extends AbstractStochasticCachin
           double p = cliqueTree.prob(i, label); // probability of these labels occurring in this clique with these features
           for (int n = 0; n < docData[i][j].length; n++) {
             double fVal = 1.0;
-            if (j == 0 && featureVal3DArr != null) { // j == 0 because only node features gets feature values
+            if (featureVal3DArr != null && featureVal3DArr[i][j] != null) { // usually only node features have feature values
               fVal = featureVal3DArr[i][j][n];
             }
             E[docData[i][j][n]][k] += p * fVal;
@@ -638,6 +639,15 @@ public class CRFLogConditionalObjectiveFunction extends AbstractStochasticCachin
   }
 
   protected void applyPrior(double[] x, double batchScale) {
+    value = applyPrior(prior, sigma, epsilon, x, batchScale, value, derivative);
+  }
+
+  /** Adds the prior at x to a value and its derivative, and returns the new value.
+   *  This is also used by {@link ShardedCRFObjectiveFunction}, which adds the prior once
+   *  to the sums of the gradients of the shards.
+   */
+  static double applyPrior(int prior, double sigma, double epsilon, double[] x, double batchScale,
+                           double value, double[] derivative) {
     // incorporate priors
     if (prior == QUADRATIC_PRIOR) {
       double lambda = 1 / (sigma * sigma);
@@ -668,6 +678,7 @@ public class CRFLogConditionalObjectiveFunction extends AbstractStochasticCachin
         derivative[i] += batchScale * w / sigmaQu;
       }
     }
+    return value;
   }
 
 
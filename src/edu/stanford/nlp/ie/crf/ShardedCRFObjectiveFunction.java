@@ -0,0 +1,229 @@
+package edu.stanford.nlp.ie.crf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.optimization.AbstractCachingDiffFunction;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * The objective function of a {@link CRFLogConditionalObjectiveFunction} whose training
+ * data is split into shards, each held by a separate worker process (a {@link CRFGradientWorker}).
+ * At each point, every worker computes the log likelihood of its shard and its gradient, with no prior;
+ * these are summed here, and the prior is added once. Only this process holds the weights and
+ * the state of the minimizer, and each worker only holds the data arrays of its shard, so that
+ * training data which would not fit in the heap of one JVM can be trained on.
+ *
+ * <p>
+ *   The workers are java processes on this machine, started with the classpath of this one,
+ *   which talk to this process over a local socket. Call {@link #close()} to stop them.
+ * </p>
+ */
+public class ShardedCRFObjectiveFunction extends AbstractCachingDiffFunction implements AutoCloseable {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(ShardedCRFObjectiveFunction.class);
+
+  /** Sent to a worker, followed by a point, to ask for the value and gradient at that point */
+  static final byte CALCULATE = 1;
+  /** Sent to a worker to make it exit */
+  static final byte SHUTDOWN = 0;
+
+  private final int domainDimension;
+  private final int prior;
+  private final double sigma;
+  private final List<Process> processes;
+  private final Socket[] sockets;
+  private final DataInputStream[] ins;
+  private final DataOutputStream[] outs;
+
+  private ShardedCRFObjectiveFunction(int domainDimension, String priorType, double sigma, List<Process> processes, Socket[] sockets) throws IOException {
+    this.domainDimension = domainDimension;
+    this.prior = CRFLogConditionalObjectiveFunction.getPriorType(priorType);
+    this.sigma = sigma;
+    this.processes = processes;
+    this.sockets = sockets;
+    this.ins = new DataInputStream[sockets.length];
+    this.outs = new DataOutputStream[sockets.length];
+    for (int i = 0; i < sockets.length; i++) {
+      ins[i] = new DataInputStream(new BufferedInputStream(sockets[i].getInputStream(), 1 << 16));
+      outs[i] = new DataOutputStream(new BufferedOutputStream(sockets[i].getOutputStream(), 1 << 16));
+    }
+  }
+
+  /**
+   * Starts a worker process for each shard, and returns the objective function of all of them
+   * once they have all loaded their shards.
+   *
+   * @param shardFiles Files written with {@link CRFGradientWorker#writeShard}, one per worker
+   * @param domainDimension The number of weights of the CRF
+   * @param priorType The prior, as for {@link CRFLogConditionalObjectiveFunction#getPriorType}
+   * @param sigma The parameter of the prior
+   * @param javaOptions Options for the java command of each worker, such as -Xmx4g (separated by whitespace)
+   * @param threadsPerWorker The number of threads each worker computes its gradient with
+   * @throws IOException If the workers cannot be started, or one exits before it is ready
+   */
+  public static ShardedCRFObjectiveFunction start(List<File> shardFiles, int domainDimension, String priorType, double sigma,
+                                                  String javaOptions, int threadsPerWorker) throws IOException {
+    int numWorkers = shardFiles.size();
+    List<Process> processes = new ArrayList<>();
+    Socket[] sockets = new Socket[numWorkers];
+    try (ServerSocket server = new ServerSocket(0, numWorkers, InetAddress.getLoopbackAddress())) {
+      server.setSoTimeout(1000);
+      for (int i = 0; i < numWorkers; i++) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (javaOptions != null && ! javaOptions.trim().isEmpty()) {
+          command.addAll(Arrays.asList(javaOptions.trim().split("\\s+")));
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(CRFGradientWorker.class.getName());
+        command.add(Integer.toString(server.getLocalPort()));
+        command.add(Integer.toString(i));
+        command.add(shardFiles.get(i).getPath());
+        command.add(Integer.toString(threadsPerWorker));
+        processes.add(new ProcessBuilder(command).inheritIO().start());
+      }
+      log.info("Started " + numWorkers + " training workers; waiting for them to load their data");
+
+      // Loading a shard may take a long time, so wait as long as the workers are alive
+      for (int connected = 0; connected < numWorkers; ) {
+        Socket socket;
+        try {
+          socket = server.accept();
+        } catch (SocketTimeoutException e) {
+          for (int i = 0; i < numWorkers; i++) {
+            if ( ! processes.get(i).isAlive() && sockets[i] == null) {
+              throw new IOException("Training worker " + i + " exited with status " + processes.get(i).exitValue() + " before it was ready");
+            }
+          }
+          continue;
+        }
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        int shard = in.readInt();
+        int dimension = in.readInt();
+        if (shard < 0 || shard >= numWorkers || sockets[shard] != null) {
+          socket.close();
+          throw new IOException("Unexpected connection from training worker " + shard);
+        }
+        sockets[shard] = socket;
+        if (dimension != domainDimension) {
+          throw new IOException("Training worker " + shard + " has " + dimension + " weights, not " + domainDimension);
+        }
+        ++connected;
+      }
+      return new ShardedCRFObjectiveFunction(domainDimension, priorType, sigma, processes, sockets);
+    } catch (IOException | RuntimeException e) {
+      stop(processes, sockets);
+      throw e;
+    }
+  }
+
+  @Override
+  public int domainDimension() {
+    return domainDimension;
+  }
+
+  /** The same starting point as {@link CRFLogConditionalObjectiveFunction#initial()}. */
+  @Override
+  public double[] initial() {
+    Random rand = new Random(2147483647L);
+    double[] initial = new double[domainDimension];
+    for (int i = 0; i < initial.length; i++) {
+      initial[i] = rand.nextDouble() + CRFLogConditionalObjectiveFunction.smallConst;
+    }
+    return initial;
+  }
+
+  @Override
+  protected void calculate(double[] x) {
+    try {
+      // All the workers compute at once; then their results are added up in a fixed order
+      for (DataOutputStream out : outs) {
+        out.writeByte(CALCULATE);
+        writeDoubles(out, x);
+        out.flush();
+      }
+      value = 0.0;
+      Arrays.fill(derivative, 0.0);
+      for (DataInputStream in : ins) {
+        value += in.readDouble();
+        for (int i = 0; i < domainDimension; i++) {
+          derivative[i] += in.readDouble();
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeIOException("Lost contact with a training worker", e);
+    }
+    if (Double.isNaN(value)) {
+      throw new RuntimeException("Got NaN for prob in ShardedCRFObjectiveFunction.calculate()" +
+              " - this may well indicate numeric underflow due to overly long documents.");
+    }
+    value = CRFLogConditionalObjectiveFunction.applyPrior(prior, sigma, CRFLogConditionalObjectiveFunction.HUBER_EPSILON, x, 1.0, value, derivative);
+  }
+
+  /** Tells the workers to exit, and waits a little while for them to. */
+  @Override
+  public void close() {
+    for (DataOutputStream out : outs) {
+      try {
+        out.writeByte(SHUTDOWN);
+        out.flush();
+      } catch (IOException e) {
+        // the worker is already gone
+      }
+    }
+    stop(processes, sockets);
+  }
+
+  private static void stop(List<Process> processes, Socket[] sockets) {
+    for (Socket socket : sockets) {
+      if (socket != null) {
+        try {
+          socket.close();
+        } catch (IOException e) {
+          // nothing more to do with it
+        }
+      }
+    }
+    for (Process process : processes) {
+      try {
+        if ( ! process.waitFor(10, TimeUnit.SECONDS)) {
+          process.destroyForcibly();
+        }
+      } catch (InterruptedException e) {
+        process.destroyForcibly();
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  static void writeDoubles(DataOutputStream out, double[] v) throws IOException {
+    for (double d : v) {
+      out.writeDouble(d);
+    }
+  }
+
+  static void readDoubles(DataInputStream in, double[] v) throws IOException {
+    for (int i = 0; i < v.length; i++) {
+      v[i] = in.readDouble();
+    }
+  }
+
+}
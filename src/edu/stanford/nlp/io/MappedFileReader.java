@@ -0,0 +1,127 @@
+package edu.stanford.nlp.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A Reader of a file which memory-maps the file, a window at a time, and decodes it into large
+ * chunks of characters. Reading a big file this way avoids the copying and the small reads of a
+ * {@link java.io.InputStreamReader} over a {@link java.io.FileInputStream}, so that the consumer
+ * (such as a lexer) is the bottleneck rather than reading.
+ * The characters read are the same as those of an InputStreamReader in the same encoding:
+ * malformed input is replaced, not reported.
+ *
+ * <p>The file is closed when the end of it is reached, or on {@link #close()}.</p>
+ */
+public class MappedFileReader extends Reader {
+
+  /** The default number of characters decoded at a time */
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  /** The number of bytes mapped at a time; files may be larger than can be mapped in one go */
+  private static final long WINDOW_SIZE = 1L << 26;
+
+  private final FileChannel channel;
+  private final long size;
+  private final CharsetDecoder decoder;
+  private final CharBuffer chars;
+  /** The part of the file being decoded, which starts at {@link #windowStart} in the file */
+  private MappedByteBuffer window;
+  private long windowStart = 0;
+  /** All of the file has been decoded, and the decoder is being flushed: it mustn't decode again */
+  private boolean flushing = false;
+  private boolean finished = false;
+
+  /**
+   * @param file The file to read.
+   * @param encoding The encoding of the file.
+   * @param chunkSize The number of characters to decode at a time.
+   */
+  public MappedFileReader(Path file, Charset encoding, int chunkSize) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.size = channel.size();
+    this.decoder = encoding.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    // A heap buffer: the decoders have fast paths for array-backed buffers, and readers copy into arrays anyways
+    this.chars = CharBuffer.allocate(chunkSize);
+    this.chars.flip();
+    this.window = map(0);
+  }
+
+  public MappedFileReader(Path file, Charset encoding) throws IOException {
+    this(file, encoding, DEFAULT_CHUNK_SIZE);
+  }
+
+  private MappedByteBuffer map(long start) throws IOException {
+    windowStart = start;
+    return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+  }
+
+  /** Decode the next chunk of characters into {@link #chars} */
+  private void fill() throws IOException {
+    chars.clear();
+    while ( ! finished) {
+      if ( ! flushing) {
+        boolean lastWindow = windowStart + window.limit() >= size;
+        CoderResult result = decoder.decode(window, chars, lastWindow);
+        if (result.isError()) {
+          result.throwException();  // (shouldn't happen: errors are replaced)
+        }
+        if (result.isOverflow()) {
+          break;  // the chunk is full
+        }
+        if ( ! lastWindow) {
+          // Map the next window, starting with any bytes of a character split across windows
+          window = map(windowStart + window.position());
+          continue;
+        }
+        flushing = true;
+      }
+      if (decoder.flush(chars).isOverflow()) {
+        break;  // the chunk is full: the rest of the flushed characters go in the next one
+      }
+      finished = true;
+      channel.close();
+    }
+    chars.flip();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if ( ! chars.hasRemaining()) {
+      if (finished) {
+        return -1;
+      }
+      fill();
+      if ( ! chars.hasRemaining()) {
+        return -1;
+      }
+    }
+    int n = Math.min(len, chars.remaining());
+    chars.get(cbuf, off, n);
+    return n;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close() throws IOException {
+    finished = true;
+    chars.clear().flip();
+    channel.close();
+  }
+
+}
@@ -0,0 +1,519 @@
+package edu.stanford.nlp.ling;
+
+import java.io.ObjectStreamException;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.stanford.nlp.process.CoreLabelTokenFactory;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.ErasureUtils;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.TypesafeMap;
+
+/**
+ * A columnar store for the tokens of a document.
+ * <br>
+ * A {@link CoreLabel} keeps every annotation of a token as an object in
+ * its own arrays: the word, lemma, tag, NER tag, etc. as separate Strings,
+ * and the offsets and indices as boxed Integers.  For a large document this
+ * means millions of small objects.
+ * This table instead keeps the most common token annotations in columns:
+ * the character offsets, index and sentence index as int arrays, the strings
+ * as int ids into a dictionary of the distinct strings of the document, and
+ * the newline flag as a bit.
+ * <br>
+ * Each token is a {@link Row}, which is a {@link CoreLabel} whose values for
+ * those keys live in the table, so that code which uses CoreLabels (through
+ * {@link CoreLabel#get(Class)}, {@link CoreLabel#word()}, ...) works on the
+ * rows unchanged.  Any other annotation set on a row is stored in the row
+ * itself, as in any CoreLabel.  A row with no such annotations is a single
+ * small object: it shares empty key and value arrays until something is
+ * stored in it.
+ * <br>
+ * A tokenizer can make its tokens as rows directly, with {@link #tokenFactory()},
+ * so that no CoreLabel is made for them; {@link #compact(List)} copies tokens
+ * which have already been made.
+ * <br>
+ * Rows differ from plain CoreLabels in that their keys are not kept in the
+ * order they were set in, and that they are serialized as plain CoreLabels.
+ * Rows can be annotated from multiple threads, as a CoreLabel can, as long
+ * as no two threads write to the same row at once; however, rows can only
+ * be added by one thread, before the rows are handed out.
+ *
+ */
+public class TokenTable {
+
+  /** The keys whose values are stored as ids into the string dictionary */
+  private static final Class<?>[] STRING_KEYS = {
+      CoreAnnotations.TextAnnotation.class,
+      CoreAnnotations.OriginalTextAnnotation.class,
+      CoreAnnotations.ValueAnnotation.class,
+      CoreAnnotations.LemmaAnnotation.class,
+      CoreAnnotations.PartOfSpeechAnnotation.class,
+      CoreAnnotations.NamedEntityTagAnnotation.class,
+      CoreAnnotations.BeforeAnnotation.class,
+      CoreAnnotations.AfterAnnotation.class,
+  };
+
+  /** The keys whose values are stored as ints */
+  private static final Class<?>[] INT_KEYS = {
+      CoreAnnotations.CharacterOffsetBeginAnnotation.class,
+      CoreAnnotations.CharacterOffsetEndAnnotation.class,
+      CoreAnnotations.IndexAnnotation.class,
+      CoreAnnotations.SentenceIndexAnnotation.class,
+  };
+
+  /** The keys whose values are stored as bits of the flags */
+  private static final Class<?>[] BOOLEAN_KEYS = {
+      CoreAnnotations.IsNewlineAnnotation.class,
+  };
+
+  /**
+   * All of the keys stored in columns.  The position of a key in this array is
+   * the bit of the flags recording whether a row has a value for that key.
+   */
+  private static final Class<?>[] COLUMN_KEYS;
+
+  private static final int FIRST_INT_COLUMN = STRING_KEYS.length;
+  private static final int FIRST_BOOLEAN_COLUMN = FIRST_INT_COLUMN + INT_KEYS.length;
+
+  /** The bit of the flags holding the value of the first boolean column */
+  private static final int FIRST_BOOLEAN_VALUE_BIT = 16;
+
+  /** The bits of the flags recording which columns a row has a value for */
+  private static final int PRESENT_MASK = (1 << FIRST_BOOLEAN_VALUE_BIT) - 1;
+
+  static {
+    COLUMN_KEYS = new Class<?>[STRING_KEYS.length + INT_KEYS.length + BOOLEAN_KEYS.length];
+    System.arraycopy(STRING_KEYS, 0, COLUMN_KEYS, 0, STRING_KEYS.length);
+    System.arraycopy(INT_KEYS, 0, COLUMN_KEYS, FIRST_INT_COLUMN, INT_KEYS.length);
+    System.arraycopy(BOOLEAN_KEYS, 0, COLUMN_KEYS, FIRST_BOOLEAN_COLUMN, BOOLEAN_KEYS.length);
+    assert COLUMN_KEYS.length <= FIRST_BOOLEAN_VALUE_BIT;
+  }
+
+  /** The columns which a row made by the tokenFactory has values for */
+  private static final int TOKEN_FACTORY_COLUMNS;
+
+  static {
+    int columns = 0;
+    for (Class<?> key : new Class<?>[] {
+        CoreAnnotations.ValueAnnotation.class, CoreAnnotations.TextAnnotation.class,
+        CoreAnnotations.OriginalTextAnnotation.class, CoreAnnotations.CharacterOffsetBeginAnnotation.class,
+        CoreAnnotations.CharacterOffsetEndAnnotation.class }) {
+      columns |= 1 << columnOf(key);
+    }
+    TOKEN_FACTORY_COLUMNS = columns;
+  }
+
+  /** Returns the column of the given key, or -1 if it is not stored in a column. */
+  private static int columnOf(Class<?> key) {
+    for (int column = 0; column < COLUMN_KEYS.length; ++column) {
+      if (COLUMN_KEYS[column] == key) {
+        return column;
+      }
+    }
+    return -1;
+  }
+
+  /** The number of rows in the table */
+  private int size; // = 0;
+
+  /** For each row, which columns it has a value for, and the values of its boolean columns */
+  private int[] flags;
+
+  /** The string ids of each row, by string column */
+  private final int[][] stringColumns;
+
+  /** The int values of each row, by int column */
+  private final int[][] intColumns;
+
+  /** The distinct strings in the table, by id */
+  private volatile String[] strings = new String[16];
+
+  /** The number of distinct strings in the table */
+  private int numStrings; // = 0;
+
+  /** The id of each distinct string in the table */
+  private final Map<String, Integer> stringIds = Generics.newHashMap();
+
+  /** Creates an empty table. */
+  public TokenTable() {
+    this(16);
+  }
+
+  /**
+   * Creates an empty table, pre-allocating the columns to hold the given number of rows.
+   * The columns grow if necessary.
+   */
+  public TokenTable(int capacity) {
+    capacity = Math.max(capacity, 1);
+    flags = new int[capacity];
+    stringColumns = new int[STRING_KEYS.length][capacity];
+    intColumns = new int[INT_KEYS.length][capacity];
+  }
+
+  /**
+   * Copies the given tokens into a new table, and returns the rows of the table
+   * in the same order.  Annotators which run after this see the rows in place of
+   * the original tokens.
+   *
+   * @param tokens The tokens to copy. These are not modified.
+   * @return The rows of the new table, one for each token.
+   */
+  public static List<CoreLabel> compact(List<? extends CoreMap> tokens) {
+    TokenTable table = new TokenTable(tokens.size());
+    List<CoreLabel> rows = new ArrayList<>(tokens.size());
+    for (CoreMap token : tokens) {
+      rows.add(table.add(token));
+    }
+    return rows;
+  }
+
+  /**
+   * Adds a row with the keys and values of the given token.
+   *
+   * @param token The token to copy. This is not modified.
+   * @return The new row.
+   */
+  public Row add(CoreMap token) {
+    if (size == flags.length) {
+      int capacity = size + (size >> 1) + 1;
+      flags = Arrays.copyOf(flags, capacity);
+      for (int column = 0; column < stringColumns.length; ++column) {
+        stringColumns[column] = Arrays.copyOf(stringColumns[column], capacity);
+      }
+      for (int column = 0; column < intColumns.length; ++column) {
+        intColumns[column] = Arrays.copyOf(intColumns[column], capacity);
+      }
+    }
+    Row row = new Row(this, size++);
+    if (token != null) {
+      for (Class<?> key : token.keySet()) {
+        copy(token, row, ErasureUtils.<Class<? extends TypesafeMap.Key<Object>>>uncheckedCast(key));
+      }
+    }
+    return row;
+  }
+
+  private static <VALUE> void copy(CoreMap from, CoreMap to, Class<? extends TypesafeMap.Key<VALUE>> key) {
+    to.set(key, from.get(key));
+  }
+
+  /**
+   * Returns a factory for a tokenizer to make its tokens with.  Each token it
+   * makes is a new row of this table, whose text, original text, value and
+   * character offsets are written straight into the columns, as
+   * {@link edu.stanford.nlp.process.CoreLabelTokenFactory} would set them on
+   * a new CoreLabel.
+   */
+  public CoreLabelTokenFactory tokenFactory() {
+    return new RowFactory();
+  }
+
+  /** (A CoreLabelTokenFactory, as tokenizers need one to make invertible tokens) */
+  private class RowFactory extends CoreLabelTokenFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public CoreLabel makeToken(String tokenText, int begin, int length) {
+      return makeToken(tokenText, tokenText, begin, length);
+    }
+
+    @Override
+    public CoreLabel makeToken(String tokenText, String originalText, int begin, int length) {
+      Row row = add(null);
+      int text = intern(tokenText);
+      stringColumns[columnOf(CoreAnnotations.ValueAnnotation.class)][row.row] = text;
+      stringColumns[columnOf(CoreAnnotations.TextAnnotation.class)][row.row] = text;
+      stringColumns[columnOf(CoreAnnotations.OriginalTextAnnotation.class)][row.row] = intern(originalText);
+      intColumns[columnOf(CoreAnnotations.CharacterOffsetBeginAnnotation.class) - FIRST_INT_COLUMN][row.row] = begin;
+      intColumns[columnOf(CoreAnnotations.CharacterOffsetEndAnnotation.class) - FIRST_INT_COLUMN][row.row] = begin + length;
+      flags[row.row] |= TOKEN_FACTORY_COLUMNS;
+      return row;
+    }
+
+  } // end class RowFactory
+
+  /** Returns the number of rows in the table. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the number of distinct strings in the string columns of the table. */
+  public int numStrings() {
+    return numStrings;
+  }
+
+  /** Returns the id of the given string, adding it to the dictionary if it is new. */
+  private synchronized int intern(String string) {
+    Integer id = stringIds.get(string);
+    if (id == null) {
+      id = numStrings;
+      String[] strings = this.strings;
+      if (id == strings.length) {
+        strings = Arrays.copyOf(strings, strings.length * 2);
+      }
+      strings[id] = string;
+      numStrings++;
+      this.strings = strings;
+      stringIds.put(string, id);
+    }
+    return id;
+  }
+
+  private boolean isPresent(int row, int column) {
+    return (flags[row] & (1 << column)) != 0;
+  }
+
+  /** Returns the value of the given row in the given column, which it must have a value for. */
+  private Object value(int row, int column) {
+    if (column < FIRST_INT_COLUMN) {
+      return strings[stringColumns[column][row]];
+    } else if (column < FIRST_BOOLEAN_COLUMN) {
+      return intColumns[column - FIRST_INT_COLUMN][row];
+    } else {
+      return (flags[row] & (1 << (FIRST_BOOLEAN_VALUE_BIT + column - FIRST_BOOLEAN_COLUMN))) != 0;
+    }
+  }
+
+  /**
+   * Sets the value of the given row in the given column, if the value is of the type
+   * the column holds.
+   *
+   * @return True if the value was set, or false if it was not of the right type.
+   */
+  private boolean trySetValue(int row, int column, Object value) {
+    if (column < FIRST_INT_COLUMN) {
+      if ( ! (value instanceof String)) {
+        return false;
+      }
+      stringColumns[column][row] = intern((String) value);
+    } else if (column < FIRST_BOOLEAN_COLUMN) {
+      if ( ! (value instanceof Integer)) {
+        return false;
+      }
+      intColumns[column - FIRST_INT_COLUMN][row] = (Integer) value;
+    } else {
+      if ( ! (value instanceof Boolean)) {
+        return false;
+      }
+      int valueBit = 1 << (FIRST_BOOLEAN_VALUE_BIT + column - FIRST_BOOLEAN_COLUMN);
+      if ((Boolean) value) {
+        flags[row] |= valueBit;
+      } else {
+        flags[row] &= ~valueBit;
+      }
+    }
+    flags[row] |= 1 << column;
+    return true;
+  }
+
+  private void clear(int row, int column) {
+    flags[row] &= ~(1 << column);
+  }
+
+
+  /**
+   * A token stored in a {@link TokenTable}.
+   * The values of the keys stored in columns are read from and written to the table;
+   * any other key is stored in this label, as in any other CoreLabel.
+   */
+  public static class Row extends CoreLabel {
+
+    private static final long serialVersionUID = 1L;
+
+    private final TokenTable table;
+    private final int row;
+
+    private Row(TokenTable table, int row) {
+      super(0);
+      this.table = table;
+      this.row = row;
+    }
+
+    /** The table this row is in. */
+    public TokenTable table() {
+      return table;
+    }
+
+    /** The index of this row in its table. */
+    public int row() {
+      return row;
+    }
+
+    /** The column of the i-th column this row has a value for, or -1 if it has fewer than i + 1. */
+    private int presentColumn(int i) {
+      int present = table.flags[row] & PRESENT_MASK;
+      for ( ; present != 0; present &= present - 1) {
+        if (i-- == 0) {
+          return Integer.numberOfTrailingZeros(present);
+        }
+      }
+      return -1;
+    }
+
+    // The entries in columns come first, then the ones stored in this label
+
+    @Override
+    protected Class<?> keyAt(int i) {
+      int column = presentColumn(i);
+      if (column >= 0) {
+        return COLUMN_KEYS[column];
+      }
+      return super.keyAt(i - Integer.bitCount(table.flags[row] & PRESENT_MASK));
+    }
+
+    @Override
+    protected Object valueAt(int i) {
+      int column = presentColumn(i);
+      if (column >= 0) {
+        return table.value(row, column);
+      }
+      return super.valueAt(i - Integer.bitCount(table.flags[row] & PRESENT_MASK));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <VALUE> VALUE get(Class<? extends Key<VALUE>> key) {
+      int column = columnOf(key);
+      if (column >= 0 && table.isPresent(row, column)) {
+        if (ArrayCoreMap.listener != null) {
+          ArrayCoreMap.listener.accept(key);
+        }
+        return (VALUE) table.value(row, column);
+      }
+      return super.get(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <VALUE> VALUE set(Class<? extends Key<VALUE>> key, VALUE value) {
+      int column = columnOf(key);
+      if (column < 0) {
+        return super.set(key, value);
+      }
+      boolean present = table.isPresent(row, column);
+      VALUE old = present ? (VALUE) table.value(row, column) : null;
+      if (value != null && table.trySetValue(row, column, value)) {
+        if ( ! present) {
+          old = super.remove(key);
+        }
+        return old;
+      }
+      // nulls (and values of an unexpected type) are stored in the label itself
+      if (present) {
+        table.clear(row, column);
+        super.set(key, value);
+        return old;
+      }
+      return super.set(key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <VALUE> VALUE remove(Class<? extends Key<VALUE>> key) {
+      int column = columnOf(key);
+      if (column >= 0 && table.isPresent(row, column)) {
+        VALUE old = (VALUE) table.value(row, column);
+        table.clear(row, column);
+        return old;
+      }
+      return super.remove(key);
+    }
+
+    @Override
+    public <VALUE> boolean containsKey(Class<? extends Key<VALUE>> key) {
+      int column = columnOf(key);
+      return (column >= 0 && table.isPresent(row, column)) || super.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+      return Integer.bitCount(table.flags[row] & PRESENT_MASK) + super.size();
+    }
+
+    @Override
+    public Set<Class<?>> keySet() {
+      List<Class<?>> keys = new ArrayList<>(size());
+      for (int column = 0; column < COLUMN_KEYS.length; ++column) {
+        if (table.isPresent(row, column)) {
+          keys.add(COLUMN_KEYS[column]);
+        }
+      }
+      keys.addAll(super.keySet());
+      return new AbstractSet<Class<?>>() {
+        @Override
+        public Iterator<Class<?>> iterator() {
+          return new Iterator<Class<?>>() {
+            private int i; // = 0;
+
+            @Override
+            public boolean hasNext() {
+              return i < keys.size();
+            }
+
+            @Override
+            public Class<?> next() {
+              return keys.get(i++);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void remove() {
+              Row.this.remove((Class) keys.get(i - 1));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return keys.size();
+        }
+      };
+    }
+
+    // The int accessors read the columns directly, rather than boxing through get()
+
+    @Override
+    public int index() {
+      return intValue(CoreAnnotations.IndexAnnotation.class, FIRST_INT_COLUMN + 2);
+    }
+
+    @Override
+    public int sentIndex() {
+      return intValue(CoreAnnotations.SentenceIndexAnnotation.class, FIRST_INT_COLUMN + 3);
+    }
+
+    @Override
+    public int beginPosition() {
+      return intValue(CoreAnnotations.CharacterOffsetBeginAnnotation.class, FIRST_INT_COLUMN);
+    }
+
+    @Override
+    public int endPosition() {
+      return intValue(CoreAnnotations.CharacterOffsetEndAnnotation.class, FIRST_INT_COLUMN + 1);
+    }
+
+    private int intValue(Class<? extends Key<Integer>> key, int column) {
+      if (table.isPresent(row, column)) {
+        return table.intColumns[column - FIRST_INT_COLUMN][row];
+      }
+      Integer value = super.get(key);
+      return value == null ? -1 : value;
+    }
+
+    /** Rows are serialized as plain CoreLabels, without their table. */
+    private Object writeReplace() throws ObjectStreamException {
+      return new CoreLabel(this);
+    }
+
+  }
+
+}
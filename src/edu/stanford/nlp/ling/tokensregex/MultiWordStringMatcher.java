@@ -1,7 +1,7 @@
 package edu.stanford.nlp.ling.tokensregex;
 
-import edu.stanford.nlp.util.CacheMap;
 import edu.stanford.nlp.util.IntPair;
+import edu.stanford.nlp.util.concurrent.ConcurrentBoundedCache;
 
 import java.util.*;
 import java.util.regex.Matcher;
@@ -138,7 +138,7 @@ public class MultiWordStringMatcher {
     return offsets;
   }
 
-  private CacheMap<String, Pattern> targetStringPatternCache = new CacheMap<>(5000);
+  private final ConcurrentBoundedCache<String, Pattern> targetStringPatternCache = new ConcurrentBoundedCache<>(5000);
 
   public final static Comparator<String> LONGEST_STRING_COMPARATOR = new LongestStringComparator();
   public static class LongestStringComparator implements Comparator<String> {
@@ -175,12 +175,7 @@ public class MultiWordStringMatcher {
 
   public Pattern getPattern(String targetString)
   {
-    Pattern pattern = targetStringPatternCache.get(targetString);
-    if (pattern == null) {
-      pattern = createPattern(targetString);
-      targetStringPatternCache.put(targetString, pattern);
-    }
-    return pattern;
+    return targetStringPatternCache.computeIfAbsent(targetString, this::createPattern);
   }
 
   public Pattern createPattern(String targetString) {
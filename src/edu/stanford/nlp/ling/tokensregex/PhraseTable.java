@@ -9,9 +9,11 @@ import edu.stanford.nlp.pipeline.Annotator;
 import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
 import edu.stanford.nlp.util.*;
+import edu.stanford.nlp.util.concurrent.ConcurrentBoundedCache;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
 import java.util.regex.Pattern;
@@ -59,7 +61,10 @@ public class PhraseTable implements Serializable
   int nPhrases = 0;
   int nStrings = 0;
 
-  transient CacheMap<String,String> normalizedCache = new CacheMap<>(5000);
+  private static final int DEFAULT_NORMALIZATION_CACHE_SIZE = 5000;
+
+  // shared by the threads using this table, so it is a concurrent cache
+  transient ConcurrentBoundedCache<String,String> normalizedCache = new ConcurrentBoundedCache<>(DEFAULT_NORMALIZATION_CACHE_SIZE);
 
   public PhraseTable() {}
 
@@ -101,8 +106,8 @@ public class PhraseTable implements Serializable
 
   public void setNormalizationCacheSize(int cacheSize)
   {
-    CacheMap<String,String> newNormalizedCache = new CacheMap<>(cacheSize);
-    newNormalizedCache.putAll(normalizedCache);
+    ConcurrentBoundedCache<String,String> newNormalizedCache = new ConcurrentBoundedCache<>(cacheSize);
+    normalizedCache.forEach(newNormalizedCache::put);
     normalizedCache = newNormalizedCache;
   }
 
@@ -484,14 +489,12 @@ public class PhraseTable implements Serializable
 
   public String getNormalizedForm(String word)
   {
-    String normalized = normalizedCache.get(word);
-    if (normalized == null) {
-      normalized = createNormalizedForm(word);
-      synchronized (this) {
-        normalizedCache.put(word, normalized);
-      }
-    }
-    return normalized;
+    return normalizedCache.computeIfAbsent(word, this::createNormalizedForm);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    normalizedCache = new ConcurrentBoundedCache<>(DEFAULT_NORMALIZATION_CACHE_SIZE);
   }
 
   private static final Pattern punctWhitespacePattern = Pattern.compile("\\s*(\\p{Punct})\\s*");
@@ -140,6 +140,17 @@ public class ClauseSplitterSearchProblem  {
   @SuppressWarnings("Convert2Diamond")  // It's lying -- type inference times out with a diamond
   private final Index<SemanticGraphEdge> edgeToIndex = new HashIndex<SemanticGraphEdge>(ArrayList::new, IdentityHashMap::new);
 
+  /**
+   * The number of search states popped from the fringe, over all the searches run on this problem.
+   */
+  private int ticksUsed = 0;
+
+  /**
+   * Whether any search on this problem was stopped by its tick or time budget
+   * before exhausting the fringe.
+   */
+  private boolean budgetExhausted = false;
+
   /**
    * A search state.
    */
@@ -248,8 +259,19 @@ public class ClauseSplitterSearchProblem  {
   /**
    * Mostly just an alias, but make sure our featurizer is serializable!
    */
+  @SuppressWarnings("serial")  // an interface; each implementation declares its own serialVersionUID
   public interface Featurizer extends Function<Triple<ClauseSplitterSearchProblem.State, ClauseSplitterSearchProblem.Action, ClauseSplitterSearchProblem.State>, Counter<String>>, Serializable {
     boolean isSimpleSplit(Counter<String> feats);
+
+    /**
+     * Whether the features depend only on the edge of the source state, the action taken, and the
+     * edge of the target state.
+     * If so, the search computes the features (and the classifier scores) for each such combination once,
+     * rather than once per search state.
+     */
+    default boolean dependsOnlyOnEdges() {
+      return false;
+    }
   }
 
   /**
@@ -496,6 +518,22 @@ public class ClauseSplitterSearchProblem  {
    * @return The resulting {@link edu.stanford.nlp.naturalli.SentenceFragment} objects, representing the top clauses of the sentence.
    */
   public List<SentenceFragment> topClauses(double thresholdProbability, int maxClauses) {
+    return topClauses(thresholdProbability, maxClauses, 1000, Long.MAX_VALUE);
+  }
+
+  /**
+   * Get the top few clauses from this searcher, cutting off at the given minimum
+   * probability, and stopping the search once it runs out of ticks or time.
+   * The clauses found up to that point are still returned.
+   *
+   * @param thresholdProbability The threshold under which to stop returning clauses. This should be between 0 and 1.
+   * @param maxClauses A hard limit on the number of clauses to return.
+   * @param maxTicks The maximum number of search states to expand, per root of the tree.
+   * @param deadline The time, in {@link System#currentTimeMillis()} terms, at which to stop searching.
+   *
+   * @return The resulting {@link edu.stanford.nlp.naturalli.SentenceFragment} objects, representing the top clauses of the sentence.
+   */
+  public List<SentenceFragment> topClauses(double thresholdProbability, int maxClauses, int maxTicks, long deadline) {
     List<SentenceFragment> results = new ArrayList<>();
     search(triple -> {
       assert triple.first <= 0.0;
@@ -511,7 +549,7 @@ public class ClauseSplitterSearchProblem  {
       } else {
         return false;
       }
-    });
+    }, maxTicks, deadline);
     return results;
   }
 
@@ -523,12 +561,24 @@ public class ClauseSplitterSearchProblem  {
    * @param candidateFragments The callback function for results. The return value defines whether to continue searching.
    */
   public void search(final Predicate<Triple<Double, List<Counter<String>>, Supplier<SentenceFragment>>> candidateFragments) {
+    search(candidateFragments, 1000, Long.MAX_VALUE);
+  }
+
+  /**
+   * Search, using the default weights / featurizer, within the given budget.
+   *
+   * @param candidateFragments The callback function for results. The return value defines whether to continue searching.
+   * @param maxTicks The maximum number of search states to expand, per root of the tree.
+   * @param deadline The time, in {@link System#currentTimeMillis()} terms, at which to stop searching.
+   */
+  public void search(final Predicate<Triple<Double, List<Counter<String>>, Supplier<SentenceFragment>>> candidateFragments,
+                     int maxTicks, long deadline) {
     if (!isClauseClassifier.isPresent()) {
       search(candidateFragments,
           new LinearClassifier<>(new ClassicCounter<>()),
           HARD_SPLITS,
           this.featurizer.isPresent() ? this.featurizer.get() : DEFAULT_FEATURIZER,
-          1000);
+          maxTicks, deadline);
     } else {
       if (!(isClauseClassifier.get() instanceof LinearClassifier)) {
         throw new IllegalArgumentException("For now, only linear classifiers are supported");
@@ -537,7 +587,7 @@ public class ClauseSplitterSearchProblem  {
           isClauseClassifier.get(),
           HARD_SPLITS,
           this.featurizer.get(),
-          1000);
+          maxTicks, deadline);
     }
   }
 
@@ -560,6 +610,26 @@ public class ClauseSplitterSearchProblem  {
       final Map<String, List<String>> hardCodedSplits,
       final Function<Triple<State, Action, State>, Counter<String>> featurizer,
       final int maxTicks
+  ) {
+    search(candidateFragments, classifier, hardCodedSplits, featurizer, maxTicks, Long.MAX_VALUE);
+  }
+
+  /**
+   * Search from the root of the tree, stopping once the search runs out of ticks or time.
+   *
+   * @see edu.stanford.nlp.naturalli.ClauseSplitterSearchProblem#search(Predicate, Classifier, Map, Function, int)
+   *
+   * @param deadline The time, in {@link System#currentTimeMillis()} terms, at which to stop searching.
+   */
+  public void search(
+      // The output specs
+      final Predicate<Triple<Double, List<Counter<String>>, Supplier<SentenceFragment>>> candidateFragments,
+      // The learning specs
+      final Classifier<ClauseSplitter.ClauseClassifierLabel, String> classifier,
+      final Map<String, List<String>> hardCodedSplits,
+      final Function<Triple<State, Action, State>, Counter<String>> featurizer,
+      final int maxTicks,
+      final long deadline
   ) {
     Collection<Action> actionSpace = new ArrayList<>();
 
@@ -730,10 +800,25 @@ public class ClauseSplitterSearchProblem  {
     });
 
     for (IndexedWord root : tree.getRoots()) {
-      search(root, candidateFragments, classifier, hardCodedSplits, featurizer, actionSpace, maxTicks);
+      search(root, candidateFragments, classifier, hardCodedSplits, featurizer, actionSpace, maxTicks, deadline);
     }
   }
 
+  /**
+   * The number of search states expanded so far, over all the searches run on this problem.
+   */
+  public int ticksUsed() {
+    return ticksUsed;
+  }
+
+  /**
+   * Whether any search on this problem stopped because it ran out of ticks or time, rather than because
+   * it ran out of states or the callback asked it to stop.
+   */
+  public boolean budgetExhausted() {
+    return budgetExhausted;
+  }
+
   /**
    * Re-order the action space based on the specified order of names.
    */
@@ -770,6 +855,8 @@ public class ClauseSplitterSearchProblem  {
    * @param classifier The classifier for whether an arc should be on the path to a clause split, a clause split itself, or neither.
    * @param featurizer The featurizer to use. Make sure this matches the weights!
    * @param actionSpace The action space we are allowed to take. Each action defines a means of splitting a clause on a dependency boundary.
+   * @param maxTicks The maximum number of search states to expand.
+   * @param deadline The time, in {@link System#currentTimeMillis()} terms, at which to stop searching.
    */
   protected void search(
       // The root to search from
@@ -781,12 +868,18 @@ public class ClauseSplitterSearchProblem  {
       Map<String, ? extends List<String>> hardCodedSplits,
       final Function<Triple<State, Action, State>, Counter<String>> featurizer,
       final Collection<Action> actionSpace,
-      final int maxTicks
+      final int maxTicks,
+      final long deadline
   ) {
     // (the fringe)
     PriorityQueue<Pair<State, List<Counter<String>>>> fringe = new FixedPrioritiesPriorityQueue<>();
     // (avoid duplicate work)
     Set<IndexedWord> seenWords = new HashSet<>();
+    // (a word can be expanded once for every state ending in its incoming edge, so
+    //  cache the features and classifier decision for each edge transition, if the featurizer allows it)
+    boolean cacheFeatures = featurizer instanceof Featurizer && ((Featurizer) featurizer).dependsOnlyOnEdges();
+    Map<Triple<SemanticGraphEdge, String, SemanticGraphEdge>, Counter<String>> featureCache = new HashMap<>();
+    Map<Triple<SemanticGraphEdge, String, SemanticGraphEdge>, Pair<Double, ClauseClassifierLabel>> scoreCache = new HashMap<>();
 
     State firstState = new State(null, null, -9000, null, x -> {
     }, true);  // First state is implicitly "done"
@@ -794,10 +887,12 @@ public class ClauseSplitterSearchProblem  {
     int ticks = 0;
 
     while (!fringe.isEmpty()) {
-      if (++ticks > maxTicks) {
+      if (++ticks > maxTicks || System.currentTimeMillis() > deadline) {
 //        log.info("WARNING! Timed out on search with " + ticks + " ticks");
-        return;
+        budgetExhausted = true;
+        break;
       }
+      ticksUsed += 1;
       // Useful variables
       double logProbSoFar = fringe.getPriority();
       assert logProbSoFar <= 0.0;
@@ -875,7 +970,10 @@ public class ClauseSplitterSearchProblem  {
           if (candidate.isPresent()) {
             double logProbability;
             ClauseClassifierLabel bestLabel;
-            Counter<String> features = featurizer.apply(Triple.makeTriple(lastState, action, candidate.get()));
+            Triple<SemanticGraphEdge, String, SemanticGraphEdge> cacheKey = cacheFeatures ? Triple.makeTriple(lastState.edge, action.signature(), candidate.get().edge) : null;
+            Counter<String> features = cacheKey != null
+                ? featureCache.computeIfAbsent(cacheKey, key -> featurizer.apply(Triple.makeTriple(lastState, action, candidate.get())))
+                : featurizer.apply(Triple.makeTriple(lastState, action, candidate.get()));
             if (forcedArcOrder != null && !doneForcedArc) {
               logProbability = 0.0;
               bestLabel = ClauseClassifierLabel.CLAUSE_SPLIT;
@@ -883,6 +981,10 @@ public class ClauseSplitterSearchProblem  {
             } else if (features.containsKey("__undocumented_junit_no_classifier")) {
               logProbability = Double.NEGATIVE_INFINITY;
               bestLabel = ClauseClassifierLabel.CLAUSE_INTERM;
+            } else if (cacheKey != null && scoreCache.containsKey(cacheKey)) {
+              Pair<Double, ClauseClassifierLabel> cached = scoreCache.get(cacheKey);
+              logProbability = cached.first;
+              bestLabel = cached.second;
             } else {
               Counter<ClauseClassifierLabel> scores = classifier.scoresOf(new RVFDatum<>(features));
               if (scores.size() > 0) {
@@ -894,6 +996,9 @@ public class ClauseSplitterSearchProblem  {
               }
               logProbability = Counters.max(scores, Double.NEGATIVE_INFINITY);
               bestLabel = Counters.argmax(scores, (x, y) -> 0, ClauseClassifierLabel.CLAUSE_SPLIT);
+              if (cacheKey != null) {
+                scoreCache.put(cacheKey, Pair.makePair(logProbability, bestLabel));
+              }
             }
 
             if (bestLabel != ClauseClassifierLabel.NOT_A_CLAUSE) {
@@ -922,6 +1027,11 @@ public class ClauseSplitterSearchProblem  {
    */
   public static final Featurizer DEFAULT_FEATURIZER = new Featurizer() {
     private static final long serialVersionUID = 4145523451314579506l;
+
+    @Override
+    public boolean dependsOnlyOnEdges() {
+      return true;
+    }
     @Override
     public boolean isSimpleSplit(Counter<String> feats) {
       for (String key : feats.keySet()) {
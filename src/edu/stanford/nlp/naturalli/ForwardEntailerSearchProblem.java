@@ -51,6 +51,17 @@ public class ForwardEntailerSearchProblem  {
    */
   public final NaturalLogicWeights weights;
 
+  /**
+   * The number of search states popped from the fringe by the last search.
+   */
+  private int ticksUsed = 0;
+
+  /**
+   * Whether the last search was stopped by its tick or time budget before exhausting the fringe.
+   * Stopping at the limit on the number of results does not count.
+   */
+  private boolean budgetExhausted = false;
+
   /**
    * A result from the search over possible shortenings of the sentence.
    */
@@ -115,9 +126,21 @@ public class ForwardEntailerSearchProblem  {
    *
    * @return A list of entailed fragments.
    */
-  @SuppressWarnings("unchecked")
   public List<SentenceFragment> search() {
-    return searchImplementation().stream()
+    return search(Long.MAX_VALUE);
+  }
+
+  /**
+   * Run a search from this entailer, stopping at the given time if the search has not finished by then.
+   * The fragments found up to that point are still returned.
+   *
+   * @param deadline The time, in {@link System#currentTimeMillis()} terms, at which to stop searching.
+   *
+   * @return A list of entailed fragments.
+   */
+  @SuppressWarnings("unchecked")
+  public List<SentenceFragment> search(long deadline) {
+    return searchImplementation(deadline).stream()
         .map(x -> new SentenceFragment(x.tree, truthOfPremise, false).changeScore(x.confidence))
         .filter(x -> x.words.size() > 0 )
         .collect(Collectors.toList());
@@ -129,7 +152,9 @@ public class ForwardEntailerSearchProblem  {
    * @return A list of search results, corresponding to shortenings of the sentence.
    */
   @SuppressWarnings("unchecked")
-  private List<SearchResult> searchImplementation() {
+  private List<SearchResult> searchImplementation(long deadline) {
+    ticksUsed = 0;
+    budgetExhausted = false;
     // Pre-process the tree
     SemanticGraph parseTree = new SemanticGraph(this.parseTree);
     assert Util.isTree(parseTree);
@@ -240,10 +265,12 @@ public class ForwardEntailerSearchProblem  {
     int numTicks = 0;
     while (!fringe.isEmpty()) {
       // Overhead with popping a node.
-      if (numTicks >= maxTicks) {
+      if (numTicks >= maxTicks || System.currentTimeMillis() > deadline) {
+        budgetExhausted = true;
         return results;
       }
       numTicks += 1;
+      ticksUsed = numTicks;
       if (results.size() >= maxResults) {
         return results;
       }
@@ -358,6 +385,21 @@ public class ForwardEntailerSearchProblem  {
     return results;
   }
 
+  /**
+   * The number of search states expanded by the last search.
+   */
+  public int ticksUsed() {
+    return ticksUsed;
+  }
+
+  /**
+   * Whether the last search stopped because it ran out of ticks or time, rather than
+   * because it ran out of states or reached the maximum number of results.
+   */
+  public boolean budgetExhausted() {
+    return budgetExhausted;
+  }
+
   /**
    * Backtrace from a search state, collecting all of the deleted edges used to get there.
    * @param state The final search state.
@@ -79,4 +79,38 @@ public class NaturalLogicAnnotations {
       return (Class<Collection<RelationTriple>>) ((Object) Collection.class);
     }
   }
+
+  /**
+   * The number of search states the clause splitter expanded for this sentence.
+   * Set only if the <code>openie.search_statistics</code> option is true.
+   */
+  public static final class ClauseSearchTicksAnnotation implements CoreAnnotation<Integer> {
+    @Override
+    public Class<Integer> getType() {
+      return Integer.class;
+    }
+  }
+
+  /**
+   * The number of search states the forward entailment search expanded for this sentence, over all of its clauses.
+   * Set only if the <code>openie.search_statistics</code> option is true.
+   */
+  public static final class EntailmentSearchTicksAnnotation implements CoreAnnotation<Integer> {
+    @Override
+    public Class<Integer> getType() {
+      return Integer.class;
+    }
+  }
+
+  /**
+   * Whether any of the OpenIE searches for this sentence was cut short by its tick or time budget,
+   * so that the entailed clauses and triples are the best found so far rather than all of them.
+   * Set only if the <code>openie.search_statistics</code> option is true.
+   */
+  public static final class SearchBudgetExhaustedAnnotation implements CoreAnnotation<Boolean> {
+    @Override
+    public Class<Boolean> getType() {
+      return Boolean.class;
+    }
+  }
 }
@@ -29,7 +29,11 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -106,6 +110,18 @@ public class OpenIE implements Annotator  {
   @ArgumentParser.Option(name="splitter.disable", gloss="If true, don't run the sentence splitter")
   private boolean splitterDisable = false;
 
+  @ArgumentParser.Option(name="splitter.max_ticks", gloss="The maximum number of search states the clause splitter expands per sentence.")
+  private int splitterMaxTicks = 1000;
+
+  @ArgumentParser.Option(name="max_search_millis", gloss="The time budget for the clause and entailment searches of a sentence, in milliseconds. If this is not positive, there is no time budget.")
+  private long maxSearchMillis = -1;
+
+  @ArgumentParser.Option(name="search_statistics", gloss="If true, annotate each sentence with the number of search states its clause and entailment searches expanded, and whether they ran out of budget. These annotations are not serialized to protobuf.")
+  private boolean searchStatistics = false;
+
+  @ArgumentParser.Option(name="entailment_threads", gloss="The number of threads to run the entailment searches of the clauses of a sentence on.")
+  private int entailmentThreads = 1;
+
   @ArgumentParser.Option(name="max_entailments_per_clause", gloss="The maximum number of entailments allowed per sentence of input.")
   private int entailmentsPerSentence = 1000;
 
@@ -157,6 +173,15 @@ public class OpenIE implements Annotator  {
    */
   public RelationTripleSegmenter segmenter;
 
+  /**
+   * The threads to run the entailment searches for the clauses of a sentence on, if
+   * {@link OpenIE#entailmentThreads} is more than one.
+   */
+  private final Optional<ExecutorService> entailmentExecutor;
+
+  /** How long an idle entailment search thread waits for more work before it exits */
+  private static final long ENTAILMENT_THREAD_KEEP_ALIVE_SECONDS = 60;
+
 
   /** Create a new OpenIE system, with default properties */
   @SuppressWarnings("UnusedDeclaration")
@@ -206,6 +231,21 @@ public class OpenIE implements Annotator  {
 
     // Create the relation segmenter
     segmenter = new RelationTripleSegmenter(allNominals);
+
+    // Create the threads for entailment search
+    // (idle threads exit, so that an annotator which is dropped without being unmounted doesn't keep them)
+    if (entailmentThreads > 1) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(entailmentThreads, entailmentThreads,
+          ENTAILMENT_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "OpenIE entailment");
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor.allowCoreThreadTimeOut(true);
+      entailmentExecutor = Optional.of(executor);
+    } else {
+      entailmentExecutor = Optional.empty();
+    }
   }
 
   /**
@@ -219,8 +259,24 @@ public class OpenIE implements Annotator  {
    */
   @SuppressWarnings("unchecked")
   public List<SentenceFragment> clausesInSentence(SemanticGraph tree, boolean assumedTruth) {
+    return clausesInSentence(tree, assumedTruth, Long.MAX_VALUE, null);
+  }
+
+  /**
+   * Find the clauses in a sentence within the configured tick budget and the given deadline,
+   * recording the size of the search in the given statistics.
+   */
+  private List<SentenceFragment> clausesInSentence(SemanticGraph tree, boolean assumedTruth, long deadline, SearchStatistics stats) {
     if (clauseSplitter.isPresent()) {
-      return clauseSplitter.get().apply(tree, assumedTruth).topClauses(splitterThreshold, 32);
+      ClauseSplitterSearchProblem problem = clauseSplitter.get().apply(tree, assumedTruth);
+      List<SentenceFragment> clauses = problem.topClauses(splitterThreshold, 32, splitterMaxTicks, deadline);
+      if (stats != null) {
+        stats.clauseTicks.addAndGet(problem.ticksUsed());
+        if (problem.budgetExhausted()) {
+          stats.budgetExhausted = true;
+        }
+      }
+      return clauses;
     } else {
       return Collections.emptyList();
     }
@@ -249,16 +305,31 @@ public class OpenIE implements Annotator  {
    *
    * @return A list of entailed clauses.
    */
-  @SuppressWarnings("unchecked")
   public List<SentenceFragment> entailmentsFromClause(SentenceFragment clause) {
+    return entailmentsFromClause(clause, Long.MAX_VALUE, null);
+  }
+
+  /**
+   * Returns the entailed shortened clauses from the given clause, as found before the given deadline,
+   * recording the size of the search in the given statistics.
+   */
+  @SuppressWarnings("unchecked")
+  private List<SentenceFragment> entailmentsFromClause(SentenceFragment clause, long deadline, SearchStatistics stats) {
     if (clause.parseTree.isEmpty()) {
       return Collections.emptyList();
     } else {
       // Get the forward entailments
       List<SentenceFragment> list = new ArrayList<>();
       if (entailmentsPerSentence > 0) {
-        list.addAll(forwardEntailer.apply(clause.parseTree, true).search()
+        ForwardEntailerSearchProblem problem = forwardEntailer.apply(clause.parseTree, true);
+        list.addAll(problem.search(deadline)
             .stream().map(x -> x.changeScore(x.score * clause.score)).collect(Collectors.toList()));
+        if (stats != null) {
+          stats.entailmentTicks.addAndGet(problem.ticksUsed());
+          if (problem.budgetExhausted()) {
+            stats.budgetExhausted = true;
+          }
+        }
       }
       list.add(clause);
 
@@ -313,13 +384,48 @@ public class OpenIE implements Annotator  {
    * @return A set of sentence fragments corresponding to the maximally shortened entailed clauses.
    */
   public Set<SentenceFragment> entailmentsFromClauses(Collection<SentenceFragment> clauses) {
+    return entailmentsFromClauses(clauses, Long.MAX_VALUE, null);
+  }
+
+  /**
+   * Returns the maximally shortened entailed fragments from the given clauses, as found before the given
+   * deadline, recording the size of the searches in the given statistics.
+   * The clauses are searched independently, so if there are entailment threads, they are searched in parallel.
+   */
+  private Set<SentenceFragment> entailmentsFromClauses(Collection<SentenceFragment> clauses, long deadline, SearchStatistics stats) {
     Set<SentenceFragment> entailments = new HashSet<>();
-    for (SentenceFragment clause : clauses) {
-      entailments.addAll(entailmentsFromClause(clause));
+    if (entailmentExecutor.isPresent() && clauses.size() > 1) {
+      List<Future<List<SentenceFragment>>> futures = new ArrayList<>();
+      for (SentenceFragment clause : clauses) {
+        futures.add(entailmentExecutor.get().submit(() -> entailmentsFromClause(clause, deadline, stats)));
+      }
+      for (Future<List<SentenceFragment>> future : futures) {
+        try {
+          entailments.addAll(future.get());
+        } catch (InterruptedException e) {
+          throw new RuntimeInterruptedException(e);
+        } catch (ExecutionException e) {
+          throw new RuntimeException(e.getCause());
+        }
+      }
+    } else {
+      for (SentenceFragment clause : clauses) {
+        entailments.addAll(entailmentsFromClause(clause, deadline, stats));
+      }
     }
     return entailments;
   }
 
+  /**
+   * The size of the searches run for a sentence, accumulated over its clauses
+   * (possibly from multiple threads).
+   */
+  private static class SearchStatistics {
+    final AtomicInteger clauseTicks = new AtomicInteger(0);
+    final AtomicInteger entailmentTicks = new AtomicInteger(0);
+    volatile boolean budgetExhausted = false;
+  }
+
   /**
    * Returns the possible relation triple in this sentence fragment.
    *
@@ -473,10 +579,12 @@ public class OpenIE implements Annotator  {
       }
 
       // Run OpenIE
+      long deadline = maxSearchMillis > 0 ? System.currentTimeMillis() + maxSearchMillis : Long.MAX_VALUE;
+      SearchStatistics stats = new SearchStatistics();
       // (clauses)
-      List<SentenceFragment> clauses = clausesInSentence(canonicalizedParse, true);  // note: uses coref-canonicalized parse
+      List<SentenceFragment> clauses = clausesInSentence(canonicalizedParse, true, deadline, stats);  // note: uses coref-canonicalized parse
       // (entailment)
-      Set<SentenceFragment> fragments = entailmentsFromClauses(clauses);
+      Set<SentenceFragment> fragments = entailmentsFromClauses(clauses, deadline, stats);
       // (segment)
       List<RelationTriple> extractions = segmenter.extract(parse, tokens);  // note: uses non-coref-canonicalized parse!
       extractions.addAll(relationsInFragments(fragments, sentence));
@@ -486,6 +594,11 @@ public class OpenIE implements Annotator  {
       sentence.set(NaturalLogicAnnotations.EntailedSentencesAnnotation.class, fragments);
       sentence.set(NaturalLogicAnnotations.RelationTriplesAnnotation.class,
           new ArrayList<>(new HashSet<>(extractions)));  // uniq the extractions
+      if (searchStatistics) {
+        sentence.set(NaturalLogicAnnotations.ClauseSearchTicksAnnotation.class, stats.clauseTicks.get());
+        sentence.set(NaturalLogicAnnotations.EntailmentSearchTicksAnnotation.class, stats.entailmentTicks.get());
+        sentence.set(NaturalLogicAnnotations.SearchBudgetExhaustedAnnotation.class, stats.budgetExhausted);
+      }
       if (stripEntailments) {
         sentence.remove(NaturalLogicAnnotations.EntailedSentencesAnnotation.class);
       }
@@ -551,6 +664,12 @@ public class OpenIE implements Annotator  {
     annotation.get(CoreAnnotations.SentencesAnnotation.class).forEach(x -> this.annotateSentence(x, canonicalMentionMap));
   }
 
+  /** Stops the threads for the entailment searches, if there are any. */
+  @Override
+  public void unmount() {
+    entailmentExecutor.ifPresent(ExecutorService::shutdown);
+  }
+
   /** {@inheritDoc} */
   @Override
   public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
@@ -0,0 +1,136 @@
+package edu.stanford.nlp.optimization;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * {@link VectorOps} which split vectors into chunks and work on the chunks in
+ * parallel, in a pool of threads. Vectors of fewer than two chunks are done in
+ * the calling thread. The partial sums of the chunks are added up in order, so
+ * the results don't depend on how the threads are scheduled; they differ from
+ * those of {@link SerialVectorOps} only by the rounding of summing in a different order.
+ * <br>
+ * The threads of the pool are daemon threads, which end when they have been idle for a while.
+ */
+public class ParallelVectorOps implements VectorOps {
+
+  /** The default number of elements in a chunk. Smaller chunks aren't worth handing to another thread. */
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+  private final ForkJoinPool pool;
+  private final int threads;
+  private final int chunkSize;
+
+  /** Does vector operations in {@code threads} threads, in chunks of the default size. */
+  public ParallelVectorOps(int threads) {
+    this(threads, DEFAULT_CHUNK_SIZE);
+  }
+
+  public ParallelVectorOps(int threads, int chunkSize) {
+    if (threads <= 0 || chunkSize <= 0) {
+      throw new IllegalArgumentException("Need a positive number of threads and chunk size, not " + threads + " and " + chunkSize);
+    }
+    this.pool = new ForkJoinPool(threads);
+    this.threads = threads;
+    this.chunkSize = chunkSize;
+  }
+
+  /** An operation on the elements of a range of indices, which returns their part of a sum (or 0). */
+  private interface ChunkOp {
+    double apply(int from, int to);
+  }
+
+  private static class ChunkTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ChunkOp op;
+    private final double[] partialSums;
+    private final int chunkSize;
+    private final int length;
+    private final int firstChunk;
+    private final int endChunk;
+
+    ChunkTask(ChunkOp op, double[] partialSums, int chunkSize, int length, int firstChunk, int endChunk) {
+      this.op = op;
+      this.partialSums = partialSums;
+      this.chunkSize = chunkSize;
+      this.length = length;
+      this.firstChunk = firstChunk;
+      this.endChunk = endChunk;
+    }
+
+    @Override
+    protected void compute() {
+      if (endChunk - firstChunk == 1) {
+        int from = firstChunk * chunkSize;
+        partialSums[firstChunk] = op.apply(from, Math.min(length, from + chunkSize));
+      } else {
+        int middle = (firstChunk + endChunk) >>> 1;
+        invokeAll(new ChunkTask(op, partialSums, chunkSize, length, firstChunk, middle),
+            new ChunkTask(op, partialSums, chunkSize, length, middle, endChunk));
+      }
+    }
+
+  } // end static class ChunkTask
+
+  /** Applies op to each chunk of [0, length), in parallel, and returns the sum of what it returns. */
+  private double sum(int length, ChunkOp op) {
+    int numChunks = (length + chunkSize - 1) / chunkSize;
+    if (numChunks < 2) {
+      return op.apply(0, length);
+    }
+    double[] partialSums = new double[numChunks];
+    pool.invoke(new ChunkTask(op, partialSums, chunkSize, length, 0, numChunks));
+    double sum = 0.0;
+    for (double partialSum : partialSums) {
+      sum += partialSum;
+    }
+    return sum;
+  }
+
+  @Override
+  public double innerProduct(double[] a, double[] b) {
+    return sum(a.length, (from, to) -> SerialVectorOps.innerProduct(a, b, from, to));
+  }
+
+  @Override
+  public double innerProduct(float[] a, double[] b) {
+    return sum(a.length, (from, to) -> SerialVectorOps.innerProduct(a, b, from, to));
+  }
+
+  @Override
+  public void plusAndConstMult(double[] a, double[] b, double c, double[] d) {
+    sum(a.length, (from, to) -> {
+      SerialVectorOps.plusAndConstMult(a, b, c, d, from, to);
+      return 0.0;
+    });
+  }
+
+  @Override
+  public void plusAndConstMult(double[] a, float[] b, double c, double[] d) {
+    sum(a.length, (from, to) -> {
+      SerialVectorOps.plusAndConstMult(a, b, c, d, from, to);
+      return 0.0;
+    });
+  }
+
+  @Override
+  public void multiplyInPlace(double[] a, double c) {
+    sum(a.length, (from, to) -> {
+      SerialVectorOps.multiplyInPlace(a, c, from, to);
+      return 0.0;
+    });
+  }
+
+  @Override
+  public double norm(double[] a) {
+    return Math.sqrt(sum(a.length, (from, to) -> SerialVectorOps.sumOfSquares(a, from, to)));
+  }
+
+  @Override
+  public String toString() {
+    return "ParallelVectorOps[" + threads + " threads, chunks of " + chunkSize + ']';
+  }
+
+}
@@ -1,8 +1,16 @@
 package edu.stanford.nlp.optimization;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
@@ -87,6 +95,10 @@ import edu.stanford.nlp.util.logging.Redwood;
  * qn.minimize(dfunction,convergenceTolerance,initialGuess,maxFunctionEvaluations);
  * </code></blockquote>
  *
+ * For functions of very many variables, {@link #setVectorOps} can spread the
+ * vector operations of each iteration over several threads, and
+ * {@link #useFloatHistory} halves the memory of the s,y pairs by storing them as floats.
+ *
  * @author akleeman
  */
 
@@ -138,6 +150,14 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
 
   private transient CallbackFunction iterCallbackFunction = null;
 
+  private String checkpointFile; // = null; where to save the optimizer state
+  private int checkpointFreq = 1;
+  private QNInfo resumeInfo; // = null; the QN state to start the next minimize() from, from a checkpoint
+  private int resumeIts; // = 0;
+
+  private VectorOps vectorOps = SerialVectorOps.INSTANCE; // the dot products, axpys and norms of each iteration
+  private boolean floatHistory; // = false; whether the s,y pairs are stored as floats
+
   public enum eState {
     TERMINATE_MAXEVALS, TERMINATE_RELATIVENORM, TERMINATE_GRADNORM, TERMINATE_AVERAGEIMPROVE, CONTINUE, TERMINATE_EVALIMPROVE, TERMINATE_MAXITR
   }
@@ -218,6 +238,107 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
     iterCallbackFunction = func;
   }
 
+  /**
+   * Save the state of the optimizer to a file every {@code freq} iterations,
+   * so that a long minimization which is interrupted can be continued with
+   * {@link #resumeFromCheckpoint}.  The state is the current point, the
+   * s and y history, and the scaling of the initial Hessian.  The file is
+   * replaced each time, and is only ever seen complete.  When minimize
+   * returns, the file is deleted, so that a later run doesn't resume a
+   * finished minimization.
+   *
+   * @param file Where to save the state, or null to stop checkpointing
+   * @param freq How many iterations apart checkpoints are written
+   */
+  public void setCheckpoint(String file, int freq) {
+    if (freq <= 0) {
+      throw new IllegalArgumentException("Checkpoint frequency must be positive: " + freq);
+    }
+    this.checkpointFile = file;
+    this.checkpointFreq = freq;
+  }
+
+  /**
+   * Loads a checkpoint written by {@link #setCheckpoint}, so that the next call
+   * to minimize continues from it: with its history, and with the iterations
+   * counted on from where the checkpoint was written (for {@link #terminateOnMaxItr}).
+   * This is not an exact continuation: the recent function values which the
+   * convergence tests look at are not saved, so those tests (all but the maximum
+   * iterations) start afresh, and a resumed minimization can stop at a different
+   * iteration than an uninterrupted one would.
+   *
+   * @param file A checkpoint file
+   * @return The point at which minimization stopped, to be passed to minimize as the initial point
+   */
+  public double[] resumeFromCheckpoint(String file) {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      resumeIts = in.readInt();
+      double[] x = readDoubles(in);
+      QNInfo qn = new QNInfo(mem);
+      qn.gamma = in.readDouble();
+      qn.d = in.readBoolean() ? readDoubles(in) : null;
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        double[] s = readDoubles(in);
+        double[] y = readDoubles(in);
+        qn.addPair(s, y, 1 / vectorOps.innerProduct(s, y));
+      }
+      resumeInfo = qn;
+      sayln("QNMinimizer resuming from iteration " + resumeIts + " saved in " + file);
+      return x;
+    } catch (IOException e) {
+      throw new RuntimeIOException("Could not read QN checkpoint " + file, e);
+    }
+  }
+
+  private void deleteCheckpoint() {
+    try {
+      Files.deleteIfExists(new File(checkpointFile).toPath());
+      Files.deleteIfExists(new File(checkpointFile + ".tmp").toPath());
+    } catch (IOException e) {
+      log.warn("Could not delete QN checkpoint " + checkpointFile + ": " + e);
+    }
+  }
+
+  private void writeCheckpoint(double[] x, QNInfo qn) {
+    File file = new File(checkpointFile);
+    File tmp = new File(checkpointFile + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+        out.writeInt(its);
+        writeDoubles(out, x);
+        out.writeDouble(qn.gamma);
+        out.writeBoolean(qn.d != null);
+        if (qn.d != null) {
+          writeDoubles(out, qn.d);
+        }
+        out.writeInt(qn.size());
+        for (int i = 0; i < qn.size(); i++) {
+          writeDoubles(out, qn.getS(i));
+          writeDoubles(out, qn.getY(i));
+        }
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new RuntimeIOException("Could not write QN checkpoint " + checkpointFile, e);
+    }
+  }
+
+  private static void writeDoubles(DataOutputStream out, double[] v) throws IOException {
+    out.writeInt(v.length);
+    for (double d : v) {
+      out.writeDouble(d);
+    }
+  }
+
+  private static double[] readDoubles(DataInputStream in) throws IOException {
+    double[] v = new double[in.readInt()];
+    for (int i = 0; i < v.length; i++) {
+      v[i] = in.readDouble();
+    }
+    return v;
+  }
+
   public void terminateOnRelativeNorm(boolean toTerminate) {
     useRelativeNorm = toTerminate;
   }
@@ -276,6 +397,26 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
     mem = m;
   }
 
+  /**
+   * Sets how the vector operations of the minimizer, such as the inner products
+   * of the two-loop recursion, are done, for example by a {@link ParallelVectorOps}.
+   * The default is {@link SerialVectorOps}.
+   */
+  public void setVectorOps(VectorOps vectorOps) {
+    this.vectorOps = vectorOps;
+  }
+
+  /**
+   * If true, the s,y pairs of the history are stored as floats rather than
+   * doubles, which halves the memory they take, at the cost of some precision
+   * in the search direction. (The current point, gradient and search direction
+   * stay doubles.) This applies to the histories made by later calls to minimize
+   * and {@link #setHistory}.
+   */
+  public void useFloatHistory(boolean floatHistory) {
+    this.floatHistory = floatHistory;
+  }
+
   public static class SurpriseConvergence extends Exception {
 
     private static final long serialVersionUID = 4290178321643529559L;
@@ -365,7 +506,7 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
      */
     void start(double val, double[] grad, double[] x) {
       startTime = System.currentTimeMillis();
-      gNormInit = ArrayMath.norm(grad);
+      gNormInit = vectorOps.norm(grad);
       xLast = x;
       writeToFile(1, val, gNormInit, 0.0);
 
@@ -400,7 +541,7 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
         maxSize = 10;
       }
 
-      gNormLast = ArrayMath.norm(grad);
+      gNormLast = vectorOps.norm(grad);
       if (values.size() > maxSize) {
         values.remove(0);
       }
@@ -483,7 +624,7 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
         if (gNormLast < EPS * Math.max(1.0, ArrayMath.norm_1(xLast))) {
           // |g| < |x|_1
           // First we do the one norm, because that's easiest, and always bigger.
-          if (gNormLast < EPS * Math.max(1.0, ArrayMath.norm(xLast))) {
+          if (gNormLast < EPS * Math.max(1.0, vectorOps.norm(xLast))) {
             // |g| < max(1,|x|)
             // Now actually compare with the two norm if we have to.
             log.warn("Gradient is numerically zero, stopped on machine epsilon.");
@@ -522,8 +663,14 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
     // Diagonal Options
     // Line search Options
     // Memory stuff
+    // The pairs are in s and y, or, if floats is true, in sFloat and yFloat
+    private final boolean floats = floatHistory;
     private List<double[]> s = null;
     private List<double[]> y = null;
+    private List<float[]> sFloat = null;
+    private List<float[]> yFloat = null;
+    private double[] sScratch, yScratch; // where new pairs are computed before being stored as floats
+    private float[] spareS, spareY; // the arrays of the last pair removed, to reuse
     private List<Double> rho = null;
     private double gamma;
     public double[] d = null;
@@ -532,23 +679,29 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
     public eScaling scaleOpt = eScaling.SCALAR;
 
     QNInfo(int size) {
-      s = new ArrayList<>();
-      y = new ArrayList<>();
-      rho = new ArrayList<>();
-      gamma = 1;
+      init();
       mem = size;
     }
 
     QNInfo(List<double[]> sList, List<double[]> yList) {
-      s = new ArrayList<>();
-      y = new ArrayList<>();
+      init();
+      setHistory(sList, yList);
+    }
+
+    private void init() {
+      if (floats) {
+        sFloat = new ArrayList<>();
+        yFloat = new ArrayList<>();
+      } else {
+        s = new ArrayList<>();
+        y = new ArrayList<>();
+      }
       rho = new ArrayList<>();
       gamma = 1;
-      setHistory(sList, yList);
     }
 
     int size() {
-      return s.size();
+      return rho.size();
     }
 
     double getRho(int ind) {
@@ -556,11 +709,62 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
     }
 
     double[] getS(int ind) {
-      return s.get(ind);
+      return floats ? toDoubles(sFloat.get(ind)) : s.get(ind);
     }
 
     double[] getY(int ind) {
-      return y.get(ind);
+      return floats ? toDoubles(yFloat.get(ind)) : y.get(ind);
+    }
+
+    /** The inner product of the ind-th s and v. */
+    double innerProductS(int ind, double[] v) {
+      return floats ? vectorOps.innerProduct(sFloat.get(ind), v) : vectorOps.innerProduct(s.get(ind), v);
+    }
+
+    double innerProductY(int ind, double[] v) {
+      return floats ? vectorOps.innerProduct(yFloat.get(ind), v) : vectorOps.innerProduct(y.get(ind), v);
+    }
+
+    /** Adds c times the ind-th s to v. */
+    void addMultS(int ind, double c, double[] v) {
+      if (floats) {
+        vectorOps.plusAndConstMult(v, sFloat.get(ind), c, v);
+      } else {
+        vectorOps.plusAndConstMult(v, s.get(ind), c, v);
+      }
+    }
+
+    void addMultY(int ind, double c, double[] v) {
+      if (floats) {
+        vectorOps.plusAndConstMult(v, yFloat.get(ind), c, v);
+      } else {
+        vectorOps.plusAndConstMult(v, y.get(ind), c, v);
+      }
+    }
+
+    /** Adds a pair to the end of the history (copying it, if the history is floats). */
+    void addPair(double[] newS, double[] newY, double newRho) {
+      if (floats) {
+        sFloat.add(toFloats(newS, spareS));
+        yFloat.add(toFloats(newY, spareY));
+        spareS = null;
+        spareY = null;
+      } else {
+        s.add(newS);
+        y.add(newY);
+      }
+      rho.add(newRho);
+    }
+
+    void removeOldest() {
+      if (floats) {
+        spareS = sFloat.remove(0);
+        spareY = yFloat.remove(0);
+      } else {
+        s.remove(0);
+        y.remove(0);
+      }
+      rho.remove(0);
     }
 
     void useDiagonalScaling() {
@@ -577,14 +781,20 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
     void free() {
       s = null;
       y = null;
+      sFloat = null;
+      yFloat = null;
+      sScratch = null;
+      yScratch = null;
+      spareS = null;
+      spareY = null;
       rho = null;
       d = null;
     }
 
     void clear() {
-      s.clear();
-      y.clear();
-      rho.clear();
+      while (size() > 0) {
+        removeOldest();
+      }
       d = null;
     }
 
@@ -598,8 +808,8 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
       int size = sList.size();
 
       for (int i = 0; i < size; i++) {
-        update(sList.get(i), yList.get(i), ArrayMath.innerProduct(yList.get(i),
-            yList.get(i)), ArrayMath.innerProduct(sList.get(i), yList.get(i)),
+        update(sList.get(i), yList.get(i), vectorOps.innerProduct(yList.get(i),
+            yList.get(i)), vectorOps.innerProduct(sList.get(i), yList.get(i)),
             0, 1.0);
       }
     }
@@ -608,7 +818,7 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
       switch (scaleOpt) {
       case SCALAR:
         sb.append('I');
-        ArrayMath.multiplyInPlace(x, gamma);
+        vectorOps.multiplyInPlace(x, gamma);
         break;
       case DIAGONAL:
         sb.append('D');
@@ -647,7 +857,19 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
 
       // allocate arrays for new s,y pairs (or replace if the list is already
       // full)
-      if (mem > 0 && s.size() == mem || s.size() == maxMem) {
+      boolean full = mem > 0 && size() == mem || size() == maxMem;
+      if (floats) {
+        // computed in doubles, and copied to floats when added
+        if (full) {
+          removeOldest();
+        }
+        if (sScratch == null || sScratch.length != x.length) {
+          sScratch = new double[x.length];
+          yScratch = new double[x.length];
+        }
+        newS = sScratch;
+        newY = yScratch;
+      } else if (full) {
         newS = s.remove(0);
         newY = y.remove(0);
         rho.remove(0);
@@ -657,16 +879,11 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
       }
 
       // Here we construct the new pairs, and check for positive definiteness.
-      sy = 0;
-      yy = 0;
-      sg = 0;
-      for (int i = 0; i < x.length; i++) {
-        newS[i] = newX[i] - x[i];
-        newY[i] = newGrad[i] - grad[i];
-        sy += newS[i] * newY[i];
-        yy += newY[i] * newY[i];
-        sg += newS[i] * newGrad[i];
-      }
+      vectorOps.plusAndConstMult(newX, x, -1.0, newS);
+      vectorOps.plusAndConstMult(newGrad, grad, -1.0, newY);
+      sy = vectorOps.innerProduct(newS, newY);
+      yy = vectorOps.innerProduct(newY, newY);
+      sg = vectorOps.innerProduct(newS, newGrad);
 
       // Apply the updates used for the initial hessian.
 
@@ -756,16 +973,12 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
 
         // If s is already of size mem, remove the oldest vector and free it up.
 
-        if (mem > 0 && s.size() == mem || s.size() == maxMem) {
-          s.remove(0);
-          y.remove(0);
-          rho.remove(0);
+        if (mem > 0 && size() == mem || size() == maxMem) {
+          removeOldest();
         }
 
         // Actually add the pair.
-        s.add(newS);
-        y.add(newY);
-        rho.add(1 / sy);
+        addPair(newS, newY, 1 / sy);
 
       } catch (NegativeCurvature nc) {
         // NOTE: if applying QNMinimizer to a non convex problem, we would still
@@ -776,11 +989,30 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
         sayln(" Either convergence, or floating point errors combined with extremely linear region ");
       }
 
-      return s.size();
+      return size();
     } // end update
 
   } // end class QNInfo
 
+  private static double[] toDoubles(float[] v) {
+    double[] doubles = new double[v.length];
+    for (int i = 0; i < v.length; i++) {
+      doubles[i] = v[i];
+    }
+    return doubles;
+  }
+
+  /** Copies v into floats, reusing the given array if it is the right size. */
+  private static float[] toFloats(double[] v, float[] floats) {
+    if (floats == null || floats.length != v.length) {
+      floats = new float[v.length];
+    }
+    for (int i = 0; i < v.length; i++) {
+      floats[i] = (float) v[i];
+    }
+    return floats;
+  }
+
   public void setHistory(List<double[]> s, List<double[]> y) {
     presetInfo = new QNInfo(s, y);
   }
@@ -800,19 +1032,19 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
     double[] as = new double[mmm];
 
     for (int i = mmm - 1; i >= 0; i--) {
-      as[i] = qn.getRho(i) * ArrayMath.innerProduct(qn.getS(i), dir);
-      plusAndConstMult(dir, qn.getY(i), -as[i], dir);
+      as[i] = qn.getRho(i) * qn.innerProductS(i, dir);
+      qn.addMultY(i, -as[i], dir);
     }
 
     // multiply by hessian approximation
     qn.applyInitialHessian(dir, sb);
 
     for (int i = 0; i < mmm; i++) {
-      double b = qn.getRho(i) * ArrayMath.innerProduct(qn.getY(i), dir);
-      plusAndConstMult(dir, qn.getS(i), as[i] - b, dir);
+      double b = qn.getRho(i) * qn.innerProductY(i, dir);
+      qn.addMultS(i, as[i] - b, dir);
     }
 
-    ArrayMath.multiplyInPlace(dir, -1);
+    vectorOps.multiplyInPlace(dir, -1);
 
     if (useOWLQN) { // step (2) in Galen & Gao 2007
       constrainSearchDir(dir, fg, x, func);
@@ -820,11 +1052,9 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
   }
 
   // computes d = a + b * c
-  private static double[] plusAndConstMult(double[] a, double[] b, double c,
+  private double[] plusAndConstMult(double[] a, double[] b, double c,
       double[] d) {
-    for (int i = 0; i < a.length; i++) {
-      d[i] = a[i] + c * b[i];
-    }
+    vectorOps.plusAndConstMult(a, b, c, d);
     return d;
   }
 
@@ -869,7 +1099,10 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
               + dFunction.domainDimension() + " variables, using dynamic setting of M.");
     }
 
-    if (qn == null && presetInfo == null) {
+    if (resumeInfo != null) {
+      qn = resumeInfo;
+      noHistory = false;
+    } else if (qn == null && presetInfo == null) {
       qn = new QNInfo(mem);
       noHistory = true;
     } else if (presetInfo != null) {
@@ -879,7 +1112,8 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
       noHistory = false;
     }
 
-    its = 0;
+    its = resumeInfo != null ? resumeIts : 0;
+    resumeInfo = null;
     fevals = 0;
     success = false;
 
@@ -1054,6 +1288,10 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
         System.arraycopy(newX, 0, x, 0, x.length);
         System.arraycopy(newGrad, 0, grad, 0, newGrad.length);
 
+        if (checkpointFile != null && its % checkpointFreq == 0) {
+          writeCheckpoint(x, qn);
+        }
+
         if (fevals > maxFevals) {
           throw new MaxEvaluationsExceeded("Exceeded in minimize() loop.");
         }
@@ -1068,12 +1306,10 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
         sayln("** program by checking the QNMinimizer.wasSuccessful() method.");
         break;
       } catch (OutOfMemoryError oome) {
-        if ( ! qn.s.isEmpty()) {
-          qn.s.remove(0);
-          qn.y.remove(0);
-          qn.rho.remove(0);
-          sb.append("{Caught OutOfMemory, changing m from ").append(qn.mem).append(" to ").append(qn.s.size()).append("}]");
-          qn.mem = qn.s.size();
+        if (qn.size() > 0) {
+          qn.removeOldest();
+          sb.append("{Caught OutOfMemory, changing m from ").append(qn.mem).append(" to ").append(qn.size()).append("}]");
+          qn.mem = qn.size();
         } else {
           throw oome;
         }
@@ -1129,6 +1365,11 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
       outFile.close();
     }
 
+    // The minimization is over, so there is nothing to resume: a later run shouldn't pick this up
+    if (checkpointFile != null) {
+      deleteCheckpoint();
+    }
+
     qn.free();
     return x;
 
@@ -1337,7 +1578,7 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
       double[] newX, double[] grad, double lastValue, StringBuilder sb)
       throws MaxEvaluationsExceeded {
 
-    double normGradInDir = ArrayMath.innerProduct(dir, grad);
+    double normGradInDir = vectorOps.innerProduct(dir, grad);
     sb.append('(').append(nf.format(normGradInDir)).append(')');
     if (normGradInDir > 0) {
       sayln("{WARNING--- direction of positive gradient chosen!}");
@@ -1400,14 +1641,14 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
 
     // Should check input parameters
 
-    double g0 = ArrayMath.innerProduct(grad, dir);
+    double g0 = vectorOps.innerProduct(grad, dir);
     if (g0 >= 0) {
       // We're looking in a direction of positive gradient. This won't work.
       // set dir = -grad
       for (int i = 0; i < x.length; i++) {
         dir[i] = -grad[i];
       }
-      g0 = ArrayMath.innerProduct(grad, dir);
+      g0 = vectorOps.innerProduct(grad, dir);
     }
     double gTest = ftol * g0;
 
@@ -1458,7 +1699,7 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
       }
 
       newPt[f] = dfunc.valueAt((plusAndConstMult(x, dir, newPt[a], newX)));
-      newPt[g] = ArrayMath.innerProduct(dfunc.derivativeAt(newX), dir);
+      newPt[g] = vectorOps.innerProduct(dfunc.derivativeAt(newX), dir);
       double fTest = f0 + newPt[a] * gTest;
       fevals += 1;
 
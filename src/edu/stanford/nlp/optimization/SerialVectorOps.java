@@ -0,0 +1,91 @@
+package edu.stanford.nlp.optimization;
+
+/**
+ * The {@link VectorOps} of a {@link QNMinimizer} by default: simple loops in the
+ * calling thread. The methods taking a range of indices are also used by
+ * {@link ParallelVectorOps} for each of its chunks.
+ */
+public class SerialVectorOps implements VectorOps {
+
+  public static final SerialVectorOps INSTANCE = new SerialVectorOps();
+
+  protected SerialVectorOps() { }
+
+  @Override
+  public double innerProduct(double[] a, double[] b) {
+    return innerProduct(a, b, 0, a.length);
+  }
+
+  @Override
+  public double innerProduct(float[] a, double[] b) {
+    return innerProduct(a, b, 0, a.length);
+  }
+
+  @Override
+  public void plusAndConstMult(double[] a, double[] b, double c, double[] d) {
+    plusAndConstMult(a, b, c, d, 0, a.length);
+  }
+
+  @Override
+  public void plusAndConstMult(double[] a, float[] b, double c, double[] d) {
+    plusAndConstMult(a, b, c, d, 0, a.length);
+  }
+
+  @Override
+  public void multiplyInPlace(double[] a, double c) {
+    multiplyInPlace(a, c, 0, a.length);
+  }
+
+  @Override
+  public double norm(double[] a) {
+    return Math.sqrt(sumOfSquares(a, 0, a.length));
+  }
+
+  static double innerProduct(double[] a, double[] b, int from, int to) {
+    double result = 0.0;
+    for (int i = from; i < to; i++) {
+      result += a[i] * b[i];
+    }
+    return result;
+  }
+
+  static double innerProduct(float[] a, double[] b, int from, int to) {
+    double result = 0.0;
+    for (int i = from; i < to; i++) {
+      result += a[i] * b[i];
+    }
+    return result;
+  }
+
+  static void plusAndConstMult(double[] a, double[] b, double c, double[] d, int from, int to) {
+    for (int i = from; i < to; i++) {
+      d[i] = a[i] + c * b[i];
+    }
+  }
+
+  static void plusAndConstMult(double[] a, float[] b, double c, double[] d, int from, int to) {
+    for (int i = from; i < to; i++) {
+      d[i] = a[i] + c * b[i];
+    }
+  }
+
+  static void multiplyInPlace(double[] a, double c, int from, int to) {
+    for (int i = from; i < to; i++) {
+      a[i] = a[i] * c;
+    }
+  }
+
+  static double sumOfSquares(double[] a, int from, int to) {
+    double result = 0.0;
+    for (int i = from; i < to; i++) {
+      result += a[i] * a[i];
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "SerialVectorOps";
+  }
+
+}
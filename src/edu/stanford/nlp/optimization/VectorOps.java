@@ -0,0 +1,35 @@
+package edu.stanford.nlp.optimization;
+
+/**
+ * The vector operations a {@link QNMinimizer} does on each iteration, apart
+ * from evaluating the function: the inner products and scaled additions of the
+ * two-loop recursion and the line search, and norms for its convergence tests.
+ * For functions of tens of millions of variables these take a noticeable part
+ * of each iteration, and {@link ParallelVectorOps} spreads them over several threads.
+ * <br>
+ * The history vectors of the minimizer may be floats (see
+ * {@link QNMinimizer#useFloatHistory}), so there are versions of the
+ * operations taking a float[] as well.
+ *
+ * @see SerialVectorOps
+ * @see ParallelVectorOps
+ */
+public interface VectorOps {
+
+  /** Returns the inner product of a and b, which have the same length. */
+  double innerProduct(double[] a, double[] b);
+
+  double innerProduct(float[] a, double[] b);
+
+  /** Sets d to a + c * b. d may be a. */
+  void plusAndConstMult(double[] a, double[] b, double c, double[] d);
+
+  void plusAndConstMult(double[] a, float[] b, double c, double[] d);
+
+  /** Multiplies each element of a by c. */
+  void multiplyInPlace(double[] a, double c);
+
+  /** Returns the L2 norm of a. */
+  double norm(double[] a);
+
+}
@@ -33,6 +33,8 @@ public class AnnotationPipeline implements Annotator {
 
   private final List<Annotator> annotators;
   private List<MutableLong> accumulatedTime;
+  /** Where to record the latency and allocation of each annotator, or null to not record them */
+  private volatile PipelineMetrics metrics; // = null;
 
   public AnnotationPipeline(List<Annotator> annotators) {
     this.annotators = annotators;
@@ -56,6 +58,21 @@ public class AnnotationPipeline implements Annotator {
     }
   }
 
+  /**
+   * Record the latency and allocation of each annotator, and the documents annotated, into the given metrics
+   * from now on.
+   *
+   * @param metrics The metrics to record into, or null to stop recording.
+   */
+  public void setMetrics(PipelineMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /** The metrics this pipeline is recording into, or null if none. */
+  public PipelineMetrics getMetrics() {
+    return metrics;
+  }
+
   /**
    * Run the pipeline on an input annotation.
    * The annotation is modified in place.
@@ -66,6 +83,7 @@ public class AnnotationPipeline implements Annotator {
   public void annotate(Annotation annotation) {
     Iterator<MutableLong> it = accumulatedTime.iterator();
     Timing t = new Timing();
+    PipelineMetrics metrics = this.metrics;
     for (Annotator annotator : annotators) {
       if (Thread.interrupted()) {  // Allow interrupting
         throw new RuntimeInterruptedException();
@@ -73,13 +91,25 @@ public class AnnotationPipeline implements Annotator {
       if (TIME) {
         t.start();
       }
+      long start = 0;
+      long allocated = 0;
+      if (metrics != null) {
+        start = System.nanoTime();
+        allocated = PipelineMetrics.allocatedBytes();
+      }
       annotator.annotate(annotation);
+      if (metrics != null) {
+        metrics.recordAnnotator(annotator, System.nanoTime() - start, allocated < 0 ? -1 : PipelineMetrics.allocatedBytes() - allocated);
+      }
       if (TIME) {
         long elapsed = t.stop();
         MutableLong m = it.next();
         m.incValue(elapsed);
       }
     }
+    if (metrics != null) {
+      metrics.recordDocument(annotation);
+    }
   }
 
   /**
@@ -0,0 +1,169 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The HTTP content codings spoken between the {@link StanfordCoreNLPClient} and the
+ * {@link StanfordCoreNLPServer}, as named in the <code>Content-Encoding</code> and
+ * <code>Accept-Encoding</code> headers.
+ * Both compressing and decompressing stream: neither buffers the whole body.
+ *
+ * <ul>
+ *   <li><b>gzip</b> compresses well, and is understood by every HTTP client.</li>
+ *   <li><b>deflate</b> is the same LZ77 codec in a zlib wrapper, run at its fastest setting;
+ *       it costs far less CPU than gzip, for somewhat larger output.</li>
+ *   <li><b>identity</b> is no compression at all.</li>
+ * </ul>
+ */
+public enum ContentEncoding {
+  GZIP("gzip") {
+    @Override
+    public OutputStream compress(OutputStream os) throws IOException {
+      return new GZIPOutputStream(os, BUFFER_SIZE);
+    }
+    @Override
+    public InputStream decompress(InputStream is) throws IOException {
+      return new GZIPInputStream(is, BUFFER_SIZE);
+    }
+  },
+  DEFLATE("deflate") {
+    @Override
+    public OutputStream compress(OutputStream os) {
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      return new DeflaterOutputStream(os, deflater, BUFFER_SIZE) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            deflater.end();  // we made the deflater, so the stream won't free it for us
+          }
+        }
+      };
+    }
+    @Override
+    public InputStream decompress(InputStream is) {
+      return new InflaterInputStream(is);
+    }
+  },
+  IDENTITY("identity") {
+    @Override
+    public OutputStream compress(OutputStream os) {
+      return os;
+    }
+    @Override
+    public InputStream decompress(InputStream is) {
+      return is;
+    }
+  },
+  ;
+
+  /** The size of the buffers of the compressing and decompressing streams */
+  private static final int BUFFER_SIZE = 8192;
+
+  /** The name of this coding in HTTP headers */
+  public final String headerValue;
+
+  ContentEncoding(String headerValue) {
+    this.headerValue = headerValue;
+  }
+
+  /**
+   * Wrap a stream so that what is written to it is compressed with this coding.
+   * Closing the returned stream finishes the compressed data, and closes the underlying stream.
+   */
+  public abstract OutputStream compress(OutputStream os) throws IOException;
+
+  /** Wrap a stream of data compressed with this coding, so that it reads the uncompressed data. */
+  public abstract InputStream decompress(InputStream is) throws IOException;
+
+  /**
+   * The coding named by a <code>Content-Encoding</code> header.
+   *
+   * @param header The value of the header, or null if there was none (i.e., identity).
+   * @throws IllegalArgumentException Thrown if we don't know the coding.
+   */
+  public static ContentEncoding fromHeader(String header) {
+    if (header == null || header.trim().isEmpty()) {
+      return IDENTITY;
+    }
+    String name = header.trim().toLowerCase(Locale.ROOT);
+    for (ContentEncoding encoding : values()) {
+      if (encoding.headerValue.equals(name) || ("x-" + encoding.headerValue).equals(name)) {
+        return encoding;
+      }
+    }
+    throw new IllegalArgumentException("Unsupported content encoding: " + header);
+  }
+
+  /**
+   * The coding to respond with, given the <code>Accept-Encoding</code> header of a request:
+   * the coding the client prefers most (by its q-values), breaking ties by the order the client
+   * lists them in. Codings we don't know are skipped. Identity is used if no compressed coding is
+   * acceptable, or if the client gives it a higher q-value than any of them, unless it is refused
+   * with <code>identity;q=0</code> (or <code>*;q=0</code> without naming it).
+   *
+   * @param acceptEncoding The value of the header, or null if there was none.
+   * @return The coding, or null if none that we could send is acceptable to the client.
+   */
+  public static ContentEncoding negotiate(String acceptEncoding) {
+    return negotiate(acceptEncoding, true);
+  }
+
+  /**
+   * As {@link #negotiate(String)}, but if compress is false, only identity is offered.
+   */
+  public static ContentEncoding negotiate(String acceptEncoding, boolean compress) {
+    if (acceptEncoding == null) {
+      return IDENTITY;
+    }
+    ContentEncoding best = null;
+    double bestQ = 0.0;
+    double identityQ = -1.0;  // not listed
+    double anyQ = -1.0;  // no "*"
+    for (String part : acceptEncoding.split(",")) {
+      String[] params = part.split(";");
+      String name = params[0].trim().toLowerCase(Locale.ROOT);
+      double q = 1.0;
+      for (int i = 1; i < params.length; ++i) {
+        String param = params[i].trim();
+        if (param.startsWith("q=")) {
+          try {
+            q = Double.parseDouble(param.substring(2));
+          } catch (NumberFormatException e) {
+            q = 0.0;
+          }
+        }
+      }
+      if (name.equals("*")) {
+        anyQ = q;
+      } else if (name.equals(IDENTITY.headerValue)) {
+        identityQ = q;
+      } else if (compress) {
+        for (ContentEncoding encoding : values()) {
+          if (encoding != IDENTITY && encoding.headerValue.equals(name) && q > bestQ) {
+            best = encoding;
+            bestQ = q;
+          }
+        }
+      }
+    }
+    if (best != null && bestQ >= identityQ) {
+      return best;
+    }
+    if (identityQ < 0.0) {
+      // identity is acceptable unless it is refused (RFC 7231, section 5.3.4)
+      identityQ = (anyQ < 0.0) ? 1.0 : anyQ;
+    }
+    return (identityQ > 0.0) ? IDENTITY : null;
+  }
+
+}
@@ -0,0 +1,527 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.*;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * Runs the files planned by {@link StanfordCoreNLP#processFiles(String, Collection, int, Properties, BiConsumer, BiConsumer, StanfordCoreNLP.OutputFormat, boolean)}
+ * through a pipeline, keeping memory bounded however large or numerous the files are.
+ *
+ * <ul>
+ *   <li>Files are read by a pool of <code>threads</code> workers, which hand the documents to the
+ *       annotate function (which may itself annotate on other threads).</li>
+ *   <li>Small files are packed into batches of about <code>batchBytes</code>, so that a worker
+ *       reads a run of them at once rather than being scheduled once per file.</li>
+ *   <li>Text files larger than <code>chunkSize</code> characters are read as a stream, and cut into
+ *       documents of at most that size at a paragraph break, or failing that at the end of a sentence.
+ *       The output of chunk <i>n</i> of <code>foo.txt</code> is written to <code>foo.txt.chunk<i>n</i>.xml</code> (for XML).</li>
+ *   <li>At most <code>maxInFlightBytes</code> of input is being annotated at any one time;
+ *       a larger document is still annotated, but only on its own.</li>
+ *   <li>If <code>checkpoint</code> names a file, each output is recorded there once it has been
+ *       written in full, and outputs recorded there are not produced again.
+ *       A run which was interrupted picks up where it stopped when rerun with the same checkpoint.</li>
+ * </ul>
+ */
+class FileBatchProcessor {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels logger = Redwood.channels(FileBatchProcessor.class);
+
+  /** The most files packed into one batch, however small they are */
+  private static final int MAX_BATCH_FILES = 1000;
+
+  /** A file to annotate, and where to write its output */
+  static class Job {
+    final File file;
+    final String outputFilename;
+    final long size;
+
+    Job(File file, String outputFilename) {
+      this.file = file;
+      this.outputFilename = outputFilename;
+      this.size = file.length();
+    }
+  }
+
+  private final BiConsumer<Annotation, Consumer<Annotation>> annotate;
+  private final BiConsumer<Annotation, OutputStream> print;
+  private final Properties properties;
+  private final int numThreads;
+  private final Charset encoding;
+  private final String extension;
+  /** The most characters a text document of this size is cut into chunks of */
+  private final int chunkSize;
+  /** The most characters one byte of a file in our encoding decodes to */
+  private final float maxCharsPerByte;
+  private final long batchBytes;
+  private final boolean noClobber;
+  private final boolean continueOnAnnotateError;
+  private final String inputSerializerClass;
+  private final String inputSerializerName;
+  private final InFlightBytes inFlight;
+  private final Checkpoint checkpoint;
+
+  private final AtomicInteger totalProcessed = new AtomicInteger(0);
+  private final AtomicInteger totalSkipped = new AtomicInteger(0);
+  private final AtomicInteger totalErrorAnnotating = new AtomicInteger(0);
+  /** The error which stops the run, if any */
+  private volatile RuntimeException failure = null;
+
+  /**
+   * @param numThreads The number of threads reading files.
+   * @param properties The properties to read the options of this processor from.
+   * @param annotate The function used to annotate a document.
+   * @param print The function used to print a document.
+   * @param extension The extension of the output files.
+   */
+  FileBatchProcessor(int numThreads, Properties properties,
+                     BiConsumer<Annotation, Consumer<Annotation>> annotate,
+                     BiConsumer<Annotation, OutputStream> print,
+                     String extension) throws IOException {
+    this.annotate = annotate;
+    this.print = print;
+    this.properties = properties;
+    this.numThreads = Math.max(1, numThreads);
+    this.encoding = Charset.forName(properties.getProperty("encoding", "UTF-8"));
+    this.extension = extension;
+    this.chunkSize = PropertiesUtils.getInt(properties, "chunkSize", 0);
+    this.maxCharsPerByte = encoding.newDecoder().maxCharsPerByte();
+    this.batchBytes = PropertiesUtils.getLong(properties, "batchBytes", 1 << 20);
+    this.noClobber = PropertiesUtils.getBool(properties, "noClobber", false);
+    this.continueOnAnnotateError = PropertiesUtils.getBool(properties, "continueOnAnnotateError", false);
+    String serializerClass = properties.getProperty("serializer", GenericAnnotationSerializer.class.getName());
+    this.inputSerializerClass = properties.getProperty("inputSerializer", serializerClass);
+    this.inputSerializerName = (serializerClass.equals(inputSerializerClass))? "serializer":"inputSerializer";
+    this.inFlight = new InFlightBytes(PropertiesUtils.getLong(properties, "maxInFlightBytes", 100000000L));
+    String checkpointFile = properties.getProperty("checkpoint");
+    this.checkpoint = checkpointFile == null ? null : new Checkpoint(new File(checkpointFile));
+  }
+
+  /** Whether the output has already been written, according to the checkpoint */
+  boolean isDone(String outputFilename) {
+    return checkpoint != null && checkpoint.isDone(outputFilename);
+  }
+
+  /**
+   * Annotate the files, and wait for every document to be written.
+   *
+   * @param jobs The files to annotate, in the order to read them.
+   * @param skipped The number of files already skipped when planning the jobs, for the final report.
+   * @return The number of documents processed.
+   */
+  int run(List<Job> jobs, int skipped) {
+    totalSkipped.addAndGet(skipped);
+    logger.info("Ready to process: " + jobs.size() + " files on " + numThreads + " threads, skipped " + skipped);
+    ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+    try {
+      for (List<Job> batch : batches(jobs)) {
+        workers.submit(() -> {
+          for (Job job : batch) {
+            if (failure != null) {
+              return;
+            }
+            try {
+              process(job);
+            } catch (IOException e) {
+              fail(new RuntimeIOException("Could not read " + job.file.getAbsolutePath(), e));
+            } catch (InterruptedException e) {
+              fail(new RuntimeInterruptedException(e));
+            } catch (RuntimeException e) {
+              fail(e);
+            }
+          }
+        });
+      }
+      workers.shutdown();
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      inFlight.awaitIdle();
+    } catch (InterruptedException e) {
+      workers.shutdownNow();
+      throw new RuntimeInterruptedException(e);
+    } finally {
+      if (checkpoint != null) {
+        checkpoint.close();
+      }
+    }
+    logger.info("Processed " + totalProcessed + " documents; skipped " + totalSkipped + ", error annotating " + totalErrorAnnotating);
+    if (failure != null) {
+      throw failure;
+    }
+    return totalProcessed.get();
+  }
+
+  /** Pack runs of small files into batches, each of about {@link #batchBytes} bytes. */
+  private List<List<Job>> batches(List<Job> jobs) {
+    List<List<Job>> batches = new ArrayList<>();
+    List<Job> batch = new ArrayList<>();
+    long bytes = 0;
+    for (Job job : jobs) {
+      if ( ! batch.isEmpty() && (bytes + job.size > batchBytes || batch.size() >= MAX_BATCH_FILES)) {
+        batches.add(batch);
+        batch = new ArrayList<>();
+        bytes = 0;
+      }
+      batch.add(job);
+      bytes += job.size;
+    }
+    if ( ! batch.isEmpty()) {
+      batches.add(batch);
+    }
+    return batches;
+  }
+
+  /** Read a file, and send it off to be annotated (possibly in chunks) */
+  private void process(Job job) throws IOException, InterruptedException {
+    // maybe they want to continue processing a partially processed annotation
+    if (job.file.getName().endsWith(".ser.gz")) {
+      Annotation annotation = readSerialized(job.file);
+      if (annotation != null) {
+        logger.info("Processing file " + job.file.getAbsolutePath() + " ... writing to " + job.outputFilename);
+        inFlight.acquire(job.size);
+        submit(annotation, job.file.getAbsolutePath(), job.outputFilename, job.size);
+        return;
+      }
+    }
+
+    // (chunkSize is in characters, and the file size in bytes: the file may have more characters
+    // than bytes in some encodings, and in others, like UTF-8, fewer, which the chunker finds out)
+    if (chunkSize > 0 && job.size * maxCharsPerByte > chunkSize) {
+      processChunks(job);
+    } else {
+      logger.info("Processing file " + job.file.getAbsolutePath() + " ... writing to " + job.outputFilename);
+      inFlight.acquire(job.size);
+      String text;
+      try {
+        text = new String(Files.readAllBytes(job.file.toPath()), encoding);
+      } catch (IOException e) {
+        inFlight.release(job.size);
+        throw e;
+      }
+      submitWhole(job, text);
+    }
+  }
+
+  /** Send off the whole text of a file to be annotated, once room for it has been acquired */
+  private void submitWhole(Job job, String text) {
+    Annotation annotation = new Annotation(text);
+    annotation.set(CoreAnnotations.DocIDAnnotation.class, job.file.getName());
+    submit(annotation, job.file.getAbsolutePath(), job.outputFilename, job.size);
+  }
+
+  /**
+   * Read a large text file as a stream, annotating it a chunk at a time.
+   * If it turns out to have no more than chunkSize characters, it is annotated whole, as a small file is.
+   */
+  private void processChunks(Job job) throws IOException, InterruptedException {
+    String outputBase = job.outputFilename.substring(0, job.outputFilename.length() - extension.length());
+    try (Reader reader = Files.newBufferedReader(job.file.toPath(), encoding)) {
+      TextChunker chunks = new TextChunker(reader, chunkSize);
+      String first = chunks.next();
+      if (first != null && chunks.atEnd()) {
+        logger.info("Processing file " + job.file.getAbsolutePath() + " ... writing to " + job.outputFilename);
+        inFlight.acquire(job.size);
+        submitWhole(job, first);
+        return;
+      }
+      logger.info("Processing file " + job.file.getAbsolutePath() + " in chunks of " + chunkSize + " characters");
+      int index = 0;
+      for (String chunk = first; chunk != null && failure == null; chunk = chunks.next()) {
+        String name = job.file.getName() + ".chunk" + index;
+        String outputFilename = outputBase + ".chunk" + index + extension;
+        index += 1;
+        if (isDone(outputFilename) || (noClobber && new File(outputFilename).exists())) {
+          totalSkipped.incrementAndGet();
+          continue;
+        }
+        inFlight.acquire(chunk.length());
+        Annotation annotation = new Annotation(chunk);
+        annotation.set(CoreAnnotations.DocIDAnnotation.class, name);
+        submit(annotation, job.file.getAbsolutePath() + " (chunk " + (index - 1) + ')', outputFilename, chunk.length());
+      }
+    }
+  }
+
+  /** Read an annotation serialized with the input serializer, or return null if the file isn't one */
+  private Annotation readSerialized(File file) {
+    try {
+      // Create serializers
+      if (inputSerializerClass != null) {
+        AnnotationSerializer inputSerializer = StanfordCoreNLP.loadSerializer(inputSerializerClass, inputSerializerName, properties);
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+          Pair<Annotation, InputStream> pair = inputSerializer.read(is);
+          pair.second.close();
+          return pair.first;
+        }
+      } else {
+        return IOUtils.readObjectFromFile(file);
+      }
+    } catch (IOException e) {
+      // guess that's not what they wanted
+      // We hide IOExceptions because ones such as file not
+      // found will be thrown again in a moment.  Note that
+      // we are intentionally letting class cast exceptions
+      // and class not found exceptions go through.
+      return null;
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Annotate a document, and write it out once it is annotated.
+   * The bytes of the document must already have been acquired from {@link #inFlight}; they are released when it is done.
+   */
+  private void submit(Annotation annotation, String description, String outputFilename, long bytes) {
+    Timing timing = new Timing();
+    AtomicBoolean finished = new AtomicBoolean(false);
+    Consumer<Annotation> callback = finishedAnnotation -> {
+      if (finished.compareAndSet(false, true)) {
+        try {
+          timing.done(logger, "Annotating file " + description);
+          finish(finishedAnnotation, description, outputFilename);
+        } catch (RuntimeException e) {
+          fail(e);
+        } finally {
+          inFlight.release(bytes);
+        }
+      }
+    };
+    try {
+      annotate.accept(annotation, callback);
+    } catch (RuntimeException e) {
+      // The annotator failed on this thread, without calling back
+      annotation.set(CoreAnnotations.ExceptionAnnotation.class, e);
+      callback.accept(annotation);
+    }
+  }
+
+  /** Write out an annotated document, or deal with the error annotating it */
+  private void finish(Annotation annotation, String description, String outputFilename) {
+    Throwable ex = annotation.get(CoreAnnotations.ExceptionAnnotation.class);
+    if (ex == null) {
+      //--Output File
+      try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(outputFilename))) {
+        print.accept(annotation, fos);
+      } catch (IOException e) {
+        throw new RuntimeIOException(e);
+      }
+      if (checkpoint != null) {
+        checkpoint.markDone(outputFilename);
+      }
+      int processed = totalProcessed.incrementAndGet();
+      if (processed % 1000 == 0) {
+        logger.info("Processed " + processed + " documents");
+      }
+    } else if (continueOnAnnotateError) {
+      // Error annotating but still wanna continue
+      // (maybe in the middle of long job and maybe next one will be okay)
+      logger.err("Error annotating " + description + ": " + ex);
+      totalErrorAnnotating.incrementAndGet();
+    } else {
+      throw new RuntimeException("Error annotating " + description, ex);
+    }
+  }
+
+  /** Stop the run, on the first error */
+  private void fail(RuntimeException e) {
+    synchronized (this) {
+      if (failure == null) {
+        failure = e;
+      }
+    }
+  }
+
+
+  /**
+   * Cuts text read from a stream into chunks of at most a given number of characters.
+   * A chunk ends at the last paragraph break (a blank line) in its second half if there is one;
+   * otherwise at the last end of a sentence there; otherwise at the last whitespace; otherwise wherever the limit falls.
+   * Only about one chunk of the text is held in memory at a time.
+   */
+  static class TextChunker {
+    private final Reader reader;
+    private final int chunkSize;
+    private final StringBuilder buffer = new StringBuilder();
+    private final char[] readBuffer = new char[8192];
+    private boolean eof = false;
+
+    TextChunker(Reader reader, int chunkSize) {
+      if (chunkSize <= 0) {
+        throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+      }
+      this.reader = reader;
+      this.chunkSize = chunkSize;
+    }
+
+    /** The next chunk of text, or null at the end of the stream. Chunks of only whitespace are skipped. */
+    String next() throws IOException {
+      while (true) {
+        while ( ! eof && buffer.length() < chunkSize) {
+          int read = reader.read(readBuffer);
+          if (read < 0) {
+            eof = true;
+          } else {
+            buffer.append(readBuffer, 0, read);
+          }
+        }
+        if (buffer.length() == 0) {
+          return null;
+        }
+        int end = buffer.length() <= chunkSize ? buffer.length() : splitPoint();
+        String chunk = buffer.substring(0, end);
+        buffer.delete(0, end);
+        if ( ! chunk.trim().isEmpty()) {
+          return chunk;
+        }
+      }
+    }
+
+    /** Whether all of the text has been returned as chunks, so that {@link #next()} will return null */
+    boolean atEnd() {
+      return eof && buffer.length() == 0;
+    }
+
+    /** Where to end a chunk of a buffer longer than the chunk size */
+    private int splitPoint() {
+      int min = chunkSize / 2;
+      // (a paragraph break: a newline, then maybe spaces, then another newline)
+      for (int i = chunkSize - 1; i > min; --i) {
+        if (buffer.charAt(i) == '\n') {
+          int j = i - 1;
+          while (j >= min && (buffer.charAt(j) == ' ' || buffer.charAt(j) == '\t' || buffer.charAt(j) == '\r')) {
+            j -= 1;
+          }
+          if (j >= min && buffer.charAt(j) == '\n') {
+            return i + 1;
+          }
+        }
+      }
+      // (the end of a sentence)
+      for (int i = chunkSize - 1; i > min; --i) {
+        char c = buffer.charAt(i - 1);
+        if ((c == '.' || c == '!' || c == '?') && Character.isWhitespace(buffer.charAt(i))) {
+          return i + 1;
+        }
+      }
+      // (any whitespace)
+      for (int i = chunkSize - 1; i > min; --i) {
+        if (Character.isWhitespace(buffer.charAt(i))) {
+          return i + 1;
+        }
+      }
+      return chunkSize;
+    }
+  }
+
+
+  /**
+   * The number of bytes of input being annotated, which blocks new documents while it is over a limit.
+   */
+  private static class InFlightBytes {
+    private final long limit;
+    private long inFlight = 0;
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    /** @param limit The most bytes in flight, or 0 for no limit. */
+    private InFlightBytes(long limit) {
+      this.limit = limit;
+    }
+
+    /** Wait until there is room for this many more bytes (or nothing is in flight), and take them. */
+    private void acquire(long bytes) throws InterruptedException {
+      lock.lock();
+      try {
+        while (limit > 0 && inFlight > 0 && inFlight + bytes > limit) {
+          changed.await();
+        }
+        inFlight += bytes;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void release(long bytes) {
+      lock.lock();
+      try {
+        inFlight -= bytes;
+        changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /** Wait until nothing is in flight. */
+    private void awaitIdle() throws InterruptedException {
+      lock.lock();
+      try {
+        while (inFlight > 0) {
+          changed.await();
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+
+  /**
+   * The outputs which have been written in full, one path per line of a file which is appended to as outputs are finished.
+   */
+  private static class Checkpoint {
+    private final Set<String> done = Collections.newSetFromMap(new java.util.concurrent.ConcurrentHashMap<>());
+    private final Writer writer;
+
+    private Checkpoint(File file) throws IOException {
+      if (file.exists()) {
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+          if ( ! line.isEmpty()) {
+            done.add(line);
+          }
+        }
+        logger.info("Resuming from checkpoint " + file + ": " + done.size() + " outputs already written");
+      }
+      this.writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private boolean isDone(String outputFilename) {
+      return done.contains(outputFilename);
+    }
+
+    private synchronized void markDone(String outputFilename) {
+      done.add(outputFilename);
+      try {
+        writer.write(outputFilename);
+        writer.write('\n');
+        writer.flush();
+      } catch (IOException e) {
+        throw new RuntimeIOException(e);
+      }
+    }
+
+    private synchronized void close() {
+      IOUtils.closeIgnoringExceptions(writer);
+    }
+  }
+
+}
@@ -50,7 +50,7 @@ public class JSONOutputter extends AnnotationOutputter {
   @SuppressWarnings("RedundantCast")  // It's lying; we need the "redundant" casts (as of 2014-09-08)
   @Override
   public void print(Annotation doc, OutputStream target, Options options) throws IOException {
-    PrintWriter writer = new PrintWriter(IOUtils.encodedOutputStreamWriter(target, options.encoding));
+    PrintWriter writer = new PrintWriter(new BufferedWriter(IOUtils.encodedOutputStreamWriter(target, options.encoding)));
     JSONWriter l0 = new JSONWriter(writer, options);
 
     l0.object(l1 -> {
@@ -341,43 +341,69 @@ public class JSONOutputter extends AnnotationOutputter {
    * Our very own little JSON writing class.
    * For usage, see the test cases in JSONOutputterTest.
    *
+   * Values are written as soon as they are set: a Stream value is written as it is consumed, and an object
+   * given as a callback is written as the callback sets its fields, so a document can be written without
+   * ever holding more than the value currently being written.
+   *
    * For the love of all that is holy, don't try to write JSON multithreaded.
    * It should go without saying that this is not threadsafe.
    */
   public static class JSONWriter {
     protected final PrintWriter writer;
     protected final Options options;
+    /** The formats for floating point values; DecimalFormats are expensive to create */
+    private final DecimalFormat floatFormat = new DecimalFormat("0.#######");
+    private final DecimalFormat doubleFormat = new DecimalFormat("0.##############");
+
     public JSONWriter(PrintWriter writer, Options options) {
       this.writer = writer;
       this.options = options;
     }
 
+    /**
+     * Writes a quoted JSON string, escaped as by {@link StringUtils#escapeJsonString(String)},
+     * without building the escaped string.
+     */
+    private void string(String str) {
+      writer.write('"');
+      int unescaped = 0;
+      for (int i = 0; i < str.length(); ++i) {
+        char ch = str.charAt(i);
+        if (ch < '\u0020' || ch == '\\' || ch == '"') {
+          writer.write(str, unescaped, i - unescaped);
+          writer.write(StringUtils.escapeJsonString(String.valueOf(ch)));
+          unescaped = i + 1;
+        }
+      }
+      writer.write(str, unescaped, str.length() - unescaped);
+      writer.write('"');
+    }
+
+    private void array(int indent, Iterator<?> elems) {
+      writer.write("["); newline();
+      while (elems.hasNext()) {
+        indent(indent + 1);
+        routeObject(indent + 1, elems.next());
+        if (elems.hasNext()) {
+          writer.write(",");
+        }
+        newline();
+      }
+      indent(indent);
+      writer.write("]");
+    }
+
     @SuppressWarnings({"unchecked", "UnnecessaryBoxing"})
     private void routeObject(int indent, Object value) {
       if (value instanceof String) {
         // Case: simple string (this is easy!)
-        writer.write("\"");
-        writer.write(StringUtils.escapeJsonString(value.toString()));
-        writer.write("\"");
+        string((String) value);
       } else if (value instanceof Collection) {
         // Case: collection
-        writer.write("["); newline();
-        Iterator<Object> elems = ((Collection<Object>) value).iterator();
-        while (elems.hasNext()) {
-          indent(indent + 1);
-          routeObject(indent + 1, elems.next());
-          if (elems.hasNext()) {
-            writer.write(",");
-          }
-          newline();
-        }
-        indent(indent);
-        writer.write("]");
+        array(indent, ((Collection<Object>) value).iterator());
       } else if (value instanceof Enum) {
         // Case: enumeration constant
-        writer.write("\"");
-        writer.write(StringUtils.escapeJsonString(((Enum) value).name()));
-        writer.write("\"");
+        string(((Enum) value).name());
       } else if (value instanceof Pair) {
         routeObject(indent, Arrays.asList(((Pair) value).first, ((Pair) value).second));
       } else if (value instanceof Span) {
@@ -389,7 +415,8 @@ public class JSONOutputter extends AnnotationOutputter {
       } else if (value instanceof Consumer) {
         object(indent, (Consumer<Writer>) value);
       } else if (value instanceof Stream) {
-        routeObject(indent, ((Stream) value).collect(Collectors.toList()));
+        // written as it is consumed, rather than collected first
+        array(indent, ((Stream<Object>) value).iterator());
       } else if (value.getClass().isArray()) {
         // Arrays make life miserable in Java
         Class<?> componentType = value.getClass().getComponentType();
@@ -462,9 +489,9 @@ public class JSONOutputter extends AnnotationOutputter {
       } else if (value instanceof Character) {
         writer.write(Character.toString((Character) value));
       } else if (value instanceof Float) {
-        writer.write(new DecimalFormat("0.#######").format(value));
+        writer.write(floatFormat.format(value));
       } else if (value instanceof Double) {
-        writer.write(new DecimalFormat("0.##############").format(value));
+        writer.write(doubleFormat.format(value));
       } else if (value instanceof Boolean) {
         writer.write(Boolean.toString((Boolean) value));
       } else if (int.class.isAssignableFrom(value.getClass())) {
@@ -501,9 +528,8 @@ public class JSONOutputter extends AnnotationOutputter {
           // Write the key
           newline();
           indent(indent + 1);
-          writer.write("\"");
-          writer.write(StringUtils.escapeJsonString(key));
-          writer.write("\":"); space();
+          string(key);
+          writer.write(":"); space();
           // Write the value
           routeObject(indent + 1, value);
         }
@@ -398,55 +398,68 @@ public class KBPAnnotator implements Annotator {
         continue;
       }
       // sentence isn't too long, so continue processing this sentence
-      for (int subjI = 0; subjI < candidates.size(); ++subjI) {
-        CoreMap subj = candidates.get(subjI);
-        int subjBegin = subj.get(CoreAnnotations.TokensAnnotation.class).get(0).index() - 1;
-        int subjEnd = subj.get(CoreAnnotations.TokensAnnotation.class).get(subj.get(CoreAnnotations.TokensAnnotation.class).size() - 1).index();
-        Optional<KBPRelationExtractor.NERTag> subjNER = KBPRelationExtractor.NERTag.fromString(subj.get(CoreAnnotations.NamedEntityTagAnnotation.class));
-        if (subjNER.isPresent()) {
-          for (int objI = 0; objI < candidates.size(); ++objI) {
-            if (subjI == objI) {
-              continue;
-            }
-            if (Thread.interrupted()) {
-              throw new RuntimeInterruptedException();
-            }
-            CoreMap obj = candidates.get(objI);
-            int objBegin = obj.get(CoreAnnotations.TokensAnnotation.class).get(0).index() - 1;
-            int objEnd = obj.get(CoreAnnotations.TokensAnnotation.class).get(obj.get(CoreAnnotations.TokensAnnotation.class).size() - 1).index();
-            Optional<KBPRelationExtractor.NERTag> objNER = KBPRelationExtractor.NERTag.fromString(obj.get(CoreAnnotations.NamedEntityTagAnnotation.class));
-
-            if (objNER.isPresent() &&
-                KBPRelationExtractor.RelationType.plausiblyHasRelation(subjNER.get(), objNER.get())) {  // type check
-              KBPRelationExtractor.KBPInput input = new KBPRelationExtractor.KBPInput(
-                  new Span(subjBegin, subjEnd),
-                  new Span(objBegin, objEnd),
-                  subjNER.get(),
-                  objNER.get(),
-                  doc.sentence(sentenceI)
-              );
-
-              //  -- BEGIN Classify
-              Pair<String, Double> prediction = extractor.classify(input);
-              //  -- END Classify
-
-              // Handle the classifier output
-              if (!KBPStatisticalExtractor.NO_RELATION.equals(prediction.first)) {
-                RelationTriple triple = new RelationTriple.WithLink(
-                    subj.get(CoreAnnotations.TokensAnnotation.class),
-                    mentionToCanonicalMention.get(subj).get(CoreAnnotations.TokensAnnotation.class),
-                    Collections.singletonList(new CoreLabel(new Word(prediction.first))),
-                    obj.get(CoreAnnotations.TokensAnnotation.class),
-                    mentionToCanonicalMention.get(obj).get(CoreAnnotations.TokensAnnotation.class),
-                    prediction.second,
-                    sentences.get(sentenceI).get(SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class),
-                    subj.get(CoreAnnotations.WikipediaEntityAnnotation.class),
-                    obj.get(CoreAnnotations.WikipediaEntityAnnotation.class)
-                    );
-                triples.add(triple);
-              }
-            }
+      // (look up the type and span of each mention once, rather than once per pair)
+      int numCandidates = candidates.size();
+      KBPRelationExtractor.NERTag[] candidateNER = new KBPRelationExtractor.NERTag[numCandidates];
+      Span[] candidateSpans = new Span[numCandidates];
+      for (int candidateI = 0; candidateI < numCandidates; ++candidateI) {
+        CoreMap candidate = candidates.get(candidateI);
+        candidateNER[candidateI] = KBPRelationExtractor.NERTag.fromString(candidate.get(CoreAnnotations.NamedEntityTagAnnotation.class)).orElse(null);
+        List<CoreLabel> candidateTokens = candidate.get(CoreAnnotations.TokensAnnotation.class);
+        candidateSpans[candidateI] = new Span(candidateTokens.get(0).index() - 1, candidateTokens.get(candidateTokens.size() - 1).index());
+      }
+      // (collect the pairs whose types could take part in some relation)
+      List<Pair<CoreMap, CoreMap>> pairs = new ArrayList<>();
+      List<KBPRelationExtractor.KBPInput> inputs = new ArrayList<>();
+      for (int subjI = 0; subjI < numCandidates; ++subjI) {
+        if (Thread.interrupted()) {
+          throw new RuntimeInterruptedException();
+        }
+        KBPRelationExtractor.NERTag subjNER = candidateNER[subjI];
+        if (subjNER == null || !KBPRelationExtractor.RelationType.plausiblyHasRelationAsEntity(subjNER)) {
+          continue;
+        }
+        for (int objI = 0; objI < numCandidates; ++objI) {
+          if (subjI == objI) {
+            continue;
           }
+          KBPRelationExtractor.NERTag objNER = candidateNER[objI];
+          if (objNER != null &&
+              KBPRelationExtractor.RelationType.plausiblyHasRelation(subjNER, objNER)) {  // type check
+            pairs.add(Pair.makePair(candidates.get(subjI), candidates.get(objI)));
+            inputs.add(new KBPRelationExtractor.KBPInput(
+                candidateSpans[subjI],
+                candidateSpans[objI],
+                subjNER,
+                objNER,
+                doc.sentence(sentenceI)
+            ));
+          }
+        }
+      }
+
+      //  -- BEGIN Classify
+      List<Pair<String, Double>> predictions = extractor.classify(inputs);
+      //  -- END Classify
+
+      // Handle the classifier output
+      for (int pairI = 0; pairI < pairs.size(); ++pairI) {
+        CoreMap subj = pairs.get(pairI).first;
+        CoreMap obj = pairs.get(pairI).second;
+        Pair<String, Double> prediction = predictions.get(pairI);
+        if (!KBPStatisticalExtractor.NO_RELATION.equals(prediction.first)) {
+          RelationTriple triple = new RelationTriple.WithLink(
+              subj.get(CoreAnnotations.TokensAnnotation.class),
+              mentionToCanonicalMention.get(subj).get(CoreAnnotations.TokensAnnotation.class),
+              Collections.singletonList(new CoreLabel(new Word(prediction.first))),
+              obj.get(CoreAnnotations.TokensAnnotation.class),
+              mentionToCanonicalMention.get(obj).get(CoreAnnotations.TokensAnnotation.class),
+              prediction.second,
+              sentences.get(sentenceI).get(SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class),
+              subj.get(CoreAnnotations.WikipediaEntityAnnotation.class),
+              obj.get(CoreAnnotations.WikipediaEntityAnnotation.class)
+              );
+          triples.add(triple);
         }
       }
 
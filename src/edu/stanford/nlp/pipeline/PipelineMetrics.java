@@ -0,0 +1,265 @@
+package edu.stanford.nlp.pipeline;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.LatencyHistogram;
+import edu.stanford.nlp.util.StringUtils;
+
+/**
+ * Metrics on what a CoreNLP pipeline (and the server running it) has been doing:
+ * the latency and allocation of each annotator, the documents, sentences and tokens
+ * annotated, and whatever counters and gauges the owner registers.
+ * These are printed in the Prometheus text exposition format by {@link #toPrometheus()}.
+ *
+ * <p>
+ *   An {@link AnnotationPipeline} records into one of these only if it has been given one
+ *   with {@link AnnotationPipeline#setMetrics(PipelineMetrics)}; otherwise it pays only for a null check.
+ *   Everything here can be recorded from many threads at once.
+ * </p>
+ *
+ * <p>
+ *   Allocation is measured with {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}
+ *   on the thread calling the annotator, so allocation on threads an annotator starts itself is not counted.
+ *   It is not reported on JVMs which do not support it.
+ * </p>
+ */
+public class PipelineMetrics {
+
+  /** The latency buckets of annotators, in milliseconds; finer at the low end than the default, as most annotators are fast */
+  private static final long[] ANNOTATOR_BOUNDS_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+  /** The JVM's per-thread allocation counter, or null if it doesn't have one */
+  private static final com.sun.management.ThreadMXBean threadBean = threadBean();
+
+  private static com.sun.management.ThreadMXBean threadBean() {
+    try {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (sunBean.isThreadAllocatedMemorySupported()) {
+          if ( ! sunBean.isThreadAllocatedMemoryEnabled()) {
+            sunBean.setThreadAllocatedMemoryEnabled(true);
+          }
+          return sunBean;
+        }
+      }
+    } catch (Throwable t) {
+      // not a HotSpot-like JVM, or not allowed to turn the counter on
+    }
+    return null;
+  }
+
+  /** The timing and allocation of one annotator */
+  private static class AnnotatorStats {
+    private final LatencyHistogram latency = new LatencyHistogram(ANNOTATOR_BOUNDS_MILLIS);
+    private final AtomicLong allocatedBytes = new AtomicLong();
+  }
+
+  /** A metric registered by the owner of these metrics */
+  private static class Registered {
+    private final String help;
+    private final String type;
+    private final DoubleSupplier value;
+
+    private Registered(String help, String type, DoubleSupplier value) {
+      this.help = help;
+      this.type = type;
+      this.value = value;
+    }
+  }
+
+  /** The prefix of the name of every metric */
+  private final String prefix;
+
+  private final Map<String, AnnotatorStats> annotators = new ConcurrentSkipListMap<>();
+  private final AtomicLong documents = new AtomicLong();
+  private final AtomicLong sentences = new AtomicLong();
+  private final AtomicLong tokens = new AtomicLong();
+  private final Map<String, Registered> registered = new ConcurrentSkipListMap<>();
+  private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+  private final Map<String, String> histogramHelp = new ConcurrentSkipListMap<>();
+
+  /**
+   * @param prefix The prefix of the name of every metric, e.g., <code>corenlp</code>.
+   */
+  public PipelineMetrics(String prefix) {
+    this.prefix = prefix;
+  }
+
+  public PipelineMetrics() {
+    this("corenlp");
+  }
+
+  /**
+   * The number of bytes the current thread has allocated so far, or -1 if the JVM can't tell us.
+   * The difference of two calls is what the thread allocated in between.
+   */
+  public static long allocatedBytes() {
+    return threadBean == null ? -1 : threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Record one call of an annotator.
+   *
+   * @param annotator The annotator which was run.
+   * @param nanos How long it took, in nanoseconds.
+   * @param allocatedBytes How many bytes it allocated, or a negative number if unknown.
+   */
+  public void recordAnnotator(Annotator annotator, long nanos, long allocatedBytes) {
+    AnnotatorStats stats = annotators.computeIfAbsent(StringUtils.getShortClassName(annotator), name -> new AnnotatorStats());
+    stats.latency.recordNanos(nanos);
+    if (allocatedBytes > 0) {
+      stats.allocatedBytes.addAndGet(allocatedBytes);
+    }
+  }
+
+  /** Record that a document has been annotated, counting its sentences and tokens. */
+  public void recordDocument(Annotation annotation) {
+    documents.incrementAndGet();
+    List<CoreMap> sentenceList = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+    if (sentenceList != null) {
+      sentences.addAndGet(sentenceList.size());
+    }
+    List<?> tokenList = annotation.get(CoreAnnotations.TokensAnnotation.class);
+    if (tokenList != null) {
+      tokens.addAndGet(tokenList.size());
+    }
+  }
+
+  /**
+   * Register a counter: a number which only goes up.
+   *
+   * @param name The name of the counter, without the prefix; by convention this ends in <code>_total</code>.
+   * @param help A description of the counter.
+   * @return The counter, to increment.
+   */
+  public AtomicLong counter(String name, String help) {
+    AtomicLong counter = new AtomicLong();
+    registered.put(name, new Registered(help, "counter", counter::get));
+    return counter;
+  }
+
+  /**
+   * Register a gauge: a number which is read off when the metrics are printed, such as a queue length.
+   *
+   * @param name The name of the gauge, without the prefix.
+   * @param help A description of the gauge.
+   * @param value Computes the value of the gauge. This should be cheap, and safe to call from any thread.
+   */
+  public void gauge(String name, String help, DoubleSupplier value) {
+    registered.put(name, new Registered(help, "gauge", value));
+  }
+
+  /**
+   * Register a histogram of latencies, which are printed in seconds.
+   *
+   * @param name The name of the histogram, without the prefix; by convention this ends in <code>_seconds</code>.
+   * @param help A description of the histogram.
+   * @return The histogram, to record latencies in milliseconds (or nanoseconds) into.
+   */
+  public LatencyHistogram histogram(String name, String help) {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histograms.put(name, histogram);
+    histogramHelp.put(name, help);
+    return histogram;
+  }
+
+  /** The latencies of an annotator so far, by the short class name of the annotator, or null if it has not been run. */
+  public LatencyHistogram annotatorLatency(String annotator) {
+    AnnotatorStats stats = annotators.get(annotator);
+    return stats == null ? null : stats.latency.snapshot();
+  }
+
+  /** The number of documents recorded with {@link #recordDocument(Annotation)}. */
+  public long documents() {
+    return documents.get();
+  }
+
+  /**
+   * Print these metrics in the Prometheus text exposition format (version 0.0.4).
+   */
+  public String toPrometheus() {
+    StringBuilder out = new StringBuilder();
+    // Annotators
+    if ( ! annotators.isEmpty()) {
+      header(out, "annotator_latency_seconds", "The time taken by each call of an annotator.", "histogram");
+      for (Map.Entry<String, AnnotatorStats> entry : annotators.entrySet()) {
+        writeHistogram(out, prefix + "_annotator_latency_seconds", "annotator=\"" + escape(entry.getKey()) + "\",", entry.getValue().latency);
+      }
+      if (threadBean != null) {
+        header(out, "annotator_allocated_bytes_total", "The bytes allocated by an annotator on the thread calling it.", "counter");
+        for (Map.Entry<String, AnnotatorStats> entry : annotators.entrySet()) {
+          out.append(prefix).append("_annotator_allocated_bytes_total{annotator=\"").append(escape(entry.getKey())).append("\"} ")
+              .append(entry.getValue().allocatedBytes.get()).append('\n');
+        }
+      }
+    }
+    // Throughput
+    header(out, "documents_total", "The documents annotated.", "counter");
+    out.append(prefix).append("_documents_total ").append(documents.get()).append('\n');
+    header(out, "sentences_total", "The sentences in the documents annotated.", "counter");
+    out.append(prefix).append("_sentences_total ").append(sentences.get()).append('\n');
+    header(out, "tokens_total", "The tokens in the documents annotated.", "counter");
+    out.append(prefix).append("_tokens_total ").append(tokens.get()).append('\n');
+    // Registered histograms
+    for (Map.Entry<String, String> entry : histogramHelp.entrySet()) {
+      header(out, entry.getKey(), entry.getValue(), "histogram");
+      writeHistogram(out, prefix + '_' + entry.getKey(), "", histograms.get(entry.getKey()));
+    }
+    // Registered counters and gauges
+    for (Map.Entry<String, Registered> entry : registered.entrySet()) {
+      header(out, entry.getKey(), entry.getValue().help, entry.getValue().type);
+      out.append(prefix).append('_').append(entry.getKey()).append(' ').append(number(entry.getValue().value.getAsDouble())).append('\n');
+    }
+    return out.toString();
+  }
+
+  private void header(StringBuilder out, String name, String help, String type) {
+    out.append("# HELP ").append(prefix).append('_').append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+    out.append("# TYPE ").append(prefix).append('_').append(name).append(' ').append(type).append('\n');
+  }
+
+  /**
+   * Write a histogram of latencies in milliseconds as a Prometheus histogram in seconds.
+   *
+   * @param labels The labels of the histogram, each followed by a comma, or the empty string.
+   */
+  private static void writeHistogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+    long[] bounds = histogram.bounds();
+    long[] counts = histogram.counts();
+    long cumulative = 0;
+    for (int i = 0; i < bounds.length; ++i) {
+      cumulative += counts[i];
+      out.append(name).append("_bucket{").append(labels).append("le=\"").append(number(bounds[i] / 1000.0)).append("\"} ")
+          .append(cumulative).append('\n');
+    }
+    cumulative += counts[bounds.length];
+    out.append(name).append("_bucket{").append(labels).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+    String bareLabels = labels.isEmpty() ? "" : '{' + labels.substring(0, labels.length() - 1) + '}';
+    out.append(name).append("_sum").append(bareLabels).append(' ').append(number(histogram.sumNanos() / 1e9)).append('\n');
+    out.append(name).append("_count").append(bareLabels).append(' ').append(cumulative).append('\n');
+  }
+
+  /** A number as Prometheus prints it: integers without a decimal point */
+  private static String number(double value) {
+    if (value == Math.rint(value) && ! Double.isInfinite(value) && Math.abs(value) < 1e15) {
+      return Long.toString((long) value);
+    }
+    return String.format(Locale.ROOT, "%s", value);
+  }
+
+  /** Escape a label value */
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+}
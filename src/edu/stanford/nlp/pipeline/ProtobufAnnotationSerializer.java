@@ -29,8 +29,16 @@ import edu.stanford.nlp.trees.TreeCoreAnnotations.*;
 import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations.*;
 import edu.stanford.nlp.time.TimeAnnotations.*;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import edu.stanford.nlp.io.RuntimeIOException;
+
 import java.io.*;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import edu.stanford.nlp.coref.CorefCoreAnnotations.*;
@@ -175,15 +183,110 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
    */
   public ProtobufAnnotationSerializer(boolean enforceLosslessSerialization) { this.enforceLosslessSerialization = enforceLosslessSerialization; }
 
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   *
+   * <p>
+   *   The Document message for the whole corpus is never built: the document-level fields are built on their own,
+   *   and each sentence is converted and serialized in turn, so that only one sentence's message is in memory at a time.
+   *   The bytes written are exactly those of <code>toProto(corpus).writeDelimitedTo(os)</code>.
+   *   Since a delimited message starts with its length, every serialized sentence is held in memory
+   *   until the whole document can be written, so this needs about as much memory as the serialized document.
+   *   For large documents, use {@link ProtobufAnnotationSerializer#writeUndelimited(Annotation, OutputStream)},
+   *   which writes each sentence as soon as it is converted.
+   * </p>
+   */
   @Override
   public OutputStream write(Annotation corpus, OutputStream os) throws IOException {
-    CoreNLPProtos.Document serialized = toProto(corpus);
-    serialized.writeDelimitedTo(os);
+    List<CoreMap> sentences = corpus.get(SentencesAnnotation.class);
+    if (sentences == null) {
+      // Nothing worth streaming
+      toProto(corpus).writeDelimitedTo(os);
+      os.flush();
+      return os;
+    }
+    CoreNLPProtos.Document.Builder rest = toProtoBuilderWithoutSentences(corpus);
+    String text = rest.getText();
+    rest.clearText();
+    CoreNLPProtos.Document restProto = rest.buildPartial();
+
+    List<byte[]> serializedSentences = new ArrayList<>(sentences.size());
+    int size = CodedOutputStream.computeStringSize(CoreNLPProtos.Document.TEXT_FIELD_NUMBER, text);
+    for (CoreMap sentence : sentences) {
+      byte[] serialized = toProto(sentence).toByteArray();
+      serializedSentences.add(serialized);
+      size += CodedOutputStream.computeTagSize(CoreNLPProtos.Document.SENTENCE_FIELD_NUMBER) +
+          CodedOutputStream.computeUInt32SizeNoTag(serialized.length) + serialized.length;
+    }
+    size += restProto.getSerializedSize();
+
+    // Fields are written in field number order, as the generated code would write them
+    CodedOutputStream out = CodedOutputStream.newInstance(os);
+    out.writeUInt32NoTag(size);
+    out.writeString(CoreNLPProtos.Document.TEXT_FIELD_NUMBER, text);
+    for (ListIterator<byte[]> iter = serializedSentences.listIterator(); iter.hasNext(); ) {
+      byte[] serialized = iter.next();
+      iter.set(null);  // let the sentence be collected once it's written
+      out.writeTag(CoreNLPProtos.Document.SENTENCE_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+      out.writeUInt32NoTag(serialized.length);
+      out.writeRawBytes(serialized);
+    }
+    restProto.writeTo(out);
+    out.flush();
+    os.flush();
+    return os;
+  }
+
+  /**
+   * Write a single, undelimited protocol buffer for this document, which can be read back with
+   * {@link ProtobufAnnotationSerializer#readUndelimited(File)}.
+   * Unlike {@link ProtobufAnnotationSerializer#write(Annotation, OutputStream)}, the length of the message
+   * need not be known in advance, so each sentence is written to the stream as soon as it is converted.
+   *
+   * @param corpus The document to write.
+   * @param os The stream to write it to.
+   * @return The stream written to.
+   * @throws IOException In case the stream cannot be written to.
+   */
+  public OutputStream writeUndelimited(Annotation corpus, OutputStream os) throws IOException {
+    List<CoreMap> sentences = corpus.get(SentencesAnnotation.class);
+    if (sentences == null) {
+      toProto(corpus).writeTo(os);
+      os.flush();
+      return os;
+    }
+    CoreNLPProtos.Document.Builder rest = toProtoBuilderWithoutSentences(corpus);
+    String text = rest.getText();
+    rest.clearText();
+    CodedOutputStream out = CodedOutputStream.newInstance(os);
+    out.writeString(CoreNLPProtos.Document.TEXT_FIELD_NUMBER, text);
+    for (CoreMap sentence : sentences) {
+      out.writeMessage(CoreNLPProtos.Document.SENTENCE_FIELD_NUMBER, toProto(sentence));
+    }
+    rest.buildPartial().writeTo(out);
+    out.flush();
     os.flush();
     return os;
   }
 
+  /**
+   * Builds the Document proto for everything in this document except its sentences (and the tokens
+   * they contain), checking that the serialization is lossless as {@link ProtobufAnnotationSerializer#toProto(Annotation)} does.
+   * The sentences are serialized separately by the streaming writers.
+   */
+  private CoreNLPProtos.Document.Builder toProtoBuilderWithoutSentences(Annotation doc) {
+    Annotation withoutSentences = new Annotation(doc);
+    withoutSentences.remove(SentencesAnnotation.class);
+    withoutSentences.remove(TokensAnnotation.class);  // note(gabor): tokens are saved in the sentence
+    Set<Class<?>> keysToSerialize = new HashSet<>(withoutSentences.keySet());
+    CoreNLPProtos.Document.Builder builder = toProtoBuilder(withoutSentences, keysToSerialize);
+    // Completeness Check
+    if (enforceLosslessSerialization && !keysToSerialize.isEmpty()) {
+      throw new LossySerializationException("Keys are not being serialized: " + StringUtils.join(keysToSerialize));
+    }
+    return builder;
+  }
+
   /** {@inheritDoc} */
   @Override
   public Pair<Annotation, InputStream> read(InputStream is) throws IOException, ClassNotFoundException, ClassCastException {
@@ -214,6 +317,141 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
     return fromProto(doc);
   }
 
+  /**
+   * A Document proto whose sentences are kept serialized until they are asked for.
+   * The document-level fields are parsed up front into {@link LazyDocument#header()};
+   * each sentence is parsed the first time it is requested.
+   * The serialized sentences share the buffer the document was read into, rather than being copied out of it.
+   *
+   * @see ProtobufAnnotationSerializer#readLazily(InputStream)
+   * @see ProtobufAnnotationSerializer#parseLazily(byte[])
+   */
+  public static class LazyDocument {
+    private final CoreNLPProtos.Document header;
+    private final List<ByteString> serializedSentences;
+    private final CoreNLPProtos.Sentence[] sentences;
+
+    private LazyDocument(CoreNLPProtos.Document header, List<ByteString> serializedSentences) {
+      this.header = header;
+      this.serializedSentences = serializedSentences;
+      this.sentences = new CoreNLPProtos.Sentence[serializedSentences.size()];
+    }
+
+    /** The document, without its sentences. */
+    public CoreNLPProtos.Document header() {
+      return header;
+    }
+
+    public int numSentences() {
+      return sentences.length;
+    }
+
+    /** The serialized bytes of the given sentence. */
+    public ByteString serializedSentence(int i) {
+      return serializedSentences.get(i);
+    }
+
+    /** The given sentence, parsed on the first call. */
+    public synchronized CoreNLPProtos.Sentence sentence(int i) {
+      if (sentences[i] == null) {
+        try {
+          sentences[i] = CoreNLPProtos.Sentence.parseFrom(serializedSentences.get(i));
+        } catch (InvalidProtocolBufferException e) {
+          throw new RuntimeIOException(e);
+        }
+      }
+      return sentences[i];
+    }
+
+    /** The whole document, parsing any sentences which have not been parsed yet. */
+    public CoreNLPProtos.Document toProto() {
+      CoreNLPProtos.Document.Builder builder = header.toBuilder();
+      for (int i = 0; i < sentences.length; ++i) {
+        builder.addSentence(sentence(i));
+      }
+      return builder.build();
+    }
+  }
+
+  /**
+   * Read the next length-delimited document from the stream, as {@link ProtobufAnnotationSerializer#read(InputStream)} does,
+   * but leaving its sentences serialized until they are needed.
+   *
+   * @param is The stream to read from.
+   * @return The document read, or null if the stream is at its end, paired with the stream.
+   * @throws IOException In case the stream cannot be read from.
+   */
+  public Pair<LazyDocument, InputStream> readLazily(InputStream is) throws IOException {
+    int firstByte = is.read();
+    if (firstByte == -1) {
+      return Pair.makePair(null, is);
+    }
+    int size = CodedInputStream.readRawVarint32(firstByte, is);
+    byte[] bytes = new byte[size];
+    new DataInputStream(is).readFully(bytes);
+    return Pair.makePair(parseLazily(bytes), is);
+  }
+
+  /**
+   * Parse a single, undelimited Document protocol buffer, leaving its sentences serialized until they are needed.
+   *
+   * @param bytes The serialized document. This array is shared by the returned document, and should not be modified.
+   * @return The parsed document.
+   * @throws IOException If the bytes are not a valid Document.
+   */
+  public static LazyDocument parseLazily(byte[] bytes) throws IOException {
+    CodedInputStream in = CodedInputStream.newInstance(bytes);
+    in.enableAliasing(true);  // sentences are slices of the array, not copies
+    ByteString.Output headerBytes = ByteString.newOutput();
+    List<ByteString> sentences = new ArrayList<>();
+    int fieldStart = in.getTotalBytesRead();
+    for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+      if (WireFormat.getTagFieldNumber(tag) == CoreNLPProtos.Document.SENTENCE_FIELD_NUMBER &&
+          WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+        sentences.add(in.readBytes());
+      } else {
+        // Any other field goes into the header as it is, tag and all
+        boolean more = in.skipField(tag);
+        headerBytes.write(bytes, fieldStart, in.getTotalBytesRead() - fieldStart);
+        if ( ! more) {
+          break;
+        }
+      }
+      fieldStart = in.getTotalBytesRead();
+    }
+    return new LazyDocument(CoreNLPProtos.Document.parseFrom(headerBytes.toByteString()), sentences);
+  }
+
+  /**
+   * The sentences of a lazily read document, each converted to a CoreMap the first time it is accessed.
+   * As with {@link ProtobufAnnotationSerializer#fromProto(CoreNLPProtos.Sentence)}, each sentence has its own tokens,
+   * rather than sharing them with a document token list; use
+   * {@link ProtobufAnnotationSerializer#fromProto(LazyDocument)} to read the document as a whole.
+   */
+  @SuppressWarnings("deprecation")
+  public List<CoreMap> sentences(LazyDocument doc) {
+    CoreMap[] converted = new CoreMap[doc.numSentences()];
+    return new AbstractList<CoreMap>() {
+      @Override
+      public synchronized CoreMap get(int index) {
+        if (converted[index] == null) {
+          converted[index] = fromProto(doc.sentence(index));
+        }
+        return converted[index];
+      }
+
+      @Override
+      public int size() {
+        return converted.length;
+      }
+    };
+  }
+
+  /** Read a lazily read document as a whole, exactly as {@link ProtobufAnnotationSerializer#fromProto(CoreNLPProtos.Document)} would. */
+  public Annotation fromProto(LazyDocument doc) {
+    return fromProto(doc.toProto());
+  }
+
   /**
    * Get a particular key from a CoreMap, registering it as being retrieved.
    * @param map The CoreMap to retrieve the key from.
@@ -1416,6 +1654,38 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
   }
 
 
+  /**
+   * As {@link ProtobufAnnotationSerializer#fromProtoNoTokens(CoreNLPProtos.Sentence)}, but the parse trees are
+   * only rebuilt the first time they are retrieved.
+   * The rest of the sentence is read by {@link ProtobufAnnotationSerializer#fromProtoNoTokens(CoreNLPProtos.Sentence)},
+   * so that subclasses reading their own fields still see them.
+   */
+  private CoreMap fromProtoNoTokensLazily(CoreNLPProtos.Sentence proto) {
+    CoreNLPProtos.Sentence withoutTrees = proto.toBuilder()
+        .clearParseTree().clearBinarizedParseTree().clearKBestParseTrees().clearAnnotatedParseTree().build();
+    LazyCoreMap sentence = new LazyCoreMap(fromProtoNoTokens(withoutTrees));
+    if (proto.hasParseTree()) { sentence.setLazily(TreeAnnotation.class, () -> fromProto(proto.getParseTree())); }
+    if (proto.hasBinarizedParseTree()) { sentence.setLazily(BinarizedTreeAnnotation.class, () -> fromProto(proto.getBinarizedParseTree())); }
+    if (proto.getKBestParseTreesCount() > 0) {
+      sentence.setLazily(KBestTreesAnnotation.class, () ->
+          proto.getKBestParseTreesList().stream().map(this::fromProto).collect(Collectors.toCollection(LinkedList::new)));
+    }
+    if (proto.hasAnnotatedParseTree()) { sentence.setLazily(SentimentCoreAnnotations.SentimentAnnotatedTree.class, () -> fromProto(proto.getAnnotatedParseTree())); }
+    return sentence;
+  }
+
+  /**
+   * Set the value of a key in a sentence being read, or, if the sentence is being read lazily,
+   * defer computing the value until it is retrieved.
+   */
+  private static <V> void setOrDefer(CoreMap sentence, Class<? extends TypesafeMap.Key<V>> key, Supplier<V> value) {
+    if (sentence instanceof LazyCoreMap) {
+      ((LazyCoreMap) sentence).setLazily(key, value);
+    } else {
+      sentence.set(key, value.get());
+    }
+  }
+
   protected void loadSentenceMentions(CoreNLPProtos.Sentence proto, CoreMap sentence) {
     // add all Mentions for this sentence
     if (proto.getHasCorefMentionsAnnotation()) {
@@ -1476,8 +1746,54 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
    * @param proto The protocol buffer to read the document from.
    * @return An Annotation corresponding to the read protobuf.
    */
-  @SuppressWarnings("deprecation")
   public Annotation fromProto(CoreNLPProtos.Document proto) {
+    return fromProto(proto, false);
+  }
+
+  /**
+   * Returns the same document as {@link ProtobufAnnotationSerializer#fromProto(CoreNLPProtos.Document)}, except that
+   * the more expensive sentence-level annotations are only rebuilt from the protocol buffer the first time they
+   * are retrieved from their sentence.
+   * These are the parse trees ({@link TreeAnnotation}, {@link BinarizedTreeAnnotation}, {@link KBestTreesAnnotation}
+   * and the sentiment tree), the dependency graphs, the entailed sentences and clauses, and the OpenIE triples.
+   * Each sentence is a {@link LazyCoreMap}; the document and tokens are rebuilt as usual.
+   * Everything else which refers to these annotations (e.g., coref mentions) rebuilds them when it is read.
+   *
+   * @param proto The protocol buffer to read the document from.
+   * @return An Annotation corresponding to the read protobuf, with some of its sentence annotations not yet rebuilt.
+   */
+  public Annotation fromProtoLazily(CoreNLPProtos.Document proto) {
+    return fromProto(proto, true);
+  }
+
+  /**
+   * As {@link ProtobufAnnotationSerializer#fromProtoLazily(CoreNLPProtos.Document)}, for a document read with
+   * {@link ProtobufAnnotationSerializer#readLazily(InputStream)}.
+   * Here the sentences are not even parsed until they are used: the document is read from its header, and each
+   * sentence is parsed and read the first time it is retrieved from the {@link SentencesAnnotation} list.
+   * The document's {@link TokensAnnotation} and entity mentions share the sentences' tokens and mentions,
+   * and so read every sentence the first time they are used.
+   * Coref chains, coref mentions, quotes and sections refer across sentences, so a document with any of these
+   * has all of its sentences parsed up front.
+   */
+  public Annotation fromProtoLazily(LazyDocument doc) {
+    CoreNLPProtos.Document header = doc.header();
+    if (header.getHasCorefAnnotation() || header.getHasCorefMentionAnnotation() || header.getCorefChainCount() > 0 ||
+        header.getQuoteCount() > 0 || (header.hasXmlDoc() && header.getXmlDoc()) || doc.numSentences() == 0) {
+      return fromProto(doc.toProto(), true);
+    }
+    Annotation ann = fromProto(header, true);
+    LazySentenceList sentences = new LazySentenceList(doc, ann);
+    ann.set(SentencesAnnotation.class, sentences);
+    ann.set(TokensAnnotation.class, new DeferredList<>(sentences::tokens));
+    if (header.getHasEntityMentionsAnnotation()) {
+      ann.set(CoreAnnotations.MentionsAnnotation.class, new DeferredList<>(sentences::mentions));
+    }
+    return ann;
+  }
+
+  @SuppressWarnings("deprecation")
+  private Annotation fromProto(CoreNLPProtos.Document proto, boolean lazy) {
     if (Thread.interrupted()) {
       throw new RuntimeInterruptedException();
     }
@@ -1543,7 +1859,7 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
     List<CoreMap> sentences = new ArrayList<>(proto.getSentenceCount());
     for (int sentIndex = 0; sentIndex < proto.getSentenceCount(); ++sentIndex) {
       CoreNLPProtos.Sentence sentence = proto.getSentence(sentIndex);
-      CoreMap map = fromProtoNoTokens(sentence);
+      CoreMap map = lazy ? fromProtoNoTokensLazily(sentence) : fromProtoNoTokens(sentence);
       if (!tokens.isEmpty() && sentence.hasTokenOffsetBegin() && sentence.hasTokenOffsetEnd() &&
           map.get(TokensAnnotation.class) == null) {
         // Set tokens for sentence
@@ -1551,50 +1867,7 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
         int tokenEnd = sentence.getTokenOffsetEnd();
         assert tokenBegin <= tokens.size() && tokenBegin <= tokenEnd;
         assert tokenEnd <= tokens.size();
-        map.set(TokensAnnotation.class, tokens.subList(tokenBegin, tokenEnd));
-        // Set sentence index + token index + paragraph index
-        for (int i = tokenBegin; i < tokenEnd; ++i) {
-          CoreLabel token = tokens.get(i);
-          if (token != null) {
-            token.setSentIndex(sentIndex);
-            token.setIndex(i - sentence.getTokenOffsetBegin() + 1);
-            if (sentence.hasParagraph()) {
-              token.set(ParagraphAnnotation.class, sentence.getParagraph());
-            }
-          }
-        }
-        // Set text
-        int characterBegin = sentence.getCharacterOffsetBegin();
-        int characterEnd = sentence.getCharacterOffsetEnd();
-        if (characterEnd <= proto.getText().length()) {
-          // The usual case -- get the text from the document text
-          map.set(TextAnnotation.class, proto.getText().substring(characterBegin, characterEnd));
-        } else {
-          // The document text is wrong -- guess the text from the tokens
-          map.set(TextAnnotation.class, recoverOriginalText(tokens.subList(tokenBegin, tokenEnd), sentence));
-        }
-        // add entity mentions for this sentence
-        List<CoreMap> mentions = sentence.getMentionsList().stream().map(this::fromProto).collect(Collectors.toList());
-        // add tokens to each entity mention
-        for (CoreMap entityMention : mentions) {
-          List<CoreLabel> entityMentionTokens = new ArrayList<>();
-          for (int tokenIndex = entityMention.get(TokenBeginAnnotation.class) ;
-               tokenIndex < entityMention.get(TokenEndAnnotation.class) ; tokenIndex++ ) {
-            entityMentionTokens.add(tokens.get(tokenIndex));
-          }
-          int emCharOffsetBegin = entityMentionTokens.get(0).get(CharacterOffsetBeginAnnotation.class);
-          int emCharOffsetEnd =
-              entityMentionTokens.get(entityMentionTokens.size()-1).get(CharacterOffsetEndAnnotation.class);
-          // set character offsets
-          entityMention.set(CharacterOffsetBeginAnnotation.class, emCharOffsetBegin);
-          entityMention.set(CharacterOffsetEndAnnotation.class, emCharOffsetEnd);
-          entityMention.set(CoreAnnotations.TokensAnnotation.class, entityMentionTokens);
-          String entityMentionText =
-              entityMentionTokens.stream().map(CoreLabel::word).collect(Collectors.joining(" "));
-          entityMention.set(CoreAnnotations.TextAnnotation.class, entityMentionText);
-        }
-        if (sentence.getHasEntityMentionsAnnotation())
-          map.set(CoreAnnotations.MentionsAnnotation.class, mentions);
+        List<CoreMap> mentions = setSentenceTokens(map, sentence, sentIndex, tokens.subList(tokenBegin, tokenEnd), proto.getText());
         // add to document level list of entity mentions
         for (CoreMap sentenceEM : mentions) {
           ann.get(CoreAnnotations.MentionsAnnotation.class).add(sentenceEM);
@@ -1641,51 +1914,12 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
     HashMap<Integer, CoreNLPProtos.Mention> idToProtoMention = new HashMap<>();
 
     // Set things in the sentence that need a document context.
+    String documentId = docid;
     for (int sentenceIndex = 0; sentenceIndex < proto.getSentenceCount(); ++sentenceIndex) {
       CoreNLPProtos.Sentence sentence = proto.getSentenceList().get(sentenceIndex);
       CoreMap map = sentences.get(sentenceIndex);
       List<CoreLabel> sentenceTokens = map.get(TokensAnnotation.class);
-      // Set dependency graphs
-      if (sentence.hasBasicDependencies()) {
-        map.set(BasicDependenciesAnnotation.class, fromProto(sentence.getBasicDependencies(), sentenceTokens, docid));
-      }
-      if (sentence.hasCollapsedDependencies()) {
-        map.set(CollapsedDependenciesAnnotation.class, fromProto(sentence.getCollapsedDependencies(), sentenceTokens, docid));
-      }
-      if (sentence.hasCollapsedCCProcessedDependencies()) {
-        map.set(CollapsedCCProcessedDependenciesAnnotation.class, fromProto(sentence.getCollapsedCCProcessedDependencies(), sentenceTokens, docid));
-      }
-      if (sentence.hasAlternativeDependencies()) {
-        map.set(AlternativeDependenciesAnnotation.class, fromProto(sentence.getAlternativeDependencies(), sentenceTokens, docid));
-      }
-      if (sentence.hasEnhancedDependencies()) {
-        map.set(EnhancedDependenciesAnnotation.class, fromProto(sentence.getEnhancedDependencies(), sentenceTokens, docid));
-      }
-      if (sentence.hasEnhancedPlusPlusDependencies()) {
-        map.set(EnhancedPlusPlusDependenciesAnnotation.class, fromProto(sentence.getEnhancedPlusPlusDependencies(), sentenceTokens, docid));
-      }
-      // Set entailed sentences
-      if (sentence.getEntailedSentenceCount() > 0) {
-        Set<SentenceFragment> entailedSentences = sentence.getEntailedSentenceList().stream().map(frag -> fromProto(frag, map.get(EnhancedPlusPlusDependenciesAnnotation.class))).collect(Collectors.toSet());
-        map.set(NaturalLogicAnnotations.EntailedSentencesAnnotation.class, entailedSentences);
-      }
-      if (sentence.getEntailedClauseCount() > 0) {
-        Set<SentenceFragment> entailedClauses = sentence.getEntailedClauseList().stream().map(frag -> fromProto(frag, map.get(CollapsedDependenciesAnnotation.class))).collect(Collectors.toSet());
-        map.set(NaturalLogicAnnotations.EntailedClausesAnnotation.class, entailedClauses);
-      }
-      // Set relation triples
-      if (sentence.getOpenieTripleCount() > 0) {
-        List<RelationTriple> triples = new ArrayList<>();
-        for (CoreNLPProtos.RelationTriple triple : sentence.getOpenieTripleList()) {
-          triples.add(fromProto(triple, ann, sentenceIndex));
-        }
-        map.set(NaturalLogicAnnotations.RelationTriplesAnnotation.class, triples);
-      }
-      // Redo some light annotation
-      if ( map.containsKey(TokensAnnotation.class) &&
-          (!sentence.hasHasNumerizedTokensAnnotation() || sentence.getHasNumerizedTokensAnnotation())) {
-        map.set(NumerizedTokensAnnotation.class, NumberNormalizer.findAndMergeNumbers(map));
-      }
+      setSentenceContext(ann, map, sentence, sentenceIndex, documentId);
       // add the CoreLabel and IndexedWord info to each mention
       // when Mentions are serialized, just storing the index in the sentence for CoreLabels and IndexedWords
       // this is the point where the de-serialized sentence has tokens
@@ -1791,6 +2025,239 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
   }
 
 
+  /**
+   * Sets the tokens of a sentence being read from a document, along with the annotations that come from them:
+   * the sentence and token indices of the tokens, the text of the sentence, and its entity mentions.
+   *
+   * @param sentenceTokens The tokens of the sentence, which the document's token list (if it has one) should share.
+   * @param docText The text of the document.
+   * @return The entity mentions of the sentence, which belong in the document's list of entity mentions.
+   */
+  private List<CoreMap> setSentenceTokens(CoreMap map, CoreNLPProtos.Sentence sentence, int sentIndex,
+                                          List<CoreLabel> sentenceTokens, String docText) {
+    int tokenBegin = sentence.getTokenOffsetBegin();
+    map.set(TokensAnnotation.class, sentenceTokens);
+    // Set sentence index + token index + paragraph index
+    for (int i = 0; i < sentenceTokens.size(); ++i) {
+      CoreLabel token = sentenceTokens.get(i);
+      if (token != null) {
+        token.setSentIndex(sentIndex);
+        token.setIndex(i + 1);
+        if (sentence.hasParagraph()) {
+          token.set(ParagraphAnnotation.class, sentence.getParagraph());
+        }
+      }
+    }
+    // Set text
+    int characterBegin = sentence.getCharacterOffsetBegin();
+    int characterEnd = sentence.getCharacterOffsetEnd();
+    if (characterEnd <= docText.length()) {
+      // The usual case -- get the text from the document text
+      map.set(TextAnnotation.class, docText.substring(characterBegin, characterEnd));
+    } else {
+      // The document text is wrong -- guess the text from the tokens
+      map.set(TextAnnotation.class, recoverOriginalText(sentenceTokens, sentence));
+    }
+    // add entity mentions for this sentence
+    List<CoreMap> mentions = sentence.getMentionsList().stream().map(this::fromProto).collect(Collectors.toList());
+    // add tokens to each entity mention
+    for (CoreMap entityMention : mentions) {
+      List<CoreLabel> entityMentionTokens = new ArrayList<>();
+      for (int tokenIndex = entityMention.get(TokenBeginAnnotation.class) ;
+           tokenIndex < entityMention.get(TokenEndAnnotation.class) ; tokenIndex++ ) {
+        entityMentionTokens.add(sentenceTokens.get(tokenIndex - tokenBegin));
+      }
+      int emCharOffsetBegin = entityMentionTokens.get(0).get(CharacterOffsetBeginAnnotation.class);
+      int emCharOffsetEnd =
+          entityMentionTokens.get(entityMentionTokens.size()-1).get(CharacterOffsetEndAnnotation.class);
+      // set character offsets
+      entityMention.set(CharacterOffsetBeginAnnotation.class, emCharOffsetBegin);
+      entityMention.set(CharacterOffsetEndAnnotation.class, emCharOffsetEnd);
+      entityMention.set(CoreAnnotations.TokensAnnotation.class, entityMentionTokens);
+      String entityMentionText =
+          entityMentionTokens.stream().map(CoreLabel::word).collect(Collectors.joining(" "));
+      entityMention.set(CoreAnnotations.TextAnnotation.class, entityMentionText);
+    }
+    if (sentence.getHasEntityMentionsAnnotation())
+      map.set(CoreAnnotations.MentionsAnnotation.class, mentions);
+    return mentions;
+  }
+
+  /**
+   * Sets the annotations of a sentence being read which refer to its tokens or to the rest of the document:
+   * the dependency graphs, the entailed sentences and clauses, the OpenIE triples and the numerized tokens.
+   * The tokens of the sentence must already be set.
+   */
+  @SuppressWarnings("deprecation")
+  private void setSentenceContext(Annotation ann, CoreMap map, CoreNLPProtos.Sentence sentence, int sentenceIndex, String documentId) {
+    List<CoreLabel> sentenceTokens = map.get(TokensAnnotation.class);
+    // Set dependency graphs
+    if (sentence.hasBasicDependencies()) {
+      setOrDefer(map, BasicDependenciesAnnotation.class, () -> fromProto(sentence.getBasicDependencies(), sentenceTokens, documentId));
+    }
+    if (sentence.hasCollapsedDependencies()) {
+      setOrDefer(map, CollapsedDependenciesAnnotation.class, () -> fromProto(sentence.getCollapsedDependencies(), sentenceTokens, documentId));
+    }
+    if (sentence.hasCollapsedCCProcessedDependencies()) {
+      setOrDefer(map, CollapsedCCProcessedDependenciesAnnotation.class, () -> fromProto(sentence.getCollapsedCCProcessedDependencies(), sentenceTokens, documentId));
+    }
+    if (sentence.hasAlternativeDependencies()) {
+      setOrDefer(map, AlternativeDependenciesAnnotation.class, () -> fromProto(sentence.getAlternativeDependencies(), sentenceTokens, documentId));
+    }
+    if (sentence.hasEnhancedDependencies()) {
+      setOrDefer(map, EnhancedDependenciesAnnotation.class, () -> fromProto(sentence.getEnhancedDependencies(), sentenceTokens, documentId));
+    }
+    if (sentence.hasEnhancedPlusPlusDependencies()) {
+      setOrDefer(map, EnhancedPlusPlusDependenciesAnnotation.class, () -> fromProto(sentence.getEnhancedPlusPlusDependencies(), sentenceTokens, documentId));
+    }
+    // Set entailed sentences
+    if (sentence.getEntailedSentenceCount() > 0) {
+      setOrDefer(map, NaturalLogicAnnotations.EntailedSentencesAnnotation.class, () ->
+          sentence.getEntailedSentenceList().stream().map(frag -> fromProto(frag, map.get(EnhancedPlusPlusDependenciesAnnotation.class))).collect(Collectors.toSet()));
+    }
+    if (sentence.getEntailedClauseCount() > 0) {
+      setOrDefer(map, NaturalLogicAnnotations.EntailedClausesAnnotation.class, () ->
+          sentence.getEntailedClauseList().stream().map(frag -> fromProto(frag, map.get(CollapsedDependenciesAnnotation.class))).collect(Collectors.toSet()));
+    }
+    // Set relation triples
+    if (sentence.getOpenieTripleCount() > 0) {
+      int tripleSentenceIndex = sentenceIndex;
+      setOrDefer(map, NaturalLogicAnnotations.RelationTriplesAnnotation.class, () -> {
+        List<RelationTriple> triples = new ArrayList<>();
+        for (CoreNLPProtos.RelationTriple triple : sentence.getOpenieTripleList()) {
+          triples.add(fromProto(triple, ann, tripleSentenceIndex));
+        }
+        return triples;
+      });
+    }
+    // Redo some light annotation
+    if ( map.containsKey(TokensAnnotation.class) &&
+        (!sentence.hasHasNumerizedTokensAnnotation() || sentence.getHasNumerizedTokensAnnotation())) {
+      map.set(NumerizedTokensAnnotation.class, NumberNormalizer.findAndMergeNumbers(map));
+    }
+  }
+
+  /**
+   * The sentences of a document read by {@link ProtobufAnnotationSerializer#fromProtoLazily(LazyDocument)}.
+   * Each sentence is parsed from its bytes and read the first time it is retrieved.
+   * Each sentence has its own tokens; the document's tokens and entity mentions are gathered from
+   * every sentence the first time they are asked for.
+   */
+  private class LazySentenceList extends AbstractList<CoreMap> {
+    private final LazyDocument doc;
+    private final Annotation ann;
+    private final CoreMap[] sentences;
+    private final List<List<CoreMap>> mentions;
+
+    private LazySentenceList(LazyDocument doc, Annotation ann) {
+      this.doc = doc;
+      this.ann = ann;
+      this.sentences = new CoreMap[doc.numSentences()];
+      this.mentions = new ArrayList<>(Collections.nCopies(sentences.length, null));
+    }
+
+    @Override
+    public synchronized CoreMap get(int index) {
+      if (sentences[index] == null) {
+        CoreNLPProtos.Document header = doc.header();
+        CoreNLPProtos.Sentence sentence = doc.sentence(index);
+        List<CoreLabel> tokens = new ArrayList<>(sentence.getTokenCount());
+        for (CoreNLPProtos.Token token : sentence.getTokenList()) {
+          CoreLabel coreLabel = fromProto(token);
+          if (header.hasDocID()) { coreLabel.setDocID(header.getDocID()); }
+          tokens.add(coreLabel);
+        }
+        CoreMap map = fromProtoNoTokensLazily(sentence);
+        List<CoreMap> sentenceMentions = Collections.emptyList();
+        if (!tokens.isEmpty() && sentence.hasTokenOffsetBegin() && sentence.hasTokenOffsetEnd() &&
+            map.get(TokensAnnotation.class) == null) {
+          sentenceMentions = setSentenceTokens(map, sentence, index, tokens, header.getText());
+        }
+        setSentenceContext(ann, map, sentence, index, header.hasDocID() ? header.getDocID() : null);
+        mentions.set(index, sentenceMentions);
+        sentences[index] = map;
+      }
+      return sentences[index];
+    }
+
+    @Override
+    public int size() {
+      return sentences.length;
+    }
+
+    /** The tokens of the document, laid out as {@link ProtobufAnnotationSerializer#fromProto(CoreNLPProtos.Document)} lays them out. */
+    private synchronized List<CoreLabel> tokens() {
+      List<CoreLabel> tokens = new ArrayList<>();
+      for (int i = 0; i < sentences.length; ++i) {
+        CoreNLPProtos.Sentence sentence = doc.sentence(i);
+        List<CoreLabel> sentenceTokens = get(i).get(TokensAnnotation.class);
+        if (sentenceTokens == null) {
+          continue;
+        }
+        // It's conceivable that the sentences are not contiguous -- pad this with nulls
+        while (sentence.hasTokenOffsetBegin() && tokens.size() < sentence.getTokenOffsetBegin()) {
+          tokens.add(null);
+        }
+        tokens.addAll(sentenceTokens);
+      }
+      return tokens;
+    }
+
+    /** The entity mentions of the document, in order. */
+    private synchronized List<CoreMap> mentions() {
+      List<CoreMap> all = new ArrayList<>();
+      for (int i = 0; i < sentences.length; ++i) {
+        get(i);
+        all.addAll(mentions.get(i));
+      }
+      return all;
+    }
+  } // end class LazySentenceList
+
+  /** A list whose elements are only computed the first time the list is used. */
+  private static class DeferredList<E> extends AbstractList<E> {
+    private Supplier<List<E>> supplier;
+    private List<E> list; // = null
+
+    private DeferredList(Supplier<List<E>> supplier) {
+      this.supplier = supplier;
+    }
+
+    private synchronized List<E> list() {
+      if (list == null) {
+        list = supplier.get();
+        supplier = null;
+      }
+      return list;
+    }
+
+    @Override
+    public E get(int index) {
+      return list().get(index);
+    }
+
+    @Override
+    public int size() {
+      return list().size();
+    }
+
+    @Override
+    public E set(int index, E element) {
+      return list().set(index, element);
+    }
+
+    @Override
+    public void add(int index, E element) {
+      list().add(index, element);
+    }
+
+    @Override
+    public E remove(int index) {
+      return list().remove(index);
+    }
+  } // end static class DeferredList
+
+
   /**
    * Retrieve a Tree object from a saved protobuf.
    * This is not intended to be used on its own, but it is safe (lossless) to do so and therefore it is
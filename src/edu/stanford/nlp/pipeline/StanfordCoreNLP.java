@@ -895,6 +895,10 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     os.println("\t\"serializer\" - Class of annotation serializer to use when outputFormat is \"serialized\".  By default, uses Java serialization.");
     os.println("\t\"replaceExtension\" - flag to chop off the last extension before adding outputExtension to file");
     os.println("\t\"noClobber\" - don't automatically override (clobber) output files that already exist");
+    os.println("\t\"chunkSize\" - annotate text files longer than this many characters in chunks, cut at paragraph or sentence breaks (default: 0, never)");
+    os.println("\t\"maxInFlightBytes\" - the most bytes of input to be annotating at once (default: 100000000)");
+    os.println("\t\"batchBytes\" - read small files in batches of about this many bytes (default: 1048576)");
+    os.println("\t\"checkpoint\" - record finished outputs in this file, and skip outputs already recorded there when rerun");
 		os.println("\t\"threads\" - multithread on this number of threads");
     os.println();
     os.println("If none of the above are present, run the pipeline in an interactive shell (default properties will be loaded from the classpath).");
@@ -974,7 +978,7 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     return ObjectBank.getLineIterator(fileName, new ObjectBank.PathToFileFunction());
   }
 
-  private static AnnotationSerializer loadSerializer(String serializerClass, String name, Properties properties) {
+  static AnnotationSerializer loadSerializer(String serializerClass, String name, Properties properties) {
     AnnotationSerializer serializer; // initialized below
     try {
       // Try loading with properties
@@ -1066,10 +1070,12 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
   /**
    * A common method for processing a set of files, used in both {@link StanfordCoreNLP} as well as
    * {@link StanfordCoreNLPClient}.
+   * This returns once every document has been written (or has failed); see {@link FileBatchProcessor}
+   * for how large and numerous files are handled.
    *
    * @param base The base input directory to process from.
    * @param files The files to process.
-   * @param numThreads The number of threads to annotate on.
+   * @param numThreads The number of threads to read files on.
    * @param properties The properties file to use during annotation.
    *                   This should match the properties file used in the implementation of the annotate function.
    * @param annotate The function used to annotate a document.
@@ -1083,8 +1089,6 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
                                      Properties properties, BiConsumer<Annotation, Consumer<Annotation>> annotate,
                                      BiConsumer<Annotation, OutputStream> print,
                                      OutputFormat outputFormat, boolean clearPool) throws IOException {
-    // List<Runnable> toRun = new LinkedList<>();
-
     // Process properties here
     final String baseOutputDir = properties.getProperty("outputDirectory", ".");
     final String baseInputDir = properties.getProperty("inputDirectory", base);
@@ -1100,11 +1104,6 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
       }
     }
 
-    //(file info)
-    final String serializerClass = properties.getProperty("serializer", GenericAnnotationSerializer.class.getName());
-    final String inputSerializerClass = properties.getProperty("inputSerializer", serializerClass);
-    final String inputSerializerName = (serializerClass.equals(inputSerializerClass))? "serializer":"inputSerializer";
-
     String defaultExtension;
     switch (outputFormat) {
       case XML: defaultExtension = ".xml"; break;
@@ -1119,21 +1118,18 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
 
     final String extension = properties.getProperty("outputExtension", defaultExtension);
     final boolean replaceExtension = Boolean.parseBoolean(properties.getProperty("replaceExtension", "false"));
-    final boolean continueOnAnnotateError = Boolean.parseBoolean(properties.getProperty("continueOnAnnotateError", "false"));
-
     final boolean noClobber = Boolean.parseBoolean(properties.getProperty("noClobber", "false"));
-    // final boolean randomize = Boolean.parseBoolean(properties.getProperty("randomize", "false"));
 
-    final MutableInteger totalProcessed = new MutableInteger(0);
-    final MutableInteger totalSkipped = new MutableInteger(0);
-    final MutableInteger totalErrorAnnotating = new MutableInteger(0);
+    final FileBatchProcessor processor = new FileBatchProcessor(numThreads, properties, annotate, print, extension);
+    final List<FileBatchProcessor.Job> jobs = new ArrayList<>();
+    int totalSkipped = 0;
 
     //for each file...
     for (final File file : files) {
       // Determine if there is anything to be done....
       if (excludeFiles.contains(file.getName())) {
         logger.err("Skipping excluded file " + file.getName());
-        totalSkipped.incValue(1);
+        totalSkipped += 1;
         continue;
       }
 
@@ -1167,131 +1163,32 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
       //      Java 7 will have a Files.isSymbolicLink(file) method
       if (outputFilename.equals(file.getCanonicalPath())) {
         logger.err("Skipping " + file.getName() + ": output file " + outputFilename + " has the same filename as the input file -- assuming you don't actually want to do this.");
-        totalSkipped.incValue(1);
+        totalSkipped += 1;
         continue;
       }
       if (noClobber && new File(outputFilename).exists()) {
         logger.err("Skipping " + file.getName() + ": output file " + outputFilename + " as it already exists.  Don't use the noClobber option to override this.");
-        totalSkipped.incValue(1);
+        totalSkipped += 1;
         continue;
       }
 
-      final String finalOutputFilename = outputFilename;
-
-      //register a task...
-      //catching exceptions...
-      try {
-        // Check whether this file should be skipped again
-        if (noClobber && new File(finalOutputFilename).exists()) {
-          logger.err("Skipping " + file.getName() + ": output file " + finalOutputFilename + " as it already exists.  Don't use the noClobber option to override this.");
-          synchronized (totalSkipped) {
-            totalSkipped.incValue(1);
-          }
-          return;
-        }
-
-        logger.info("Processing file " + file.getAbsolutePath() + " ... writing to " + finalOutputFilename);
-
-        //--Process File
-        Annotation annotation = null;
-        if (file.getAbsolutePath().endsWith(".ser.gz")) {
-          // maybe they want to continue processing a partially processed annotation
-          try {
-            // Create serializers
-            if (inputSerializerClass != null) {
-              AnnotationSerializer inputSerializer = loadSerializer(inputSerializerClass, inputSerializerName, properties);
-              InputStream is = new BufferedInputStream(new FileInputStream(file));
-              Pair<Annotation, InputStream> pair = inputSerializer.read(is);
-              pair.second.close();
-              annotation = pair.first;
-              IOUtils.closeIgnoringExceptions(is);
-            } else {
-              annotation = IOUtils.readObjectFromFile(file);
-            }
-          } catch (IOException e) {
-            // guess that's not what they wanted
-            // We hide IOExceptions because ones such as file not
-            // found will be thrown again in a moment.  Note that
-            // we are intentionally letting class cast exceptions
-            // and class not found exceptions go through.
-          } catch (ClassNotFoundException e) {
-            throw new RuntimeException(e);
-          }
-        }
-
-        //(read file)
-        if (annotation == null) {
-          String encoding = properties.getProperty("encoding", "UTF-8");
-          String text = IOUtils.slurpFile(file.getAbsoluteFile(), encoding);
-          annotation = new Annotation(text);
-          annotation.set(CoreAnnotations.DocIDAnnotation.class, file.getName());
-        }
-
-        Timing timing = new Timing();
-        annotate.accept(annotation, finishedAnnotation -> {
-          timing.done(logger, "Annotating file " + file.getAbsoluteFile());
-          Throwable ex = finishedAnnotation.get(CoreAnnotations.ExceptionAnnotation.class);
-          if (ex == null) {
-            try {
-              //--Output File
-              OutputStream fos = new BufferedOutputStream(new FileOutputStream(finalOutputFilename));
-              print.accept(finishedAnnotation, fos);
-              fos.close();
-            } catch(IOException e) {
-              throw new RuntimeIOException(e);
-            }
-
-            synchronized (totalProcessed) {
-              totalProcessed.incValue(1);
-              if (totalProcessed.intValue() % 1000 == 0) {
-                logger.info("Processed " + totalProcessed + " documents");
-              }
-              // check we've processed or errored on every file, if so tell the pool to clear()
-              if ((totalProcessed.intValue() + totalErrorAnnotating.intValue()) == files.size() && clearPool) {
-                GLOBAL_ANNOTATOR_CACHE.clear();
-              }
-            }
-          } else if (continueOnAnnotateError) {
-            // Error annotating but still wanna continue
-            // (maybe in the middle of long job and maybe next one will be okay)
-            logger.err("Error annotating " + file.getAbsoluteFile() + ": " + ex);
-            synchronized (totalErrorAnnotating) {
-              totalErrorAnnotating.incValue(1);
-              // check we've processed or errored on every file, if so tell the pool to clear()
-              if ((totalProcessed.intValue() + totalErrorAnnotating.intValue()) == files.size() && clearPool) {
-                GLOBAL_ANNOTATOR_CACHE.clear();
-              }
-            }
-
-          } else {
-            // if stopping due to error, make sure to clear the pool
-            if (clearPool) {
-              GLOBAL_ANNOTATOR_CACHE.clear();
-            }
-            throw new RuntimeException("Error annotating " + file.getAbsoluteFile(), ex);
-          }
-        });
-
-      } catch (IOException e) {
-        throw new RuntimeIOException(e);
+      if (processor.isDone(outputFilename)) {
+        logger.info("Skipping " + file.getName() + ": output file " + outputFilename + " is already done according to the checkpoint.");
+        totalSkipped += 1;
+        continue;
       }
-    }
 
-    /*
-    if (randomize) {
-      log("Randomly shuffling input");
-      Collections.shuffle(toRun);
+      jobs.add(new FileBatchProcessor.Job(file, outputFilename));
     }
-    log("Ready to process: " + toRun.size() + " files, skipped " + totalSkipped + ", total " + nFiles);
+
     //--Run Jobs
-    if(numThreads == 1){
-      for(Runnable r : toRun){ r.run(); }
-    } else {
-      Redwood.Util.threadAndRun("StanfordCoreNLP <" + numThreads + " threads>", toRun, numThreads);
+    try {
+      processor.run(jobs, totalSkipped);
+    } finally {
+      if (clearPool) {
+        GLOBAL_ANNOTATOR_CACHE.clear();
+      }
     }
-    log("Processed " + totalProcessed + " documents");
-    log("Skipped " + totalSkipped + " documents, error annotating " + totalErrorAnnotating + " documents");
-    */
   }
 
   public void processFiles(final Collection<File> files, int numThreads, boolean clearPool) throws IOException {
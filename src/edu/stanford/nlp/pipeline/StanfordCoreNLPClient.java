@@ -3,6 +3,9 @@ package edu.stanford.nlp.pipeline;
 import edu.stanford.nlp.io.FileSequentialCollection;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.util.LatencyHistogram;
+import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.PropertiesUtils;
 import edu.stanford.nlp.util.StringUtils;
 import edu.stanford.nlp.util.logging.Redwood;
 import edu.stanford.nlp.util.logging.StanfordRedwoodConfiguration;
@@ -10,12 +13,17 @@ import edu.stanford.nlp.util.logging.StanfordRedwoodConfiguration;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -79,26 +87,78 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
     }
   }
 
+  /**
+   * A job to run on a backend, as scheduled on the {@link BackendScheduler}.
+   */
+  @FunctionalInterface
+  private interface BackendJob {
+    /**
+     * Start the job on the given backend.
+     * The job MUST call <code>release</code> exactly once when it is done with the backend, to register
+     * the backend as free for further work, passing the time in milliseconds the backend took to answer,
+     * or a negative number if the backend did not answer (and its latency statistics should not change).
+     */
+    void run(Backend backend, LongConsumer release);
+  }
+
+  /**
+   * The state of a single backend endpoint: how many requests it can take at once, how many
+   * it is working on, and how quickly it has been answering them.
+   * Remember to lock access to the mutable fields with {@link BackendScheduler#stateLock}.
+   */
+  private static class BackendState {
+    /** The smoothing factor of the moving average of the latency */
+    private static final double EWMA_ALPHA = 0.2;
+
+    public final Backend backend;
+    /** The number of requests this backend may be working on at once */
+    public final int capacity;
+    /** The number of requests this backend is working on */
+    private int inFlight = 0;
+    /** An exponentially weighted moving average of the latency of this backend, in milliseconds; 0 if unknown */
+    private double ewmaMillis = 0.0;
+    /** The latencies of this backend */
+    public final LatencyHistogram latencies = new LatencyHistogram();
+
+    private BackendState(Backend backend, int capacity) {
+      this.backend = backend;
+      this.capacity = capacity;
+    }
+
+    /**
+     * The expected time until a new request would be answered, up to a constant factor:
+     * the requests in flight (including the new one) per slot, weighted by the latency.
+     */
+    private double expectedWait() {
+      return (inFlight + 1) / (double) capacity * Math.max(1.0, ewmaMillis);
+    }
+
+    private void recordLatency(long millis) {
+      latencies.record(millis);
+      ewmaMillis = ewmaMillis == 0.0 ? millis : EWMA_ALPHA * millis + (1.0 - EWMA_ALPHA) * ewmaMillis;
+    }
+  }
+
   /**
    * A special type of {@link Thread}, which is responsible for scheduling jobs
    * on the backend.
+   * Each backend can take up to its capacity of requests at a time, and each job goes to the
+   * backend with the least expected wait: the fewest requests outstanding per slot, weighted by
+   * the backend's recent latency. A slow backend therefore gets fewer requests, rather than
+   * holding up its share of the work.
    */
   private static class BackendScheduler extends Thread {
     /**
-     * The list of backends that we can schedule on.
+     * The backends that we can schedule on.
      * This should not generally be called directly from anywhere
      */
-    public final List<Backend> backends;
+    public final List<BackendState> backends;
 
     /**
-     * The queue on requests for the scheduler to handle.
-     * Each element of this queue is a function: calling the function signals
-     * that this backend is available to perform a task on the passed backend.
-     * It is then obligated to call the passed Consumer to signal that it has
-     * released control of the backend, and it can be used for other things.
-     * Remember to lock access to this object with {@link BackendScheduler#stateLock}.
+     * The queue on requests for the scheduler to handle, each with a backend it should not be run on
+     * (or null). Remember to lock access to this object with {@link BackendScheduler#stateLock}.
      */
-    private final Queue<BiConsumer<Backend, Consumer<Backend>>> queue;
+    private final Queue<Pair<BackendJob, Backend>> queue;
     /**
      * The lock on access to {@link BackendScheduler#queue}.
      */
@@ -115,13 +175,8 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
     public final Condition shouldShutdown = stateLock.newCondition();
 
     /**
-     * The queue of annotators (backends) that are free to be run on.
-     * Remember to lock access to this object with {@link BackendScheduler#stateLock}.
-     */
-    private final Queue<Backend> freeAnnotators;
-    /**
-     * Represents the event that an annotator has freed up and is available for
-     * work on the {@link BackendScheduler#freeAnnotators} queue.
+     * Represents the event that a backend has freed up a slot and is available for
+     * more work.
      * Linked to {@link BackendScheduler#stateLock}.
      */
     private final Condition newlyFree = stateLock.newCondition();
@@ -133,57 +188,115 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
 
     /**
      * Create a new scheduler from a list of backends.
-     * These can contain duplicates -- in that case, that many concurrent
-     * calls can be made to that backend.
+     * These can contain duplicates -- in that case, unless maxInFlight is positive,
+     * that many concurrent calls can be made to that backend.
+     *
+     * @param maxInFlight If positive, the number of concurrent calls that can be made to each distinct backend.
      */
-    public BackendScheduler(List<Backend> backends) {
+    public BackendScheduler(List<Backend> backends, int maxInFlight) {
       super();
       setDaemon(true);
-      this.backends = backends;
-      this.freeAnnotators = new LinkedList<>(backends);
+      List<Backend> distinct = new ArrayList<>();
+      List<Integer> counts = new ArrayList<>();
+      for (Backend backend : backends) {
+        int index = distinct.indexOf(backend);
+        if (index < 0) {
+          distinct.add(backend);
+          counts.add(1);
+        } else {
+          counts.set(index, counts.get(index) + 1);
+        }
+      }
+      List<BackendState> states = new ArrayList<>();
+      for (int i = 0; i < distinct.size(); ++i) {
+        states.add(new BackendState(distinct.get(i), maxInFlight > 0 ? maxInFlight : counts.get(i)));
+      }
+      this.backends = Collections.unmodifiableList(states);
       this.queue = new LinkedList<>();
     }
 
+    /**
+     * The backend with a free slot and the least expected wait, other than the excluded one, or null if there is none.
+     * Call this only while holding {@link BackendScheduler#stateLock}.
+     */
+    private BackendState leastLoaded(Backend excluded) {
+      BackendState best = null;
+      for (BackendState state : backends) {
+        if (state.inFlight < state.capacity && state.backend != excluded &&
+            (best == null || state.expectedWait() < best.expectedWait())) {
+          best = state;
+        }
+      }
+      return best;
+    }
+
+    /** Whether no job is queued or running. Call this only while holding {@link BackendScheduler#stateLock}. */
+    private boolean isIdle() {
+      if ( ! queue.isEmpty()) {
+        return false;
+      }
+      for (BackendState state : backends) {
+        if (state.inFlight > 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void run() {
       try {
         while (doRun) {
-          // Wait for a request
-          BiConsumer<Backend, Consumer<Backend>> request;
-          Backend annotator;
+          // Wait for a request, and a backend that can take it
+          BackendJob job = null;
+          BackendState annotator = null;
           stateLock.lock();
           try {
-            while (queue.isEmpty()) {
-              enqueued.await();
-              if (!doRun) {
-                return;
+            while (job == null) {
+              while (queue.isEmpty()) {
+                enqueued.await();
+                if (!doRun) {
+                  return;
+                }
+              }
+              // Take the first request that some backend can take
+              for (Iterator<Pair<BackendJob, Backend>> iter = queue.iterator(); iter.hasNext(); ) {
+                Pair<BackendJob, Backend> request = iter.next();
+                annotator = leastLoaded(request.second);
+                if (annotator != null) {
+                  job = request.first;
+                  iter.remove();
+                  break;
+                }
+              }
+              if (job == null) {
+                newlyFree.await();
               }
             }
-            // Get the actual request
-            request = queue.poll();
-            // We have a request
-
-            // Find a free annotator
-            while (freeAnnotators.isEmpty()) {
-              newlyFree.await();
-            }
-            annotator = freeAnnotators.poll();
+            annotator.inFlight += 1;
           } finally {
             stateLock.unlock();
           }
           // We have an annotator
 
           // Run the annotation
-          request.accept(annotator, freedAnnotator -> {
-            // ASYNC: we've freed this annotator
-            // add it back to the queue and register it as available
+          BackendState state = annotator;
+          AtomicBoolean released = new AtomicBoolean(false);
+          job.run(state.backend, latencyMillis -> {
+            // ASYNC: we've freed a slot on this annotator
+            if ( ! released.compareAndSet(false, true)) {
+              return;
+            }
             stateLock.lock();
             try {
-              freeAnnotators.add(freedAnnotator);
+              state.inFlight -= 1;
+              if (latencyMillis >= 0) {
+                state.recordLatency(latencyMillis);
+              }
 
               // If the queue is empty, and all the annotators have returned, we're done
-              if (queue.isEmpty() && freeAnnotators.size() == backends.size()) {
+              if (isIdle()) {
                 log.debug("All annotations completed. Signaling for shutdown");
                 shouldShutdown.signalAll();
               }
@@ -206,18 +319,61 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
      *                 to do some processing. The implementation of this callback
      *                 MUST CALL the second argument when it is done processing,
      *                 to register the backend as free for further work.
+     * @param excluded A backend not to run this job on, or null.
      */
-    public void schedule(BiConsumer<Backend, Consumer<Backend>> annotate) {
+    public void schedule(BackendJob annotate, Backend excluded) {
       stateLock.lock();
       try {
-        queue.add(annotate);
+        queue.add(Pair.makePair(annotate, excluded));
         enqueued.signal();
       } finally {
         stateLock.unlock();
       }
     }
+
+    /**
+     * How long to wait for a request to this backend before sending a hedged request to another backend,
+     * in milliseconds, or -1 if no hedged request should be sent.
+     * This is the given quantile of the backend's latency, once there are enough requests to estimate it from.
+     */
+    public long hedgeDelayMillis(Backend backend, double quantile) {
+      stateLock.lock();
+      try {
+        if (backends.size() < 2) {
+          return -1;
+        }
+        for (BackendState state : backends) {
+          if (state.backend == backend) {
+            return state.latencies.count() < HEDGE_MIN_SAMPLES ? -1 : (long) Math.ceil(state.latencies.quantile(quantile));
+          }
+        }
+        return -1;
+      } finally {
+        stateLock.unlock();
+      }
+    }
   } // end static class BackEndScheduler
 
+  /** The number of requests a backend must have answered before hedged requests are sent on its behalf */
+  private static final int HEDGE_MIN_SAMPLES = 20;
+
+  /**
+   * The threads which send requests to the backends and read their responses.
+   * Idle threads are kept for a minute, so that bursts of requests reuse them.
+   */
+  private static final ExecutorService requestPool = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, StanfordCoreNLPClient.class.getSimpleName() + "-request");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /** Fires the hedged requests for requests which are taking longer than usual */
+  private static final ScheduledExecutorService hedgeTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, StanfordCoreNLPClient.class.getSimpleName() + "-hedge");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   /** The path on the server to connect to. */
   private final String path = "";
   /** The Properties file to annotate with. */
@@ -234,6 +390,30 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
   /** The scheduler to use when running on multiple backends at a time */
   private final BackendScheduler scheduler;
 
+  /**
+   * If true (property <code>client.hedge</code>), a request which is slower than usual is sent to a
+   * second backend as well, and the first answer is taken.
+   */
+  private final boolean hedge;
+
+  /**
+   * The quantile of a backend's latency (property <code>client.hedgeQuantile</code>) after which a
+   * request to that backend is hedged.
+   */
+  private final double hedgeQuantile;
+
+  /**
+   * The coding to compress requests with (property <code>client.requestEncoding</code>, default identity).
+   * Only servers which understand the <code>Content-Encoding</code> header can read compressed requests.
+   */
+  private final ContentEncoding requestEncoding;
+
+  /**
+   * The coding to ask the server to compress its responses with (property <code>client.responseEncoding</code>,
+   * default gzip). The server is free to answer uncompressed.
+   */
+  private final ContentEncoding responseEncoding;
+
   /**
    * The annotation serializer responsible for translating between the wire format
    * (protocol buffers) and the {@link Annotation} classes.
@@ -243,6 +423,20 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
   /**
    * The main constructor. Create a client from a properties file and a list of backends.
    * Note that this creates at least one Daemon thread.
+   * Properties starting with <code>client.</code> configure the client, and are not sent to the server:
+   *
+   * <ul>
+   *   <li><code>client.maxInFlight</code>: the number of requests which can be sent to each distinct backend at once.
+   *       By default, this is the number of times the backend appears in the list of backends.</li>
+   *   <li><code>client.hedge</code>: whether to send a request which is taking longer than usual to a second
+   *       backend as well, taking whichever answer comes first (default true; only applies with at least two backends).</li>
+   *   <li><code>client.hedgeQuantile</code>: the quantile of a backend's latency after which its requests are hedged
+   *       (default 0.95).</li>
+   *   <li><code>client.requestEncoding</code>: the content coding to compress requests with: gzip, deflate, or
+   *       identity (default identity, which any server can read).</li>
+   *   <li><code>client.responseEncoding</code>: the content coding to ask the server to compress responses with:
+   *       gzip, deflate, or identity (default gzip).</li>
+   * </ul>
    *
    * @param properties The properties file, as would be passed to {@link StanfordCoreNLP}.
    * @param backends The backends to run on.
@@ -255,10 +449,16 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
     this.properties = properties;
     Properties serverProperties = new Properties();
     for (String key : properties.stringPropertyNames()) {
-      serverProperties.setProperty(key, properties.getProperty(key));
+      if ( ! key.startsWith("client.")) {
+        serverProperties.setProperty(key, properties.getProperty(key));
+      }
     }
     Collections.shuffle(backends, new Random(System.currentTimeMillis()));
-    this.scheduler = new BackendScheduler(backends);
+    this.scheduler = new BackendScheduler(backends, PropertiesUtils.getInt(properties, "client.maxInFlight", 0));
+    this.hedge = PropertiesUtils.getBool(properties, "client.hedge", true);
+    this.hedgeQuantile = PropertiesUtils.getDouble(properties, "client.hedgeQuantile", 0.95);
+    this.requestEncoding = ContentEncoding.fromHeader(properties.getProperty("client.requestEncoding"));
+    this.responseEncoding = ContentEncoding.fromHeader(properties.getProperty("client.responseEncoding", ContentEncoding.GZIP.headerValue));
     this.apiKey = apiKey;
     this.apiSecret = apiSecret;
 
@@ -290,6 +490,41 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
   }
 
 
+  /**
+   * Run on several backends, given as a comma-separated list of URLs such as
+   * <code>http://host1:9000,http://host2:9000</code>, as with the <code>-backends</code> option of {@link #main(String[])}.
+   * A backend which is listed more than once can be sent that many requests at once.
+   *
+   * @see StanfordCoreNLPClient#StanfordCoreNLPClient(Properties, List, String, String)
+   */
+  public StanfordCoreNLPClient(Properties properties, String backends) {
+    this(properties, parseBackends(backends));
+  }
+
+
+  /** Parses a comma-separated list of backend URLs, skipping any which are malformed. */
+  private static List<Backend> parseBackends(String specs) {
+    List<Backend> backends = new ArrayList<>();
+    for (String spec : specs.split(",")) {
+      Matcher matcher = URL_PATTERN.matcher(spec.trim());
+      if (matcher.matches()) {
+        String protocol = matcher.group(1);
+        if (protocol == null) {
+          protocol = "http";
+        }
+        String host = matcher.group(2);
+        int port = 80;
+        String portStr = matcher.group(3);
+        if (portStr != null) {
+          port = Integer.parseInt(portStr);
+        }
+        backends.add(new Backend(protocol, host, port));
+      }
+    }
+    return backends;
+  }
+
+
   /**
    * Run the client, pulling credentials from the environment.
    * Throws an IllegalStateException if the required environment variables aren't set.
@@ -429,54 +664,126 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
    *                 The input to this callback is the same as the passed Annotation object.
    */
   public void annotate(final Annotation annotation, final Consumer<Annotation> callback) {
-    scheduler.schedule((Backend backend, Consumer<Backend> isFinishedCallback) -> new Thread(() -> {
-      try {
-        // 1. Create the input
-        // 1.1 Create a protocol buffer
+    new Request(annotation, callback).attempt(null);
+  }
+
+
+  /**
+   * A single annotation, which may be sent to more than one backend if it is hedged.
+   * The first backend to answer fills in the annotation; if none does, the annotation is
+   * done locally instead. Either way, the callback is called exactly once.
+   */
+  private class Request {
+    private final Annotation annotation;
+    private final Consumer<Annotation> callback;
+    /** Whether the annotation has been filled in and the callback called (or is about to be) */
+    private final AtomicBoolean done = new AtomicBoolean(false);
+    /** The number of attempts at this request which have been scheduled and not yet finished */
+    private final AtomicInteger attemptsRunning = new AtomicInteger(0);
+    /** The serialized annotation, computed by the first attempt to run */
+    private byte[] message;
+
+    private Request(Annotation annotation, Consumer<Annotation> callback) {
+      this.annotation = annotation;
+      this.callback = callback;
+    }
+
+    private synchronized byte[] message() throws IOException {
+      if (message == null) {
         ByteArrayOutputStream os = new ByteArrayOutputStream();
         serializer.write(annotation, os);
         os.close();
-        byte[] message = os.toByteArray();
-        // 1.2 Create the query params
+        message = os.toByteArray();
+      }
+      return message;
+    }
 
+    /**
+     * Schedule an attempt at this request.
+     *
+     * @param excluded The backend not to send it to, or null for the first attempt.
+     */
+    private void attempt(Backend excluded) {
+      attemptsRunning.incrementAndGet();
+      scheduler.schedule((Backend backend, LongConsumer release) -> requestPool.execute(() -> run(backend, excluded == null, release)), excluded);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void run(Backend backend, boolean primary, LongConsumer release) {
+      long latencyMillis = -1;
+      boolean annotateLocally = false;
+      try {
+        if (done.get()) {
+          return;  // a hedged attempt whose request has been answered already
+        }
+        // 1. Hedge the request if it takes longer than usual
+        if (primary && hedge) {
+          long delay = scheduler.hedgeDelayMillis(backend, hedgeQuantile);
+          if (delay >= 0) {
+            hedgeTimer.schedule(() -> {
+              if ( ! done.get()) {
+                attempt(backend);
+              }
+            }, delay, TimeUnit.MILLISECONDS);
+          }
+        }
+
+        // 2. Create the URL
         String queryParams = String.format(
             "properties=%s",
             URLEncoder.encode(StanfordCoreNLPClient.this.propsAsJSON, "utf-8"));
-
-        // 2. Create a connection
         URL serverURL = new URL(backend.protocol, backend.host,
             backend.port,
             StanfordCoreNLPClient.this.path + '?' + queryParams);
 
         // 3. Do the annotation
-        //    This method has two contracts:
-        //    1. It should call the two relevant callbacks
-        //    2. It must not throw an exception
-        doAnnotation(annotation, backend, serverURL, message, 0);
+        long start = System.nanoTime();
+        Annotation response = doAnnotation(backend, serverURL, message(), 0);
+        latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 4. Copy response over to original annotation, if we are the first to answer
+        if (done.compareAndSet(false, true)) {
+          for (Class key : response.keySet()) {
+            annotation.set(key, response.get(key));
+          }
+          callback.accept(annotation);
+        }
       } catch (Throwable t) {
-        log.err("Could not annotate via server! Trying to annotate locally...", t);
-        StanfordCoreNLP corenlp = new StanfordCoreNLP(properties);
-        corenlp.annotate(annotation);
+        if (attemptsRunning.get() == 1 && ! done.get()) {
+          log.err("Could not annotate via server! Trying to annotate locally...", t);
+        } else {
+          log.warn(t);
+        }
+        annotateLocally = true;
       } finally {
-        callback.accept(annotation);
-        isFinishedCallback.accept(backend);
+        if (attemptsRunning.decrementAndGet() == 0 && annotateLocally && done.compareAndSet(false, true)) {
+          try {
+            StanfordCoreNLP corenlp = new StanfordCoreNLP(properties);
+            corenlp.annotate(annotation);
+          } finally {
+            callback.accept(annotation);
+          }
+        }
+        release.accept(latencyMillis);
       }
-    }).start());
+    }
   }
 
 
   /**
    * Actually try to perform the annotation on the server side.
    * This is factored out so that we can retry up to 3 times.
+   * The connection is read to the end and closed, so that it can be kept alive for the next request
+   * to the same backend.
    *
-   * @param annotation The annotation we need to fill.
    * @param backend The backend we are querying against.
    * @param serverURL The URL of the server we are hitting.
    * @param message The message we are sending the server (don't need to recompute each retry).
    * @param tries The number of times we've tried already.
+   *
+   * @return The annotation the server sent back.
    */
-  @SuppressWarnings("unchecked")
-  private void doAnnotation(Annotation annotation, Backend backend, URL serverURL, byte[] message, int tries) {
+  private Annotation doAnnotation(Backend backend, URL serverURL, byte[] message, int tries) {
 
     try {
       // 1. Set up the connection
@@ -490,14 +797,22 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
       // 1.2 Set some protocol-independent properties
       connection.setDoOutput(true);
       connection.setRequestProperty("Content-Type", "application/x-protobuf");
-      connection.setRequestProperty("Content-Length", Integer.toString(message.length));
       connection.setRequestProperty("Accept-Charset", "utf-8");
       connection.setRequestProperty("User-Agent", StanfordCoreNLPClient.class.getName());
+      if (requestEncoding != ContentEncoding.IDENTITY) {
+        connection.setRequestProperty("Content-Encoding", requestEncoding.headerValue);
+      }
+      connection.setRequestProperty("Accept-Encoding", responseEncoding.headerValue);
       // 1.3 Set some protocol-dependent properties
       switch (backend.protocol) {
         case "https":
         case "http":
           ((HttpURLConnection) connection).setRequestMethod("POST");
+          if (requestEncoding == ContentEncoding.IDENTITY) {
+            ((HttpURLConnection) connection).setFixedLengthStreamingMode(message.length);
+          } else {
+            ((HttpURLConnection) connection).setChunkedStreamingMode(0);
+          }
           break;
         default:
           throw new IllegalStateException("Haven't implemented protocol: " + backend.protocol);
@@ -506,21 +821,27 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
       // 2. Annotate
       // 2.1. Fire off the request
       connection.connect();
-      connection.getOutputStream().write(message);
-      connection.getOutputStream().flush();
+      try (OutputStream os = requestEncoding.compress(connection.getOutputStream())) {
+        os.write(message);
+        os.flush();
+      }
       // 2.2 Await a response
       // -- It might be possible to send more than one message, but we are not going to do that.
-      Annotation response = serializer.read(connection.getInputStream()).first;
-      // 2.3. Copy response over to original annotation
-      for (Class key : response.keySet()) {
-        annotation.set(key, response.get(key));
+      try (InputStream is = ContentEncoding.fromHeader(connection.getContentEncoding()).decompress(connection.getInputStream())) {
+        Annotation response = serializer.read(is).first;
+        // 2.3 Read the rest of the response, so the connection can be reused
+        byte[] buffer = new byte[4096];
+        while (is.read(buffer) >= 0) {
+          // drain
+        }
+        return response;
       }
 
     } catch (Throwable t) {
       // 3. We encountered an error -- retry
       if (tries < 3) {
         log.warn(t);
-        doAnnotation(annotation, backend, serverURL, message, tries + 1);
+        return doAnnotation(backend, serverURL, message, tries + 1);
       } else {
         throw new RuntimeException(t);
       }
@@ -662,7 +983,7 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
   public void shutdown() throws InterruptedException {
     scheduler.stateLock.lock();
     try {
-      while (!scheduler.queue.isEmpty() || scheduler.freeAnnotators.size() != scheduler.backends.size()) {
+      while ( ! scheduler.isIdle()) {
         scheduler.shouldShutdown.await(5, TimeUnit.SECONDS);
       }
       scheduler.doRun = false;
@@ -673,6 +994,19 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
   }
 
 
+  /**
+   * The latencies of the requests answered by each backend so far, keyed by the backend's URL.
+   * These are copies, which do not change as further requests are answered.
+   */
+  public Map<String, LatencyHistogram> backendLatencies() {
+    Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    for (BackendState state : scheduler.backends) {
+      latencies.put(state.backend.toString(), state.latencies.snapshot());
+    }
+    return latencies;
+  }
+
+
   /**
    * Client that runs data through a StanfordCoreNLPServer either just for testing or for command-line text processing.
    * This runs the pipeline you specify on the
@@ -709,7 +1043,6 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
     }
 
     // Create the backends
-    List<Backend> backends = new ArrayList<>();
     String defaultBack = "http://localhost:9000";
     String backStr = props.getProperty("backends");
     if (backStr == null) {
@@ -724,22 +1057,7 @@ public class StanfordCoreNLPClient extends AnnotationPipeline  {
       }
     }
 
-    for (String spec : props.getProperty("backends", defaultBack).split(",")) {
-      Matcher matcher = URL_PATTERN.matcher(spec.trim());
-      if (matcher.matches()) {
-        String protocol = matcher.group(1);
-        if (protocol == null) {
-          protocol = "http";
-        }
-        String host = matcher.group(2);
-        int port = 80;
-        String portStr = matcher.group(3);
-        if (portStr != null) {
-          port = Integer.parseInt(portStr);
-        }
-        backends.add(new Backend(protocol, host, port));
-      }
-    }
+    List<Backend> backends = parseBackends(props.getProperty("backends", defaultBack));
     log.info("Using backends: " + backends);
 
     // Run the pipeline
@@ -36,6 +36,7 @@ import java.security.cert.CertificateException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -83,6 +84,10 @@ public class StanfordCoreNLPServer implements Runnable {
   protected static String serverPropertiesPath = null;
   @ArgumentParser.Option(name="maxCharLength", gloss="Max length string that will be processed (non-positive means no limit)")
   protected static int maxCharLength = 100000;
+  @ArgumentParser.Option(name="compression", gloss="If true, compress annotation responses with gzip or deflate when the client accepts it")
+  protected boolean compression = true;
+  @ArgumentParser.Option(name="metrics", gloss="If true, time every annotator, and serve metrics in the Prometheus text format at /metrics on the status port")
+  protected boolean metricsEnabled = false;
 
 
   protected final String shutdownKey;
@@ -105,6 +110,20 @@ public class StanfordCoreNLPServer implements Runnable {
    */
   private final ExecutorService corenlpExecutor;
 
+  /**
+   * The metrics of this server, served at /metrics if {@link StanfordCoreNLPServer#metricsEnabled} is set.
+   * Annotator metrics are only recorded if it is set.
+   */
+  protected final PipelineMetrics metrics = new PipelineMetrics();
+  /** The annotation requests this server has received */
+  private final AtomicLong requestCount = metrics.counter("requests_total", "The annotation requests received.");
+  /** The annotation requests which timed out */
+  private final AtomicLong timeoutCount = metrics.counter("timeouts_total", "The annotation requests which timed out.");
+  /** The annotation requests which failed, including those which timed out */
+  private final AtomicLong errorCount = metrics.counter("errors_total", "The annotation requests which failed, including timeouts.");
+  /** The time taken to answer each annotation request */
+  private final LatencyHistogram requestLatency = metrics.histogram("request_latency_seconds", "The time taken to answer an annotation request, from receiving it to sending the response.");
+
 
   /**
    * Create a new Stanford CoreNLP Server.
@@ -190,6 +209,12 @@ public class StanfordCoreNLPServer implements Runnable {
 
     this.serverExecutor = Executors.newFixedThreadPool(ArgumentParser.threads);
     this.corenlpExecutor = Executors.newFixedThreadPool(ArgumentParser.threads);
+    metrics.gauge("annotation_queue_depth", "The annotation requests waiting for a free annotation thread.",
+        () -> ((ThreadPoolExecutor) corenlpExecutor).getQueue().size());
+    metrics.gauge("annotation_threads_active", "The annotation threads busy annotating.",
+        () -> ((ThreadPoolExecutor) corenlpExecutor).getActiveCount());
+    metrics.gauge("annotator_cache_size", "The annotators in the global annotator cache.",
+        StanfordCoreNLP.GLOBAL_ANNOTATOR_CACHE::size);
 
     // Generate and write a shutdown key, get optional server_id from passed in properties
     // this way if multiple servers running can shut them all down with different ids
@@ -284,7 +309,7 @@ public class StanfordCoreNLPServer implements Runnable {
           encoding = defaultEncoding;
         }
 
-        String text = IOUtils.slurpReader(IOUtils.encodedInputStreamReader(httpExchange.getRequestBody(), encoding));
+        String text = IOUtils.slurpReader(IOUtils.encodedInputStreamReader(requestBody(httpExchange), encoding));
 
 
         // Remove the \ and + characters that mess up the URL decoding.
@@ -301,7 +326,7 @@ public class StanfordCoreNLPServer implements Runnable {
       case "serialized":
         String inputSerializerName = props.getProperty("inputSerializer", ProtobufAnnotationSerializer.class.getName());
         AnnotationSerializer serializer = MetaClass.create(inputSerializerName).createInstance();
-        Pair<Annotation, InputStream> pair = serializer.read(httpExchange.getRequestBody());
+        Pair<Annotation, InputStream> pair = serializer.read(requestBody(httpExchange));
         return pair.first;
       default:
         throw new IOException("Could not parse input format: " + inputFormat);
@@ -309,6 +334,21 @@ public class StanfordCoreNLPServer implements Runnable {
   }
 
 
+  /**
+   * The body of a request, decompressed according to its <code>Content-Encoding</code> header.
+   *
+   * @throws IOException Thrown if the content encoding is not one we support.
+   */
+  private static InputStream requestBody(HttpExchange httpExchange) throws IOException {
+    try {
+      return ContentEncoding.fromHeader(httpExchange.getRequestHeaders().getFirst("Content-Encoding"))
+          .decompress(httpExchange.getRequestBody());
+    } catch (IllegalArgumentException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+
   /**
    * Create (or retrieve) a StanfordCoreNLP object corresponding to these properties.
    *
@@ -342,6 +382,9 @@ public class StanfordCoreNLPServer implements Runnable {
         }
         // Create a CoreNLP
         impl = new StanfordCoreNLP(props);
+        if (metricsEnabled) {
+          impl.setMetrics(metrics);
+        }
         this.lastPipeline = new SoftReference<>(Pair.makePair(cacheKey, impl));
       }
     }
@@ -462,6 +505,23 @@ public class StanfordCoreNLPServer implements Runnable {
   }
 
 
+  /**
+   * A helper function to respond to a request whose <code>Accept-Encoding</code> header
+   * refuses every content coding we could send.
+   *
+   * @param response The description of the error to send to the user.
+   * @param httpExchange The exchange to send the error over.
+   *
+   * @throws IOException Thrown if the HttpExchange cannot communicate the error.
+   */
+  private static void respondNotAcceptable(String response, HttpExchange httpExchange) throws IOException {
+    httpExchange.getResponseHeaders().add("Content-type", "text/plain");
+    httpExchange.sendResponseHeaders(HTTP_NOT_ACCEPTABLE, response.length());
+    httpExchange.getResponseBody().write(response.getBytes());
+    httpExchange.close();
+  }
+
+
   /**
    * A helper function to respond to a request with an error stating that the user is not authorized
    * to make this request.
@@ -583,6 +643,22 @@ public class StanfordCoreNLPServer implements Runnable {
   } // end static class LiveHandler
 
 
+  /**
+   * A handler for the server's metrics, in the Prometheus text exposition format.
+   * This is served on the status port if metrics are enabled with <code>-metrics</code>.
+   */
+  protected class MetricsHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange httpExchange) throws IOException {
+      httpExchange.getResponseHeaders().set("Content-type", "text/plain; version=0.0.4; charset=utf-8");
+      byte[] response = metrics.toPrometheus().getBytes("utf-8");
+      httpExchange.sendResponseHeaders(HTTP_OK, response.length);
+      httpExchange.getResponseBody().write(response);
+      httpExchange.close();
+    }
+  } // end class MetricsHandler
+
+
   /**
    * Sending the appropriate shutdown key will gracefully shutdown the server.
    * This key is, by default, saved into the local file /tmp/corenlp.shutdown on the
@@ -700,6 +776,7 @@ public class StanfordCoreNLPServer implements Runnable {
 
     @Override
     public void handle(HttpExchange httpExchange) throws IOException {
+      long startTime = System.nanoTime();
       setHttpExchangeResponseHeaders(httpExchange);
 
       // Get sentence.
@@ -727,6 +804,7 @@ public class StanfordCoreNLPServer implements Runnable {
             return;
           }
           log("[" + httpExchange.getRemoteAddress() + "] API call w/annotators " + props.getProperty("annotators", "<unknown>"));
+          requestCount.incrementAndGet();
           ann = getDocument(props, httpExchange);
           of = StanfordCoreNLP.OutputFormat.valueOf(props.getProperty("outputFormat", "json").toUpperCase());
           String text = ann.get(CoreAnnotations.TextAnnotation.class).replace('\n', ' ');
@@ -740,6 +818,7 @@ public class StanfordCoreNLPServer implements Runnable {
         }
       } catch (Exception e) {
         e.printStackTrace();
+        errorCount.incrementAndGet();
         respondError("Could not handle incoming annotation", httpExchange);
         return;
       }
@@ -774,27 +853,54 @@ public class StanfordCoreNLPServer implements Runnable {
         completedAnnotationFuture = null;  // No longer any need for the future
 
         // Get output
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
         AnnotationOutputter.Options options = AnnotationOutputter.getOptions(pipeline);
-        StanfordCoreNLP.createOutputter(props, options).accept(completedAnnotation, os);
-        os.close();
-        byte[] response = os.toByteArray();
-
         String contentType = getContentType(props, of);
         if (contentType.equals("application/json") || contentType.startsWith("text/")) {
           contentType += ";charset=" + options.encoding;
         }
         httpExchange.getResponseHeaders().add("Content-type", contentType);
-        httpExchange.getResponseHeaders().add("Content-length", Integer.toString(response.length));
-        httpExchange.sendResponseHeaders(HTTP_OK, response.length);
-        httpExchange.getResponseBody().write(response);
+        httpExchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+        ContentEncoding encoding = ContentEncoding.negotiate(httpExchange.getRequestHeaders().getFirst("Accept-Encoding"), compression);
+        if (encoding == null) {
+          errorCount.incrementAndGet();
+          respondNotAcceptable("None of the content codings the request accepts can be sent: " + (compression ? "gzip, deflate, identity" : "identity"), httpExchange);
+          return;
+        } else if (encoding == ContentEncoding.IDENTITY) {
+          ByteArrayOutputStream os = new ByteArrayOutputStream();
+          StanfordCoreNLP.createOutputter(props, options).accept(completedAnnotation, os);
+          os.close();
+          byte[] response = os.toByteArray();
+          httpExchange.getResponseHeaders().add("Content-length", Integer.toString(response.length));
+          httpExchange.sendResponseHeaders(HTTP_OK, response.length);
+          httpExchange.getResponseBody().write(response);
+        } else {
+          // Stream the compressed output as it's written, in chunks
+          httpExchange.getResponseHeaders().add("Content-Encoding", encoding.headerValue);
+          httpExchange.sendResponseHeaders(HTTP_OK, 0);
+          try {
+            OutputStream os = encoding.compress(httpExchange.getResponseBody());
+            StanfordCoreNLP.createOutputter(props, options).accept(completedAnnotation, os);
+            os.close();
+          } catch (RuntimeException | IOException e) {
+            // The headers are gone, so we can't send an error. Leave the compressed stream
+            // unfinished, so that the client fails to decompress it rather than reading a partial document.
+            e.printStackTrace();
+            errorCount.incrementAndGet();
+            httpExchange.close();
+            requestLatency.recordNanos(System.nanoTime() - startTime);
+            return;
+          }
+        }
         httpExchange.close();
+        requestLatency.recordNanos(System.nanoTime() - startTime);
         if (completedAnnotation != null && ! StringUtils.isNullOrEmpty(props.getProperty("annotators"))) {
           callback.accept(new FinishedRequest(props, completedAnnotation));
         }
       } catch (TimeoutException e) {
         // Print the stack trace for debugging
         e.printStackTrace();
+        timeoutCount.incrementAndGet();
+        errorCount.incrementAndGet();
         // Return error message.
         respondError("CoreNLP request timed out. Your document may be too long.", httpExchange);
         // Cancel the future if it's alive
@@ -805,6 +911,7 @@ public class StanfordCoreNLPServer implements Runnable {
       } catch (Exception e) {
         // Print the stack trace for debugging
         e.printStackTrace();
+        errorCount.incrementAndGet();
         // Return error message.
         respondError(e.getClass().getName() + ": " + e.getMessage(), httpExchange);
         // Cancel the future if it's alive
@@ -1229,6 +1336,9 @@ public class StanfordCoreNLPServer implements Runnable {
         // Add the two status endpoints
         withAuth(server.createContext("/live", new LiveHandler()), Optional.empty());
         withAuth(server.createContext("/ready", new ReadyHandler(live)), Optional.empty());
+        if (metricsEnabled) {
+          withAuth(server.createContext("/metrics", new MetricsHandler()), Optional.empty());
+        }
         // Start the server
         server.start();
         // Server started
@@ -1308,7 +1418,9 @@ public class StanfordCoreNLPServer implements Runnable {
       if (this.serverPort == this.statusPort) {
         withAuth(server.createContext("/live", new LiveHandler()), Optional.empty());
         withAuth(server.createContext("/ready", new ReadyHandler(live)), Optional.empty());
-
+        if (metricsEnabled) {
+          withAuth(server.createContext("/metrics", new MetricsHandler()), Optional.empty());
+        }
       }
       server.setExecutor(serverExecutor);
       server.start();
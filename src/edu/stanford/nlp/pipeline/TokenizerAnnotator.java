@@ -7,6 +7,7 @@ import java.util.*;
 import edu.stanford.nlp.ling.CoreAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.TokenTable;
 import edu.stanford.nlp.process.*;
 import edu.stanford.nlp.international.spanish.process.SpanishTokenizer;
 import edu.stanford.nlp.international.french.process.FrenchTokenizer;
@@ -126,6 +127,12 @@ public class TokenizerAnnotator implements Annotator  {
   private final boolean VERBOSE;
   private final TokenizerFactory<CoreLabel> factory;
 
+  /** If true, store the tokens of each document in a columnar {@link TokenTable} */
+  private final boolean columnar;
+  /** The factory for columnar tokenizing, whose tokens are rows of the table of the document being tokenized */
+  private final TokenizerFactory<CoreLabel> columnarFactory;
+  private final TableTokenFactory tableTokenFactory;
+
   /** new segmenter properties **/
   private final boolean useSegmenter;
   private final Annotator segmenterAnnotator;
@@ -214,10 +221,41 @@ public class TokenizerAnnotator implements Annotator  {
       segmenterAnnotator = null;
     }
     VERBOSE = PropertiesUtils.getBool(props, "tokenize.verbose", verbose);
+    columnar = PropertiesUtils.getBool(props, "tokenize.columnar", false);
     TokenizerType type = TokenizerType.getTokenizerType(props);
-    factory = initFactory(type, props, options);
+    factory = initFactory(type, props, options, new CoreLabelTokenFactory());
+    if (columnar) {
+      tableTokenFactory = new TableTokenFactory();
+      columnarFactory = initFactory(type, props, options, tableTokenFactory);
+    } else {
+      tableTokenFactory = null;
+      columnarFactory = null;
+    }
   }
 
+  /**
+   * A token factory which makes each token as a new row of the table set for
+   * the current thread, so that one tokenizer factory can be kept for
+   * columnar tokenizing while each document gets its own table.
+   */
+  private static class TableTokenFactory extends CoreLabelTokenFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ThreadLocal<CoreLabelTokenFactory> rows = new ThreadLocal<>();
+
+    @Override
+    public CoreLabel makeToken(String tokenText, int begin, int length) {
+      return rows.get().makeToken(tokenText, begin, length);
+    }
+
+    @Override
+    public CoreLabel makeToken(String tokenText, String originalText, int begin, int length) {
+      return rows.get().makeToken(tokenText, originalText, begin, length);
+    }
+
+  } // end static class TableTokenFactory
+
   /**
    * initFactory returns the right type of TokenizerFactory based on the options in the properties file
    * and the type. When adding a new Tokenizer, modify TokenizerType.getTokenizerType() to retrieve
@@ -227,8 +265,10 @@ public class TokenizerAnnotator implements Annotator  {
    * @param type the TokenizerType
    * @param props the properties file
    * @param extraOptions extra things that should be passed into the tokenizer constructor
+   * @param tokenFactory what makes the tokens
    */
-  private static TokenizerFactory<CoreLabel> initFactory(TokenizerType type, Properties props, String extraOptions) throws IllegalArgumentException{
+  private static TokenizerFactory<CoreLabel> initFactory(TokenizerType type, Properties props, String extraOptions,
+                                                         LexedTokenFactory<CoreLabel> tokenFactory) throws IllegalArgumentException{
     TokenizerFactory<CoreLabel> factory;
     String options = props.getProperty("tokenize.options", null);
 
@@ -256,27 +296,27 @@ public class TokenizerAnnotator implements Annotator  {
       break;
 
     case Spanish:
-      factory = SpanishTokenizer.factory(new CoreLabelTokenFactory(), options);
+      factory = SpanishTokenizer.factory(tokenFactory, options);
       break;
 
     case French:
-      factory = FrenchTokenizer.factory(new CoreLabelTokenFactory(), options);
+      factory = FrenchTokenizer.factory(tokenFactory, options);
       break;
 
     case Whitespace:
       boolean eolIsSignificant = Boolean.valueOf(props.getProperty(EOL_PROPERTY, "false"));
       eolIsSignificant = eolIsSignificant || Boolean.valueOf(props.getProperty(StanfordCoreNLP.NEWLINE_SPLITTER_PROPERTY, "false"));
-      factory = new WhitespaceTokenizer.WhitespaceTokenizerFactory<>(new CoreLabelTokenFactory(), eolIsSignificant);
+      factory = new WhitespaceTokenizer.WhitespaceTokenizerFactory<>(tokenFactory, eolIsSignificant);
       break;
 
     case English:
     case German:
-      factory = PTBTokenizer.factory(new CoreLabelTokenFactory(), options);
+      factory = PTBTokenizer.factory(tokenFactory, options);
       break;
 
     case Unspecified:
       log.info("No tokenizer type provided. Defaulting to PTBTokenizer.");
-      factory = PTBTokenizer.factory(new CoreLabelTokenFactory(), options);
+      factory = PTBTokenizer.factory(tokenFactory, options);
       break;
 
     default:
@@ -315,7 +355,18 @@ public class TokenizerAnnotator implements Annotator  {
       Reader r = new StringReader(text);
       // don't wrap in BufferedReader.  It gives you nothing for in-memory String unless you need the readLine() method!
 
-      List<CoreLabel> tokens = getTokenizer(r).tokenize();
+      List<CoreLabel> tokens;
+      if (columnar) {
+        // the tokens are made as rows of a table, to save memory on large documents
+        tableTokenFactory.rows.set(new TokenTable().tokenFactory());
+        try {
+          tokens = columnarFactory.getTokenizer(r).tokenize();
+        } finally {
+          tableTokenFactory.rows.remove();
+        }
+      } else {
+        tokens = getTokenizer(r).tokenize();
+      }
       // cdm 2010-05-15: This is now unnecessary, as it is done in CoreLabelTokenFactory
       // for (CoreLabel token: tokens) {
       // token.set(CoreAnnotations.TextAnnotation.class, token.get(CoreAnnotations.TextAnnotation.class));
@@ -52,11 +52,20 @@ public class XMLOutputter extends AnnotationOutputter  {
 
   public XMLOutputter() {}
 
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   *
+   * <p>
+   *   The output is the serialization of {@link XMLOutputter#annotationToDoc(Annotation, Options)}, but the document
+   *   is never built with all of its sentences: each sentence element is built as the serializer reaches it,
+   *   and can be collected as soon as it has been written.
+   * </p>
+   */
   @Override
   public void print(Annotation annotation, OutputStream os, Options options) throws IOException {
-    Document xmlDoc = annotationToDoc(annotation, options);
-    Serializer ser = new Serializer(os, options.encoding);
+    Element sentencesPlaceholder = new Element("sentence", NAMESPACE_URI);
+    Document xmlDoc = annotationToDoc(annotation, options, sentencesPlaceholder);
+    Serializer ser = new SentenceStreamingSerializer(os, options, annotation.get(CoreAnnotations.SentencesAnnotation.class), sentencesPlaceholder);
     if (options.pretty) {
       ser.setIndent(2);
     } else {
@@ -87,10 +96,49 @@ public class XMLOutputter extends AnnotationOutputter  {
     return annotationToDoc(annotation, options);
   }
 
+  /**
+   * A serializer which writes the elements of the given sentences in place of a placeholder element,
+   * building each one only when it is about to be written.
+   * Since the sentence elements go through the same {@link Serializer#writeChild(Node)} as every other element,
+   * the output is exactly as if they had been in the document all along.
+   */
+  private static class SentenceStreamingSerializer extends Serializer {
+    private final Options options;
+    private final List<CoreMap> sentences;
+    private final Element placeholder;
+
+    private SentenceStreamingSerializer(OutputStream os, Options options, List<CoreMap> sentences, Element placeholder) throws IOException {
+      super(os, options.encoding);
+      this.options = options;
+      this.sentences = sentences;
+      this.placeholder = placeholder;
+    }
+
+    @Override
+    protected void writeChild(Node node) throws IOException {
+      if (node == placeholder) {
+        for (int i = 0; i < sentences.size(); ++i) {
+          super.writeChild(sentenceToElement(sentences.get(i), i + 1, options));
+        }
+      } else {
+        super.writeChild(node);
+      }
+    }
+  }
+
   /**
    * Converts the given annotation to an XML document using the specified options
    */
   public static Document annotationToDoc(Annotation annotation, Options options) {
+    return annotationToDoc(annotation, options, null);
+  }
+
+  /**
+   * Converts the given annotation to an XML document using the specified options.
+   * If a placeholder element is given, it stands in for the elements of all of the sentences (if there are any),
+   * which are not built.
+   */
+  private static Document annotationToDoc(Annotation annotation, Options options, Element sentencesPlaceholder) {
     //
     // create the XML document with the root node pointing to the namespace URL
     //
@@ -120,111 +168,17 @@ public class XMLOutputter extends AnnotationOutputter  {
     // save the info for each sentence in this doc
     //
     if(annotation.get(CoreAnnotations.SentencesAnnotation.class) != null){
-      int sentCount = 1;
-      for (CoreMap sentence: annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
-        Element sentElem = new Element("sentence", NAMESPACE_URI);
-        sentElem.addAttribute(new Attribute("id", Integer.toString(sentCount)));
-        Integer lineNumber = sentence.get(CoreAnnotations.LineNumberAnnotation.class);
-        if (lineNumber != null) {
-          sentElem.addAttribute(new Attribute("line", Integer.toString(lineNumber)));
+      if (sentencesPlaceholder != null) {
+        if ( ! annotation.get(CoreAnnotations.SentencesAnnotation.class).isEmpty()) {
+          sentencesElem.appendChild(sentencesPlaceholder);
         }
-        sentCount ++;
-
-        // add the word table with all token-level annotations
-        Element wordTable = new Element("tokens", NAMESPACE_URI);
-        List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
-        for(int j = 0; j < tokens.size(); j ++){
-          Element wordInfo = new Element("token", NAMESPACE_URI);
-          addWordInfo(wordInfo, tokens.get(j), j + 1, NAMESPACE_URI);
-          wordTable.appendChild(wordInfo);
+      } else {
+        int sentCount = 1;
+        for (CoreMap sentence: annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+          // add the sentence to the root
+          sentencesElem.appendChild(sentenceToElement(sentence, sentCount, options));
+          sentCount ++;
         }
-        sentElem.appendChild(wordTable);
-
-        // add tree info
-        Tree tree = sentence.get(TreeCoreAnnotations.TreeAnnotation.class);
-
-        if(tree != null) {
-          // add the constituent tree for this sentence
-          Element parseInfo = new Element("parse", NAMESPACE_URI);
-          addConstituentTreeInfo(parseInfo, tree, options.constituentTreePrinter);
-          sentElem.appendChild(parseInfo);
-        }
-
-        SemanticGraph basicDependencies = sentence.get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class);
-
-        if (basicDependencies != null) {
-          // add the dependencies for this sentence
-          Element depInfo = buildDependencyTreeInfo("basic-dependencies", sentence.get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class), tokens, NAMESPACE_URI);
-          if (depInfo != null) {
-            sentElem.appendChild(depInfo);
-          }
-
-          depInfo = buildDependencyTreeInfo("collapsed-dependencies", sentence.get(SemanticGraphCoreAnnotations.CollapsedDependenciesAnnotation.class), tokens, NAMESPACE_URI);
-          if (depInfo != null) {
-            sentElem.appendChild(depInfo);
-          }
-
-          depInfo = buildDependencyTreeInfo("collapsed-ccprocessed-dependencies", sentence.get(SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class), tokens, NAMESPACE_URI);
-          if (depInfo != null) {
-            sentElem.appendChild(depInfo);
-          }
-
-          depInfo = buildDependencyTreeInfo("enhanced-dependencies", sentence.get(SemanticGraphCoreAnnotations.EnhancedDependenciesAnnotation.class), tokens, NAMESPACE_URI);
-          if (depInfo != null) {
-            sentElem.appendChild(depInfo);
-          }
-
-          depInfo = buildDependencyTreeInfo("enhanced-plus-plus-dependencies", sentence.get(SemanticGraphCoreAnnotations.EnhancedPlusPlusDependenciesAnnotation.class), tokens, NAMESPACE_URI);
-          if (depInfo != null) {
-            sentElem.appendChild(depInfo);
-          }
-        }
-
-        // add Open IE triples
-        Collection<RelationTriple> openieTriples = sentence.get(NaturalLogicAnnotations.RelationTriplesAnnotation.class);
-        if (openieTriples != null) {
-          Element openieElem = new Element("openie", NAMESPACE_URI);
-          addTriples(openieTriples, openieElem, NAMESPACE_URI);
-          sentElem.appendChild(openieElem);
-        }
-
-        // add KBP triples
-        Collection<RelationTriple> kbpTriples = sentence.get(CoreAnnotations.KBPTriplesAnnotation.class);
-        if (kbpTriples != null) {
-          Element kbpElem = new Element("kbp", NAMESPACE_URI);
-          addTriples(kbpTriples, kbpElem, NAMESPACE_URI);
-          sentElem.appendChild(kbpElem);
-        }
-
-        // add the MR entities and relations
-        List<EntityMention> entities = sentence.get(MachineReadingAnnotations.EntityMentionsAnnotation.class);
-        List<RelationMention> relations = sentence.get(MachineReadingAnnotations.RelationMentionsAnnotation.class);
-        if (entities != null && ! entities.isEmpty()){
-          Element mrElem = new Element("MachineReading", NAMESPACE_URI);
-          Element entElem = new Element("entities", NAMESPACE_URI);
-          addEntities(entities, entElem, NAMESPACE_URI);
-          mrElem.appendChild(entElem);
-
-          if(relations != null){
-            Element relElem = new Element("relations", NAMESPACE_URI);
-            addRelations(relations, relElem, NAMESPACE_URI, options.relationsBeam);
-            mrElem.appendChild(relElem);
-          }
-
-          sentElem.appendChild(mrElem);
-        }
-
-        // Adds sentiment as an attribute of this sentence.
-        Tree sentimentTree = sentence.get(SentimentCoreAnnotations.SentimentAnnotatedTree.class);
-        if (sentimentTree != null) {
-          int sentiment = RNNCoreAnnotations.getPredictedClass(sentimentTree);
-          sentElem.addAttribute(new Attribute("sentimentValue", Integer.toString(sentiment)));
-          String sentimentClass = sentence.get(SentimentCoreAnnotations.SentimentClass.class);
-          sentElem.addAttribute(new Attribute("sentiment", sentimentClass.replaceAll(" ", "")));
-        }
-
-        // add the sentence to the root
-        sentencesElem.appendChild(sentElem);
       }
     }
 
@@ -247,6 +201,113 @@ public class XMLOutputter extends AnnotationOutputter  {
     return xmlDoc;
   }
 
+  /**
+   * Generates the XML element for a single sentence, the <code>sentCount</code>th (from 1) in its document.
+   */
+  private static Element sentenceToElement(CoreMap sentence, int sentCount, Options options) {
+    Element sentElem = new Element("sentence", NAMESPACE_URI);
+    sentElem.addAttribute(new Attribute("id", Integer.toString(sentCount)));
+    Integer lineNumber = sentence.get(CoreAnnotations.LineNumberAnnotation.class);
+    if (lineNumber != null) {
+      sentElem.addAttribute(new Attribute("line", Integer.toString(lineNumber)));
+    }
+
+    // add the word table with all token-level annotations
+    Element wordTable = new Element("tokens", NAMESPACE_URI);
+    List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+    for(int j = 0; j < tokens.size(); j ++){
+      Element wordInfo = new Element("token", NAMESPACE_URI);
+      addWordInfo(wordInfo, tokens.get(j), j + 1, NAMESPACE_URI);
+      wordTable.appendChild(wordInfo);
+    }
+    sentElem.appendChild(wordTable);
+
+    // add tree info
+    Tree tree = sentence.get(TreeCoreAnnotations.TreeAnnotation.class);
+
+    if(tree != null) {
+      // add the constituent tree for this sentence
+      Element parseInfo = new Element("parse", NAMESPACE_URI);
+      addConstituentTreeInfo(parseInfo, tree, options.constituentTreePrinter);
+      sentElem.appendChild(parseInfo);
+    }
+
+    SemanticGraph basicDependencies = sentence.get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class);
+
+    if (basicDependencies != null) {
+      // add the dependencies for this sentence
+      Element depInfo = buildDependencyTreeInfo("basic-dependencies", sentence.get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class), tokens, NAMESPACE_URI);
+      if (depInfo != null) {
+        sentElem.appendChild(depInfo);
+      }
+
+      depInfo = buildDependencyTreeInfo("collapsed-dependencies", sentence.get(SemanticGraphCoreAnnotations.CollapsedDependenciesAnnotation.class), tokens, NAMESPACE_URI);
+      if (depInfo != null) {
+        sentElem.appendChild(depInfo);
+      }
+
+      depInfo = buildDependencyTreeInfo("collapsed-ccprocessed-dependencies", sentence.get(SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class), tokens, NAMESPACE_URI);
+      if (depInfo != null) {
+        sentElem.appendChild(depInfo);
+      }
+
+      depInfo = buildDependencyTreeInfo("enhanced-dependencies", sentence.get(SemanticGraphCoreAnnotations.EnhancedDependenciesAnnotation.class), tokens, NAMESPACE_URI);
+      if (depInfo != null) {
+        sentElem.appendChild(depInfo);
+      }
+
+      depInfo = buildDependencyTreeInfo("enhanced-plus-plus-dependencies", sentence.get(SemanticGraphCoreAnnotations.EnhancedPlusPlusDependenciesAnnotation.class), tokens, NAMESPACE_URI);
+      if (depInfo != null) {
+        sentElem.appendChild(depInfo);
+      }
+    }
+
+    // add Open IE triples
+    Collection<RelationTriple> openieTriples = sentence.get(NaturalLogicAnnotations.RelationTriplesAnnotation.class);
+    if (openieTriples != null) {
+      Element openieElem = new Element("openie", NAMESPACE_URI);
+      addTriples(openieTriples, openieElem, NAMESPACE_URI);
+      sentElem.appendChild(openieElem);
+    }
+
+    // add KBP triples
+    Collection<RelationTriple> kbpTriples = sentence.get(CoreAnnotations.KBPTriplesAnnotation.class);
+    if (kbpTriples != null) {
+      Element kbpElem = new Element("kbp", NAMESPACE_URI);
+      addTriples(kbpTriples, kbpElem, NAMESPACE_URI);
+      sentElem.appendChild(kbpElem);
+    }
+
+    // add the MR entities and relations
+    List<EntityMention> entities = sentence.get(MachineReadingAnnotations.EntityMentionsAnnotation.class);
+    List<RelationMention> relations = sentence.get(MachineReadingAnnotations.RelationMentionsAnnotation.class);
+    if (entities != null && ! entities.isEmpty()){
+      Element mrElem = new Element("MachineReading", NAMESPACE_URI);
+      Element entElem = new Element("entities", NAMESPACE_URI);
+      addEntities(entities, entElem, NAMESPACE_URI);
+      mrElem.appendChild(entElem);
+
+      if(relations != null){
+        Element relElem = new Element("relations", NAMESPACE_URI);
+        addRelations(relations, relElem, NAMESPACE_URI, options.relationsBeam);
+        mrElem.appendChild(relElem);
+      }
+
+      sentElem.appendChild(mrElem);
+    }
+
+    // Adds sentiment as an attribute of this sentence.
+    Tree sentimentTree = sentence.get(SentimentCoreAnnotations.SentimentAnnotatedTree.class);
+    if (sentimentTree != null) {
+      int sentiment = RNNCoreAnnotations.getPredictedClass(sentimentTree);
+      sentElem.addAttribute(new Attribute("sentimentValue", Integer.toString(sentiment)));
+      String sentimentClass = sentence.get(SentimentCoreAnnotations.SentimentClass.class);
+      sentElem.addAttribute(new Attribute("sentiment", sentimentClass.replaceAll(" ", "")));
+    }
+
+    return sentElem;
+  }
+
   /**
    * Generates the XML content for a list of OpenIE triples.
    */
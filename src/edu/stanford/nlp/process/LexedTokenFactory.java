@@ -20,4 +20,19 @@ public interface LexedTokenFactory<T> {
    */
   T makeToken(String str, int begin, int length);
 
+  /**
+   * Constructs a token from characters of the lexer's buffer, when the token is exactly
+   * the text it was lexed from. Factories which can avoid making a String for every token
+   * (such as {@link ReusableTokenFactory}) override this; the buffer is only valid during the call.
+   *
+   * @param buffer The buffer of the lexer.
+   * @param start The index of the first character of the token in the buffer.
+   * @param begin The offset in the document of the first character of the token.
+   * @param length The number of characters in the token.
+   * @return The token of type T.
+   */
+  default T makeToken(char[] buffer, int start, int begin, int length) {
+    return makeToken(new String(buffer, start, length), begin, length);
+  }
+
 }
@@ -28,6 +28,8 @@ package edu.stanford.nlp.process;
 
 
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -38,6 +40,7 @@ import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.Word;
 import edu.stanford.nlp.ling.HasWord;
 import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.MappedFileReader;
 import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.PropertiesUtils;
@@ -215,6 +218,28 @@ public class PTBTokenizer<T extends HasWord> extends AbstractTokenizer<T>  {
   }
 
 
+  /**
+   * Constructs a new PTBTokenizer for tokenizing large files quickly.
+   * The file is memory-mapped and decoded in large chunks, and every token is returned
+   * in the same {@link ReusableToken}, whose String is only made if asked for.
+   * The tokens and their offsets are the same as those of a tokenizer of CoreLabels
+   * with the same options, which may not include invertible: a ReusableToken has nowhere
+   * to keep the text around a token.
+   *
+   * @param file The file to tokenize
+   * @param encoding The encoding of the file
+   * @param options Options to the lexer, as for {@link #PTBTokenizer(Reader, LexedTokenFactory, String)}
+   * @return A PTBTokenizer which returns the same ReusableToken for every token
+   * @throws IllegalArgumentException If the options include invertible
+   */
+  public static PTBTokenizer<ReusableToken> newReusableTokenTokenizer(Path file, Charset encoding, String options) throws IOException {
+    if (options != null && Boolean.parseBoolean(StringUtils.stringToProperties(options).getProperty("invertible"))) {
+      throw new IllegalArgumentException("PTBTokenizer: a ReusableToken tokenizer can't be invertible: " + options);
+    }
+    return new PTBTokenizer<>(new MappedFileReader(file, encoding), new ReusableTokenFactory(), options);
+  }
+
+
   /**
    * Constructs a new PTBTokenizer that optionally returns carriage returns
    * as their own token, and has a custom LexedTokenFactory.
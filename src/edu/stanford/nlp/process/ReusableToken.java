@@ -0,0 +1,136 @@
+package edu.stanford.nlp.process;
+
+import java.util.Arrays;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.HasOffset;
+import edu.stanford.nlp.ling.HasWord;
+
+/**
+ * A token which a {@link ReusableTokenFactory} fills in again for each token lexed, so that
+ * tokenizing allocates nothing per token unless the caller asks for it.
+ * The characters of the token are kept in an array; a String is only made by {@link #word()} (and cached),
+ * and a full {@link CoreLabel} only by {@link #toCoreLabel()}.
+ *
+ * <p>
+ *   As the same object is returned for every token, a caller must be done with a token (or copy it)
+ *   before asking the tokenizer for the next one. In particular, the list returned by
+ *   {@link Tokenizer#tokenize()} is not useful with these tokens.
+ * </p>
+ */
+public class ReusableToken implements HasWord, HasOffset, CharSequence {
+
+  private char[] chars = new char[64];
+  private int length;
+  /** The word, if it has been made into a String (or was given as one) */
+  private String word;
+  private int begin = -1;
+  private int end = -1;
+
+  /** Set this token to characters of a buffer, at the given offset in the document. */
+  void set(char[] buffer, int start, int length, int begin) {
+    if (chars.length < length) {
+      chars = new char[Math.max(length, chars.length * 2)];
+    }
+    System.arraycopy(buffer, start, chars, 0, length);
+    this.length = length;
+    this.word = null;
+    this.begin = begin;
+    this.end = begin + length;
+  }
+
+  /** Set this token to a word which the lexer has made, spanning the given characters of the document. */
+  void set(String word, int begin, int length) {
+    this.word = word;
+    this.length = -1;
+    this.begin = begin;
+    this.end = begin + length;
+  }
+
+  /** Whether this token has been set at all. */
+  boolean isSet() {
+    return begin >= 0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String word() {
+    if (word == null && length >= 0) {
+      word = new String(chars, 0, length);
+    }
+    return word;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setWord(String word) {
+    this.word = word;
+    this.length = -1;
+  }
+
+  /**
+   * A new {@link CoreLabel} of this token, the same as {@link CoreLabelTokenFactory} makes
+   * when tokenizing without the invertible option.
+   */
+  public CoreLabel toCoreLabel() {
+    String word = word();
+    return new CoreLabelTokenFactory().makeToken(word, word, begin, end - begin);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int beginPosition() {
+    return begin;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setBeginPosition(int beginPos) {
+    this.begin = beginPos;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int endPosition() {
+    return end;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setEndPosition(int endPos) {
+    this.end = endPos;
+  }
+
+  /** The number of characters in the word. */
+  @Override
+  public int length() {
+    return length >= 0 ? length : word.length();
+  }
+
+  /** A character of the word, without making it into a String. */
+  @Override
+  public char charAt(int index) {
+    if (length >= 0) {
+      if (index >= length) {
+        throw new IndexOutOfBoundsException("Index " + index + " of token of length " + length);
+      }
+      return chars[index];
+    }
+    return word.charAt(index);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return length >= 0 ? new String(Arrays.copyOfRange(chars, start, end)) : word.substring(start, end);
+  }
+
+  /** The word of this token. */
+  @Override
+  public String toString() {
+    return word();
+  }
+
+  private static final long serialVersionUID = 1L;
+
+}
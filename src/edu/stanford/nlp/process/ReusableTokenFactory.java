@@ -0,0 +1,32 @@
+package edu.stanford.nlp.process;
+
+/**
+ * Makes every token lexed into the same {@link ReusableToken}, for tokenizing large amounts of text
+ * without allocating objects per token. Tokens are the same, with the same offsets, as with a
+ * {@link CoreLabelTokenFactory}; see {@link ReusableToken#toCoreLabel()}.
+ * This cannot be used with the invertible option of PTBLexer.
+ *
+ * <p>A factory (and its token) belongs to one tokenizer; make a new one for each.</p>
+ */
+public class ReusableTokenFactory implements LexedTokenFactory<ReusableToken> {
+
+  private final ReusableToken token = new ReusableToken();
+
+  @Override
+  public ReusableToken makeToken(String str, int begin, int length) {
+    token.set(str, begin, length);
+    return token;
+  }
+
+  @Override
+  public ReusableToken makeToken(char[] buffer, int start, int begin, int length) {
+    token.set(buffer, start, length, begin);
+    return token;
+  }
+
+  /** The token last made, or null if no token has been made yet. */
+  ReusableToken lastToken() {
+    return token.isSet() ? token : null;
+  }
+
+}
@@ -5,6 +5,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -181,6 +182,37 @@ public class NodePattern extends SemgrexPattern  {
     isLink = true;
   }
 
+  GraphRelation getReln() {
+    return reln;
+  }
+
+  /**
+   * Returns a key which is the same for two node patterns exactly when
+   * {@link #nodeAttrMatch} gives the same answer for them on every node,
+   * given the same {@link Env}.  Returns null for links and
+   * backreferences, which depend on the other nodes matched so far.
+   */
+  String predicateKey() {
+    if (isLink) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append(negDesc ? '!' : ' ').append(isRoot ? '$' : ' ').append(isEmpty ? '#' : ' ');
+    // the attribute map is a hash map, so put the attributes in a fixed order
+    for (String key : new TreeSet<>(attributes.keySet())) {
+      Object toMatch = attributes.get(key).first;
+      sb.append(';').append(key).append(':');
+      if (toMatch instanceof Boolean) {
+        sb.append("__");
+      } else if (toMatch instanceof Pattern) {
+        sb.append('/').append(((Pattern) toMatch).pattern()).append('/');
+      } else {
+        sb.append('"').append(toMatch).append('"');
+      }
+    }
+    return sb.toString();
+  }
+
   public boolean isRoot() {
     return isRoot;
   }
@@ -128,6 +128,34 @@ public abstract class SemgrexMatcher  {
    */
   private static final WeakHashMap<Integer, List<IndexedWord>> topologicalSortCache = new WeakHashMap<>();
 
+  /**
+   * Returns the vertices of the graph in topological order, the order in
+   * which {@link #find()} tries them, going through the cache.
+   *
+   * @throws IllegalStateException if the graph has cycles
+   */
+  static List<IndexedWord> topologicalSort(SemanticGraph graph) {
+    synchronized (topologicalSortCache) {
+      List<IndexedWord> topoSort = topologicalSortCache.get(System.identityHashCode(graph));
+      if (topoSort == null || topoSort.size() != graph.size()) {  // size check to mitigate a stale cache
+        topoSort = graph.topologicalSort();
+        topologicalSortCache.put(System.identityHashCode(graph), topoSort);
+      }
+      return topoSort;
+    }
+  }
+
+  /**
+   * Restricts the next round of {@link #find()} to trying the given nodes,
+   * in the given order, as matches for the root of the pattern.  This is
+   * used by {@link SemgrexPatternSet}, which already knows which nodes
+   * cannot match the root.  A {@link #reset()} undoes the restriction.
+   */
+  void setFindNodes(List<IndexedWord> nodes) {
+    findIterator = nodes.iterator();
+    findCurrent = null;
+  }
+
   /**
    * Find the next match of the pattern in the graph
    *
@@ -138,25 +166,11 @@ public abstract class SemgrexMatcher  {
     if (findIterator == null) {
       try {
         if (hyp) {
-          synchronized (topologicalSortCache) {
-            List<IndexedWord> topoSort = topologicalSortCache.get(System.identityHashCode(sg));
-            if (topoSort == null || topoSort.size() != sg.size()) {  // size check to mitigate a stale cache
-              topoSort = sg.topologicalSort();
-              topologicalSortCache.put(System.identityHashCode(sg), topoSort);
-            }
-            findIterator = topoSort.iterator();
-          }
+          findIterator = topologicalSort(sg).iterator();
         } else if (sg_aligned == null) {
           return false;
         } else {
-          synchronized (topologicalSortCache) {
-            List<IndexedWord> topoSort = topologicalSortCache.get(System.identityHashCode(sg_aligned));
-            if (topoSort == null || topoSort.size() != sg_aligned.size()) {  // size check to mitigate a stale cache
-              topoSort = sg_aligned.topologicalSort();
-              topologicalSortCache.put(System.identityHashCode(sg_aligned), topoSort);
-            }
-            findIterator = topoSort.iterator();
-          }
+          findIterator = topologicalSort(sg_aligned).iterator();
         }
       } catch (Exception ex) {
         if (hyp) {
@@ -0,0 +1,169 @@
+package edu.stanford.nlp.semgraph.semgrex;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
+import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
+
+/**
+ * A collection of {@link SemgrexPattern}s which are run together against
+ * the same graphs, such as the rules of a rule-based extractor.
+ * <br>
+ * Running a large number of patterns one at a time means every pattern
+ * tests its root node description against every vertex of the graph,
+ * even though many patterns share the same root description
+ * (<code>{ner:PERSON}</code>, <code>{tag:NN}</code>, ...).
+ * This class finds the distinct root descriptions when it is built, tests
+ * each of them once per vertex, and starts each pattern's
+ * {@link SemgrexMatcher} only from the vertices which satisfy its root
+ * description.  The matchers return exactly the matches that
+ * {@link SemgrexPattern#matcher(SemanticGraph, boolean)} would, in the same
+ * order.
+ * <br>
+ * Patterns whose root is not a plain node description (for example a
+ * negated or optional root, or a backreference) are still run, just from
+ * every vertex.
+ */
+public class SemgrexPatternSet {
+
+  private final List<SemgrexPattern> patterns;
+
+  /** One node pattern for each distinct root node description */
+  private final List<NodePattern> rootPredicates = new ArrayList<>();
+
+  /** For each pattern, the index of its root description in rootPredicates, or -1 if it has none */
+  private final int[] rootPredicateIndex;
+
+  public SemgrexPatternSet(Collection<? extends SemgrexPattern> patterns) {
+    this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+    this.rootPredicateIndex = new int[this.patterns.size()];
+    Map<Pair<Env, String>, Integer> predicateIds = Generics.newHashMap();
+    for (int i = 0; i < rootPredicateIndex.length; ++i) {
+      SemgrexPattern pattern = this.patterns.get(i);
+      rootPredicateIndex[i] = -1;
+      if ( ! (pattern instanceof NodePattern) || pattern.isNegated() || pattern.isOptional()) {
+        continue;
+      }
+      NodePattern root = (NodePattern) pattern;
+      String key = root.predicateKey();
+      if (root.getReln() != GraphRelation.ROOT || key == null) {
+        continue;
+      }
+      Pair<Env, String> envKey = new Pair<>(root.env, key);
+      Integer id = predicateIds.get(envKey);
+      if (id == null) {
+        id = rootPredicates.size();
+        predicateIds.put(envKey, id);
+        rootPredicates.add(root);
+      }
+      rootPredicateIndex[i] = id;
+    }
+  }
+
+  /** The patterns in this set, in the order they were given */
+  public List<SemgrexPattern> patterns() {
+    return patterns;
+  }
+
+  public int size() {
+    return patterns.size();
+  }
+
+  /** The number of distinct root node descriptions among the patterns */
+  public int numRootPredicates() {
+    return rootPredicates.size();
+  }
+
+  /**
+   * Returns one matcher per pattern, in the order of {@link #patterns()},
+   * for the given graph.
+   */
+  public List<SemgrexMatcher> matchers(SemanticGraph sg) {
+    return matchers(sg, false);
+  }
+
+  /**
+   * Returns one matcher per pattern, in the order of {@link #patterns()},
+   * for the given graph, matching attributes case insensitively if
+   * <code>ignoreCase</code> is set.
+   */
+  public List<SemgrexMatcher> matchers(SemanticGraph sg, boolean ignoreCase) {
+    // The vertices in the order SemgrexMatcher.find() tries them
+    List<IndexedWord> vertices;
+    try {
+      vertices = SemgrexMatcher.topologicalSort(sg);
+    } catch (Exception e) {
+      vertices = new ArrayList<>(sg.vertexSet());
+    }
+
+    List<List<IndexedWord>> startNodes = new ArrayList<>(rootPredicates.size());
+    BitSet satisfied = new BitSet(vertices.size());
+    for (NodePattern predicate : rootPredicates) {
+      satisfied.clear();
+      for (int i = 0; i < vertices.size(); ++i) {
+        if (predicate.nodeAttrMatch(vertices.get(i), sg, ignoreCase)) {
+          satisfied.set(i);
+        }
+      }
+      List<IndexedWord> nodes = new ArrayList<>(satisfied.cardinality());
+      for (int i = satisfied.nextSetBit(0); i >= 0; i = satisfied.nextSetBit(i + 1)) {
+        nodes.add(vertices.get(i));
+      }
+      startNodes.add(nodes);
+    }
+
+    List<SemgrexMatcher> matchers = new ArrayList<>(patterns.size());
+    for (int i = 0; i < patterns.size(); ++i) {
+      SemgrexMatcher matcher = patterns.get(i).matcher(sg, ignoreCase);
+      if (rootPredicateIndex[i] >= 0) {
+        matcher.setFindNodes(startNodes.get(rootPredicateIndex[i]));
+      }
+      matchers.add(matcher);
+    }
+    return matchers;
+  }
+
+  /**
+   * Applies <code>function</code> to the matchers for each of the graphs,
+   * using <code>numThreads</code> threads (or one per core if numThreads is
+   * not positive), and returns the results in the order of the graphs.
+   * The function is called concurrently, so it must be threadsafe, and
+   * it must not return null.
+   */
+  public <T> List<T> process(List<SemanticGraph> graphs, Function<List<SemgrexMatcher>, T> function, int numThreads) {
+    List<T> results = new ArrayList<>(graphs.size());
+    MulticoreWrapper<SemanticGraph, T> wrapper = new MulticoreWrapper<>(numThreads, new ThreadsafeProcessor<SemanticGraph, T>() {
+      @Override
+      public T process(SemanticGraph graph) {
+        return function.apply(matchers(graph));
+      }
+
+      @Override
+      public ThreadsafeProcessor<SemanticGraph, T> newInstance() {
+        return this;
+      }
+    });
+    for (SemanticGraph graph : graphs) {
+      wrapper.put(graph);
+      while (wrapper.peek()) {
+        results.add(wrapper.poll());
+      }
+    }
+    wrapper.join();
+    while (wrapper.peek()) {
+      results.add(wrapper.poll());
+    }
+    return results;
+  }
+
+}
@@ -964,6 +964,20 @@ public class SeqClassifierFlags implements Serializable  {
   public double dropoutScale = 1.0;
   // keenon: changed from = 1, nowadays it makes sense to default to parallelism
   public int multiThreadGrad = Runtime.getRuntime().availableProcessors();
+  /** If positive, CRF training splits the documents among this many worker processes,
+   *  each computing the gradient on its share with multiThreadGrad threads */
+  public int trainingWorkers = 0;
+  /** Options for the java command of each training worker, such as a maximum heap size */
+  public transient String trainingWorkerJavaOptions = "";
+  /** If set, the state of QN training is saved to this file every qnCheckpointFreq
+   *  iterations, and training resumes from it if it already exists.  The file is
+   *  deleted once training finishes, so only an interrupted run is resumed */
+  public transient String qnCheckpoint = null;
+  public int qnCheckpointFreq = 10;
+  /** If positive, the vector operations of each QN iteration are split among this many threads */
+  public int qnVectorThreads = 0;
+  /** If true, QN stores its history of s,y pairs as floats, which halves its memory */
+  public boolean qnFloatHistory = false;
   public int maxQNItr = 0;
   public boolean dropoutApprox = false;
   public String unsupDropoutFile = null;
@@ -972,6 +986,9 @@ public class SeqClassifierFlags implements Serializable  {
   public int multiThreadPerceptron = 1;
   public boolean lazyUpdate = false;
   public int featureCountThresh = 0;
+  /** If positive, CRF features are hashed into this many buckets for each clique size, with signed
+   *  hashing, rather than kept in an index of feature strings */
+  public int featureHashBuckets = 0;
   public transient String serializeWeightsTo = null;
   public boolean geDebug = false;
   public boolean doFeatureDiscovery = false;
@@ -2495,6 +2512,18 @@ public class SeqClassifierFlags implements Serializable  {
         dropoutScale = Double.parseDouble(val);
       } else if (key.equalsIgnoreCase("multiThreadGrad")){
         multiThreadGrad = Integer.parseInt(val);
+      } else if (key.equalsIgnoreCase("trainingWorkers")){
+        trainingWorkers = Integer.parseInt(val);
+      } else if (key.equalsIgnoreCase("trainingWorkerJavaOptions")){
+        trainingWorkerJavaOptions = val;
+      } else if (key.equalsIgnoreCase("qnCheckpoint")){
+        qnCheckpoint = val;
+      } else if (key.equalsIgnoreCase("qnCheckpointFreq")){
+        qnCheckpointFreq = Integer.parseInt(val);
+      } else if (key.equalsIgnoreCase("qnVectorThreads")){
+        qnVectorThreads = Integer.parseInt(val);
+      } else if (key.equalsIgnoreCase("qnFloatHistory")){
+        qnFloatHistory = Boolean.parseBoolean(val);
       } else if (key.equalsIgnoreCase("maxQNItr")){
         maxQNItr = Integer.parseInt(val);
       } else if (key.equalsIgnoreCase("dropoutApprox")){
@@ -2511,6 +2540,8 @@ public class SeqClassifierFlags implements Serializable  {
         lazyUpdate = Boolean.parseBoolean(val);
       } else if (key.equalsIgnoreCase("featureCountThresh")){
         featureCountThresh = Integer.parseInt(val);
+      } else if (key.equalsIgnoreCase("featureHashBuckets")) {
+        featureHashBuckets = Integer.parseInt(val);
       } else if (key.equalsIgnoreCase("serializeWeightsTo")) {
         serializeWeightsTo = val;
       } else if (key.equalsIgnoreCase("geDebug")){
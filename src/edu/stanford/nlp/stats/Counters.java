@@ -153,6 +153,15 @@ public class Counters  {
   public static <E> double max(Counter<E> c, double valueIfEmpty) {
     if (c.size() == 0) {
       return valueIfEmpty;
+    } else if (c instanceof PrimitiveCounter) {
+      PrimitiveCounter<E> pc = (PrimitiveCounter<E>) c;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int slot = 0, size = pc.tableSize(); slot < size; slot++) {
+        if (pc.hasKey(slot)) {
+          max = Math.max(max, pc.values[slot]);
+        }
+      }
+      return max;
     } else {
       double max = Double.NEGATIVE_INFINITY;
       for (double v : c.values()) {
@@ -252,6 +261,9 @@ public class Counters  {
     if (c.size() == 0) {
       return defaultIfEmpty;
     }
+    if (c instanceof PrimitiveCounter) {
+      return argmax((PrimitiveCounter<E>) c, tieBreaker);
+    }
     double max = Double.NEGATIVE_INFINITY;
     E argmax = null;
     for (E key : c.keySet()) {
@@ -264,6 +276,22 @@ public class Counters  {
     return argmax;
   }
 
+  /** argmax over the slots of a nonempty PrimitiveCounter, without looking up each key. */
+  private static <E> E argmax(PrimitiveCounter<E> c, Comparator<E> tieBreaker) {
+    double max = Double.NEGATIVE_INFINITY;
+    int argmax = -1;
+    for (int slot = 0, size = c.tableSize(); slot < size; slot++) {
+      if (c.hasKey(slot)) {
+        double count = c.values[slot];
+        if (argmax < 0 || count > max || (count == max && tieBreaker.compare(c.keyAt(slot), c.keyAt(argmax)) < 0)) {
+          max = count;
+          argmax = slot;
+        }
+      }
+    }
+    return c.keyAt(argmax);
+  }
+
   /**
    * Finds and returns the key in this Counter with the smallest count.
    *
@@ -317,6 +345,10 @@ public class Counters  {
    */
   // TODO: Rewrite to use arg.entrySet()
   public static <E> void addInPlace(Counter<E> target, Counter<E> arg, double scale) {
+    if (arg instanceof PrimitiveCounter) {
+      addInPlace(target, (PrimitiveCounter<E>) arg, scale, true);
+      return;
+    }
     for (E key : arg.keySet()) {
       target.incrementCount(key, scale * arg.getCount(key));
     }
@@ -326,6 +358,10 @@ public class Counters  {
    * Sets each value of target to be target[k]+arg[k] for all keys k in arg.
    */
   public static <E> void addInPlace(Counter<E> target, Counter<E> arg) {
+    if (arg instanceof PrimitiveCounter) {
+      addInPlace(target, (PrimitiveCounter<E>) arg, 1.0, false);
+      return;
+    }
     for (Map.Entry<E, Double> entry : arg.entrySet()) {
       double count = entry.getValue();
       if (count != 0) {
@@ -334,6 +370,29 @@ public class Counters  {
     }
   }
 
+  /**
+   * addInPlace from the slots of a PrimitiveCounter, with int keys not boxed if both
+   * counters have them. Zero counts are added only if addZeros (as they are
+   * by the scaled addInPlace, which then has the key in target).
+   */
+  private static <E> void addInPlace(Counter<E> target, PrimitiveCounter<E> arg, double scale, boolean addZeros) {
+    if (arg instanceof IntDoubleCounter && target instanceof IntDoubleCounter) {
+      IntDoubleCounter intArg = (IntDoubleCounter) arg;
+      IntDoubleCounter intTarget = (IntDoubleCounter) target;
+      for (int slot = 0, size = intArg.tableSize(); slot < size; slot++) {
+        if (intArg.hasKey(slot) && (addZeros || intArg.values[slot] != 0.0)) {
+          intTarget.incrementCount(intArg.intKeyAt(slot), scale * intArg.values[slot]);
+        }
+      }
+    } else {
+      for (int slot = 0, size = arg.tableSize(); slot < size; slot++) {
+        if (arg.hasKey(slot) && (addZeros || arg.values[slot] != 0.0)) {
+          target.incrementCount(arg.keyAt(slot), scale * arg.values[slot]);
+        }
+      }
+    }
+  }
+
   /**
    * Sets each value of double[] target to be
    * target[idx.indexOf(k)]+a.getCount(k) for all keys k in arg
@@ -475,6 +534,16 @@ public class Counters  {
    * @return The target Counter is returned (for easier method chaining)
    */
   public static <E> Counter<E> divideInPlace(Counter<E> target, double divisor) {
+    if (target instanceof PrimitiveCounter) {
+      PrimitiveCounter<E> pc = (PrimitiveCounter<E>) target;
+      for (int slot = 0, size = pc.tableSize(); slot < size; slot++) {
+        if (pc.hasKey(slot)) {
+          pc.values[slot] /= divisor;
+        }
+      }
+      pc.recomputeTotalCount();
+      return target;
+    }
     for (Entry<E, Double> entry : target.entrySet()) {
       target.setCount(entry.getKey(), entry.getValue() / divisor);
     }
@@ -489,6 +558,16 @@ public class Counters  {
    * @param multiplier The number by which to change each number in the Counter
    */
   public static <E> Counter<E> multiplyInPlace(Counter<E> target, double multiplier) {
+    if (target instanceof PrimitiveCounter) {
+      PrimitiveCounter<E> pc = (PrimitiveCounter<E>) target;
+      for (int slot = 0, size = pc.tableSize(); slot < size; slot++) {
+        if (pc.hasKey(slot)) {
+          pc.values[slot] *= multiplier;
+        }
+      }
+      pc.recomputeTotalCount();
+      return target;
+    }
     for (Entry<E, Double> entry : target.entrySet()) {
       target.setCount(entry.getKey(), entry.getValue() * multiplier);
     }
@@ -1202,6 +1281,9 @@ public class Counters  {
       c1 = c2;
       c2 = tmpCnt;
     }
+    if (c1 instanceof PrimitiveCounter) {
+      return dotProduct((PrimitiveCounter<E>) c1, c2);
+    }
     for (E key : c1.keySet()) {
       double count1 = c1.getCount(key);
       if (Double.isNaN(count1) || Double.isInfinite(count1)) {
@@ -1221,6 +1303,31 @@ public class Counters  {
     return dotProd;
   }
 
+  /** dotProduct over the slots of the smaller counter, c1, with int keys not boxed if both counters have them. */
+  private static <E> double dotProduct(PrimitiveCounter<E> c1, Counter<E> c2) {
+    IntDoubleCounter intC1 = (c1 instanceof IntDoubleCounter && c2 instanceof IntDoubleCounter) ? (IntDoubleCounter) c1 : null;
+    double dotProd = 0.0;
+    for (int slot = 0, size = c1.tableSize(); slot < size; slot++) {
+      if ( ! c1.hasKey(slot)) {
+        continue;
+      }
+      double count1 = c1.values[slot];
+      if (Double.isNaN(count1) || Double.isInfinite(count1)) {
+        throw new RuntimeException("Counters.dotProduct infinite or NaN value for key: " + c1.keyAt(slot) + '\t' + count1 + '\t' + c2.getCount(c1.keyAt(slot)));
+      }
+      if (count1 != 0.0) {
+        double count2 = (intC1 != null) ? ((IntDoubleCounter) c2).getCount(intC1.intKeyAt(slot)) : c2.getCount(c1.keyAt(slot));
+        if (Double.isNaN(count2) || Double.isInfinite(count2)) {
+          throw new RuntimeException("Counters.dotProduct infinite or NaN value for key: " + c1.keyAt(slot) + '\t' + count1 + '\t' + count2);
+        }
+        if (count2 != 0.0) {
+          dotProd += (count1 * count2);
+        }
+      }
+    }
+    return dotProd;
+  }
+
   /**
    * Returns the product of Counter c and double[] a, using Index idx to map
    * entries in C onto a.
@@ -0,0 +1,213 @@
+package edu.stanford.nlp.stats;
+
+import java.util.Arrays;
+
+import edu.stanford.nlp.util.Factory;
+
+/**
+ * A {@link PrimitiveCounter} with int keys, e.g., the indices of features or words:
+ * the keys are in an int[] and their counts in a double[], so neither the keys nor
+ * the counts are boxed. The methods taking an int key don't box it either; the
+ * methods of the {@link Counter} interface, which take an Integer, are also there.
+ */
+public class IntDoubleCounter extends PrimitiveCounter<Integer> {
+
+  private static final long serialVersionUID = 1L;
+
+  private int[] keys;
+  /** Whether each slot has a key (as any int can be a key) */
+  private boolean[] full;
+
+  /** Constructs a new (empty) counter. */
+  public IntDoubleCounter() {
+    this(0);
+  }
+
+  /** Constructs a new counter with room for this many keys before it grows. */
+  public IntDoubleCounter(int initialCapacity) {
+    super(tableSize(initialCapacity));
+    keys = new int[values.length];
+    full = new boolean[values.length];
+  }
+
+  /** Constructs a new counter with the contents of the given counter. */
+  public IntDoubleCounter(Counter<Integer> c) {
+    this(c.size());
+    Counters.addInPlace(this, c);
+    setDefaultReturnValue(c.defaultReturnValue());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Factory<Counter<Integer>> getFactory() {
+    return new IntDoubleCounterFactory();
+  }
+
+  private static class IntDoubleCounterFactory implements Factory<Counter<Integer>> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Counter<Integer> create() {
+      return new IntDoubleCounter();
+    }
+
+  } // end static class IntDoubleCounterFactory
+
+  /** Something to call with each key and count of a counter. */
+  public interface EntryConsumer {
+    void accept(int key, double value);
+  }
+
+  /** Calls the consumer with each key and its count, without boxing either. */
+  public void forEachEntry(EntryConsumer consumer) {
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (full[slot]) {
+        consumer.accept(keys[slot], values[slot]);
+      }
+    }
+  }
+
+
+  // METHODS TAKING AN int KEY
+
+  public double getCount(int key) {
+    int slot = find(key);
+    return slot < 0 ? defaultReturnValue() : values[slot];
+  }
+
+  public void setCount(int key, double value) {
+    setValueAt(findOrAdd(key), value);
+  }
+
+  public double incrementCount(int key, double value) {
+    int slot = findOrAdd(key);
+    setValueAt(slot, values[slot] + value);
+    return values[slot];
+  }
+
+  public double incrementCount(int key) {
+    return incrementCount(key, 1.0);
+  }
+
+  public boolean containsKey(int key) {
+    return find(key) >= 0;
+  }
+
+  public double remove(int key) {
+    int slot = find(key);
+    if (slot < 0) {
+      return defaultReturnValue();
+    }
+    double value = values[slot];
+    setValueAt(slot, 0.0);
+    removeAt(slot);
+    return value;
+  }
+
+
+  // THE SLOTS OF THE TABLE
+
+  @Override
+  boolean hasKey(int slot) {
+    return full[slot];
+  }
+
+  @Override
+  Integer keyAt(int slot) {
+    return keys[slot];
+  }
+
+  /** The key in a slot which has one, unboxed. */
+  int intKeyAt(int slot) {
+    return keys[slot];
+  }
+
+  @Override
+  int find(Object key) {
+    return (key instanceof Integer) ? find(((Integer) key).intValue()) : -1;
+  }
+
+  int find(int key) {
+    int mask = keys.length - 1;
+    for (int slot = mix(key) & mask; full[slot]; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  int findOrAdd(Integer key) {
+    return findOrAdd(key.intValue());
+  }
+
+  int findOrAdd(int key) {
+    int mask = keys.length - 1;
+    int slot = mix(key) & mask;
+    for ( ; full[slot]; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+    }
+    if (isFull(keys.length)) {
+      grow();
+      return findOrAdd(key);
+    }
+    keys[slot] = key;
+    full[slot] = true;
+    size++;
+    modCount++;
+    return slot;
+  }
+
+  /** Doubles the size of the table. */
+  private void grow() {
+    int[] oldKeys = keys;
+    boolean[] oldFull = full;
+    double[] oldValues = values;
+    keys = new int[oldKeys.length * 2];
+    full = new boolean[oldKeys.length * 2];
+    values = new double[oldKeys.length * 2];
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldFull[i]) {
+        int slot = mix(oldKeys[i]) & mask;
+        while (full[slot]) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        full[slot] = true;
+        values[slot] = oldValues[i];
+      }
+    }
+    modCount++;
+  }
+
+  @Override
+  void removeAt(int slot) {
+    int mask = keys.length - 1;
+    int hole = slot;
+    for (int i = (slot + 1) & mask; full[i]; i = (i + 1) & mask) {
+      // a key can fill the hole if the hole is between its home slot and where it is
+      int home = mix(keys[i]) & mask;
+      if (((i - home) & mask) >= ((i - hole) & mask)) {
+        keys[hole] = keys[i];
+        values[hole] = values[i];
+        hole = i;
+      }
+    }
+    full[hole] = false;
+    keys[hole] = 0;
+    values[hole] = 0.0;
+    size--;
+    modCount++;
+  }
+
+  @Override
+  void clearKeys() {
+    Arrays.fill(full, false);
+  }
+
+}
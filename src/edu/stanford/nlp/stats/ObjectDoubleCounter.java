@@ -0,0 +1,216 @@
+package edu.stanford.nlp.stats;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.ObjDoubleConsumer;
+
+import edu.stanford.nlp.util.Factory;
+
+/**
+ * A {@link PrimitiveCounter} with keys of any type: the keys are in an Object[] and
+ * their counts in a double[], rather than in a Map of {@link edu.stanford.nlp.util.MutableDouble}s.
+ * Use it in place of a {@link ClassicCounter} where there are many counters or many keys.
+ * <br>
+ * Keys are compared by {@code equals}, as by a HashMap, and a null key is allowed.
+ *
+ * @param <E> The type of the keys
+ */
+public class ObjectDoubleCounter<E> extends PrimitiveCounter<E> {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Stands for the null key in the key array, where null is an empty slot */
+  private static final Object NULL_KEY = new NullKey();
+
+  /** The keys, and null in empty slots. It is written out with a serialized counter and rehashed when read back,
+   *  as keys can have other hash codes in another JVM (e.g., enums). */
+  private transient Object[] keys;
+
+  /** Constructs a new (empty) counter. */
+  public ObjectDoubleCounter() {
+    super(DEFAULT_TABLE_SIZE);
+    keys = new Object[DEFAULT_TABLE_SIZE];
+  }
+
+  /** Constructs a new counter with room for this many keys before it grows. */
+  public ObjectDoubleCounter(int initialCapacity) {
+    super(tableSize(initialCapacity));
+    keys = new Object[values.length];
+  }
+
+  /** Constructs a new counter with the contents of the given counter. */
+  public ObjectDoubleCounter(Counter<E> c) {
+    this(c.size());
+    Counters.addInPlace(this, c);
+    setDefaultReturnValue(c.defaultReturnValue());
+  }
+
+  /** Constructs a new counter of how many times each item is in a collection. */
+  public ObjectDoubleCounter(Collection<E> collection) {
+    this();
+    for (E key : collection) {
+      incrementCount(key);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Factory<Counter<E>> getFactory() {
+    return factory();
+  }
+
+  /** Returns a factory of empty ObjectDoubleCounters. */
+  public static <E> Factory<Counter<E>> factory() {
+    return new ObjectDoubleCounterFactory<>();
+  }
+
+  private static class ObjectDoubleCounterFactory<E> implements Factory<Counter<E>> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Counter<E> create() {
+      return new ObjectDoubleCounter<>();
+    }
+
+  } // end static class ObjectDoubleCounterFactory
+
+  /** Calls the consumer with each key and its count, without boxing the counts. */
+  public void forEachEntry(ObjDoubleConsumer<? super E> consumer) {
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (keys[slot] != null) {
+        consumer.accept(keyAt(slot), values[slot]);
+      }
+    }
+  }
+
+  @Override
+  boolean hasKey(int slot) {
+    return keys[slot] != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  E keyAt(int slot) {
+    Object key = keys[slot];
+    return key == NULL_KEY ? null : (E) key;
+  }
+
+  @Override
+  int find(Object key) {
+    Object k = (key == null) ? NULL_KEY : key;
+    int mask = keys.length - 1;
+    for (int slot = mix(k.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+      Object other = keys[slot];
+      if (other == null) {
+        return -1;
+      } else if (other == k || other.equals(k)) {
+        return slot;
+      }
+    }
+  }
+
+  @Override
+  int findOrAdd(E key) {
+    Object k = (key == null) ? NULL_KEY : key;
+    int mask = keys.length - 1;
+    int slot = mix(k.hashCode()) & mask;
+    for ( ; keys[slot] != null; slot = (slot + 1) & mask) {
+      if (keys[slot] == k || keys[slot].equals(k)) {
+        return slot;
+      }
+    }
+    if (isFull(keys.length)) {
+      grow();
+      return findOrAdd(key);
+    }
+    keys[slot] = k;
+    size++;
+    modCount++;
+    return slot;
+  }
+
+  /** Doubles the size of the table. */
+  private void grow() {
+    rehash(keys, values, keys.length * 2);
+  }
+
+  /** Puts keys and their counts into a new table of this size. */
+  private void rehash(Object[] oldKeys, double[] oldValues, int tableSize) {
+    keys = new Object[tableSize];
+    values = new double[tableSize];
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        int slot = mix(oldKeys[i].hashCode()) & mask;
+        while (keys[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+    modCount++;
+  }
+
+  @Override
+  void removeAt(int slot) {
+    int mask = keys.length - 1;
+    int hole = slot;
+    for (int i = (slot + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+      // a key can fill the hole if the hole is between its home slot and where it is
+      int home = mix(keys[i].hashCode()) & mask;
+      if (((i - home) & mask) >= ((i - hole) & mask)) {
+        keys[hole] = keys[i];
+        values[hole] = values[i];
+        hole = i;
+      }
+    }
+    keys[hole] = null;
+    values[hole] = 0.0;
+    size--;
+    modCount++;
+  }
+
+  @Override
+  void clearKeys() {
+    Arrays.fill(keys, null);
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeObject(keys);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    Object[] oldKeys = (Object[]) in.readObject();
+    rehash(oldKeys, values, oldKeys.length);
+  }
+
+  /** The class of NULL_KEY, which is the same object after being deserialized. */
+  private static class NullKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public int hashCode() {
+      return 0;
+    }
+
+    private Object readResolve() {
+      return NULL_KEY;
+    }
+
+    @Override
+    public String toString() {
+      return "null";
+    }
+
+  } // end static class NullKey
+
+}
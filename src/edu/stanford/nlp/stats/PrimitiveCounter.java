@@ -0,0 +1,406 @@
+package edu.stanford.nlp.stats;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import edu.stanford.nlp.math.SloppyMath;
+import edu.stanford.nlp.util.logging.PrettyLogger;
+import edu.stanford.nlp.util.logging.Redwood.RedwoodChannels;
+
+/**
+ * A Counter which keeps its keys and counts in arrays, as an open-addressing hash
+ * table with linear probing, rather than in a Map of boxed {@link edu.stanford.nlp.util.MutableDouble}s
+ * as a {@link ClassicCounter} does. An entry takes a slot of a key array and a slot of
+ * a double[] (and the table is kept at most three quarters full), so a counter takes
+ * about a third of the memory of a ClassicCounter, and counting allocates nothing.
+ * <br>
+ * {@link ObjectDoubleCounter} has keys of any type; {@link IntDoubleCounter} has int keys.
+ * The {@link Counters} methods which go through every entry (e.g., dotProduct,
+ * addInPlace, argmax, and normalize) read the arrays of these counters directly.
+ * <br>
+ * The keySet, values, and entrySet are views of the counter; they can't be changed
+ * through their iterators, and the counter can't have keys added or removed while they
+ * are iterated over (though counts can be changed). Like ClassicCounter, this class is not threadsafe.
+ *
+ * @param <E> The type of the keys
+ */
+public abstract class PrimitiveCounter<E> extends AbstractCounter<E> implements Serializable, Iterable<E> {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The number of slots of a table made without a capacity. A power of two. */
+  static final int DEFAULT_TABLE_SIZE = 16;
+
+  /** The count of the key in each slot */
+  double[] values;
+  int size; // = 0
+  private double totalCount; // = 0.0
+  private double defaultValue; // = 0.0
+  /** Changed whenever a key is added or removed, to catch changes while iterating */
+  transient int modCount; // = 0
+
+  PrimitiveCounter(int tableSize) {
+    values = new double[tableSize];
+  }
+
+  /** The size of table (a power of two) to hold this many keys. */
+  static int tableSize(int capacity) {
+    int tableSize = DEFAULT_TABLE_SIZE;
+    while (tableSize - (tableSize >> 2) < capacity) {
+      tableSize <<= 1;
+    }
+    return tableSize;
+  }
+
+  /** Whether a table of this size needs to grow before one more key is added to it. */
+  boolean isFull(int tableSize) {
+    return size + 1 > tableSize - (tableSize >> 2);
+  }
+
+  /** Spreads the bits of a hash code, so that keys with similar hash codes are in different parts of the table. */
+  static int mix(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+
+  // THE SLOTS OF THE TABLE, FOR SUBCLASSES AND FAST PATHS IN Counters
+
+  /** The number of slots in the table. */
+  int tableSize() {
+    return values.length;
+  }
+
+  /** Whether there is a key in this slot. */
+  abstract boolean hasKey(int slot);
+
+  /** The key in a slot which has one. */
+  abstract E keyAt(int slot);
+
+  /** The slot of a key, or -1 if it isn't in the counter. */
+  abstract int find(Object key);
+
+  /** The slot of a key, which is added with a count of 0 if it isn't in the counter. */
+  abstract int findOrAdd(E key);
+
+  /** Removes the key in a slot, moving up keys which probed past it. */
+  abstract void removeAt(int slot);
+
+  /** Empties the key array. */
+  abstract void clearKeys();
+
+  /** Changes the count in a slot, keeping the total count right. */
+  void setValueAt(int slot, double value) {
+    totalCount += value - values[slot];
+    values[slot] = value;
+  }
+
+  /** Sets the total count to the sum of the counts, e.g., after changing them all. */
+  void recomputeTotalCount() {
+    double total = 0.0;
+    for (int slot = 0; slot < values.length; slot++) {
+      if (hasKey(slot)) {
+        total += values[slot];
+      }
+    }
+    totalCount = total;
+  }
+
+
+  // METHODS NEEDED BY THE Counter INTERFACE
+
+  /** {@inheritDoc} */
+  @Override
+  public final void setDefaultReturnValue(double rv) {
+    defaultValue = rv;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double defaultReturnValue() {
+    return defaultValue;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double getCount(Object key) {
+    int slot = find(key);
+    return slot < 0 ? defaultValue : values[slot];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setCount(E key, double value) {
+    setValueAt(findOrAdd(key), value);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double incrementCount(E key, double value) {
+    int slot = findOrAdd(key);
+    values[slot] += value;
+    totalCount += value;
+    return values[slot];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double logIncrementCount(E key, double value) {
+    int slot = find(key);
+    if (slot < 0) {
+      slot = findOrAdd(key);
+    } else {
+      value = SloppyMath.logAdd(value, values[slot]);
+    }
+    setValueAt(slot, value);
+    return value;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double remove(E key) {
+    int slot = find(key);
+    if (slot < 0) {
+      return defaultValue;
+    }
+    double value = values[slot];
+    totalCount -= value;
+    removeAt(slot);
+    return value;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean containsKey(E key) {
+    return find(key) >= 0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void clear() {
+    clearKeys();
+    Arrays.fill(values, 0.0);
+    size = 0;
+    totalCount = 0.0;
+    modCount++;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double totalCount() {
+    return totalCount;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+
+  // VIEWS
+
+  /** Goes through the slots which have keys. */
+  abstract class SlotIterator<T> implements Iterator<T> {
+
+    private final int expectedModCount = modCount;
+    private int next = advance(0);
+
+    private int advance(int slot) {
+      while (slot < values.length && ! hasKey(slot)) {
+        slot++;
+      }
+      return slot;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < values.length;
+    }
+
+    /** Moves to the next slot with a key. */
+    int nextSlot() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (next >= values.length) {
+        throw new NoSuchElementException();
+      }
+      int slot = next;
+      next = advance(next + 1);
+      return slot;
+    }
+
+  } // end class SlotIterator
+
+  /** {@inheritDoc} */
+  @Override
+  public Set<E> keySet() {
+    return new AbstractSet<E>() {
+      @Override
+      public Iterator<E> iterator() {
+        return PrimitiveCounter.this.iterator();
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        return find(o) >= 0;
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public boolean remove(Object o) {
+        int slot = find(o);
+        if (slot < 0) {
+          return false;
+        }
+        PrimitiveCounter.this.remove((E) o);
+        return true;
+      }
+    };
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Collection<Double> values() {
+    return new AbstractCollection<Double>() {
+      @Override
+      public Iterator<Double> iterator() {
+        return new SlotIterator<Double>() {
+          @Override
+          public Double next() {
+            return values[nextSlot()];
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Set<Map.Entry<E,Double>> entrySet() {
+    return new AbstractSet<Map.Entry<E,Double>>() {
+      @Override
+      public Iterator<Map.Entry<E,Double>> iterator() {
+        return new SlotIterator<Map.Entry<E,Double>>() {
+          @Override
+          public Map.Entry<E,Double> next() {
+            final int slot = nextSlot();
+            return new Map.Entry<E,Double>() {
+              @Override
+              public E getKey() {
+                return keyAt(slot);
+              }
+
+              @Override
+              public Double getValue() {
+                return values[slot];
+              }
+
+              @Override
+              public Double setValue(Double value) {
+                double old = values[slot];
+                setValueAt(slot, value);
+                return old;
+              }
+
+              @Override
+              public String toString() {
+                return getKey() + "=" + getValue();
+              }
+            };
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /** An iterator over the keys of the counter. */
+  @Override
+  public Iterator<E> iterator() {
+    return new SlotIterator<E>() {
+      @Override
+      public E next() {
+        return keyAt(nextSlot());
+      }
+    };
+  }
+
+
+  // OBJECT STUFF
+
+  /** Equality is defined over all Counter implementations, as for {@link ClassicCounter#equals}. */
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    } else if ( ! (o instanceof Counter)) {
+      return false;
+    }
+    return Counters.equals(this, (Counter<E>) o);
+  }
+
+  /** The same as the hashCode of a ClassicCounter with the same counts. */
+  @Override
+  public int hashCode() {
+    int hashCode = 0;
+    for (int slot = 0; slot < values.length; slot++) {
+      if (hasKey(slot)) {
+        E key = keyAt(slot);
+        long bits = Double.doubleToLongBits(values[slot]);
+        hashCode += (key == null ? 0 : key.hashCode()) ^ (int) (bits ^ (bits >>> 32));
+      }
+    }
+    return hashCode;
+  }
+
+  /** Returns the counts in the format of a Map's toString. */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("{");
+    for (int slot = 0; slot < values.length; slot++) {
+      if (hasKey(slot)) {
+        if (sb.length() > 1) {
+          sb.append(", ");
+        }
+        sb.append(keyAt(slot)).append('=').append(values[slot]);
+      }
+    }
+    return sb.append('}').toString();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void prettyLog(RedwoodChannels channels, String description) {
+    PrettyLogger.log(channels, description, Counters.asMap(this));
+  }
+
+}
@@ -25,14 +25,15 @@ public class GenericTimeExpressionPatterns implements TimeExpressionPatterns {
   public GenericTimeExpressionPatterns(Options options) {
     this.options = options;
     initEnv();
-    if (options.binders != null) {
-      for (Env.Binder binder:options.binders) {
+    Env.Binder[] binders = options.binders();
+    if (binders != null) {
+      for (Env.Binder binder:binders) {
         binder.bind(env);
       }
     }
   }
 
-  public CoreMapExpressionExtractor createExtractor() {
+  public CoreMapExpressionExtractor<MatchedExpression> createExtractor() {
     List<String> filenames = StringUtils.split(options.grammarFilename, "\\s*[,;]\\s*");
     return CoreMapExpressionExtractor.createExtractorFromFiles(env, filenames);
   }
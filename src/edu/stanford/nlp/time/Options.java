@@ -1,6 +1,8 @@
 package edu.stanford.nlp.time;
 
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.TreeSet;
 
 import edu.stanford.nlp.ling.tokensregex.Env;
 import edu.stanford.nlp.util.PropertiesUtils;
@@ -34,6 +36,13 @@ public class Options {
   // would want a per document default as well
   String grammarFilename = null;
   Env.Binder[] binders = null;
+  // Whether to share the compiled rules with other extractors built from the same rule files and options
+  boolean cacheRules = true;
+
+  // The binders to create the first time they are needed (see binders()), and the properties to initialize them from
+  private String[] binderClasses = null;
+  private Properties binderProperties = null;
+  private String binderName = null;
 
   static final String DEFAULT_GRAMMAR_FILES = "edu/stanford/nlp/models/sutime/defs.sutime.txt,edu/stanford/nlp/models/sutime/english.sutime.txt,edu/stanford/nlp/models/sutime/english.holidays.sutime.txt";
   static final String[] DEFAULT_BINDERS = { "edu.stanford.nlp.time.JollyDayHolidays" };
@@ -64,6 +73,8 @@ public class Options {
 
     searchForDocDate = PropertiesUtils.getBool(props, name + ".searchForDocDate", searchForDocDate);
 
+    cacheRules = PropertiesUtils.getBool(props, name + ".cacheRules", cacheRules);
+
     String binderProperty = props.getProperty(name + ".binders");
     int nBinders;
     String[] binderClasses;
@@ -79,19 +90,66 @@ public class Options {
       }
     }
     if (nBinders > 0 && System.getProperty("STS") == null) {
-      binders = new Env.Binder[nBinders];
-      for (int i = 0; i < nBinders; i++) {
+      // Binders such as the holiday calendars are expensive to initialize, and are not needed
+      // if the compiled rules are already cached, so they are only created when asked for
+      this.binderClasses = Arrays.copyOf(binderClasses, nBinders);
+      this.binderProperties = props;
+      this.binderName = name;
+    }
+  }
+
+  /**
+   * Returns the binders to add to the environment of the rules, initializing them
+   * on the first call.
+   */
+  synchronized Env.Binder[] binders() {
+    if (binders == null && binderClasses != null) {
+      Env.Binder[] newBinders = new Env.Binder[binderClasses.length];
+      for (int i = 0; i < binderClasses.length; i++) {
         int bi = i+1;
-        String binderPrefix = name + ".binder." + bi;
+        String binderPrefix = binderName + ".binder." + bi;
         try {
           Class binderClass = Class.forName(binderClasses[i]);
           binderPrefix = binderPrefix + ".";
-          binders[i] = (Env.Binder) binderClass.newInstance();
-          binders[i].init(binderPrefix, props);
+          newBinders[i] = (Env.Binder) binderClass.newInstance();
+          newBinders[i].init(binderPrefix, binderProperties);
         } catch (Exception ex) {
           throw new RuntimeException("Error initializing binder " + bi, ex);
         }
       }
+      binders = newBinders;
+    }
+    return binders;
+  }
+
+  /**
+   * A description of every option which changes the compiled rules: two Options with the
+   * same description and the same rule files compile to equivalent extractors.
+   * Returns null if the rules cannot be shared, e.g., since binders were set directly.
+   */
+  String compiledRulesKey() {
+    if (binders != null && binderClasses == null) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append("markTimeRanges=").append(markTimeRanges)
+        .append(";restrictToTimex3=").append(restrictToTimex3)
+        .append(";teRelHeurLevel=").append(teRelHeurLevel)
+        .append(";includeNested=").append(includeNested)
+        .append(";includeRange=").append(includeRange)
+        .append(";searchForDocDate=").append(searchForDocDate)
+        .append(";verbose=").append(verbose)
+        .append(";rules=").append(grammarFilename);
+    if (binderClasses != null) {
+      sb.append(";binders=").append(Arrays.toString(binderClasses));
+      String binderPrefix = binderName + ".binder.";
+      for (String key : new TreeSet<>(binderProperties.stringPropertyNames())) {
+        if (key.startsWith(binderPrefix)) {
+          sb.append(';').append(key.substring(binderName.length())).append('=').append(binderProperties.getProperty(key));
+        }
+      }
     }
+    return sb.toString();
   }
+
 }
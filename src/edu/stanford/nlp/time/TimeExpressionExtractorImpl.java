@@ -1,13 +1,21 @@
 package edu.stanford.nlp.time;
 
 import edu.stanford.nlp.ie.NumberNormalizer;
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.tokensregex.*;
 import edu.stanford.nlp.pipeline.ChunkAnnotationUtils;
 import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Pair;
 import edu.stanford.nlp.util.StringUtils;
 import edu.stanford.nlp.util.logging.Redwood;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
@@ -26,7 +34,7 @@ public class TimeExpressionExtractorImpl implements TimeExpressionExtractor {
   // Patterns for extracting time expressions
   private TimeExpressionPatterns timexPatterns;
 
-  private CoreMapExpressionExtractor expressionExtractor;
+  private CoreMapExpressionExtractor<MatchedExpression> expressionExtractor;
 
   // Options
   private Options options;
@@ -53,8 +61,80 @@ public class TimeExpressionExtractorImpl implements TimeExpressionExtractor {
       options.grammarFilename = Options.DEFAULT_GRAMMAR_FILES;
       logger.warning("Time rules file is not specified: using default rules at " + options.grammarFilename);
     }
-    timexPatterns = new GenericTimeExpressionPatterns(options);
-    this.expressionExtractor = timexPatterns.createExtractor();
+    Pair<TimeExpressionPatterns, CoreMapExpressionExtractor<MatchedExpression>> compiled = compiledRules(options);
+    timexPatterns = compiled.first;
+    this.expressionExtractor = compiled.second;
+  }
+
+  /**
+   * The compiled rule sets, keyed on the content of the rule files and the options they were compiled with.
+   * Parsing the rule files and initializing the holiday calendars takes seconds, so every extractor
+   * with the same rules and options shares one compiled copy.
+   */
+  private static final Map<String, Pair<TimeExpressionPatterns, CoreMapExpressionExtractor<MatchedExpression>>> compiledRulesCache = new HashMap<>();
+
+  /**
+   * Returns the compiled patterns and extractor for the given options, compiling them if no
+   * extractor with the same rule files (by content) and options has been created yet.
+   */
+  private static Pair<TimeExpressionPatterns, CoreMapExpressionExtractor<MatchedExpression>> compiledRules(Options options) {
+    String optionsKey = options.cacheRules ? options.compiledRulesKey() : null;
+    if (optionsKey == null) {
+      return compileRules(options);
+    }
+    String key = optionsKey + ";hash=" + rulesHash(options.grammarFilename);
+    synchronized (compiledRulesCache) {
+      Pair<TimeExpressionPatterns, CoreMapExpressionExtractor<MatchedExpression>> compiled = compiledRulesCache.get(key);
+      if (compiled == null) {
+        compiled = compileRules(options);
+        compiledRulesCache.put(key, compiled);
+      } else if (options.verbose) {
+        logger.info("Using cached compiled rules for " + options.grammarFilename);
+      }
+      return compiled;
+    }
+  }
+
+  private static Pair<TimeExpressionPatterns, CoreMapExpressionExtractor<MatchedExpression>> compileRules(Options options) {
+    TimeExpressionPatterns patterns = new GenericTimeExpressionPatterns(options);
+    return Pair.makePair(patterns, patterns.createExtractor());
+  }
+
+  /**
+   * A hash of the contents of the given comma or semicolon separated rule files, so that
+   * the cached rules are recompiled if a rule file changes.
+   */
+  private static String rulesHash(String grammarFilenames) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (String filename : StringUtils.split(grammarFilenames, "\\s*[,;]\\s*")) {
+        try (BufferedReader reader = IOUtils.readerFromString(filename)) {
+          digest.update(IOUtils.slurpReader(reader).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+          throw new RuntimeIOException("Error reading rules file: " + filename, e);
+        }
+        digest.update((byte) 0);
+      }
+      StringBuilder sb = new StringBuilder();
+      for (byte b : digest.digest()) {
+        sb.append(String.format("%02x", b));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** The extractor compiled from the rules (possibly shared with other instances). */
+  CoreMapExpressionExtractor<MatchedExpression> getExpressionExtractor() {
+    return expressionExtractor;
+  }
+
+  /** Drops the compiled rules shared between extractors, e.g., to free their memory. */
+  public static void clearCompiledRulesCache() {
+    synchronized (compiledRulesCache) {
+      compiledRulesCache.clear();
+    }
   }
 
   @Override
@@ -1,6 +1,7 @@
 package edu.stanford.nlp.time;
 
 import edu.stanford.nlp.ling.tokensregex.CoreMapExpressionExtractor;
+import edu.stanford.nlp.ling.tokensregex.MatchedExpression;
 import edu.stanford.nlp.util.CoreMap;
 
 /**
@@ -19,7 +20,7 @@ public interface TimeExpressionPatterns {
    * to extract time related expressions from text into CoreMaps
    * @return CoreMapExpressionExtractor
    */
-  CoreMapExpressionExtractor createExtractor();
+  CoreMapExpressionExtractor<MatchedExpression> createExtractor();
 
   /**
    * Determine how date/times should be resolved for the given temporal
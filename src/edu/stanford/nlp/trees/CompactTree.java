@@ -0,0 +1,142 @@
+package edu.stanford.nlp.trees;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.Label;
+
+/**
+ * A read-only <code>Tree</code> whose structure and labels are stored in a
+ * {@link CompactTreebank}.  A <code>CompactTree</code> node is made for a
+ * node of the treebank when it is first visited (its children when
+ * {@link #children()} is first called, and its label when {@link #label()}
+ * is first called), and is kept by its parent, so a tree has the same nodes
+ * each time it is walked, as Tregex needs.  The nodes know their parents.
+ * <p/>
+ * The labels are <code>CoreLabel</code>s, as a <code>PennTreeReader</code>
+ * with a <code>LabeledScoredTreeFactory</code> makes them: leaves have a
+ * word, tag, and index.  The tree can't be changed: changing a label changes
+ * it only in this copy of the tree, and methods which add or remove
+ * children throw an <code>UnsupportedOperationException</code>.  Methods
+ * which make new trees, such as {@link #deepCopy()} and
+ * {@link #transform(TreeTransformer)}, make <code>LabeledScoredTreeNode</code>s.
+ */
+public class CompactTree extends Tree {
+
+  private static final long serialVersionUID = 1L;
+
+  private final CompactTreebank treebank;
+  private final int node;
+  private final CompactTree parent;
+  private Tree[] children; // = null
+  private Label label; // = null
+
+  CompactTree(CompactTreebank treebank, int node, CompactTree parent) {
+    this.treebank = treebank;
+    this.node = node;
+    this.parent = parent;
+  }
+
+  @Override
+  public Tree[] children() {
+    if (children == null) {
+      int end = treebank.end(node);
+      int numKids = 0;
+      for (int kid = node + 1; kid < end; kid = treebank.end(kid)) {
+        numKids++;
+      }
+      if (numKids == 0) {
+        children = EMPTY_TREE_ARRAY;
+      } else {
+        Tree[] kids = new Tree[numKids];
+        int i = 0;
+        for (int kid = node + 1; kid < end; kid = treebank.end(kid)) {
+          kids[i++] = new CompactTree(treebank, kid, this);
+        }
+        children = kids;
+      }
+    }
+    return children;
+  }
+
+  @Override
+  public boolean isLeaf() {
+    return treebank.end(node) == node + 1;
+  }
+
+  /** The number of nodes in the tree, which is known without visiting them. */
+  @Override
+  public int size() {
+    return treebank.end(node) - node;
+  }
+
+  @Override
+  public Label label() {
+    if (label == null) {
+      String value = treebank.label(node);
+      CoreLabel cl = new CoreLabel();
+      cl.setValue(value);
+      if (isLeaf() && parent != null) {
+        cl.setWord(value);
+        cl.setTag(treebank.label(treebank.parent(node)));
+        cl.setIndex(leafNumber());
+      }
+      label = cl;
+    }
+    return label;
+  }
+
+  /** The position of this leaf in the yield of its tree, counting from 1, as {@link Tree#indexLeaves()} numbers them. */
+  private int leafNumber() {
+    CompactTree root = this;
+    while (root.parent != null) {
+      root = root.parent;
+    }
+    int number = 1;
+    for (int n = root.node; n < node; n++) {
+      if (treebank.end(n) == n + 1) {
+        number++;
+      }
+    }
+    return number;
+  }
+
+  /** The value of the label, which is read from the treebank unless the label has been made. */
+  @Override
+  public String value() {
+    return (label == null) ? treebank.label(node) : label.value();
+  }
+
+  /** Throws an UnsupportedOperationException: a CompactTree can't be changed. */
+  @Override
+  public void setLabel(Label label) {
+    throw new UnsupportedOperationException("A CompactTree can't be changed");
+  }
+
+  /** Throws an UnsupportedOperationException: a CompactTree can't be changed. */
+  @Override
+  public void setChildren(Tree[] children) {
+    throw new UnsupportedOperationException("A CompactTree can't be changed");
+  }
+
+  @Override
+  public Tree parent() {
+    return parent;
+  }
+
+  /** The parent of this node, if it is in the tree rooted at root (found without searching the tree). */
+  @Override
+  public Tree parent(Tree root) {
+    for (CompactTree ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+      if (ancestor == root) {
+        return (this == root) ? null : parent;
+      }
+    }
+    return null;
+  }
+
+  /** A factory of <code>LabeledScoredTreeNode</code>s, for making changed copies of the tree. */
+  @Override
+  public TreeFactory treeFactory() {
+    return LabeledScoredTreeNode.factory();
+  }
+
+}
@@ -0,0 +1,348 @@
+package edu.stanford.nlp.trees;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.util.FilePathProcessor;
+import edu.stanford.nlp.util.FileProcessor;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+
+/**
+ * A <code>CompactTreebank</code> stores a corpus of trees in memory as
+ * arrays of ints rather than as <code>Tree</code> objects. The nodes of all
+ * the trees are numbered in preorder, and for each node there is the id of
+ * its label in a table of labels shared by all the trees, the number of its
+ * parent, and the number after the last node it dominates. That is three
+ * ints a node, where a <code>LabeledScoredTreeNode</code> with a
+ * <code>CoreLabel</code> is several objects, so a whole treebank can be kept
+ * in a fraction of the memory.
+ * <p/>
+ * {@link #get(int)} returns a tree as a {@link CompactTree}, a read-only
+ * <code>Tree</code> whose nodes are made as they are visited, so
+ * Tregex, head finders, <code>TreePrint</code>, etc. work on it as usual.
+ * Only the structure and label strings of trees are kept: not scores, nor
+ * other annotations of the labels.
+ * <p/>
+ * When the <code>TreeReaderFactory</code> makes a <code>PennTreeReader</code>
+ * whose <code>TreeNormalizer</code> only normalizes labels (e.g., the
+ * default {@link PennTreeReaderFactory}), trees are read straight into the
+ * arrays, without making <code>Tree</code> nodes for them. Otherwise, each
+ * tree is read and normalized as usual, and then copied in.
+ */
+public final class CompactTreebank extends Treebank implements FileProcessor {
+
+  private static final int DEFAULT_NODE_CAPACITY = 1024;
+  private static final int DEFAULT_TREE_CAPACITY = 16;
+  private static final int DEFAULT_DEPTH_CAPACITY = 64;
+  /** The label id of nodes without a label */
+  static final int NO_LABEL = -1;
+
+  private final Index<String> labels = new HashIndex<>();
+  private int[] nodeLabels;
+  /** The parent of each node, or -1 for the root of a tree */
+  private int[] parents;
+  /** One after the last node of the subtree of each node */
+  private int[] ends;
+  private int numNodes; // = 0
+  /** The number of the root of each tree */
+  private int[] treeStarts = new int[DEFAULT_TREE_CAPACITY];
+  private int numTrees; // = 0
+
+  // the tree being read in
+  private int[] openNodes = new int[DEFAULT_DEPTH_CAPACITY];
+  private int depth; // = 0
+
+  /**
+   * Create a new, empty treebank, which reads trees with a
+   * <code>PennTreeReaderFactory</code> (which doesn't normalize them).
+   */
+  public CompactTreebank() {
+    this(new PennTreeReaderFactory());
+  }
+
+  /**
+   * Create a new, empty treebank.
+   *
+   * @param trf the factory class to be called to create a new
+   *            <code>TreeReader</code>
+   */
+  public CompactTreebank(TreeReaderFactory trf) {
+    super(trf);
+    clear();
+  }
+
+  /**
+   * Create a new, empty treebank.
+   *
+   * @param trf      the factory class to be called to create a new
+   *                 <code>TreeReader</code>
+   * @param encoding the encoding to use for file access.
+   */
+  public CompactTreebank(TreeReaderFactory trf, String encoding) {
+    super(trf, encoding);
+    clear();
+  }
+
+  /**
+   * Empty a <code>Treebank</code>.  (The table of labels is kept.)
+   */
+  @Override
+  public void clear() {
+    nodeLabels = new int[DEFAULT_NODE_CAPACITY];
+    parents = new int[DEFAULT_NODE_CAPACITY];
+    ends = new int[DEFAULT_NODE_CAPACITY];
+    numNodes = 0;
+    numTrees = 0;
+    depth = 0;
+  }
+
+  /**
+   * Load trees from given directory.
+   *
+   * @param path file or directory to load from
+   * @param filt a FilenameFilter of files to load
+   */
+  @Override
+  public void loadPath(File path, FileFilter filt) {
+    FilePathProcessor.processPath(path, filt, this);
+  }
+
+  /**
+   * Load a collection of parse trees from the file of given name.
+   * This methods implements the <code>FileProcessor</code> interface.
+   *
+   * @param file file to load trees from
+   */
+  @Override
+  public void processFile(File file) {
+    TreeReader tr = null;
+    try {
+      tr = treeReaderFactory().newTreeReader(new BufferedReader(new InputStreamReader(new FileInputStream(file), encoding())));
+      load(tr);
+    } catch (IOException e) {
+      throw new RuntimeIOException("CompactTreebank.processFile IOException in file " + file, e);
+    } finally {
+      IOUtils.closeIgnoringExceptions(tr);
+    }
+  }
+
+  /**
+   * Load a collection of parse trees from a Reader.
+   *
+   * @param r The reader to read trees from.  (If you want it buffered,
+   *    you should already have buffered it!)
+   */
+  public void load(Reader r) {
+    try {
+      load(treeReaderFactory().newTreeReader(r));
+    } catch (IOException e) {
+      throw new RuntimeIOException("CompactTreebank.load IOException", e);
+    }
+  }
+
+  private void load(TreeReader tr) throws IOException {
+    if (tr instanceof PennTreeReader) {
+      PennTreeReader ptr = (PennTreeReader) tr;
+      while (ptr.readTreeInto(this)) {
+        // read the next tree
+      }
+    } else {
+      for (Tree t; (t = tr.readTree()) != null; ) {
+        add(t);
+      }
+    }
+  }
+
+  /**
+   * Copies a tree into the treebank.  Only its structure and the values of
+   * its labels are kept.
+   *
+   * @param t The tree to add
+   * @return true
+   */
+  @Override
+  public boolean add(Tree t) {
+    startTree();
+    addSubtree(t);
+    endTree();
+    return true;
+  }
+
+  private void addSubtree(Tree t) {
+    if (t.isLeaf()) {
+      addLeaf(t.value());
+    } else {
+      openNode(t.value());
+      for (Tree kid : t.children()) {
+        addSubtree(kid);
+      }
+      closeNode();
+    }
+  }
+
+
+  // BUILDING TREES NODE BY NODE, FOR add AND PennTreeReader
+
+  /** Starts a tree, to which nodes are then added in preorder. */
+  void startTree() {
+    if (depth != 0) {
+      throw new IllegalStateException("The last tree wasn't finished");
+    }
+    if (numTrees == treeStarts.length) {
+      treeStarts = Arrays.copyOf(treeStarts, Math.max(numTrees * 2, DEFAULT_TREE_CAPACITY));
+    }
+    treeStarts[numTrees] = numNodes;
+  }
+
+  /** Adds a node under the node being read, whose children are the nodes added before it is closed. */
+  void openNode(String label) {
+    int node = addNode(label);
+    if (depth == openNodes.length) {
+      openNodes = Arrays.copyOf(openNodes, Math.max(depth * 2, DEFAULT_DEPTH_CAPACITY));
+    }
+    openNodes[depth++] = node;
+  }
+
+  /** Finishes the node being read. */
+  void closeNode() {
+    int node = openNodes[--depth];
+    ends[node] = numNodes;
+  }
+
+  /** Adds a leaf under the node being read. */
+  void addLeaf(String word) {
+    int node = addNode(word);
+    ends[node] = node + 1;
+  }
+
+  private int addNode(String label) {
+    if (numNodes == nodeLabels.length) {
+      // (the arrays are empty after trimToSize on an empty treebank)
+      int capacity = Math.max(numNodes * 2, DEFAULT_NODE_CAPACITY);
+      nodeLabels = Arrays.copyOf(nodeLabels, capacity);
+      parents = Arrays.copyOf(parents, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+    }
+    int node = numNodes++;
+    nodeLabels[node] = (label == null) ? NO_LABEL : labels.addToIndex(label);
+    parents[node] = (depth == 0) ? -1 : openNodes[depth - 1];
+    return node;
+  }
+
+  /** Finishes the tree being read, if it has any nodes. */
+  void endTree() {
+    if (depth != 0) {
+      throw new IllegalStateException("A tree was ended with " + depth + " nodes still open");
+    }
+    if (numNodes > treeStarts[numTrees]) {
+      numTrees++;
+    }
+  }
+
+  /** Drops the nodes of the tree being read, e.g., when the input ends partway through it. */
+  void abortTree() {
+    numNodes = treeStarts[numTrees];
+    depth = 0;
+  }
+
+
+  // READING TREES
+
+  /** The number of trees in the treebank. */
+  @Override
+  public int size() {
+    return numTrees;
+  }
+
+  /** The total number of nodes of the trees, including leaves. */
+  public int numNodes() {
+    return numNodes;
+  }
+
+  /** The number of distinct labels of the nodes. */
+  public int numLabels() {
+    return labels.size();
+  }
+
+  /**
+   * Returns a tree of the treebank.  Each call makes a new
+   * <code>CompactTree</code> for it, which makes its nodes as they are visited.
+   *
+   * @param i The number of the tree
+   * @return The tree
+   */
+  public CompactTree get(int i) {
+    if (i < 0 || i >= numTrees) {
+      throw new IndexOutOfBoundsException("Tree " + i + " of a treebank of " + numTrees);
+    }
+    return new CompactTree(this, treeStarts[i], null);
+  }
+
+  /** The trees of the treebank, as a read-only list. */
+  public List<Tree> asList() {
+    return new AbstractList<Tree>() {
+      @Override
+      public Tree get(int index) {
+        return CompactTreebank.this.get(index);
+      }
+
+      @Override
+      public int size() {
+        return numTrees;
+      }
+    };
+  }
+
+  @Override
+  public Iterator<Tree> iterator() {
+    return asList().iterator();
+  }
+
+  /**
+   * Apply the TreeVisitor tp to all trees in the Treebank.
+   *
+   * @param tp A class that implements the TreeVisitor interface
+   */
+  @Override
+  public void apply(TreeVisitor tp) {
+    for (int i = 0; i < numTrees; i++) {
+      tp.visitTree(get(i));
+    }
+  }
+
+  /** Frees the arrays' room for nodes beyond the ones read. */
+  public void trimToSize() {
+    nodeLabels = Arrays.copyOf(nodeLabels, numNodes);
+    parents = Arrays.copyOf(parents, numNodes);
+    ends = Arrays.copyOf(ends, numNodes);
+    treeStarts = Arrays.copyOf(treeStarts, Math.max(numTrees + 1, 1));
+  }
+
+  // for CompactTree
+
+  String label(int node) {
+    int id = nodeLabels[node];
+    return (id == NO_LABEL) ? null : labels.get(id);
+  }
+
+  int end(int node) {
+    return ends[node];
+  }
+
+  int parent(int node) {
+    return parents[node];
+  }
+
+}
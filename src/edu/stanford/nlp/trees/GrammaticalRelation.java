@@ -36,10 +36,14 @@ import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.StringUtils;
 import edu.stanford.nlp.util.logging.Redwood;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 
@@ -267,6 +271,9 @@ public class GrammaticalRelation implements Comparable<GrammaticalRelation>, Ser
   // a regexp for node values at which this relation can hold
   private final Pattern sourcePattern;
   private final List<TregexPattern> targetPatterns = new ArrayList<>();
+  // memoizes targetPatternsFor: node values to the target patterns worth trying at nodes with that value
+  // (not final, as it is made again by readObject: deserialization skips field initializers)
+  private transient Map<String, List<TregexPattern>> targetPatternsByValue = new ConcurrentHashMap<>();
   private final String specific; // to hold the specific prep or conjunction associated with the grammatical relation
 
   // TODO document constructor
@@ -371,12 +378,22 @@ public class GrammaticalRelation implements Comparable<GrammaticalRelation>, Ser
    *  @return A Collection of dependent nodes to which t bears this GR
    */
   public Collection<TreeGraphNode> getRelatedNodes(TreeGraphNode t, TreeGraphNode root, HeadFinder headFinder) {
+    // Initialize the TregexMatchers with the HeadFinder so that we
+    // can use the same HeadFinder through the entire process of
+    // building the dependencies
+    return getRelatedNodes(t, targetPatterns, p -> p.matcher(root, headFinder));
+  }
+
+  /** As {@link #getRelatedNodes(TreeGraphNode, TreeGraphNode, HeadFinder)}, but only trying
+   *  the given target patterns (see {@link #targetPatternsFor}), and getting the matcher for
+   *  each from {@code matchers}, which may give out the same matcher again for another node.
+   */
+  Collection<TreeGraphNode> getRelatedNodes(TreeGraphNode t, List<TregexPattern> patterns,
+                                            Function<TregexPattern, TregexMatcher> matchers) {
     Set<TreeGraphNode> nodeList = new ArraySet<>();
-    for (TregexPattern p : targetPatterns) {    // cdm: I deleted: && nodeList.isEmpty()
-      // Initialize the TregexMatcher with the HeadFinder so that we
-      // can use the same HeadFinder through the entire process of
-      // building the dependencies
-      TregexMatcher m = p.matcher(root, headFinder);
+    for (TregexPattern p : patterns) {    // cdm: I deleted: && nodeList.isEmpty()
+      TregexMatcher m = matchers.apply(p);
+      m.reset();
       while (m.findAt(t)) {
         TreeGraphNode target = (TreeGraphNode) m.getNode("target");
         if (target == null) {
@@ -408,6 +425,41 @@ public class GrammaticalRelation implements Comparable<GrammaticalRelation>, Ser
              sourcePattern.matcher(t.value()).matches();
   }
 
+  /** Returns the target patterns of this relation which could find a related node for
+   *  node {@code t}, in their usual order: none if the relation is not applicable
+   *  at {@code t} (see {@link #isApplicable}), and otherwise those patterns whose root
+   *  could match the value of {@code t}.  This depends only on the value of the node,
+   *  so it is memoized by value, and trying every relation at every node of a tree
+   *  mostly costs a lookup rather than a regex match and a Tregex search per pattern.
+   */
+  List<TregexPattern> targetPatternsFor(Tree t) {
+    String value = t.value();
+    if (sourcePattern == null || value == null) {
+      return Collections.emptyList();
+    }
+    List<TregexPattern> patterns = targetPatternsByValue.get(value);
+    if (patterns == null) {
+      if ( ! sourcePattern.matcher(value).matches()) {
+        patterns = Collections.emptyList();
+      } else {
+        patterns = new ArrayList<>();
+        for (TregexPattern p : targetPatterns) {
+          if (p.couldMatchValue(value)) {
+            patterns.add(p);
+          }
+        }
+        patterns = patterns.size() == targetPatterns.size() ? targetPatterns : patterns;
+      }
+      // the values are the phrasal categories of a treebank, but don't let odd input grow this forever
+      if (targetPatternsByValue.size() < MAX_MEMOIZED_VALUES) {
+        targetPatternsByValue.put(value, patterns);
+      }
+    }
+    return patterns;
+  }
+
+  private static final int MAX_MEMOIZED_VALUES = 10000;
+
   /** Returns whether this is equal to or an ancestor of gr in the grammatical relations hierarchy. */
   public boolean isAncestor(GrammaticalRelation gr) {
     while (gr != null) {
@@ -532,6 +584,12 @@ public class GrammaticalRelation implements Comparable<GrammaticalRelation>, Ser
     return specific;
   }
 
+  /** Makes the memo of target patterns, which is transient, for relations that readResolve doesn't replace. */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    targetPatternsByValue = new ConcurrentHashMap<>();
+  }
+
   /**
    * When deserializing a GrammaticalRelation, it needs to be matched
    * up with the existing singleton relation of the same type.
@@ -5,6 +5,7 @@ import java.io.LineNumberReader;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 import edu.stanford.nlp.graph.DirectedMultiGraph;
@@ -16,6 +17,8 @@ import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.IndexedWord;
 import edu.stanford.nlp.ling.Label;
 import edu.stanford.nlp.ling.Word;
+import edu.stanford.nlp.trees.tregex.TregexMatcher;
+import edu.stanford.nlp.trees.tregex.TregexPattern;
 import edu.stanford.nlp.trees.ud.EnhancementOptions;
 import edu.stanford.nlp.util.Filters;
 import edu.stanford.nlp.util.Generics;
@@ -195,7 +198,13 @@ public abstract class GrammaticalStructure implements Serializable  {
       relationsLock.lock();
     }
     try {
-      analyzeNode(root, root, relations, hf, puncFilter, tagFilter, basicGraph, completeGraph);
+      // Within this tree, each pattern keeps one matcher, and the head of a node is
+      // only found once, however many patterns look at it
+      TreeGraphNode treeRoot = this.root;
+      HeadFinder treeHeadFinder = new MemoizingHeadFinder(hf);
+      Map<TregexPattern, TregexMatcher> matchers = new IdentityHashMap<>();
+      analyzeNode(root, root, relations, p -> matchers.computeIfAbsent(p, q -> q.matcher(treeRoot, treeHeadFinder)),
+                  puncFilter, tagFilter, basicGraph, completeGraph);
     }
     finally {
       if (relationsLock != null) {
@@ -449,12 +458,14 @@ public abstract class GrammaticalStructure implements Serializable  {
   }
 
   // cdm dec 2009: I changed this to automatically fail on preterminal nodes, since they shouldn't match for GR parent patterns.  Should speed it up.
-  private static void analyzeNode(TreeGraphNode t, TreeGraphNode root, Collection<GrammaticalRelation> relations, HeadFinder hf, Predicate<String> puncFilter, Predicate<String> tagFilter, DirectedMultiGraph<TreeGraphNode, GrammaticalRelation> basicGraph, DirectedMultiGraph<TreeGraphNode, GrammaticalRelation> completeGraph) {
+  // Only the target patterns which could match at the node's label are tried (see GrammaticalRelation.targetPatternsFor).
+  private static void analyzeNode(TreeGraphNode t, TreeGraphNode root, Collection<GrammaticalRelation> relations, Function<TregexPattern, TregexMatcher> matchers, Predicate<String> puncFilter, Predicate<String> tagFilter, DirectedMultiGraph<TreeGraphNode, GrammaticalRelation> basicGraph, DirectedMultiGraph<TreeGraphNode, GrammaticalRelation> completeGraph) {
     if (t.isPhrasal()) {    // don't do leaves or preterminals!
       TreeGraphNode tHigh = t.highestNodeWithSameHead();
       for (GrammaticalRelation egr : relations) {
-        if (egr.isApplicable(t)) {
-          for (TreeGraphNode u : egr.getRelatedNodes(t, root, hf)) {
+        List<TregexPattern> patterns = egr.targetPatternsFor(t);
+        if ( ! patterns.isEmpty()) {
+          for (TreeGraphNode u : egr.getRelatedNodes(t, patterns, matchers)) {
             TreeGraphNode uHigh = u.highestNodeWithSameHead();
             if (uHigh == tHigh) {
               continue;
@@ -477,7 +488,7 @@ public abstract class GrammaticalStructure implements Serializable  {
       }
       // now recurse into children
       for (TreeGraphNode kid : t.children()) {
-        analyzeNode(kid, root, relations, hf, puncFilter, tagFilter, basicGraph, completeGraph);
+        analyzeNode(kid, root, relations, matchers, puncFilter, tagFilter, basicGraph, completeGraph);
       }
     }
   }
@@ -616,6 +627,40 @@ public abstract class GrammaticalStructure implements Serializable  {
     }
   }
 
+  /**
+   * Remembers the heads which a HeadFinder has found in one tree, for the many
+   * Tregex patterns with head relations which are matched against that tree.
+   * It must not be used once the tree has been changed.
+   */
+  private static class MemoizingHeadFinder implements HeadFinder {
+
+    private final HeadFinder hf;
+    private final Map<Tree, Tree> heads = new IdentityHashMap<>();
+
+    MemoizingHeadFinder(HeadFinder hf) {
+      this.hf = hf;
+    }
+
+    @Override
+    public Tree determineHead(Tree t) {
+      Tree head = heads.get(t);
+      if (head == null) {
+        head = hf.determineHead(t);
+        heads.put(t, head);
+      }
+      return head;
+    }
+
+    @Override
+    public Tree determineHead(Tree t, Tree parent) {
+      return hf.determineHead(t, parent);
+    }
+
+    private static final long serialVersionUID = 1L;
+
+  } // end static class MemoizingHeadFinder
+
+
   private static class NoPunctFilter implements Predicate<Dependency<Label, Label, Object>>, Serializable {
     private Predicate<String> npf;
 
@@ -169,6 +169,41 @@ public class PennTreeReader implements TreeReader  {
     return t;
   }
 
+  /**
+   * Reads a single tree into a {@code CompactTreebank}.  If the tree normalizer
+   * is a plain {@code TreeNormalizer}, which only normalizes labels, the tree
+   * is read straight into the treebank's arrays, without making {@code Tree}
+   * nodes (so the {@code TreeFactory} isn't used).  Otherwise, the tree is read
+   * and normalized as by {@link #readTree()} and copied into the treebank.
+   *
+   * @return Whether a tree was read, i.e., false at end of token stream.
+   */
+  boolean readTreeInto(CompactTreebank treebank) throws IOException {
+    if (treeNormalizer != null && treeNormalizer.getClass() != TreeNormalizer.class) {
+      Tree t = readTree();
+      if (t == null) {
+        return false;
+      }
+      treebank.add(t);
+      return true;
+    }
+
+    while (tokenizer.hasNext()) {
+      treebank.startTree();
+      try {
+        if (readTreeFromInputStream(treebank)) {
+          treebank.endTree();
+          return true;
+        }
+      } catch (NoSuchElementException e) {
+        treebank.abortTree();
+        throw new IOException("End of token stream encountered before parsing could complete.");
+      }
+      treebank.abortTree();
+    }
+    return false;
+  }
+
   private static final Pattern STAR_PATTERN = Pattern.compile("\\\\\\*");
   private static final Pattern SLASH_PATTERN = Pattern.compile("\\\\/");
 
@@ -264,6 +299,62 @@ public class PennTreeReader implements TreeReader  {
   }
 
 
+  /** The same automaton as getTreeFromInputStream, which adds the nodes to a treebank rather than making them. */
+  private boolean readTreeFromInputStream(CompactTreebank treebank) throws NoSuchElementException {
+    int depth = 0;
+
+    label:
+    while (tokenizer.hasNext()) {
+      String token = tokenizer.next();
+
+      switch (token) {
+        case leftParen:
+          String label = (tokenizer.peek().equals(leftParen)) ? null : tokenizer.next();
+          if (rightParen.equals(label)) {//Skip past empty trees
+            continue;
+          } else if (treeNormalizer != null) {
+            label = treeNormalizer.normalizeNonterminal(label);
+          }
+
+          if (label != null) {
+            label = STAR_PATTERN.matcher(label).replaceAll("*");
+            label = SLASH_PATTERN.matcher(label).replaceAll("/");
+          }
+
+          treebank.openNode(label);
+          depth++;
+          break;
+        case rightParen:
+          if (depth == 0) {
+            log.info("PennTreeReader: warning: file has extra non-matching right parenthesis [ignored]");
+            break label;
+          }
+
+          treebank.closeNode();
+          depth--;
+          if (depth == 0) return true;
+
+          break;
+        default:
+          if (depth == 0) {
+            break label;
+          }
+
+          String terminal = (treeNormalizer == null) ? token : treeNormalizer.normalizeTerminal(token);
+          terminal = STAR_PATTERN.matcher(terminal).replaceAll("*");
+          terminal = SLASH_PATTERN.matcher(terminal).replaceAll("/");
+          treebank.addLeaf(terminal);
+          break;
+      }
+    }
+
+    if (depth > 0) {
+      log.info("PennTreeReader: warning: incomplete tree (extra left parentheses in input)");
+    }
+    return false;
+  }
+
+
   /**
    * Closes the underlying <code>Reader</code> used to create this
    * class.
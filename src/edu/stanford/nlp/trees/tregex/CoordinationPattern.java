@@ -23,11 +23,30 @@ class CoordinationPattern extends TregexPattern {
     //    System.out.println("Made " + (isConj ? "and " : "or ") + "node with " + children.size() + " children.");
   }
 
+  /** Whether this is an "AND" of its children (as opposed to an "OR"). */
+  boolean isConjunction() {
+    return isConj;
+  }
+
   @Override
   public List<TregexPattern> getChildren() {
     return children;
   }
 
+  /** At the root of a pattern, the children of a coordination are all tried at the same node. */
+  @Override
+  public boolean couldMatchValue(String value) {
+    if (isNegated() || isOptional()) {
+      return true;
+    }
+    for (TregexPattern child : children) {
+      if (child.couldMatchValue(value) != isConj) {
+        return ! isConj;
+      }
+    }
+    return isConj;
+  }
+
   @Override
   public String localString() {
     return (isConj ? "and" : "or");
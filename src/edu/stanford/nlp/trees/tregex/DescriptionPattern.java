@@ -269,6 +269,74 @@ public class DescriptionPattern extends TregexPattern  {
     return sb.toString();
   }
 
+  Relation relation() {
+    return rel;
+  }
+
+  /**
+   * Returns the node values of which a tree node must have one in order to
+   * satisfy this description, or null if the description does not limit
+   * the node to a finite set of values.  That is the case for regular
+   * expressions, prefix matches, negated or basic category descriptions,
+   * and backreferences.
+   */
+  Set<String> requiredValues() {
+    if (negDesc || basicCatFunction != null || descriptionMode == null) {
+      return null;
+    }
+    switch (descriptionMode) {
+    case EXACT:
+      return Collections.singleton(exactMatch);
+    case STRINGS:
+      if (stringFilter instanceof ArrayStringFilter &&
+          ((ArrayStringFilter) stringFilter).mode() == ArrayStringFilter.Mode.EXACT) {
+        return new HashSet<>(((ArrayStringFilter) stringFilter).words());
+      }
+      return null;
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * A root description can rule out a node by its value alone, unless it is
+   * a link or backreference, or captures variables which a negated
+   * description might then fail to agree with.
+   */
+  @Override
+  public boolean couldMatchValue(String value) {
+    if (rel != Relation.ROOT || isNegated() || isOptional() || descriptionMode == null ||
+        (negDesc && ! variableGroups.isEmpty())) {
+      return true;
+    }
+    boolean found;
+    if (value == null) {
+      found = false;
+    } else {
+      if (basicCatFunction != null) {
+        value = basicCatFunction.apply(value);
+      }
+      switch (descriptionMode) {
+      case EXACT:
+        found = value.equals(exactMatch);
+        break;
+      case PATTERN:
+        found = descPattern.matcher(value).find();
+        break;
+      case ANYTHING:
+        found = true;
+        break;
+      case STRINGS:
+        found = stringFilter.test(value);
+        break;
+      default:
+        return true;
+      }
+    }
+    // (matching variables can only turn a match into a non-match)
+    return found != negDesc;
+  }
+
   public void setChild(TregexPattern n) {
     child = n;
   }
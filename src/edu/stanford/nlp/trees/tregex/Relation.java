@@ -384,7 +384,7 @@ abstract class Relation implements Serializable {
     }
   };
 
-  private static final Relation PARENT_OF = new Relation("<") {
+  static final Relation PARENT_OF = new Relation("<") {
 
     private static final long serialVersionUID = 9140193735607580808L;
 
@@ -423,7 +423,7 @@ abstract class Relation implements Serializable {
     }
   };
 
-  private static final Relation CHILD_OF = new Relation(">") {
+  static final Relation CHILD_OF = new Relation(">") {
 
     private static final long serialVersionUID = 8919710375433372537L;
 
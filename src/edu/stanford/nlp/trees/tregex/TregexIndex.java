@@ -0,0 +1,648 @@
+package edu.stanford.nlp.trees.tregex;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.trees.DiskTreebank;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeReader;
+import edu.stanford.nlp.trees.TreeReaderFactory;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
+import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * An on-disk index over a treebank which lets a {@link TregexPattern} be
+ * run over only those trees which could possibly match it, rather than
+ * over every tree in the treebank.
+ * <br>
+ * The index file holds the name of the <code>TreeReaderFactory</code>
+ * class the trees are read back with, the trees themselves, in bracketed
+ * form, and then postings lists of tree numbers for every node value (categories and
+ * words alike) and for every parent-child pair of node values.  The
+ * postings are delta-encoded variable length integers, so the index is
+ * typically a fraction of the size of the trees.
+ * <br>
+ * At query time the node descriptions of a compiled pattern which must
+ * match one of a fixed set of strings (for example <code>NP</code> or
+ * <code>/^(?:NN|NNS)$/</code>) are turned into required values, and the
+ * postings lists for those values are intersected to give the candidate
+ * trees.  Descriptions under negation, optional relations or
+ * disjunctions, regular expressions and basic categories impose no
+ * requirement.  Only the candidate trees are read back and matched with
+ * the full pattern, in parallel if requested.  The results are therefore
+ * exactly those of running the pattern over the whole treebank.
+ * <br>
+ * An index can be built and queried from the command line:
+ * <pre>
+ * java edu.stanford.nlp.trees.tregex.TregexIndex -build index.bin [-e ext] [-trf class] [-encoding enc] treebankPath
+ * java edu.stanford.nlp.trees.tregex.TregexIndex -index index.bin [-threads n] [-C] pattern
+ * </pre>
+ */
+public class TregexIndex implements Closeable {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(TregexIndex.class);
+
+  private static final int MAGIC = 0x54524758; // "TRGX"
+  private static final int VERSION = 2;
+
+  private final FileChannel channel;
+  private final long[] treeOffsets;
+  private final Map<String, Integer> termIds;
+  private final byte[][] postings;
+  private final Map<Long, byte[]> pairPostings;
+  /** The factory the trees were read with when the index was built, which they are read back with */
+  private final TreeReaderFactory trf;
+
+  private TregexIndex(FileChannel channel, TreeReaderFactory trf, long[] treeOffsets, Map<String, Integer> termIds,
+                      byte[][] postings, Map<Long, byte[]> pairPostings) {
+    this.channel = channel;
+    this.trf = trf;
+    this.treeOffsets = treeOffsets;
+    this.termIds = termIds;
+    this.postings = postings;
+    this.pairPostings = pairPostings;
+  }
+
+  /**
+   * Opens an index previously written by a {@link Builder}.  The postings
+   * lists are kept in memory; trees are read from disk as needed, with a
+   * new instance of the <code>TreeReaderFactory</code> class the index was
+   * built with.
+   */
+  public static TregexIndex load(String path) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(path, "r");
+    FileChannel channel = file.getChannel();
+    long length = channel.size();
+    if (length < 8 + 12) {
+      throw new IOException("File too short to be a tregex index: " + path);
+    }
+    file.seek(0);
+    if (file.readInt() != MAGIC || file.readInt() != VERSION) {
+      throw new IOException("Not a tregex index, or an unsupported version: " + path);
+    }
+    TreeReaderFactory trf = newTreeReaderFactory(file.readUTF());
+    long treesStart = file.getFilePointer();
+    file.seek(length - 12);
+    long indexStart = file.readLong();
+    if (file.readInt() != MAGIC) {
+      throw new IOException("Truncated tregex index: " + path);
+    }
+
+    channel.position(indexStart);
+    // not closed: closing it would close the channel
+    DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+    int numTrees = in.readInt();
+    long[] treeOffsets = new long[numTrees + 1];
+    treeOffsets[0] = treesStart;
+    for (int i = 0; i < numTrees; ++i) {
+      treeOffsets[i + 1] = treeOffsets[i] + readVInt(in);
+    }
+    int numTerms = in.readInt();
+    Map<String, Integer> termIds = Generics.newHashMap(numTerms);
+    String[] terms = new String[numTerms];
+    byte[][] postings = new byte[numTerms][];
+    for (int i = 0; i < numTerms; ++i) {
+      terms[i] = in.readUTF();
+      termIds.put(terms[i], i);
+      postings[i] = new byte[in.readInt()];
+      in.readFully(postings[i]);
+    }
+    int numPairs = in.readInt();
+    Map<Long, byte[]> pairPostings = Generics.newHashMap(numPairs);
+    for (int i = 0; i < numPairs; ++i) {
+      int parent = in.readInt();
+      int child = in.readInt();
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      pairPostings.put(pairKey(parent, child), bytes);
+    }
+    log.info("Loaded tregex index of " + numTrees + " trees, " + numTerms + " node values and " + numPairs + " parent-child pairs from " + path);
+    return new TregexIndex(channel, trf, treeOffsets, termIds, postings, pairPostings);
+  }
+
+  /** Makes a TreeReaderFactory of the given class with its no-argument constructor. */
+  private static TreeReaderFactory newTreeReaderFactory(String className) throws IOException {
+    try {
+      return (TreeReaderFactory) Class.forName(className).getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | ClassCastException e) {
+      throw new IOException("Cannot make the TreeReaderFactory " + className + " of the tregex index", e);
+    }
+  }
+
+  /** The number of trees in the index */
+  public int size() {
+    return treeOffsets.length - 1;
+  }
+
+  /**
+   * Reads the tree with the given number back from disk.  Tree numbers
+   * are assigned from 0 in the order trees were added to the index.
+   * This is safe to call from multiple threads.
+   */
+  public Tree getTree(int treeId) {
+    int length = (int) (treeOffsets[treeId + 1] - treeOffsets[treeId]);
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    try {
+      long position = treeOffsets[treeId];
+      while (buffer.hasRemaining()) {
+        int read = channel.read(buffer, position + buffer.position());
+        if (read < 0) {
+          throw new EOFException("Tree " + treeId + " extends past the end of the index");
+        }
+      }
+      String text = new String(buffer.array(), StandardCharsets.UTF_8);
+      TreeReader reader = trf.newTreeReader(new StringReader(text));
+      return reader.readTree();
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+  }
+
+  /**
+   * Returns, in increasing order, the numbers of the trees which the
+   * postings lists do not rule out for this pattern.  Every tree that
+   * matches the pattern is in this list, but not every tree in the list
+   * necessarily matches.
+   */
+  public int[] candidates(TregexPattern pattern) {
+    List<Set<String>> valueClauses = new ArrayList<>();
+    List<Set<Pair<String, String>>> pairClauses = new ArrayList<>();
+    collectRequirements(pattern, null, valueClauses, pairClauses);
+
+    List<int[]> lists = new ArrayList<>();
+    for (Set<String> clause : valueClauses) {
+      int[] ids = IntArrays.EMPTY;
+      for (String value : clause) {
+        Integer term = termIds.get(value);
+        if (term != null) {
+          ids = IntArrays.union(ids, decode(postings[term]));
+        }
+      }
+      lists.add(ids);
+    }
+    for (Set<Pair<String, String>> clause : pairClauses) {
+      int[] ids = IntArrays.EMPTY;
+      for (Pair<String, String> pair : clause) {
+        Integer parent = termIds.get(pair.first());
+        Integer child = termIds.get(pair.second());
+        if (parent != null && child != null) {
+          byte[] bytes = pairPostings.get(pairKey(parent, child));
+          if (bytes != null) {
+            ids = IntArrays.union(ids, decode(bytes));
+          }
+        }
+      }
+      lists.add(ids);
+    }
+
+    if (lists.isEmpty()) {
+      int[] all = new int[size()];
+      for (int i = 0; i < all.length; ++i) {
+        all[i] = i;
+      }
+      return all;
+    }
+    // intersecting the shortest lists first keeps the intermediate results small
+    lists.sort(Comparator.comparingInt(ids -> ids.length));
+    int[] result = lists.get(0);
+    for (int i = 1; i < lists.size() && result.length > 0; ++i) {
+      result = IntArrays.intersect(result, lists.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Runs the pattern over the candidate trees for the pattern, using
+   * <code>numThreads</code> threads (or one per core if numThreads is
+   * not positive).  Returns, in tree number order, the number of each
+   * tree with at least one match along with the matched nodes.
+   */
+  public List<Pair<Integer, List<Tree>>> search(TregexPattern pattern, int numThreads) {
+    int[] candidates = candidates(pattern);
+    List<Pair<Integer, List<Tree>>> results = new ArrayList<>();
+    MulticoreWrapper<Integer, Pair<Integer, List<Tree>>> wrapper =
+      new MulticoreWrapper<>(numThreads, new SearchProcessor(pattern));
+    for (int treeId : candidates) {
+      wrapper.put(treeId);
+      while (wrapper.peek()) {
+        addIfMatched(results, wrapper.poll());
+      }
+    }
+    wrapper.join();
+    while (wrapper.peek()) {
+      addIfMatched(results, wrapper.poll());
+    }
+    return results;
+  }
+
+  private static void addIfMatched(List<Pair<Integer, List<Tree>>> results, Pair<Integer, List<Tree>> result) {
+    if ( ! result.second().isEmpty()) {
+      results.add(result);
+    }
+  }
+
+  private class SearchProcessor implements ThreadsafeProcessor<Integer, Pair<Integer, List<Tree>>> {
+    private final TregexPattern pattern;
+
+    SearchProcessor(TregexPattern pattern) {
+      this.pattern = pattern;
+    }
+
+    @Override
+    public Pair<Integer, List<Tree>> process(Integer treeId) {
+      Tree tree = getTree(treeId);
+      List<Tree> matches = new ArrayList<>();
+      TregexMatcher matcher = pattern.matcher(tree);
+      while (matcher.find()) {
+        matches.add(matcher.getMatch());
+      }
+      return new Pair<>(treeId, matches);
+    }
+
+    @Override
+    public ThreadsafeProcessor<Integer, Pair<Integer, List<Tree>>> newInstance() {
+      return this;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Walks the pattern, recording for each node description which must
+   * match a tree node the set of values one of which that node must have,
+   * and, for descriptions joined by an immediate dominance relation, the
+   * set of parent-child value pairs one of which the tree must contain.
+   * Negated and optional subpatterns and disjunctions are not required to
+   * match anything, so they contribute nothing.
+   */
+  private static void collectRequirements(TregexPattern pattern, Set<String> enclosingValues,
+                                          List<Set<String>> valueClauses,
+                                          List<Set<Pair<String, String>>> pairClauses) {
+    if (pattern.isNegated() || pattern.isOptional()) {
+      return;
+    }
+    if (pattern instanceof CoordinationPattern) {
+      if (((CoordinationPattern) pattern).isConjunction()) {
+        for (TregexPattern child : pattern.getChildren()) {
+          collectRequirements(child, enclosingValues, valueClauses, pairClauses);
+        }
+      }
+    } else if (pattern instanceof DescriptionPattern) {
+      DescriptionPattern description = (DescriptionPattern) pattern;
+      Set<String> values = description.requiredValues();
+      if (values != null) {
+        valueClauses.add(values);
+        if (enclosingValues != null) {
+          if (description.relation() == Relation.PARENT_OF) {
+            pairClauses.add(crossProduct(enclosingValues, values));
+          } else if (description.relation() == Relation.CHILD_OF) {
+            pairClauses.add(crossProduct(values, enclosingValues));
+          }
+        }
+      }
+      for (TregexPattern child : pattern.getChildren()) {
+        collectRequirements(child, values, valueClauses, pairClauses);
+      }
+    }
+  }
+
+  private static Set<Pair<String, String>> crossProduct(Set<String> parents, Set<String> children) {
+    Set<Pair<String, String>> pairs = Generics.newHashSet();
+    for (String parent : parents) {
+      for (String child : children) {
+        pairs.add(new Pair<>(parent, child));
+      }
+    }
+    return pairs;
+  }
+
+  private static long pairKey(int parent, int child) {
+    return ((long) parent << 32) | (child & 0xffffffffL);
+  }
+
+  private static void writeVInt(DataOutput out, int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+      out.writeByte((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVInt(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = in.readByte();
+      value |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+
+  /** Decodes a postings list: a count followed by gaps between successive tree numbers */
+  private static int[] decode(byte[] bytes) {
+    int[] position = { 0 };
+    int count = decodeVInt(bytes, position);
+    int[] ids = new int[count];
+    int last = -1;
+    for (int i = 0; i < count; ++i) {
+      last += decodeVInt(bytes, position);
+      ids[i] = last;
+    }
+    return ids;
+  }
+
+  private static int decodeVInt(byte[] bytes, int[] position) {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = bytes[position[0]++];
+      value |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+
+
+  /** Operations on sorted arrays of distinct tree numbers */
+  private static class IntArrays {
+    static final int[] EMPTY = new int[0];
+
+    private IntArrays() {} // static methods
+
+    static int[] union(int[] a, int[] b) {
+      if (a.length == 0) {
+        return b;
+      } else if (b.length == 0) {
+        return a;
+      }
+      int[] result = new int[a.length + b.length];
+      int i = 0, j = 0, k = 0;
+      while (i < a.length && j < b.length) {
+        if (a[i] < b[j]) {
+          result[k++] = a[i++];
+        } else if (a[i] > b[j]) {
+          result[k++] = b[j++];
+        } else {
+          result[k++] = a[i++];
+          j++;
+        }
+      }
+      while (i < a.length) {
+        result[k++] = a[i++];
+      }
+      while (j < b.length) {
+        result[k++] = b[j++];
+      }
+      return Arrays.copyOf(result, k);
+    }
+
+    static int[] intersect(int[] a, int[] b) {
+      int[] result = new int[Math.min(a.length, b.length)];
+      int i = 0, j = 0, k = 0;
+      while (i < a.length && j < b.length) {
+        if (a[i] < b[j]) {
+          i++;
+        } else if (a[i] > b[j]) {
+          j++;
+        } else {
+          result[k++] = a[i++];
+          j++;
+        }
+      }
+      return Arrays.copyOf(result, k);
+    }
+  }
+
+
+  /** A growable, delta-encoded list of tree numbers, used while building the index */
+  private static class PostingsList {
+    private byte[] bytes = new byte[4];
+    private int length;
+    private int count;
+    private int last = -1;
+
+    void add(int treeId) {
+      if (treeId == last) {
+        return;
+      }
+      int gap = treeId - last;
+      last = treeId;
+      count++;
+      while ((gap & ~0x7f) != 0) {
+        append((byte) ((gap & 0x7f) | 0x80));
+        gap >>>= 7;
+      }
+      append((byte) gap);
+    }
+
+    private void append(byte b) {
+      if (length == bytes.length) {
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+      bytes[length++] = b;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      ByteArrayOutputStream header = new ByteArrayOutputStream(5);
+      writeVInt(new DataOutputStream(header), count);
+      out.writeInt(header.size() + length);
+      header.writeTo(out);
+      out.write(bytes, 0, length);
+    }
+  }
+
+
+  /**
+   * Writes an index file in one pass over the trees.  Trees are written to
+   * the file as they are added; the postings lists are accumulated in
+   * memory and written when the builder is closed.
+   * <br>
+   * The trees are read back with a new instance of the class of the
+   * <code>TreeReaderFactory</code> given to the builder (by default a
+   * {@link TregexPattern.TRegexTreeReaderFactory}), so it must have a public
+   * no-argument constructor.
+   */
+  public static class Builder implements Closeable {
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream treeLengths = new ByteArrayOutputStream();
+    private final DataOutputStream treeLengthsOut = new DataOutputStream(treeLengths);
+    private final Map<String, Integer> termIds = Generics.newHashMap();
+    private final List<PostingsList> postings = new ArrayList<>();
+    private final Map<Long, PostingsList> pairPostings = Generics.newHashMap();
+    private long position;
+    private int numTrees = 0;
+
+    public Builder(String path) throws IOException {
+      this(path, new TregexPattern.TRegexTreeReaderFactory());
+    }
+
+    /**
+     * Starts an index of trees which are read back with a TreeReaderFactory
+     * of the same class as trf.
+     *
+     * @throws IllegalArgumentException If the class of trf has no public no-argument constructor
+     */
+    public Builder(String path, TreeReaderFactory trf) throws IOException {
+      try {
+        trf.getClass().getConstructor();
+      } catch (NoSuchMethodException e) {
+        throw new IllegalArgumentException("The trees of a tregex index are read back with a new " + trf.getClass().getName() +
+            ", which needs a public no-argument constructor");
+      }
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(trf.getClass().getName());
+      position = out.size();
+    }
+
+    /** Adds a tree to the index and returns the number assigned to it. */
+    public int add(Tree tree) throws IOException {
+      int treeId = numTrees++;
+      byte[] text = tree.toString().getBytes(StandardCharsets.UTF_8);
+      out.write(text);
+      position += text.length;
+      writeVInt(treeLengthsOut, text.length);
+
+      for (Tree node : tree) {
+        int parent = termId(node.value());
+        if (parent < 0) {
+          continue;
+        }
+        postings.get(parent).add(treeId);
+        for (Tree child : node.children()) {
+          int childId = termId(child.value());
+          if (childId >= 0) {
+            pairPostings.computeIfAbsent(pairKey(parent, childId), k -> new PostingsList()).add(treeId);
+          }
+        }
+      }
+      return treeId;
+    }
+
+    private int termId(String value) {
+      if (value == null) {
+        return -1;
+      }
+      Integer id = termIds.get(value);
+      if (id == null) {
+        id = postings.size();
+        termIds.put(value, id);
+        postings.add(new PostingsList());
+      }
+      return id;
+    }
+
+    /** Writes the postings lists and closes the file. */
+    @Override
+    public void close() throws IOException {
+      long indexStart = position;
+      out.writeInt(numTrees);
+      treeLengths.writeTo(out);
+
+      String[] terms = new String[postings.size()];
+      for (Map.Entry<String, Integer> entry : termIds.entrySet()) {
+        terms[entry.getValue()] = entry.getKey();
+      }
+      out.writeInt(terms.length);
+      for (int i = 0; i < terms.length; ++i) {
+        out.writeUTF(terms[i]);
+        postings.get(i).write(out);
+      }
+
+      out.writeInt(pairPostings.size());
+      for (Map.Entry<Long, PostingsList> entry : pairPostings.entrySet()) {
+        out.writeInt((int) (entry.getKey() >>> 32));
+        out.writeInt((int) (long) entry.getKey());
+        entry.getValue().write(out);
+      }
+
+      out.writeLong(indexStart);
+      out.writeInt(MAGIC);
+      out.close();
+    }
+  }
+
+  /** Builds an index file containing all of the given trees. */
+  public static void build(Iterable<Tree> trees, String path) throws IOException {
+    build(trees, path, new TregexPattern.TRegexTreeReaderFactory());
+  }
+
+  /** Builds an index file containing all of the given trees, which are read back with a TreeReaderFactory like trf. */
+  public static void build(Iterable<Tree> trees, String path, TreeReaderFactory trf) throws IOException {
+    try (Builder builder = new Builder(path, trf)) {
+      for (Tree tree : trees) {
+        builder.add(tree);
+      }
+    }
+  }
+
+
+  /**
+   * Builds an index from a treebank, or searches an existing index.
+   * See the class documentation for the arguments.
+   */
+  public static void main(String[] args) throws IOException {
+    Map<String, Integer> flagMap = Generics.newHashMap();
+    flagMap.put("-build", 1);
+    flagMap.put("-index", 1);
+    flagMap.put("-threads", 1);
+    flagMap.put("-e", 1);
+    flagMap.put("-trf", 1);
+    flagMap.put("-encoding", 1);
+    flagMap.put("-C", 0);
+    Map<String, String[]> argsMap = StringUtils.argsToMap(args, flagMap);
+    args = argsMap.get(null);
+
+    if (argsMap.containsKey("-build") && args.length == 1) {
+      TreeReaderFactory trf = new TregexPattern.TRegexTreeReaderFactory();
+      if (argsMap.containsKey("-trf")) {
+        try {
+          trf = (TreeReaderFactory) Class.forName(argsMap.get("-trf")[0]).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+          throw new RuntimeException("Error occurred while constructing TreeReaderFactory: " + e);
+        }
+      }
+      String encoding = argsMap.containsKey("-encoding") ? argsMap.get("-encoding")[0] : "UTF-8";
+      String extension = argsMap.containsKey("-e") ? argsMap.get("-e")[0] : null;
+      DiskTreebank treebank = new DiskTreebank(trf, encoding);
+      treebank.loadPath(args[0], extension, true);
+      build(treebank, argsMap.get("-build")[0], trf);
+    } else if (argsMap.containsKey("-index") && args.length == 1) {
+      int numThreads = argsMap.containsKey("-threads") ? Integer.parseInt(argsMap.get("-threads")[0]) : 1;
+      TregexPattern pattern = TregexPattern.compile(args[0]);
+      try (TregexIndex index = load(argsMap.get("-index")[0])) {
+        List<Pair<Integer, List<Tree>>> results = index.search(pattern, numThreads);
+        int numMatches = 0;
+        for (Pair<Integer, List<Tree>> result : results) {
+          numMatches += result.second().size();
+          if ( ! argsMap.containsKey("-C")) {
+            for (Tree match : result.second()) {
+              System.out.println("# tree " + result.first());
+              match.pennPrint();
+            }
+          }
+        }
+        log.info("There were " + numMatches + " matches in " + results.size() + " of " + index.candidates(pattern).length + " candidate trees.");
+      }
+    } else {
+      log.info("Usage: java edu.stanford.nlp.trees.tregex.TregexIndex -build index [-e ext] [-trf class] [-encoding enc] treebankPath");
+      log.info("       java edu.stanford.nlp.trees.tregex.TregexIndex -index index [-threads n] [-C] pattern");
+    }
+  }
+
+}
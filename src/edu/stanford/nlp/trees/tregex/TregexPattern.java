@@ -397,6 +397,21 @@ public abstract class TregexPattern implements Serializable  {
     return opt;
   }
 
+  /**
+   * Whether this pattern could possibly match at a tree node whose value
+   * is {@code value}, judging only by the description of the root of the pattern.
+   * If this returns false, {@link TregexMatcher#findAt} is certain to fail at
+   * any node with that value, so a caller trying many patterns at many nodes
+   * can skip the pattern without making a matcher.  True means only that the
+   * pattern might match.
+   *
+   * @param value The value of a tree node (which may be null)
+   * @return false if the pattern cannot match at a node with this value
+   */
+  public boolean couldMatchValue(String value) {
+    return true;
+  }
+
   abstract TregexMatcher matcher(Tree root, Tree tree,
                                  IdentityHashMap<Tree, Tree> nodesToParents,
                                  Map<String, Tree> namesToNodes,
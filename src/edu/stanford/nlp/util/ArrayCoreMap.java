@@ -40,6 +40,9 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
   /** Initial capacity of the array */
   private static final int INITIAL_CAPACITY = 4;
 
+  private static final Class<?>[] EMPTY_KEYS = new Class<?>[0];
+  private static final Object[] EMPTY_VALUES = new Object[0];
+
   /** Array of keys */
   private Class<? extends Key<?>>[] keys;
 
@@ -64,8 +67,14 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    * @param capacity Initial capacity of object in key,value pairs
    */
   public ArrayCoreMap(int capacity) {
-    keys = ErasureUtils.uncheckedCast(new Class[capacity]);
-    values = new Object[capacity];
+    if (capacity == 0) {
+      // (shared, as nothing is ever stored in an array of length 0)
+      keys = ErasureUtils.uncheckedCast(EMPTY_KEYS);
+      values = EMPTY_VALUES;
+    } else {
+      keys = ErasureUtils.uncheckedCast(new Class[capacity]);
+      values = new Object[capacity];
+    }
     // size starts at 0
   }
 
@@ -74,9 +83,13 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    * @param other The ArrayCoreMap to copy. It may not be null.
    */
   public ArrayCoreMap(ArrayCoreMap other) {
-    size = other.size;
-    keys = Arrays.copyOf(other.keys, size);
-    values = Arrays.copyOf(other.values, size);
+    size = other.size();
+    keys = ErasureUtils.uncheckedCast(new Class[size]);
+    values = new Object[size];
+    for (int i = 0; i < size; i++) {
+      keys[i] = ErasureUtils.uncheckedCast(other.keyAt(i));
+      values[i] = other.valueAt(i);
+    }
   }
 
   /**
@@ -202,9 +215,9 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    */
   public Set<Class<?>> keySetNotNull() {
     Set<Class<?>> mapKeys = new IdentityHashSet<>();
-    for (int i = 0; i < size(); ++i) {
-      if (values[i] != null) {
-        mapKeys.add(this.keys[i]);
+    for (int i = 0, size = size(); i < size; ++i) {
+      if (valueAt(i) != null) {
+        mapKeys.add(keyAt(i));
       }
     }
     return mapKeys;
@@ -280,6 +293,22 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
     return size;
   }
 
+  /**
+   * Returns the key of the i-th entry of this map, for i from 0 to {@code size() - 1}.
+   * Copying, comparing, hashing and printing the map go through this and
+   * {@link #valueAt}, so a subclass which keeps some of its entries outside of its
+   * own arrays (for instance, a row of a {@link edu.stanford.nlp.ling.TokenTable})
+   * overrides these along with the other accessors.
+   */
+  protected Class<?> keyAt(int i) {
+    return keys[i];
+  }
+
+  /** Returns the value of the i-th entry of this map, for i from 0 to {@code size() - 1}. */
+  protected Object valueAt(int i) {
+    return values[i];
+  }
+
   /**
    * Keeps track of which ArrayCoreMaps have had toString called on
    * them.  We do not want to loop forever when there are cycles in
@@ -307,11 +336,12 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
 
     calledSet.add(this);
 
+    int size = size();
     StringBuilder s = new StringBuilder("[");
     for (int i = 0; i < size; i++) {
-      s.append(keys[i].getSimpleName());
+      s.append(keyAt(i).getSimpleName());
       s.append('=');
-      s.append(values[i]);
+      s.append(valueAt(i));
       if (i < size-1) {
         s.append(' ');
       }
@@ -341,6 +371,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    */
   @Override
   public String toShorterString(String... what) {
+    int size = size();
     StringBuilder s = new StringBuilder(SHORTER_STRING_CHARSTRING_START_SIZE);
     s.append('[');
     Set<String> whatSet = null;
@@ -349,7 +380,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
       whatSet = new HashSet<>(Arrays.asList(what));
     }
     for (int i = 0; i < size; i++) {
-      Class klass = keys[i];
+      Class klass = keyAt(i);
       String name = shortNames.get(klass);
       if (name == null) {
         name = klass.getSimpleName();
@@ -380,7 +411,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
         }
         s.append(name);
         s.append('=');
-        s.append(values[i]);
+        s.append(valueAt(i));
       }
     }
     s.append(']');
@@ -419,11 +450,12 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    *     character. If the string contains spaces, it is wrapped in "{...}".
    */
   public String toShortString(char separator, String... what) {
+    int size = size();
     StringBuilder s = new StringBuilder();
     for (int i = 0; i < size; i++) {
       boolean include;
       if (what.length > 0) {
-        String name = keys[i].getSimpleName();
+        String name = keyAt(i).getSimpleName();
         int annoIdx = name.lastIndexOf("Annotation");
         if (annoIdx >= 0) {
           name = name.substring(0, annoIdx);
@@ -442,7 +474,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
         if (s.length() > 0) {
           s.append(separator);
         }
-        s.append(values[i]);
+        s.append(valueAt(i));
       }
     }
     String answer = s.toString();
@@ -538,22 +570,27 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
     calledMap.put(this, other, true);
     calledMap.put(other, this, true);
 
-    if (this.size != other.size) {
+    int size = this.size();
+    int otherSize = other.size();
+    if (size != otherSize) {
       result = false;
     } else {
-    for (int i = 0; i < this.size; i++) {
+    for (int i = 0; i < size; i++) {
       // test if other contains this key,value pair
+      Class<?> key = this.keyAt(i);
+      Object value = this.valueAt(i);
       boolean matched = false;
-      for (int j = 0; j < other.size; j++) {
-        if (this.keys[i] == other.keys[j]) {
-          if ((this.values[i] == null && other.values[j] != null) ||
-              (this.values[i] != null && other.values[j] == null)) {
+      for (int j = 0; j < otherSize; j++) {
+        if (key == other.keyAt(j)) {
+          Object otherValue = other.valueAt(j);
+          if ((value == null && otherValue != null) ||
+              (value != null && otherValue == null)) {
             matched = false;
             break;
           }
 
-          if ((this.values[i] == null && other.values[j] == null) ||
-              (this.values[i].equals(other.values[j]))) {
+          if ((value == null && otherValue == null) ||
+              (value.equals(otherValue))) {
             matched = true;
             break;
           }
@@ -607,9 +644,10 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
 
     int keysCode = 0;
     int valuesCode = 0;
-    for (int i = 0; i < size; i++) {
-      keysCode += (i < keys.length && values[i] != null ? keys[i].hashCode() : 0);
-      valuesCode += (i < values.length && values[i] != null ? values[i].hashCode() : 0);
+    for (int i = 0, size = size(); i < size; i++) {
+      Object value = valueAt(i);
+      keysCode += (value != null ? keyAt(i).hashCode() : 0);
+      valuesCode += (value != null ? value.hashCode() : 0);
     }
 
     if (createdCalledSet) {
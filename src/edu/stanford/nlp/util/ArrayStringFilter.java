@@ -2,7 +2,9 @@ package edu.stanford.nlp.util;
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Predicate;
 
@@ -67,6 +69,16 @@ public class ArrayStringFilter implements Predicate<String>, Serializable {
     }
   }
 
+  /** The way this filter compares its strings against the input. */
+  public Mode mode() {
+    return mode;
+  }
+
+  /** The strings this filter was constructed with. */
+  public List<String> words() {
+    return Collections.unmodifiableList(Arrays.asList(words));
+  }
+
   @Override
   public String toString() {
     return mode.toString() + ':' + StringUtils.join(words, ",");
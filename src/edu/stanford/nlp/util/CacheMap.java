@@ -7,7 +7,9 @@ import java.util.Map;
 
 /**
  * A fixed size hash map with LRU replacement.  Can optionally automatically
- * dump itself out to a file as the cache grows.
+ * dump itself out to a file as the cache grows. It is not threadsafe: for a
+ * cache shared between threads, use a
+ * {@link edu.stanford.nlp.util.concurrent.ConcurrentBoundedCache}.
  *
  * @author Ari Steinberg (ari.steinberg@stanford.edu)
  */
@@ -42,6 +42,7 @@ import static edu.stanford.nlp.util.logging.Redwood.Util.*;
  * If two processes write to the same block, there is no guarantee that both values will actually be written.
  * This is very important -- <b>this class is a cache and not a database</b>.
  * If you care about data integrity, you should use a real database.
+ * For a cache which many processes can write to, or which is written to often, see {@link LogStructuredCache}.
  * </p>
  *
  * <p>
@@ -0,0 +1,329 @@
+package edu.stanford.nlp.util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.RuntimeIOException;
+
+/**
+ * A read-only copy of an Index, for when no more items will be added to it, e.g.,
+ * the feature index of a trained model at inference time. It keeps its items in an
+ * array in the order of their ids, and finds the id of an item with a minimal perfect
+ * hash of the items' hash codes (by "hash, displace, and compress"): the hash code
+ * picks a bucket, the bucket's displacement picks the slot of the array of ids, and
+ * the item in that slot is compared with the one looked up. This takes a few ints per
+ * item beyond the array of items, rather than a map entry and a boxed Integer per item,
+ * and a lookup is two array reads and one call of {@code equals}.
+ * <br>
+ * A FrozenIndex is locked and can't be unlocked: {@link #addToIndex} returns -1 for
+ * items not in it, as for a locked {@link HashIndex}.
+ *
+ * @param <E> The type of the items
+ */
+public class FrozenIndex<E> extends AbstractCollection<E> implements Index<E>, RandomAccess {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The average number of distinct hash codes in a bucket */
+  private static final int BUCKET_SIZE = 4;
+  /** How many displacements to try for a bucket before trying again with more buckets */
+  private static final int MAX_DISPLACEMENT = 1 << 16;
+
+  private final Object[] objects;
+  /** For each bucket, the seed of the hash to its slots, or -(slot + 1) for a bucket of one hash code */
+  private final int[] displacements;
+  /** For each distinct hash code, the id of its item, or -(i + 1) for hash codes shared by the items in collisions[i] */
+  private final int[] slots;
+  private final int[][] collisions;
+
+  /** Makes a read-only copy of an index, with the same ids. */
+  public FrozenIndex(Index<? extends E> index) {
+    int size = index.size();
+    objects = new Object[size];
+    for (int i = 0; i < size; i++) {
+      objects[i] = index.get(i);
+    }
+
+    // group the ids by the hash codes of their items
+    long[] hashesAndIds = new long[size];
+    for (int i = 0; i < size; i++) {
+      hashesAndIds[i] = ((long) Objects.hashCode(objects[i]) << 32) | i;
+    }
+    Arrays.sort(hashesAndIds);
+    int[] hashes = new int[size];
+    int[] entries = new int[size];
+    List<int[]> collisionList = new ArrayList<>();
+    int numHashes = 0;
+    for (int i = 0; i < size; ) {
+      int hash = (int) (hashesAndIds[i] >> 32);
+      int end = i + 1;
+      while (end < size && (int) (hashesAndIds[end] >> 32) == hash) {
+        end++;
+      }
+      hashes[numHashes] = hash;
+      if (end - i == 1) {
+        entries[numHashes] = (int) hashesAndIds[i];
+      } else {
+        int[] ids = new int[end - i];
+        for (int j = i; j < end; j++) {
+          ids[j - i] = (int) hashesAndIds[j];
+        }
+        collisionList.add(ids);
+        entries[numHashes] = -collisionList.size();
+      }
+      numHashes++;
+      i = end;
+    }
+    collisions = collisionList.toArray(new int[collisionList.size()][]);
+
+    int numBuckets = Math.max(1, numHashes / BUCKET_SIZE);
+    int[] bucketDisplacements;
+    int[] hashSlots;
+    while (true) {
+      bucketDisplacements = new int[numBuckets];
+      hashSlots = place(hashes, numHashes, numBuckets, bucketDisplacements);
+      if (hashSlots != null) {
+        break;
+      }
+      numBuckets *= 2;
+    }
+    displacements = bucketDisplacements;
+    slots = new int[numHashes];
+    for (int h = 0; h < numHashes; h++) {
+      slots[hashSlots[h]] = entries[h];
+    }
+  }
+
+  /**
+   * Finds a displacement for each bucket which puts each of its hash codes in a different,
+   * free slot. Buckets are placed from the largest to the smallest, while there are still
+   * many free slots; buckets of one hash code are just put in whichever slots are left.
+   *
+   * @return The slot of each hash code, or null if some bucket couldn't be placed
+   */
+  private static int[] place(int[] hashes, int numHashes, int numBuckets, int[] displacements) {
+    // the hash codes of each bucket, by a counting sort
+    int[] bucketStarts = new int[numBuckets + 1];
+    for (int h = 0; h < numHashes; h++) {
+      bucketStarts[bucket(hashes[h], numBuckets) + 1]++;
+    }
+    for (int b = 0; b < numBuckets; b++) {
+      bucketStarts[b + 1] += bucketStarts[b];
+    }
+    int[] bucketHashes = new int[numHashes];
+    int[] filled = new int[numBuckets];
+    for (int h = 0; h < numHashes; h++) {
+      int b = bucket(hashes[h], numBuckets);
+      bucketHashes[bucketStarts[b] + filled[b]++] = h;
+    }
+    long[] sizesAndBuckets = new long[numBuckets];
+    for (int b = 0; b < numBuckets; b++) {
+      sizesAndBuckets[b] = ((long) -(bucketStarts[b + 1] - bucketStarts[b]) << 32) | b;
+    }
+    Arrays.sort(sizesAndBuckets);
+
+    int[] hashSlots = new int[numHashes];
+    boolean[] taken = new boolean[numHashes];
+    int nextFree = 0;
+    for (long sizeAndBucket : sizesAndBuckets) {
+      int b = (int) sizeAndBucket;
+      int start = bucketStarts[b];
+      int end = bucketStarts[b + 1];
+      if (end - start == 1) {
+        while (taken[nextFree]) {
+          nextFree++;
+        }
+        taken[nextFree] = true;
+        hashSlots[bucketHashes[start]] = nextFree;
+        displacements[b] = -(nextFree + 1);
+      } else if (end > start) {
+        int d = 1;
+        for ( ; d <= MAX_DISPLACEMENT; d++) {
+          int placed = start;
+          for ( ; placed < end; placed++) {
+            int slot = slot(hashes[bucketHashes[placed]], d, numHashes);
+            if (taken[slot]) {
+              break;
+            }
+            taken[slot] = true;
+            hashSlots[bucketHashes[placed]] = slot;
+          }
+          if (placed == end) {
+            break;
+          }
+          // undo the slots this displacement did take
+          for (int i = start; i < placed; i++) {
+            taken[hashSlots[bucketHashes[i]]] = false;
+          }
+        }
+        if (d > MAX_DISPLACEMENT) {
+          return null;
+        }
+        displacements[b] = d;
+      }
+    }
+    return hashSlots;
+  }
+
+  /** Scrambles a hash code with a seed (this is the finalizer of MurmurHash3). */
+  private static int mix(int hash, int seed) {
+    int h = hash ^ (seed * 0x9E3779B9);
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  private static int bucket(int hash, int numBuckets) {
+    return (mix(hash, 0) & Integer.MAX_VALUE) % numBuckets;
+  }
+
+  private static int slot(int hash, int displacement, int numSlots) {
+    return (mix(hash, displacement) & Integer.MAX_VALUE) % numSlots;
+  }
+
+  @Override
+  public int size() {
+    return objects.length;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public E get(int i) {
+    return (E) objects[i];
+  }
+
+  @Override
+  public int indexOf(E o) {
+    if (slots.length == 0) {
+      return -1;
+    }
+    int hash = Objects.hashCode(o);
+    int d = displacements[bucket(hash, displacements.length)];
+    int entry = slots[d < 0 ? -d - 1 : slot(hash, d, slots.length)];
+    if (entry >= 0) {
+      return Objects.equals(objects[entry], o) ? entry : -1;
+    }
+    for (int id : collisions[-entry - 1]) {
+      if (Objects.equals(objects[id], o)) {
+        return id;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns the index of the item, or -1 if it isn't in the index (nothing can be added). */
+  @Override
+  public int addToIndex(E o) {
+    return indexOf(o);
+  }
+
+  @Override
+  @Deprecated
+  public int indexOf(E o, boolean add) {
+    return indexOf(o);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<E> objectsList() {
+    return Collections.unmodifiableList(Arrays.asList((E[]) objects));
+  }
+
+  @Override
+  public Collection<E> objects(final int[] indices) {
+    return new AbstractList<E>() {
+      @Override
+      public E get(int index) {
+        return FrozenIndex.this.get(indices[index]);
+      }
+      @Override
+      public int size() {
+        return indices.length;
+      }
+    };
+  }
+
+  @Override
+  public boolean isLocked() {
+    return true;
+  }
+
+  /** Does nothing: a FrozenIndex is always locked. */
+  @Override
+  public void lock() { }
+
+  @Override
+  public void unlock() {
+    throw new UnsupportedOperationException("A FrozenIndex can't be unlocked");
+  }
+
+  @Override
+  public void saveToWriter(Writer bw) throws IOException {
+    for (int i = 0; i < objects.length; i++) {
+      bw.write(i + "=" + objects[i] + '\n');
+    }
+  }
+
+  @Override
+  public void saveToFilename(String file) {
+    try (PrintWriter bw = IOUtils.getPrintWriter(file)) {
+      saveToWriter(bw);
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+  }
+
+  /** Leaves the index unchanged: returns false. */
+  @Override
+  public boolean add(E o) {
+    return false;
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends E> c) {
+    return false;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public boolean contains(Object o) {
+    return indexOf((E) o) >= 0;
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException("A FrozenIndex can't be changed");
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return objectsList().iterator();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder buff = new StringBuilder("[");
+    for (int i = 0; i < objects.length; i++) {
+      if (i > 0) buff.append(',');
+      buff.append(i).append('=').append(objects[i]);
+    }
+    buff.append(']');
+    return buff.toString();
+  }
+
+}
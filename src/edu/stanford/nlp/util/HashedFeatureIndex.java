@@ -0,0 +1,232 @@
+package edu.stanford.nlp.util;
+
+import java.io.Writer;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An index of feature strings which stores no strings: each feature is hashed
+ * into one of a fixed number of buckets (the "hashing trick"), so that the
+ * size of the index, and of the weights of a model over it, does not grow with
+ * the number of distinct features. Features which hash to the same bucket share
+ * a weight. To keep such collisions from biasing the weights, each feature also
+ * has a sign given by a second hash, {@link #sign}, which a model multiplies
+ * the value of the feature by, so that colliding features cancel out in expectation.
+ * <br>
+ * The hash is 32 bit MurmurHash3, over the UTF-16 chars of a feature.
+ * <br>
+ * The index may have several blocks of buckets, such as one for each clique
+ * size of a CRF: {@link #indexOf(String, int)} gives the bucket of a feature
+ * in a block. {@link #indexOf(String)} gives its bucket in the first block.
+ * {@link #get} gives a name for a bucket, such as {@code #17}, rather than a feature.
+ * <br>
+ * Nothing can be added to this index, and it cannot be saved as text, as
+ * the features are not known; it is saved by serializing it.
+ */
+public class HashedFeatureIndex extends AbstractCollection<String> implements Index<String> {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int BUCKET_SEED = 0x9747b28c;
+  private static final int SIGN_SEED = 0x5bd1e995;
+
+  private final int numBuckets;
+  private final int numBlocks;
+
+  /** An index of {@code numBuckets} buckets. */
+  public HashedFeatureIndex(int numBuckets) {
+    this(numBuckets, 1);
+  }
+
+  /** An index of {@code numBlocks} blocks of {@code numBuckets} buckets. */
+  public HashedFeatureIndex(int numBuckets, int numBlocks) {
+    if (numBuckets <= 0 || numBlocks <= 0) {
+      throw new IllegalArgumentException("Need a positive number of buckets and blocks, not " + numBuckets + " and " + numBlocks);
+    }
+    if ((long) numBuckets * numBlocks > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many buckets: " + numBuckets + " * " + numBlocks);
+    }
+    this.numBuckets = numBuckets;
+    this.numBlocks = numBlocks;
+  }
+
+  public int numBuckets() {
+    return numBuckets;
+  }
+
+  /** The bucket of a feature in the given block. */
+  public int indexOf(String feature, int block) {
+    return block * numBuckets + Math.floorMod(murmurHash3(feature, BUCKET_SEED), numBuckets);
+  }
+
+  /** The bucket of a feature in the first block. */
+  @Override
+  public int indexOf(String feature) {
+    return indexOf(feature, 0);
+  }
+
+  /** The value, 1 or -1, to multiply the value of a feature by. */
+  public double sign(String feature) {
+    return murmurHash3(feature, SIGN_SEED) >= 0 ? 1.0 : -1.0;
+  }
+
+  /**
+   * The 32 bit MurmurHash3 of the chars of a string, two chars to a block.
+   */
+  static int murmurHash3(CharSequence s, int seed) {
+    final int c1 = 0xcc9e2d51;
+    final int c2 = 0x1b873593;
+    int h = seed;
+    int length = s.length();
+    int i = 0;
+    for (; i + 1 < length; i += 2) {
+      int k = s.charAt(i) | (s.charAt(i + 1) << 16);
+      k *= c1;
+      k = Integer.rotateLeft(k, 15);
+      k *= c2;
+      h ^= k;
+      h = Integer.rotateLeft(h, 13);
+      h = h * 5 + 0xe6546b64;
+    }
+    if (i < length) {
+      int k = s.charAt(i);
+      k *= c1;
+      k = Integer.rotateLeft(k, 15);
+      k *= c2;
+      h ^= k;
+    }
+    h ^= length * 2;
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  @Override
+  public int size() {
+    return numBuckets * numBlocks;
+  }
+
+  /** A name for a bucket: {@code #bucket}, or {@code #block:bucket} if there are several blocks. */
+  @Override
+  public String get(int i) {
+    if (i < 0 || i >= size()) {
+      throw new ArrayIndexOutOfBoundsException("Index " + i + " outside the bounds [0," + size() + ")");
+    }
+    if (numBlocks == 1) {
+      return "#" + i;
+    }
+    return "#" + (i / numBuckets) + ':' + (i % numBuckets);
+  }
+
+  @Override
+  public int addToIndex(String o) {
+    return indexOf(o);
+  }
+
+  @Override
+  @Deprecated
+  public int indexOf(String o, boolean add) {
+    return indexOf(o);
+  }
+
+  @Override
+  public List<String> objectsList() {
+    return new AbstractList<String>() {
+      @Override
+      public String get(int index) {
+        return HashedFeatureIndex.this.get(index);
+      }
+
+      @Override
+      public int size() {
+        return HashedFeatureIndex.this.size();
+      }
+    };
+  }
+
+  @Override
+  public Collection<String> objects(int[] indices) {
+    List<String> objects = new ArrayList<>(indices.length);
+    for (int i : indices) {
+      objects.add(get(i));
+    }
+    return objects;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return objectsList().iterator();
+  }
+
+  /** Always true: every string has a bucket, but nothing is added. */
+  @Override
+  public boolean isLocked() {
+    return true;
+  }
+
+  @Override
+  public void lock() { }
+
+  @Override
+  public void unlock() { }
+
+  @Override
+  public void saveToWriter(Writer out) {
+    throw new UnsupportedOperationException("A hashed feature index has no features to write");
+  }
+
+  @Override
+  public void saveToFilename(String s) {
+    throw new UnsupportedOperationException("A hashed feature index has no features to write");
+  }
+
+  /** Every string has a bucket. */
+  @Override
+  public boolean contains(Object o) {
+    return o instanceof String;
+  }
+
+  /** Nothing is stored, so nothing changes. */
+  @Override
+  public boolean add(String s) {
+    return false;
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends String> c) {
+    return false;
+  }
+
+  @Override
+  public void clear() { }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if ( ! (o instanceof HashedFeatureIndex)) {
+      return false;
+    }
+    HashedFeatureIndex other = (HashedFeatureIndex) o;
+    return numBuckets == other.numBuckets && numBlocks == other.numBlocks;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * numBuckets + numBlocks;
+  }
+
+  @Override
+  public String toString() {
+    return "HashedFeatureIndex[" + numBlocks + " x " + numBuckets + " buckets]";
+  }
+
+}
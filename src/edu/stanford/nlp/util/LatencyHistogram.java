@@ -0,0 +1,153 @@
+package edu.stanford.nlp.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies, in milliseconds, over a fixed set of buckets.
+ * Recording a latency is lock-free, so a single histogram can be shared by
+ * every thread serving requests.
+ *
+ * <p>Bucket <i>i</i> counts the latencies which are at most <code>bounds()[i]</code>
+ * and more than the previous bound; the last bucket counts the latencies above the
+ * largest bound.
+ * Quantiles are estimated by interpolating linearly within a bucket.</p>
+ */
+public class LatencyHistogram {
+
+  /** The default bucket bounds, in milliseconds, from 5ms up to a minute */
+  public static final long[] DEFAULT_BOUNDS_MILLIS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+  private final long[] bounds;
+  /** The bounds in nanoseconds, to place latencies measured in nanoseconds without rounding them */
+  private final long[] boundsNanos;
+  private final AtomicLongArray counts;
+  private final AtomicLong count = new AtomicLong();
+  /** Kept in nanoseconds, so that latencies of under a millisecond still add up */
+  private final AtomicLong sumNanos = new AtomicLong();
+
+  public LatencyHistogram() {
+    this(DEFAULT_BOUNDS_MILLIS);
+  }
+
+  /**
+   * @param boundsMillis The upper bound of each bucket, in increasing order.
+   */
+  public LatencyHistogram(long[] boundsMillis) {
+    for (int i = 1; i < boundsMillis.length; ++i) {
+      if (boundsMillis[i] <= boundsMillis[i - 1]) {
+        throw new IllegalArgumentException("Bucket bounds must be increasing: " + Arrays.toString(boundsMillis));
+      }
+    }
+    this.bounds = boundsMillis.clone();
+    this.boundsNanos = new long[bounds.length];
+    for (int i = 0; i < bounds.length; ++i) {
+      boundsNanos[i] = TimeUnit.MILLISECONDS.toNanos(bounds[i]);
+    }
+    this.counts = new AtomicLongArray(bounds.length + 1);
+  }
+
+  /** Record a latency, in milliseconds. */
+  public void record(long millis) {
+    recordNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  /**
+   * Record a latency, in nanoseconds (e.g., the difference of two calls of {@link System#nanoTime()}).
+   * This is more accurate than rounding the latency to milliseconds first:
+   * a latency of 1.5ms goes in the bucket bounded by 2ms, and latencies of under a millisecond add to the sum.
+   */
+  public void recordNanos(long nanos) {
+    int bucket = Arrays.binarySearch(boundsNanos, nanos);
+    if (bucket < 0) {
+      bucket = -bucket - 1;
+    }
+    counts.incrementAndGet(bucket);
+    count.incrementAndGet();
+    sumNanos.addAndGet(nanos);
+  }
+
+  /** The number of latencies recorded. */
+  public long count() {
+    return count.get();
+  }
+
+  /** The sum of the latencies recorded, in whole milliseconds. */
+  public long sumMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(sumNanos.get());
+  }
+
+  /** The sum of the latencies recorded, in nanoseconds. */
+  public long sumNanos() {
+    return sumNanos.get();
+  }
+
+  /** The upper bound of each bucket but the last, in milliseconds. */
+  public long[] bounds() {
+    return bounds.clone();
+  }
+
+  /**
+   * The number of latencies in each bucket.
+   * This has one more element than {@link #bounds()}, for the latencies above the largest bound.
+   */
+  public long[] counts() {
+    long[] snapshot = new long[counts.length()];
+    for (int i = 0; i < snapshot.length; ++i) {
+      snapshot[i] = counts.get(i);
+    }
+    return snapshot;
+  }
+
+  /**
+   * An estimate of the given quantile of the latencies, in milliseconds, or NaN if nothing has been recorded.
+   * Latencies above the largest bound are taken to be at the largest bound.
+   *
+   * @param q The quantile, between 0 and 1.
+   */
+  public double quantile(double q) {
+    if (q < 0.0 || q > 1.0) {
+      throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+    }
+    long[] snapshot = counts();
+    long total = 0;
+    for (long c : snapshot) {
+      total += c;
+    }
+    if (total == 0) {
+      return Double.NaN;
+    }
+    double rank = q * total;
+    long seen = 0;
+    for (int i = 0; i < bounds.length; ++i) {
+      if (snapshot[i] > 0 && seen + snapshot[i] >= rank) {
+        double lower = i == 0 ? 0.0 : bounds[i - 1];
+        return lower + (bounds[i] - lower) * (rank - seen) / snapshot[i];
+      }
+      seen += snapshot[i];
+    }
+    return bounds.length == 0 ? 0.0 : bounds[bounds.length - 1];
+  }
+
+  /** A copy of this histogram, as of now. */
+  public LatencyHistogram snapshot() {
+    LatencyHistogram copy = new LatencyHistogram(bounds);
+    for (int i = 0; i < counts.length(); ++i) {
+      copy.counts.set(i, counts.get(i));
+    }
+    copy.count.set(count.get());
+    copy.sumNanos.set(sumNanos.get());
+    return copy;
+  }
+
+  @Override
+  public String toString() {
+    long n = count();
+    return "LatencyHistogram(count=" + n +
+        (n == 0 ? "" : ", mean=" + (sumMillis() / n) + "ms, p50=" + Math.round(quantile(0.5)) + "ms, p95=" + Math.round(quantile(0.95)) + "ms") +
+        ')';
+  }
+
+}
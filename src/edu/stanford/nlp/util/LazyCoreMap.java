@@ -0,0 +1,114 @@
+package edu.stanford.nlp.util;
+
+import java.util.function.Supplier;
+
+/**
+ * An {@link ArrayCoreMap} some of whose values are only computed the first
+ * time they are asked for.
+ * A value set with {@link #setLazily(Class, Supplier)} is a key of the map
+ * from then on (it is in the {@link #keySet()}, and counts towards the
+ * {@link #size()}), but its supplier is not called until {@link #get(Class)}
+ * is called with that key; the value it returns is then stored in the map.
+ * This is useful when a map is read from a compact representation
+ * (such as a protocol buffer) and some of its values are expensive to
+ * rebuild and rarely used.
+ *
+ * Whole-map operations (copying, equality, hashing, printing and Java
+ * serialization) compute any values which have not been computed yet.
+ * Values are computed at most once, even if they are asked for from several
+ * threads at the same time; otherwise this map is no more thread-safe than
+ * an ArrayCoreMap.
+ */
+public class LazyCoreMap extends ArrayCoreMap {
+
+  /** The placeholder stored in the map for a value which has not been computed */
+  private static final class Deferred {
+    private final Supplier<?> supplier;
+
+    private Deferred(Supplier<?> supplier) {
+      this.supplier = supplier;
+    }
+  }
+
+  public LazyCoreMap() {
+    super();
+  }
+
+  public LazyCoreMap(int capacity) {
+    super(capacity);
+  }
+
+  /** Copies the entries of the given map, computing any lazy values it has. */
+  public LazyCoreMap(CoreMap other) {
+    super(other);
+  }
+
+  /**
+   * Sets the value of this key to be the result of the supplier, which is
+   * called the first time the key is retrieved.
+   */
+  @SuppressWarnings("unchecked")
+  public <VALUE> void setLazily(Class<? extends Key<VALUE>> key, Supplier<? extends VALUE> supplier) {
+    super.set((Class) key, new Deferred(supplier));
+  }
+
+  /** Whether this key has a value which has not been computed yet. */
+  public <VALUE> boolean isDeferred(Class<? extends Key<VALUE>> key) {
+    return super.get(key) instanceof Deferred;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @SuppressWarnings("unchecked")
+  public <VALUE> VALUE get(Class<? extends Key<VALUE>> key) {
+    Object value = super.get(key);
+    if (value instanceof Deferred) {
+      synchronized (this) {
+        value = super.get(key);
+        if (value instanceof Deferred) {
+          value = ((Deferred) value).supplier.get();
+          super.set(key, (VALUE) value);
+        }
+      }
+    }
+    return (VALUE) value;
+  }
+
+  /**
+   * {@inheritDoc}
+   * If the previous value was never computed, it is not computed now, and null is returned.
+   */
+  @Override
+  public <VALUE> VALUE set(Class<? extends Key<VALUE>> key, VALUE value) {
+    VALUE previous = super.set(key, value);
+    return previous instanceof Deferred ? null : previous;
+  }
+
+  /**
+   * {@inheritDoc}
+   * If the value was never computed, it is not computed now, and null is returned.
+   */
+  @Override
+  public <VALUE> VALUE remove(Class<? extends Key<VALUE>> key) {
+    VALUE previous = super.remove(key);
+    return previous instanceof Deferred ? null : previous;
+  }
+
+  /** The placeholders are not the values, so whole-map operations compute them through {@link #get(Class)}. */
+  @Override
+  protected Object valueAt(int i) {
+    Object value = super.valueAt(i);
+    if (value instanceof Deferred) {
+      value = get(ErasureUtils.<Class<? extends Key<Object>>>uncheckedCast(keyAt(i)));
+    }
+    return value;
+  }
+
+  /** Serialized as a plain ArrayCoreMap, with all of its values computed. */
+  private Object writeReplace() {
+    return new ArrayCoreMap((CoreMap) this);
+  }
+
+  private static final long serialVersionUID = 1L;
+
+}
@@ -0,0 +1,833 @@
+package edu.stanford.nlp.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.util.concurrent.ConcurrentBoundedCache;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * <p>
+ * A Map backed by the filesystem, for memoizing expensive computations (e.g., annotations)
+ * across runs, stored as a log: every put or remove appends a record to the newest of a
+ * directory of segment files, and a map in memory from each key to where its latest
+ * record is lets a value be read from disk with one positional read. Unlike a
+ * {@link FileBackedCache}, writing a value doesn't rewrite a block of other values, a miss
+ * doesn't read anything from disk, and the hash codes of keys needn't be the same across runs,
+ * as the in-memory index is rebuilt by reading the segments when the cache is opened.
+ * </p>
+ *
+ * <p>
+ * Records which have been replaced or removed are garbage. Once there is more garbage than
+ * live records, a background thread compacts the cache: it copies the live records of all
+ * segments but the newest into a new segment, and deletes the old segments.
+ * Values (with their keys) are turned into bytes by a {@link Serializer}: Java serialization
+ * by default, but anything which can be turned into bytes, e.g., a protocol buffer, can have
+ * a faster and more compact one. A bounded number of bytes of recently read values are kept
+ * deserialized in memory.
+ * </p>
+ *
+ * <p>
+ * This class is threadsafe, and several processes can use the same directory at once:
+ * writes, and reading what other processes have written, are done holding a lock on a
+ * file in the directory, and only one process compacts at a time. Records are written
+ * with a checksum, and a record half-written by a process which died is written over by the
+ * next write. As with a FileBackedCache, this is a cache and not a database: writes are not
+ * forced to disk until the cache is closed, and values cached in memory can be stale
+ * if another process changes them.
+ * </p>
+ *
+ * <p>
+ * The values in this map should not be modified once read or put. Keys and values can't be null.
+ * </p>
+ *
+ * @param <K> The key to cache by
+ * @param <V> The object to cache
+ */
+public class LogStructuredCache<K,V> extends AbstractMap<K,V> implements Closeable {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(LogStructuredCache.class);
+
+  /** Turns keys or values into bytes and back. */
+  public interface Serializer<T> {
+
+    byte[] toBytes(T object) throws IOException;
+
+    T fromBytes(byte[] bytes) throws IOException;
+
+  }
+
+  /** Serializes objects with an ObjectOutputStream. */
+  public static <T extends Serializable> Serializer<T> javaSerializer() {
+    return new Serializer<T>() {
+      @Override
+      public byte[] toBytes(T object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+          out.writeObject(object);
+        }
+        return bytes.toByteArray();
+      }
+
+      @Override
+      public T fromBytes(byte[] bytes) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+          return ErasureUtils.uncheckedCast(in.readObject());
+        } catch (ClassNotFoundException e) {
+          throw new IOException(e);
+        }
+      }
+    };
+  }
+
+  /** Serializes Strings as UTF-8. */
+  public static final Serializer<String> STRING_SERIALIZER = new Serializer<String>() {
+    @Override
+    public byte[] toBytes(String object) {
+      return object.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String fromBytes(byte[] bytes) {
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  };
+
+  public static final long DEFAULT_MAX_SEGMENT_BYTES = 64L << 20;
+  public static final long DEFAULT_VALUE_CACHE_BYTES = 16L << 20;
+  /** Caches with less garbage than this aren't compacted */
+  private static final long MIN_COMPACTION_BYTES = 1L << 20;
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  /** A record is its length (of what follows), sequence number, key and value lengths, key, value, and checksum */
+  private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + 2 * Integer.BYTES;
+  private static final int RECORD_OVERHEAD = HEADER_BYTES + Integer.BYTES;
+  /** The value length of a record of a removal */
+  private static final int TOMBSTONE = -1;
+
+  /** A lock in this JVM for each directory, as a JVM can't hold two locks on the same file */
+  private static final Map<String, ReentrantLock> directoryLocks = new ConcurrentHashMap<>();
+  /** The directories being compacted by this JVM */
+  private static final Set<String> compactingDirectories = ConcurrentHashMap.newKeySet();
+
+  /** The directory the segments are in */
+  public final File cacheDir;
+  private final String canonicalPath;
+  private final Serializer<K> keySerializer;
+  private final Serializer<V> valueSerializer;
+  private final long maxSegmentBytes;
+  private final ReentrantLock directoryLock;
+  private final FileChannel lockChannel;
+  private final File compactionLockFile;
+  /** Recently read or written values, weighed by their serialized size; null if there is none */
+  private final ConcurrentBoundedCache<K, SizedValue<V>> valueCache;
+  private final ExecutorService compactor;
+  private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+
+  // The state below is guarded by this
+  private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+  /** Where the latest record of each key is, including removals */
+  private final Map<K, Location> index = new HashMap<>();
+  private int liveCount; // = 0
+  private long liveBytes; // = 0
+  private long totalBytes; // = 0
+  private long lastSequence; // = 0
+  private boolean closed; // = false
+
+  private static class Segment {
+
+    final int id;
+    final File file;
+    final FileChannel channel;
+    /** How much of the file has been read into the index (or written by this process) */
+    long scannedTo; // = 0
+
+    Segment(int id, File file, boolean create) throws IOException {
+      this.id = id;
+      this.file = file;
+      this.channel = create ?
+          FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE) :
+          FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+  } // end static class Segment
+
+  /** Where a record is, and what it's of. */
+  private static class Location {
+
+    final int segment;
+    final long sequence;
+    final long offset;
+    final int recordBytes;
+    final int keyBytes;
+    /** The length of the value, or TOMBSTONE */
+    final int valueBytes;
+
+    Location(int segment, long sequence, long offset, int recordBytes, int keyBytes, int valueBytes) {
+      this.segment = segment;
+      this.sequence = sequence;
+      this.offset = offset;
+      this.recordBytes = recordBytes;
+      this.keyBytes = keyBytes;
+      this.valueBytes = valueBytes;
+    }
+
+    boolean isRemoval() {
+      return valueBytes == TOMBSTONE;
+    }
+
+    long valueOffset() {
+      return offset + HEADER_BYTES + keyBytes;
+    }
+
+  } // end static class Location
+
+  private static class SizedValue<V> {
+
+    final V value;
+    final int bytes;
+
+    SizedValue(V value, int bytes) {
+      this.value = value;
+      this.bytes = bytes;
+    }
+
+  } // end static class SizedValue
+
+  /** Opens (or creates) a cache in a directory, with the default segment and memory sizes. */
+  public LogStructuredCache(File directory, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    this(directory, keySerializer, valueSerializer, DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_VALUE_CACHE_BYTES);
+  }
+
+  /**
+   * Opens (or creates) a cache in a directory.
+   *
+   * @param directory The directory of the segment files
+   * @param keySerializer How to write keys
+   * @param valueSerializer How to write values
+   * @param maxSegmentBytes The size at which a new segment is started
+   * @param valueCacheBytes How many bytes of serialized values to keep deserialized in memory (0 for none)
+   */
+  public LogStructuredCache(File directory, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                            long maxSegmentBytes, long valueCacheBytes) {
+    try {
+      if ( ! directory.exists() && ! directory.mkdirs() && ! directory.exists()) {
+        throw new IOException("Could not create cache directory " + directory);
+      }
+      if ( ! directory.isDirectory()) {
+        throw new IOException("Not a directory: " + directory);
+      }
+      this.cacheDir = directory;
+      this.canonicalPath = directory.getCanonicalPath();
+      this.keySerializer = keySerializer;
+      this.valueSerializer = valueSerializer;
+      this.maxSegmentBytes = maxSegmentBytes;
+      this.directoryLock = directoryLocks.computeIfAbsent(canonicalPath, path -> new ReentrantLock());
+      this.lockChannel = FileChannel.open(new File(directory, "lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      this.compactionLockFile = new File(directory, "compaction.lock");
+      this.valueCache = (valueCacheBytes > 0) ? new ConcurrentBoundedCache<>(valueCacheBytes, (key, value) -> Math.max(1, value.bytes)) : null;
+      this.compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "LogStructuredCache compactor");
+        thread.setDaemon(true);
+        return thread;
+      });
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+    withDirectoryLock(this::refresh);
+  }
+
+  /** Opens (or creates) a cache of Java-serialized keys and values. */
+  public static <K extends Serializable, V extends Serializable> LogStructuredCache<K,V> javaSerialized(File directory) {
+    return new LogStructuredCache<>(directory, javaSerializer(), javaSerializer());
+  }
+
+
+  //
+  // LOCKING AND READING THE LOG
+  //
+
+  private interface LockedAction<T> {
+    T run() throws IOException;
+  }
+
+  /** Runs an action holding the lock on the directory, which keeps out other processes and this JVM's other caches of it. */
+  private <T> T withDirectoryLock(LockedAction<T> action) {
+    directoryLock.lock();
+    try {
+      FileLock lock = lockChannel.lock();
+      try {
+        synchronized (this) {
+          if (closed) {
+            throw new IllegalStateException("This cache has been closed");
+          }
+          return action.run();
+        }
+      } finally {
+        lock.release();
+      }
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    } finally {
+      directoryLock.unlock();
+    }
+  }
+
+  private File segmentFile(int id) {
+    return new File(cacheDir, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+  }
+
+  /** Reads records which other processes (or this one's compaction) have written, and drops deleted segments. */
+  private Void refresh() throws IOException {
+    File[] files = cacheDir.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+    if (files == null) {
+      throw new IOException("Could not list cache directory " + cacheDir);
+    }
+    Set<Integer> present = Generics.newHashSet();
+    TreeMap<Integer, File> byId = new TreeMap<>();
+    for (File file : files) {
+      String name = file.getName();
+      try {
+        byId.put(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+      } catch (NumberFormatException e) {
+        // not a segment
+      }
+    }
+    for (Map.Entry<Integer, File> entry : byId.entrySet()) {
+      present.add(entry.getKey());
+      Segment segment = segments.get(entry.getKey());
+      if (segment == null) {
+        segment = new Segment(entry.getKey(), entry.getValue(), false);
+        segments.put(segment.id, segment);
+      }
+      scan(segment);
+    }
+    for (Integer id : new ArrayList<>(segments.keySet())) {
+      if ( ! present.contains(id)) {
+        drop(segments.get(id));
+      }
+    }
+    return null;
+  }
+
+  /** Reads the complete records after what has already been read of a segment. */
+  private void scan(Segment segment) throws IOException {
+    long size = segment.channel.size();
+    ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+    while (size - segment.scannedTo >= RECORD_OVERHEAD) {
+      lengthBuffer.clear();
+      readFully(segment.channel, lengthBuffer, segment.scannedTo);
+      int length = lengthBuffer.getInt(0);
+      if (length < RECORD_OVERHEAD - Integer.BYTES || segment.scannedTo + Integer.BYTES + length > size) {
+        break; // (a record still being written, or garbage from a writer which died)
+      }
+      ByteBuffer record = ByteBuffer.allocate(length);
+      readFully(segment.channel, record, segment.scannedTo + Integer.BYTES);
+      CRC32 crc = new CRC32();
+      crc.update(record.array(), 0, length - Integer.BYTES);
+      if ((int) crc.getValue() != record.getInt(length - Integer.BYTES)) {
+        break;
+      }
+      long sequence = record.getLong(0);
+      int keyBytes = record.getInt(Long.BYTES);
+      int valueBytes = record.getInt(Long.BYTES + Integer.BYTES);
+      byte[] key = new byte[keyBytes];
+      System.arraycopy(record.array(), HEADER_BYTES - Integer.BYTES, key, 0, keyBytes);
+      apply(keySerializer.fromBytes(key), new Location(segment.id, sequence, segment.scannedTo, Integer.BYTES + length, keyBytes, valueBytes));
+      segment.scannedTo += Integer.BYTES + length;
+    }
+  }
+
+  /** Points the index at a record, if it is the latest of its key. */
+  private void apply(K key, Location location) {
+    totalBytes += location.recordBytes;
+    lastSequence = Math.max(lastSequence, location.sequence);
+    Location old = index.get(key);
+    if (old != null && (old.sequence > location.sequence || (old.sequence == location.sequence && old.segment >= location.segment))) {
+      return;
+    }
+    index.put(key, location);
+    if (old != null && ! old.isRemoval()) {
+      liveCount--;
+      liveBytes -= old.recordBytes;
+    }
+    if ( ! location.isRemoval()) {
+      liveCount++;
+      liveBytes += location.recordBytes;
+    }
+    if (valueCache != null && (old == null || old.sequence != location.sequence)) {
+      valueCache.remove(key);
+    }
+  }
+
+  /** Forgets a segment which has been deleted, and the index entries which still point into it. */
+  private void drop(Segment segment) throws IOException {
+    segments.remove(segment.id);
+    segment.channel.close();
+    totalBytes -= segment.scannedTo;
+    for (Iterator<Map.Entry<K, Location>> it = index.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<K, Location> entry = it.next();
+      Location location = entry.getValue();
+      if (location.segment == segment.id) {
+        it.remove();
+        if ( ! location.isRemoval()) {
+          liveCount--;
+          liveBytes -= location.recordBytes;
+        }
+      }
+    }
+  }
+
+  /** Whether another process may have written something which this one hasn't read. */
+  private synchronized boolean mayBeStale() throws IOException {
+    // (new segments are always numbered after the newest one)
+    Map.Entry<Integer, Segment> newest = segments.lastEntry();
+    if (newest == null) {
+      return segmentFile(0).exists();
+    }
+    return newest.getValue().channel.size() > newest.getValue().scannedTo || segmentFile(newest.getKey() + 1).exists();
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        throw new IOException("Unexpected end of cache segment");
+      }
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, position + buffer.position());
+    }
+  }
+
+  /** Appends a record of a key's value (or removal, if value is null) to the newest segment. Call holding the directory lock. */
+  private void append(K key, byte[] keyBytes, byte[] valueBytes) throws IOException {
+    Map.Entry<Integer, Segment> newest = segments.lastEntry();
+    Segment segment;
+    if (newest == null || newest.getValue().scannedTo >= maxSegmentBytes) {
+      segment = newSegment();
+    } else {
+      segment = newest.getValue();
+      if (segment.channel.size() > segment.scannedTo) {
+        // nobody else is writing, so this is what's left of a record by a writer which died
+        segment.channel.truncate(segment.scannedTo);
+      }
+    }
+    int valueLength = (valueBytes == null) ? 0 : valueBytes.length;
+    int length = HEADER_BYTES - Integer.BYTES + keyBytes.length + valueLength + Integer.BYTES;
+    ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length);
+    record.putInt(length);
+    record.putLong(lastSequence + 1);
+    record.putInt(keyBytes.length);
+    record.putInt(valueBytes == null ? TOMBSTONE : valueLength);
+    record.put(keyBytes);
+    if (valueBytes != null) {
+      record.put(valueBytes);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), Integer.BYTES, length - Integer.BYTES);
+    record.putInt((int) crc.getValue());
+    record.flip();
+    writeFully(segment.channel, record, segment.scannedTo);
+    apply(key, new Location(segment.id, lastSequence + 1, segment.scannedTo, record.capacity(), keyBytes.length,
+        valueBytes == null ? TOMBSTONE : valueLength));
+    segment.scannedTo += record.capacity();
+  }
+
+  /** Starts a new, newest segment. */
+  private Segment newSegment() throws IOException {
+    int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+    Segment segment = new Segment(id, segmentFile(id), true);
+    segments.put(id, segment);
+    return segment;
+  }
+
+  /** Reads and deserializes the value of a record, or returns null if its segment has been dropped. */
+  private V readValue(Location location) throws IOException {
+    Segment segment;
+    synchronized (this) {
+      segment = segments.get(location.segment);
+    }
+    if (segment == null) {
+      return null;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(location.valueBytes);
+    try {
+      readFully(segment.channel, buffer, location.valueOffset());
+    } catch (ClosedChannelException e) {
+      return null;
+    }
+    return valueSerializer.fromBytes(buffer.array());
+  }
+
+  /** The location of the latest record of a key, reading what other processes have written first if it might be there. */
+  private Location locate(Object key) throws IOException {
+    Location location;
+    synchronized (this) {
+      location = index.get(key);
+    }
+    if (location == null && mayBeStale()) {
+      withDirectoryLock(this::refresh);
+      synchronized (this) {
+        location = index.get(key);
+      }
+    }
+    return location;
+  }
+
+
+  //
+  // MAP METHODS
+  //
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V get(Object key) {
+    if (valueCache != null) {
+      SizedValue<V> cached = valueCache.get((K) key);
+      if (cached != null) {
+        return cached.value;
+      }
+    }
+    try {
+      // (a compaction may drop the segment of the location found; then the index points to its copy)
+      for (int attempt = 0; attempt < 3; attempt++) {
+        Location location = locate(key);
+        if (location == null || location.isRemoval()) {
+          return null;
+        }
+        V value = readValue(location);
+        if (value != null) {
+          if (valueCache != null) {
+            // Only keep the value if it is still the latest: a put() may have replaced it since it was located,
+            // and that put's index update (which empties the value cache for the key) is made holding this lock too.
+            synchronized (this) {
+              Location latest = index.get(key);
+              if (latest != null && latest.sequence == location.sequence) {
+                valueCache.put((K) key, new SizedValue<>(value, location.valueBytes));
+              }
+            }
+          }
+          return value;
+        }
+      }
+      return null;
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    try {
+      Location location = locate(key);
+      return location != null && ! location.isRemoval();
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+  }
+
+  /** Caches a value, and returns the value it replaced (read from disk) or null. */
+  @Override
+  public V put(K key, V value) {
+    if (key == null || value == null) {
+      throw new NullPointerException("A LogStructuredCache can't have null keys or values");
+    }
+    V previous = write(key, value);
+    if (valueCache != null) {
+      valueCache.remove(key);
+    }
+    maybeCompact();
+    return previous;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V remove(Object key) {
+    V previous = write((K) key, null);
+    if (valueCache != null) {
+      valueCache.remove((K) key);
+    }
+    maybeCompact();
+    return previous;
+  }
+
+  /** Appends a record of a value, or of a removal if value is null, and returns the previous value. */
+  private V write(K key, V value) {
+    try {
+      byte[] keyBytes = keySerializer.toBytes(key);
+      byte[] valueBytes = (value == null) ? null : valueSerializer.toBytes(value);
+      return withDirectoryLock(() -> {
+        refresh();
+        Location old = index.get(key);
+        V previous = (old == null || old.isRemoval()) ? null : readValue(old);
+        if (value != null || previous != null) {
+          append(key, keyBytes, valueBytes);
+        }
+        return previous;
+      });
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+  }
+
+  /** Removes every key (by writing removals, so that other processes see them too). */
+  @Override
+  public void clear() {
+    for (K key : keySnapshot()) {
+      remove(key);
+    }
+  }
+
+  /** The number of keys in the cache. */
+  @Override
+  public int size() {
+    try {
+      if (mayBeStale()) {
+        withDirectoryLock(this::refresh);
+      }
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+    synchronized (this) {
+      return liveCount;
+    }
+  }
+
+  private List<K> keySnapshot() {
+    withDirectoryLock(this::refresh);
+    synchronized (this) {
+      List<K> keys = new ArrayList<>(liveCount);
+      for (Map.Entry<K, Location> entry : index.entrySet()) {
+        if ( ! entry.getValue().isRemoval()) {
+          keys.add(entry.getKey());
+        }
+      }
+      return keys;
+    }
+  }
+
+  /**
+   * The entries of the cache, as of when this is called. The values are read from disk as the entries
+   * are iterated over; entries removed in the meantime are skipped.
+   */
+  @Override
+  public Set<Entry<K,V>> entrySet() {
+    final List<K> keys = keySnapshot();
+    return new AbstractSet<Entry<K,V>>() {
+      @Override
+      public Iterator<Entry<K,V>> iterator() {
+        return new Iterator<Entry<K,V>>() {
+          private final Iterator<K> keyIterator = keys.iterator();
+          private Entry<K,V> next = advance();
+
+          private Entry<K,V> advance() {
+            while (keyIterator.hasNext()) {
+              K key = keyIterator.next();
+              V value = get(key);
+              if (value != null) {
+                return new SimpleImmutableEntry<>(key, value);
+              }
+            }
+            return null;
+          }
+
+          @Override
+          public boolean hasNext() {
+            return next != null;
+          }
+
+          @Override
+          public Entry<K,V> next() {
+            if (next == null) {
+              throw new NoSuchElementException();
+            }
+            Entry<K,V> entry = next;
+            next = advance();
+            return entry;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return keys.size();
+      }
+    };
+  }
+
+
+  //
+  // COMPACTION
+  //
+
+  /** Schedules a compaction if there is more garbage than live records. */
+  private void maybeCompact() {
+    boolean worthIt;
+    synchronized (this) {
+      worthIt = totalBytes - liveBytes > Math.max(liveBytes, MIN_COMPACTION_BYTES);
+    }
+    if (worthIt && compactionScheduled.compareAndSet(false, true)) {
+      compactor.execute(() -> {
+        try {
+          compact();
+        } catch (RuntimeException e) {
+          log.warn("Could not compact cache " + cacheDir + ": " + e);
+        } finally {
+          compactionScheduled.set(false);
+        }
+      });
+    }
+  }
+
+  /**
+   * Copies the live records of all segments but the newest into a new segment, and deletes the
+   * old segments. This is done in the background when there is enough garbage; it can also be
+   * called directly. It does nothing if another thread or process is compacting the directory.
+   * Other threads and processes can use the cache while it runs.
+   */
+  public void compact() {
+    if ( ! compactingDirectories.add(canonicalPath)) {
+      return;
+    }
+    try (FileChannel compactionChannel = FileChannel.open(compactionLockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+         FileLock compactionLock = compactionChannel.tryLock()) {
+      if (compactionLock == null) {
+        return;
+      }
+      // the old segments are the ones before the copy, and new writes go to a segment after it
+      List<Segment> oldSegments = new ArrayList<>();
+      List<Location> live = new ArrayList<>();
+      Segment copy = withDirectoryLock(() -> {
+        refresh();
+        if (segments.isEmpty()) {
+          return null;
+        }
+        oldSegments.addAll(segments.values());
+        for (Location location : index.values()) {
+          if ( ! location.isRemoval()) {
+            live.add(location);
+          }
+        }
+        Segment target = newSegment();
+        newSegment();
+        return target;
+      });
+      if (copy == null) {
+        return;
+      }
+
+      // copy the records without holding the directory lock; others read them as they are written
+      Map<Integer, Segment> byId = new HashMap<>();
+      for (Segment segment : oldSegments) {
+        byId.put(segment.id, segment);
+      }
+      long position = 0;
+      for (Location location : live) {
+        ByteBuffer record = ByteBuffer.allocate(location.recordBytes);
+        readFully(byId.get(location.segment).channel, record, location.offset);
+        record.flip();
+        writeFully(copy.channel, record, position);
+        position += location.recordBytes;
+      }
+      copy.channel.force(true);
+
+      withDirectoryLock(() -> {
+        refresh(); // which points the index at the copies
+        for (Segment segment : oldSegments) {
+          if ( ! segment.file.delete() && segment.file.exists()) {
+            log.warn("Could not delete compacted cache segment " + segment.file);
+            continue;
+          }
+          if (segments.get(segment.id) == segment) {
+            drop(segment);
+          }
+        }
+        return null;
+      });
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    } finally {
+      compactingDirectories.remove(canonicalPath);
+    }
+  }
+
+  /** The total size of the segments, including records which have been replaced or removed. */
+  public synchronized long diskBytes() {
+    return totalBytes;
+  }
+
+  /** The size of the latest records of the keys in the cache. */
+  public synchronized long liveBytes() {
+    return liveBytes;
+  }
+
+  /** Waits for any compaction to finish, writes the segments to disk, and closes them. */
+  @Override
+  public void close() {
+    compactor.shutdown();
+    try {
+      compactor.awaitTermination(1, TimeUnit.HOURS);
+    } catch (InterruptedException e) {
+      throw new RuntimeInterruptedException(e);
+    }
+    try {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        for (Segment segment : segments.values()) {
+          segment.channel.force(true);
+          segment.channel.close();
+        }
+        segments.clear();
+        index.clear();
+      }
+      lockChannel.close();
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "LogStructuredCache[" + cacheDir + ", " + liveCount + " keys, " + totalBytes + " bytes in " + segments.size() + " segments]";
+  }
+
+}
@@ -0,0 +1,273 @@
+package edu.stanford.nlp.util.concurrent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A bounded cache which many threads can use at once, e.g., a cache shared by the
+ * threads of an annotator. Unlike {@link edu.stanford.nlp.util.CacheMap}, it needs no
+ * synchronization around it.
+ * <br>
+ * Entries are kept in a ConcurrentHashMap, so a lookup takes no lock: a hit only marks
+ * its entry as recently used. When the cache is over its bound, entries are evicted in
+ * approximately least-recently-used order by the CLOCK ("second chance") algorithm: entries
+ * are considered in the order they were added, and one used since it was last considered
+ * gets another pass rather than being evicted. Only one thread evicts at a time, and
+ * others don't wait for it, so the cache may briefly hold a few entries beyond its bound
+ * while they are being added.
+ * <br>
+ * The bound is a number of entries, or a total weight if the cache has a weigher (e.g.,
+ * the lengths of cached strings). The cache keeps counts of hits, misses, and evictions.
+ * Keys and values can't be null.
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the values
+ */
+public class ConcurrentBoundedCache<K,V> {
+
+  private static class Node<K,V> {
+
+    final K key;
+    final V value;
+    final int weight;
+    /** Whether the entry has been used since the clock last passed it */
+    volatile boolean referenced; // = false
+    /** Whether the entry has left the map, so the clock should drop it */
+    volatile boolean removed; // = false
+
+    Node(K key, V value, int weight) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+    }
+
+  } // end static class Node
+
+  private final ConcurrentHashMap<K,Node<K,V>> map;
+  /** The entries in the order the clock hand passes them; removed entries are dropped when it gets to them */
+  private final ConcurrentLinkedQueue<Node<K,V>> clock = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final ToIntBiFunction<? super K, ? super V> weigher;
+  private final long maxWeight;
+  private final AtomicLong weight = new AtomicLong();
+  /** How many removed entries are still in the clock */
+  private final AtomicInteger removedInClock = new AtomicInteger();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /** A cache of at most maxEntries entries. */
+  public ConcurrentBoundedCache(int maxEntries) {
+    this(maxEntries, (key, value) -> 1);
+  }
+
+  /**
+   * A cache of entries whose weights add up to at most maxWeight.
+   *
+   * @param weigher The weight of each entry, which should be at least 1 and not change while
+   *                the entry is in the cache. An entry heavier than maxWeight isn't cached.
+   */
+  public ConcurrentBoundedCache(long maxWeight, ToIntBiFunction<? super K, ? super V> weigher) {
+    if (maxWeight <= 0) {
+      throw new IllegalArgumentException("The bound of a cache must be positive, not " + maxWeight);
+    }
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+    this.map = new ConcurrentHashMap<>((int) Math.min(maxWeight, 1 << 16));
+  }
+
+  /** Returns the value cached for a key, or null if there isn't one. */
+  public V get(K key) {
+    Node<K,V> node = map.get(key);
+    if (node == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    if ( ! node.referenced) {
+      // (checked first, so that hits on popular entries don't keep writing the same cache line)
+      node.referenced = true;
+    }
+    return node.value;
+  }
+
+  /**
+   * Returns the value cached for a key, or computes it, caches it, and returns it.
+   * The value is computed outside of any lock, so two threads missing the same key at
+   * the same time may both compute it; the first value cached is returned to both.
+   */
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+    V value = get(key);
+    if (value == null) {
+      value = function.apply(key);
+      if (value != null) {
+        V existing = putIfAbsent(key, value);
+        if (existing != null) {
+          value = existing;
+        }
+      }
+    }
+    return value;
+  }
+
+  /** Caches a value for a key, replacing any value cached for it. */
+  public void put(K key, V value) {
+    int entryWeight = weigher.applyAsInt(key, value);
+    if (entryWeight > maxWeight) {
+      remove(key);
+      return;
+    }
+    Node<K,V> node = new Node<>(key, value, entryWeight);
+    Node<K,V> old = map.put(key, node);
+    if (old != null) {
+      retire(old);
+    }
+    added(node);
+  }
+
+  /** Caches a value for a key if none is cached, and returns the value which was cached (or null). */
+  public V putIfAbsent(K key, V value) {
+    int entryWeight = weigher.applyAsInt(key, value);
+    if (entryWeight > maxWeight) {
+      return null;
+    }
+    Node<K,V> node = new Node<>(key, value, entryWeight);
+    Node<K,V> old = map.putIfAbsent(key, node);
+    if (old != null) {
+      return old.value;
+    }
+    added(node);
+    return null;
+  }
+
+  /** Removes a key from the cache, and returns its value (or null if it wasn't cached). */
+  public V remove(K key) {
+    Node<K,V> node = map.remove(key);
+    if (node == null) {
+      return null;
+    }
+    retire(node);
+    return node.value;
+  }
+
+  /** Empties the cache (but doesn't reset the statistics). */
+  public void clear() {
+    for (K key : map.keySet()) {
+      remove(key);
+    }
+  }
+
+  /** Counts a node which has been put in the map, and evicts entries if the cache is now over its bound. */
+  private void added(Node<K,V> node) {
+    clock.add(node);
+    if (weight.addAndGet(node.weight) > maxWeight) {
+      evict();
+    }
+  }
+
+  /** Uncounts a node which has been taken out of the map. */
+  private void retire(Node<K,V> node) {
+    node.removed = true;
+    weight.addAndGet(-node.weight);
+    if (removedInClock.incrementAndGet() > map.size() + 64 && evictionLock.tryLock()) {
+      // many entries were replaced or removed rather than evicted; drop them from the clock
+      try {
+        clock.removeIf(n -> n.removed);
+        removedInClock.set(0);
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  /** Moves the clock hand until the cache is within its bound, unless another thread is already doing so. */
+  private void evict() {
+    // (checking again after unlocking catches entries added by threads which found the lock taken)
+    do {
+      if ( ! evictionLock.tryLock()) {
+        return;
+      }
+      try {
+        // after going around the clock twice, evict entries even if other threads keep using them
+        long secondChances = 2L * map.size() + 16;
+        while (weight.get() > maxWeight) {
+          Node<K,V> node = clock.poll();
+          if (node == null) {
+            break;
+          }
+          if (node.removed) {
+            removedInClock.decrementAndGet();
+          } else if (node.referenced && secondChances-- > 0) {
+            node.referenced = false;
+            clock.add(node);
+          } else if (map.remove(node.key, node)) {
+            node.removed = true;
+            weight.addAndGet(-node.weight);
+            evictions.increment();
+          }
+        }
+      } finally {
+        evictionLock.unlock();
+      }
+    } while (weight.get() > maxWeight && ! clock.isEmpty());
+  }
+
+  /** Calls the consumer with each key and value in the cache. */
+  public void forEach(BiConsumer<? super K, ? super V> consumer) {
+    for (Map.Entry<K,Node<K,V>> entry : map.entrySet()) {
+      consumer.accept(entry.getKey(), entry.getValue().value);
+    }
+  }
+
+  /** The number of entries in the cache. */
+  public int size() {
+    return map.size();
+  }
+
+  /** The total weight of the entries in the cache (their number, if it has no weigher). */
+  public long weightedSize() {
+    return weight.get();
+  }
+
+  /** The bound on the weight of the cache. */
+  public long maxWeight() {
+    return maxWeight;
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  /** The fraction of lookups which were hits (or 0 if there haven't been any). */
+  public double hitRate() {
+    long hits = hitCount();
+    long lookups = hits + missCount();
+    return lookups == 0 ? 0.0 : (double) hits / lookups;
+  }
+
+  /** Returns the size and statistics of the cache. */
+  @Override
+  public String toString() {
+    return "ConcurrentBoundedCache[size: " + size() + ", weight: " + weightedSize() + '/' + maxWeight +
+        ", hits: " + hitCount() + ", misses: " + missCount() + ", evictions: " + evictionCount() +
+        ", hit %: " + hitRate() + ']';
+  }
+
+}
@@ -2,24 +2,38 @@ package edu.stanford.nlp.util.concurrent;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Serializable;
 import java.io.Writer;
 import java.util.AbstractCollection;
 import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.RandomAccess;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import edu.stanford.nlp.io.IOUtils;
-import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.FrozenIndex;
 import edu.stanford.nlp.util.Index;
 
 /**
- * A fast threadsafe index that supports constant-time lookup in both directions. This
- * index is tuned for circumstances in which readers significantly outnumber writers.
+ * A fast threadsafe index that supports constant-time lookup in both directions,
+ * for adding items from many threads at once (e.g., when featurizing in parallel).
+ * <br>
+ * No lock is taken for the index as a whole, but it is not lock-free. Items are mapped
+ * to ids by a ConcurrentHashMap, so looking up an item which is already in the index
+ * doesn't block. Adding a new item goes through {@link ConcurrentHashMap#computeIfAbsent},
+ * which locks the bin of the map the item hashes to while the id is claimed.
+ * Ids are mapped to items by a chunked array: each chunk is twice as large as the one
+ * before, and chunks are added with a compare-and-set, so the array grows without copying
+ * what is already in it. Since an id is claimed just before its item is stored,
+ * {@link #get(int)} of an id which another thread is still adding yields until the item is there.
+ * <br>
+ * When no more items will be added (e.g., once a model is trained), {@link #freeze}
+ * makes a compact, read-only copy of the index.
  *
  * @author Spence Green
  *
@@ -27,15 +41,59 @@ import edu.stanford.nlp.util.Index;
  */
 public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Index<E>, RandomAccess {
 
-  private static final long serialVersionUID = 6465313844985269109L;
+  private static final long serialVersionUID = -3479201937725893160L;
 
   public static final int UNKNOWN_ID = -1;
   private static final int DEFAULT_INITIAL_CAPACITY = 100;
 
-  private final ConcurrentHashMap<E,Integer> item2Index;
-  private int indexSize;
-  private final ReentrantLock lock;
-  private final AtomicReference<Object[]> index2Item;
+  /** The first chunk holds ids [0, 2^FIRST_CHUNK_BITS); chunk c holds 2^(FIRST_CHUNK_BITS + c) ids. */
+  private static final int FIRST_CHUNK_BITS = 4;
+  private static final int FIRST_CHUNK_SIZE = 1 << FIRST_CHUNK_BITS;
+  private static final int MAX_CHUNKS = 31 - FIRST_CHUNK_BITS;
+
+  /** The contents of the index, replaced all at once by {@link #clear}. */
+  private static class Table<E> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ConcurrentHashMap<E,Integer> item2Index;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicReferenceArray<AtomicReferenceArray<Object>> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    Table(int initialCapacity) {
+      item2Index = new ConcurrentHashMap<>(initialCapacity);
+    }
+
+    /** Claims the next id for a new item, and stores the item under it. */
+    int newId(E o) {
+      int id = nextId.getAndIncrement();
+      if (id < 0 || id > Integer.MAX_VALUE - FIRST_CHUNK_SIZE) {
+        throw new IllegalStateException("Too many items in the index");
+      }
+      int n = id + FIRST_CHUNK_SIZE;
+      int highBit = 31 - Integer.numberOfLeadingZeros(n);
+      int c = highBit - FIRST_CHUNK_BITS;
+      AtomicReferenceArray<Object> chunk = chunks.get(c);
+      if (chunk == null) {
+        // whichever thread gets here first makes the chunk
+        chunks.compareAndSet(c, null, new AtomicReferenceArray<>(FIRST_CHUNK_SIZE << c));
+        chunk = chunks.get(c);
+      }
+      chunk.set(n - (1 << highBit), o);
+      return id;
+    }
+
+    Object get(int id) {
+      int n = id + FIRST_CHUNK_SIZE;
+      int highBit = 31 - Integer.numberOfLeadingZeros(n);
+      AtomicReferenceArray<Object> chunk = chunks.get(highBit - FIRST_CHUNK_BITS);
+      return (chunk == null) ? null : chunk.get(n - (1 << highBit));
+    }
+
+  } // end static class Table
+
+  private final int initialCapacity;
+  private volatile Table<E> table;
 
   /**
    * Constructor.
@@ -50,62 +108,43 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
    * @param initialCapacity
    */
   public ConcurrentHashIndex(int initialCapacity) {
-    item2Index = new ConcurrentHashMap<>(initialCapacity);
-    indexSize = 0;
-    lock = new ReentrantLock();
-    Object[] arr = new Object[initialCapacity];
-    index2Item = new AtomicReference<>(arr);
+    this.initialCapacity = initialCapacity;
+    this.table = new Table<>(initialCapacity);
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public E get(int i) {
-    Object[] arr = index2Item.get();
-    if (i < indexSize) {
-      // arr.length guaranteed to be == to size() given the
-      // implementation of indexOf below.
-      return (E) arr[i];
+    Table<E> t = table;
+    int size = t.nextId.get();
+    if (i < 0 || i >= size) {
+      throw new ArrayIndexOutOfBoundsException(String.format("Out of bounds: %d >= %d", i, size));
+    }
+    Object o = t.get(i);
+    while (o == null) {
+      // the id has been claimed, and its item is just about to be stored
+      Thread.yield();
+      o = t.get(i);
     }
-    throw new ArrayIndexOutOfBoundsException(String.format("Out of bounds: %d >= %d", i, indexSize));
+    return (E) o;
   }
 
   @Override
   public int indexOf(E o) {
-    Integer id = item2Index.get(o);
+    Integer id = table.item2Index.get(o);
     return id == null ? UNKNOWN_ID : id;
   }
 
   @Override
   public int addToIndex(E o) {
-    Integer index = item2Index.get(o);
+    Table<E> t = table;
+    Integer index = t.item2Index.get(o);
     if (index != null) {
       return index;
     }
-
-    lock.lock();
-    try {
-      // Recheck state
-      if (item2Index.containsKey(o)) {
-        return item2Index.get(o);
-
-      } else {
-        final int newIndex = indexSize++;
-        Object[] arr = index2Item.get();
-        assert newIndex <= arr.length;
-        if (newIndex == arr.length) {
-          // Increase size of array if necessary
-          Object[] newArr = new Object[2*newIndex];
-          System.arraycopy(arr, 0, newArr, 0, arr.length);
-          arr = newArr;
-        }
-        arr[newIndex] = o;
-        index2Item.set(arr);
-        item2Index.put(o, newIndex);
-        return newIndex;
-      }
-    } finally {
-      lock.unlock();
-    }
+    // the item is stored under its id before the id is put in the map, so anyone who
+    // gets the id from the map can get the item
+    return t.item2Index.computeIfAbsent(o, t::newId);
   }
 
   @Override
@@ -132,9 +171,15 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
     return changed;
   }
 
+  /** Returns the items of the index, in the order of their ids. */
   @Override
   public List<E> objectsList() {
-    return Generics.newArrayList(item2Index.keySet());
+    int size = size();
+    List<E> objects = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      objects.add(get(i));
+    }
+    return objects;
   }
 
   @Override
@@ -169,11 +214,8 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
   @Override
   public void saveToWriter(Writer out) throws IOException {
     final String nl = System.getProperty("line.separator");
-    for (int i = 0, sz = indexSize; i < sz; i++) {
-      E o = get(i);
-      if (o != null) {
-        out.write(i + "=" + get(i) + nl);
-      }
+    for (int i = 0, sz = size(); i < sz; i++) {
+      out.write(i + "=" + get(i) + nl);
     }
   }
 
@@ -182,11 +224,8 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
     PrintWriter bw = null;
     try {
       bw = IOUtils.getPrintWriter(s);
-      for (int i = 0, size = indexSize; i < size; i++) {
-        E o = get(i);
-        if (o != null) {
-          bw.printf("%d=%s%n", i, o.toString());
-        }
+      for (int i = 0, size = size(); i < size; i++) {
+        bw.printf("%d=%s%n", i, get(i).toString());
       }
       bw.close();
     } catch (IOException e) {
@@ -218,9 +257,21 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
     };
   }
 
+  /**
+   * The number of ids given out so far. (The items of ids given out by calls to
+   * {@link #addToIndex} which haven't returned yet are waited for by {@link #get}.)
+   */
   @Override
   public int size() {
-    return indexSize;
+    return table.nextId.get();
+  }
+
+  /**
+   * Returns a read-only copy of the index, which takes less memory and is faster
+   * to look up in. Items added while it is being made may or may not be in it.
+   */
+  public FrozenIndex<E> freeze() {
+    return new FrozenIndex<>(this);
   }
 
   @Override
@@ -229,11 +280,8 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
     int i;
     final int size = size();
     for (i = 0; i < size; i++) {
-      E e = get(i);
-      if (e != null) {
-        buff.append(i).append('=').append(e);
-        if (i < (size-1)) buff.append(',');
-      }
+      buff.append(i).append('=').append(get(i));
+      if (i < (size-1)) buff.append(',');
     }
     if (i < size()) buff.append("...");
     buff.append(']');
@@ -246,16 +294,9 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
     return indexOf((E) o) != UNKNOWN_ID;
   }
 
+  /** Empties the index. Items being added by other threads at the same time may be lost. */
   @Override
   public void clear() {
-    lock.lock();
-    try {
-      item2Index.clear();
-      indexSize = 0;
-      Object[] arr = new Object[DEFAULT_INITIAL_CAPACITY];
-      index2Item.set(arr);
-    } finally {
-      lock.unlock();
-    }
+    table = new Table<>(initialCapacity);
   }
 }
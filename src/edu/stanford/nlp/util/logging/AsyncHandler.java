@@ -0,0 +1,201 @@
+package edu.stanford.nlp.util.logging;
+
+import edu.stanford.nlp.util.logging.Redwood.Record;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A handler which hands records over to a background thread, which passes them on to
+ * the handlers downstream of it (usually one that prints them).
+ * The thread logging a message then only pays for putting the record on a bounded queue,
+ * rather than for formatting it and waiting on the output stream.
+ *
+ * <p>
+ *   When the queue is full, the {@link DropPolicy} decides what happens.
+ *   Only plain messages are ever dropped: forced messages (which include errors) and the starts and ends
+ *   of tracks always wait for room, so that nothing important is lost and the tracks stay nested.
+ *   After dropping messages, a warning saying how many were dropped is printed.
+ * </p>
+ *
+ * <p>
+ *   This is a leaf of the handler tree: it passes nothing on to its children, as they are
+ *   replaced by the handlers it is given.
+ *   See {@link RedwoodConfiguration.Handlers#async(int, DropPolicy, RedwoodConfiguration.Thunk)}.
+ * </p>
+ */
+public class AsyncHandler extends LogRecordHandler {
+
+  /** What to do with a message when the queue is full */
+  public enum DropPolicy {
+    /** Drop the message being logged */
+    DROP_NEWEST,
+    /** Drop the oldest message on the queue, to make room for the message being logged */
+    DROP_OLDEST,
+    /** Wait for room on the queue; nothing is dropped, but logging can block */
+    BLOCK
+  }
+
+  /** Something to pass on to the handlers downstream, on the background thread */
+  private static class Event {
+    private final Redwood.MessageType type;
+    private final Record record;
+    private final int newDepth;
+    private final long timestamp;
+    /** If not null, counted down once this event has been handled */
+    private final CountDownLatch handled;
+    /** Whether the drop policy may drop this event: only plain messages which aren't forced may be dropped */
+    private final boolean droppable;
+
+    private Event(Redwood.MessageType type, Record record, int newDepth, long timestamp, CountDownLatch handled, boolean droppable) {
+      this.type = type;
+      this.record = record;
+      this.newDepth = newDepth;
+      this.timestamp = timestamp;
+      this.handled = handled;
+      this.droppable = droppable;
+    }
+  }
+
+  /** How long to wait for the queue to drain on shutdown before giving up */
+  private static final long SHUTDOWN_WAIT_MILLIS = 10000;
+
+  private final Redwood.RecordHandlerTree downstream;
+  private final BlockingQueue<Event> queue;
+  private final DropPolicy policy;
+  private final AtomicLong dropped = new AtomicLong();
+
+  /**
+   * Start a background thread which passes records on to the given handlers.
+   *
+   * @param downstream The handlers to pass records on to, as a tree whose root is not a handler itself.
+   * @param capacity The number of records which may be waiting for the background thread.
+   * @param policy What to do with a message when that many records are already waiting.
+   */
+  public AsyncHandler(Redwood.RecordHandlerTree downstream, int capacity, DropPolicy policy) {
+    this.downstream = downstream;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.policy = policy;
+    Thread consumer = new Thread(this::drain, "Redwood-async");
+    consumer.setDaemon(true);
+    consumer.start();
+  }
+
+  /** The loop of the background thread */
+  private void drain() {
+    while (true) {
+      Event event;
+      try {
+        event = queue.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      long droppedSoFar = dropped.getAndSet(0);
+      if (droppedSoFar > 0) {
+        downstream.process(new Record("[Redwood] dropped " + droppedSoFar + " log messages; the log queue was full",
+            new Object[]{ Redwood.WARN, Redwood.FORCE }, event.record == null ? event.newDepth : event.record.depth, System.currentTimeMillis()),
+            Redwood.MessageType.SIMPLE, event.newDepth, System.currentTimeMillis());
+      }
+      try {
+        if (event.type != Redwood.MessageType.SIMPLE || event.record != null) {  // (a bare simple event is a flush)
+          downstream.process(event.record, event.type, event.newDepth, event.timestamp);
+        }
+      } catch (RuntimeException e) {
+        Redwood.realSysErr.println("[Redwood] exception in asynchronous log handler: " + e);
+      } finally {
+        if (event.handled != null) {
+          event.handled.countDown();
+        }
+      }
+    }
+  }
+
+  /** Put an event on the queue, waiting for room unless it is a message the policy says to drop. */
+  private void enqueue(Event event) {
+    if ( ! event.droppable || policy == DropPolicy.BLOCK) {
+      try {
+        queue.put(event);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return;
+    }
+    while ( ! queue.offer(event)) {
+      if (policy == DropPolicy.DROP_NEWEST) {
+        dropped.incrementAndGet();
+        return;
+      }
+      // DROP_OLDEST: make room, but never by dropping something which must not be dropped
+      // (a track, a forced message, or a flush or shutdown someone is waiting on)
+      Event oldest = queue.peek();
+      if (oldest != null && ! oldest.droppable) {
+        dropped.incrementAndGet();
+        return;
+      }
+      if (queue.remove(oldest)) {
+        dropped.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Wait until everything logged so far has been passed on to the handlers downstream.
+   *
+   * @return false if this timed out.
+   */
+  public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+    CountDownLatch handled = new CountDownLatch(1);
+    enqueue(new Event(Redwood.MessageType.SIMPLE, null, 0, 0L, handled, false));
+    return handled.await(timeout, unit);
+  }
+
+  /** The number of messages which have been dropped and not yet reported. */
+  public long dropped() {
+    return dropped.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<Record> handle(Record record) {
+    enqueue(new Event(Redwood.MessageType.SIMPLE, record, record.depth, record.timesstamp, null, ! record.force()));
+    return EMPTY;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<Record> signalStartTrack(Record signal) {
+    enqueue(new Event(Redwood.MessageType.START_TRACK, signal, signal.depth, signal.timesstamp, null, false));
+    return EMPTY;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<Record> signalEndTrack(int newDepth, long timeEnded) {
+    enqueue(new Event(Redwood.MessageType.END_TRACK, null, newDepth, timeEnded, null, false));
+    return EMPTY;
+  }
+
+  /** Pass on the shutdown, and wait (for a while) for everything queued to be printed. */
+  @Override
+  public List<Record> signalShutdown() {
+    CountDownLatch handled = new CountDownLatch(1);
+    enqueue(new Event(Redwood.MessageType.SHUTDOWN, null, 0, System.currentTimeMillis(), handled, false));
+    try {
+      handled.await(SHUTDOWN_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return EMPTY;
+  }
+
+  /** Whether the handlers downstream would accept the record. */
+  @Override
+  public boolean accepts(Object[] channels) {
+    return downstream.accepts(channels);
+  }
+
+}
@@ -32,6 +32,27 @@ public abstract class LogRecordHandler {
    */
   public abstract List<Record> handle(Record record);
 
+  /**
+   * Whether a record on the given channels could get past this handler, i.e., be printed by it or passed on.
+   * This is used to skip building log messages which nobody will see (see {@link Redwood.RedwoodChannels#isEnabled(Redwood.Flag)}),
+   * so it must never return false for a record the handler would let through.
+   * Handlers which filter records by their channels should override this; by default, everything could get through.
+   *
+   * @param channels The channels of the record, in no particular order, including any flags.
+   */
+  public boolean accepts(Object[] channels) {
+    return true;
+  }
+
+  /**
+   * The channels that a record on the given channels would have when this handler passes it on.
+   * Handlers which change the channels of records override this, so that {@link #accepts(Object[])}
+   * can be asked of the handlers downstream.
+   */
+  Object[] channelsPassedOn(Object[] channels) {
+    return channels;
+  }
+
   /**
    * Signal the start of a track, i.e. that we have descended a level deeper.
    * @param signal A record corresponding to the information in the track header.
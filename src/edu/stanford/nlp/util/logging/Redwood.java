@@ -71,6 +71,11 @@ public class Redwood  {
    * The tree of handlers
    */
   private static RecordHandlerTree handlers = new RecordHandlerTree();
+  /**
+   * If set, log messages bypass the tree of handlers, and go straight here.
+   * @see RedwoodConfiguration#slf4jBridge()
+   */
+  private static volatile DirectSink directSink = null;
   /**
    * The current depth of the logger
    */
@@ -211,6 +216,42 @@ public class Redwood  {
     return handlers;
   }
 
+  /**
+   * A destination for log messages which takes them straight from the logging call,
+   * without Records, tracks, or the tree of handlers.
+   */
+  interface DirectSink {
+    /** Whether a message on these channels would be logged */
+    boolean isEnabled(Object[] channels);
+    /** Log a message on these channels. The content is as passed to {@link Redwood#log(Object...)}. */
+    void log(Object[] channels, Object content);
+  }
+
+  /**
+   * Send all log messages to this sink instead of the tree of handlers, or stop doing so if it is null.
+   */
+  static void setDirectSink(DirectSink sink) {
+    directSink = sink;
+  }
+
+  /**
+   * Whether a message on these channels would be printed by the current configuration.
+   * Use this to avoid building expensive log messages which are not going to be printed;
+   * but see also {@link RedwoodChannels#isDebugEnabled()} and friends.
+   *
+   * @param channels The channels, including any flags such as {@link Redwood#DBG}.
+   */
+  public static boolean isEnabled(Object... channels) {
+    if (isClosed) {
+      return false;
+    }
+    DirectSink sink = directSink;
+    if (sink != null) {
+      return sink.isEnabled(channels);
+    }
+    return handlers.accepts(channels);
+  }
+
   /**
    * Remove all log handlers from Redwood, presumably in order to
    * construct a custom pipeline afterwards
@@ -288,6 +329,17 @@ public class Redwood  {
     final Object content = args[args.length-1];
     final Object[] tags = new Object[args.length-1];
     System.arraycopy(args,0,tags,0,args.length-1);
+    //--Short Circuit
+    DirectSink sink = directSink;
+    if (sink != null) {
+      if (sink.isEnabled(tags)) {
+        sink.log(tags, content);
+      }
+      return;
+    }
+    if ( ! handlers.accepts(tags)) {
+      return;  // nobody would print this
+    }
     final long timestamp = System.currentTimeMillis();
     //--Handle Record
     if(isThreaded){
@@ -313,7 +365,9 @@ public class Redwood  {
    * @param args The arguments to format.
    */
   public static void logf(String format, Object... args){
-    log((Supplier<String>) () -> new Formatter().format(format, args).toString());
+    if (isEnabled()) {
+      log((Supplier<String>) () -> new Formatter().format(format, args).toString());
+    }
   }
 
   /**
@@ -324,7 +378,9 @@ public class Redwood  {
    * @param args The arguments to format.
    */
   public static void logf(Flag level, String format, Object... args){
-    log(level, (Supplier<String>) () -> new Formatter().format(format, args).toString());
+    if (isEnabled(level)) {
+      log(level, (Supplier<String>) () -> new Formatter().format(format, args).toString());
+    }
   }
 
   /**
@@ -613,7 +669,7 @@ public class Redwood  {
   /**
    * An enumeration of the types of "messages" you can send a handler
    */
-  private enum MessageType{ SIMPLE, START_TRACK, SHUTDOWN, END_TRACK }
+  enum MessageType{ SIMPLE, START_TRACK, SHUTDOWN, END_TRACK }
 
   /**
    * A tree structure of record handlers
@@ -732,7 +788,7 @@ public class Redwood  {
       return lst;
     }
 
-    private void process(Record toPass, MessageType type, int newDepth, long timestamp){
+    void process(Record toPass, MessageType type, int newDepth, long timestamp){
       //--Handle Message
       //(records to pass on)
       List<Record> toPassOn;
@@ -792,6 +848,31 @@ public class Redwood  {
       }
     }
 
+    /**
+     * Whether a record on these channels could be printed by some handler in this tree.
+     * This is the case if some path from this node to a leaf accepts it at every handler.
+     *
+     * @see LogRecordHandler#accepts(Object[])
+     */
+    boolean accepts(Object[] channels) {
+      Object[] passedOn = channels;
+      if (head != null) {
+        if ( ! head.accepts(channels)) {
+          return false;
+        }
+        if (children.isEmpty()) {
+          return true;
+        }
+        passedOn = head.channelsPassedOn(channels);
+      }
+      for (RecordHandlerTree child : children) {
+        if (child.accepts(passedOn)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
     private StringBuilder toStringHelper(StringBuilder b, int depth){
       for(int i=0; i<depth; i++){
         b.append("  ");
@@ -1232,36 +1313,82 @@ public class Redwood  {
       Redwood.log(newArgs);
     }
 
+    /**
+     * Whether a message logged through these channels at the given level would be printed.
+     * Use this to skip building an expensive message which nobody will see:
+     *
+     * <pre>
+     *   if (log.isEnabled(Redwood.DBG)) {
+     *     log.debug("Parse: " + tree.pennString());
+     *   }
+     * </pre>
+     *
+     * The printf-style methods (e.g., {@link RedwoodChannels#debugf(String, Object...)}) check this themselves.
+     *
+     * @param level The level of the message, or null for an info message.
+     */
+    public boolean isEnabled(Flag level) {
+      if (level == null) {
+        return Redwood.isEnabled(channelNames);
+      }
+      Object[] channels = new Object[channelNames.length + 1];
+      System.arraycopy(channelNames, 0, channels, 0, channelNames.length);
+      channels[channelNames.length] = level;
+      return Redwood.isEnabled(channels);
+    }
+
+    /** Whether {@link RedwoodChannels#debug(Object...)} would print a message. */
+    public boolean isDebugEnabled() { return isEnabled(DBG); }
+    /** Whether {@link RedwoodChannels#info(Object...)} would print a message. */
+    public boolean isInfoEnabled() { return isEnabled(null); }
+    /** Whether {@link RedwoodChannels#warn(Object...)} would print a message. */
+    public boolean isWarnEnabled() { return isEnabled(WARN); }
+
     /**
      * Log a printf-style formatted message to the channels specified in this RedwoodChannels object.
+     * The message is only formatted if it is going to be printed.
      * @param format The format string for the printf function
      * @param args The arguments to the printf function
      */
     public void logf(String format, Object... args) {
-      log((Supplier<String>) () -> new Formatter().format(format, args).toString());
+      if (isEnabled(null)) {
+        log((Supplier<String>) () -> new Formatter().format(format, args).toString());
+      }
     }
 
     /**
      * Log a printf-style formatted message to the channels specified in this RedwoodChannels object.
+     * The message is only formatted if it is going to be printed.
      * @param level The log level to log with.
      * @param format The format string for the printf function
      * @param args The arguments to the printf function
      */
     public void logf(Flag level, String format, Object... args) {
-      log(level, (Supplier<String>) () -> new Formatter().format(format, args).toString());
+      if (isEnabled(level)) {
+        log(level, (Supplier<String>) () -> new Formatter().format(format, args).toString());
+      }
+    }
+
+    /** Log to the info channel. @see RedwoodChannels#logf(Flag, String, Object...) */
+    public void infof(String format, Object... args) {
+      logf(format, args);
     }
 
     /** Log to the debug channel. @see RedwoodChannels#logf(Flag, String, Object...) */
     public void debugf(String format, Object... args) {
-      debug((Supplier<String>) () -> new Formatter().format(format, args).toString());
+      if (isDebugEnabled()) {
+        debug((Supplier<String>) () -> new Formatter().format(format, args).toString());
+      }
     }
 
     /** Log to the warn channel. @see RedwoodChannels#logf(Flag, String, Object...) */
     public void warnf(String format, Object... args) {
-      warn((Supplier<String>) () -> new Formatter().format(format, args).toString());
+      if (isWarnEnabled()) {
+        warn((Supplier<String>) () -> new Formatter().format(format, args).toString());
+      }
     }
 
-    /** Log to the error channel. @see RedwoodChannels#logf(Flag, String, Object...) */
+    /** Log to the error channel. Errors are forced, so this is always formatted. @see RedwoodChannels#logf(Flag, String, Object...) */
     public void errf(String format, Object... args) {
       err((Supplier<String>) () -> new Formatter().format(format, args).toString());
     }
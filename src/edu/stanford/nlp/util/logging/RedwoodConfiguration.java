@@ -136,6 +136,7 @@ public class RedwoodConfiguration  {
     this.tasks = new LinkedList<>();
     this.tasks.add(() -> {
       Redwood.clearHandlers();
+      Redwood.setDirectSink(null);
       Redwood.restoreSystemStreams();
     });
     this.outputHandler = Redwood.ConsoleHandler.out();
@@ -347,6 +348,22 @@ public class RedwoodConfiguration  {
       };
     }
 
+    /**
+     * Pass incoming log messages on to the destination on a background thread, so that logging
+     * does not wait on formatting and output.
+     * @param capacity The number of messages which may be waiting to be passed on
+     * @param policy What to do with a message when the queue of waiting messages is full
+     * @param destination The final destination of the messages
+     * @see AsyncHandler
+     */
+    public static Thunk async(final int capacity, final AsyncHandler.DropPolicy policy, final Thunk destination) {
+      return (config, root) -> {
+        Redwood.RecordHandlerTree downstream = new Redwood.RecordHandlerTree();
+        destination.apply(config, downstream);
+        root.addChild(new AsyncHandler(downstream, capacity, policy));
+      };
+    }
+
     /** @see #chain(LogRecordHandler[], RedwoodConfiguration.Thunk) */
     public static Thunk chain(LogRecordHandler handler1, Thunk destination) { return chain(new LogRecordHandler[]{ handler1 }, destination); }
     /** @see #chain(LogRecordHandler[], RedwoodConfiguration.Thunk) */
@@ -444,6 +461,25 @@ public class RedwoodConfiguration  {
     );
   }
 
+  /**
+   * Send log messages straight to SLF4J, without going through Redwood's handlers at all.
+   * This is cheaper than {@link RedwoodConfiguration#slf4j()}, particularly for messages SLF4J drops,
+   * but does not show tracks or support any other handlers.
+   * @return A redwood configuration. Remember to call {@link RedwoodConfiguration#apply()}.
+   * @see SLF4JBridge
+   */
+  public static RedwoodConfiguration slf4jBridge() {
+    RedwoodConfiguration config = new RedwoodConfiguration().clear();
+    config.tasks.add(() -> {
+      try {
+        Redwood.setDirectSink(MetaClass.create("edu.stanford.nlp.util.logging.SLF4JBridge").createInstance());
+      } catch (Exception e) {
+        throw new IllegalStateException("Could not find SLF4J in your classpath", e);
+      }
+    });
+    return config;
+  }
+
   /** Run Redwood with SLF4J if available, otherwise with stderr logging at the debug (everything) level.
    *  @return A redwood configuration. Remember to call {@link RedwoodConfiguration#apply()}.
    */
@@ -540,6 +576,8 @@ public class RedwoodConfiguration  {
    *   <li>log.file = By default, write to this file.
    *   <li>log.neatExit = {true,false}: Clean up logs on exception or regular system exit</li>
    *   <li>log.output = {stderr,stdout,java.util.logging}: Output messages to either stderr or stdout by default.</li>
+   *   <li>log.async = {number}: Print console messages on a background thread, with this many messages waiting at most (default: 0, print on the logging thread)</li>
+   *   <li>log.asyncPolicy = {drop_newest,drop_oldest,block}: What to do with a message when that many are already waiting (default: block)</li>
    * </ul>
    * @param props The properties to use in configuration
    * @return A new Redwood Configuration based on the passed properties, ignoring any existing custom configuration
@@ -594,8 +632,13 @@ public class RedwoodConfiguration  {
     //--Console
     config = config.output(get(props, "log.output", "stdout", used));
 
+    //--Async
+    int asyncCapacity = Integer.parseInt(get(props, "log.async", "0", used));
+    AsyncHandler.DropPolicy asyncPolicy = AsyncHandler.DropPolicy.valueOf(get(props, "log.asyncPolicy", "block", used).toUpperCase(Locale.ROOT));
+
     //--Console
-    config = config.handlers(Handlers.chain(chain.toArray(new LogRecordHandler[chain.size()]), Handlers.output));
+    Thunk console = Handlers.chain(chain.toArray(new LogRecordHandler[chain.size()]), Handlers.output);
+    config = config.handlers(asyncCapacity > 0 ? Handlers.async(asyncCapacity, asyncPolicy, console) : console);
 
     //--Error Check
     for(Object propAsObj : props.keySet()) {
@@ -35,4 +35,17 @@ public class RerouteChannel extends LogRecordHandler {
     results.add(record);
     return results;
   }
+
+  /** {@inheritDoc} */
+  @Override
+  Object[] channelsPassedOn(Object[] channels) {
+    for (int i = 0; i < channels.length; i++) {
+      if (oldChannelName.equals(channels[i])) {
+        Object[] rerouted = channels.clone();
+        rerouted[i] = newChannelName;
+        return rerouted;
+      }
+    }
+    return channels;
+  }
 }
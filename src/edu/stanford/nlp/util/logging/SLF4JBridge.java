@@ -0,0 +1,64 @@
+package edu.stanford.nlp.util.logging;
+
+import edu.stanford.nlp.util.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Supplier;
+
+/**
+ * Send log messages straight to SLF4J, skipping Redwood's tree of handlers altogether.
+ * Unlike {@link SLF4JHandler}, no {@link Redwood.Record} is made for a message, and no lock is taken;
+ * the cost of a message SLF4J is not going to log is that of looking up its logger and checking its level.
+ * Tracks are not shown, which is usually what one wants when logging to SLF4J anyways.
+ *
+ * <p>
+ *   The logger and level of a message are chosen from its channels as in {@link SLF4JHandler}.
+ *   Exceptions are passed to SLF4J as exceptions, so that it prints their stack traces.
+ * </p>
+ *
+ * @see RedwoodConfiguration#slf4jBridge()
+ */
+@SuppressWarnings("unused")  // Called via reflection from RedwoodConfiguration
+public class SLF4JBridge implements Redwood.DirectSink {
+
+  @Override
+  public boolean isEnabled(Object[] channels) {
+    Pair<String, Redwood.Flag> sourceAndLevel = OutputHandler.getSourceStringAndLevel(channels);
+    return SLF4JHandler.isEnabled(LoggerFactory.getLogger(sourceAndLevel.first), sourceAndLevel.second);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void log(Object[] channels, Object content) {
+    Pair<String, Redwood.Flag> sourceAndLevel = OutputHandler.getSourceStringAndLevel(channels);
+    Logger logger = LoggerFactory.getLogger(sourceAndLevel.first);
+    // Render the message
+    Throwable exception = null;
+    String message;
+    if (content instanceof Throwable) {
+      exception = (Throwable) content;
+      message = exception.getMessage() == null ? exception.getClass().getName() : exception.getMessage();
+    } else if (content instanceof Supplier) {
+      message = String.valueOf(((Supplier<Object>) content).get());
+    } else {
+      message = String.valueOf(content);
+    }
+    // Route the message
+    switch (sourceAndLevel.second) {
+      case ERROR:
+        logger.error(message, exception);
+        break;
+      case WARN:
+        logger.warn(message, exception);
+        break;
+      case DEBUG:
+        logger.debug(message, exception);
+        break;
+      default:
+        logger.info(message, exception);
+        break;
+    }
+  }
+
+}
@@ -28,38 +28,38 @@ public class SLF4JHandler extends OutputHandler {
    * @param record The record to handle.
    * @return Nothing -- this is the leaf of a tree.
    */
-  @SuppressWarnings("unchecked")
   @Override
   public List<Redwood.Record> handle(Redwood.Record record) {
+    // Potentially short-circuit
+    if ( ! accepts(record.channels())) {
+      return Collections.emptyList();
+    }
+    return super.handle(record);
+  }
+
+  /**
+   * Whether SLF4J would log a message on these channels, at the level of the Redwood flag among them.
+   * SLF4J has the final say even on forced messages, as it would drop them anyway.
+   */
+  @Override
+  public boolean accepts(Object[] channels) {
     // Get the implementing SLF4J logger
-    Pair<Logger, Redwood.Flag> loggerAndLevel = getLoggerAndLevel(record.channels());
+    Pair<Logger, Redwood.Flag> loggerAndLevel = getLoggerAndLevel(channels);
+    return isEnabled(loggerAndLevel.first, loggerAndLevel.second);
+  }
 
-    // Potentially short-circuit
-    switch (loggerAndLevel.second) {
-      case FORCE:
-        break;  // Always pass it on if explicitly forced
+  /** Whether the logger is logging at the SLF4J level corresponding to the given Redwood flag */
+  static boolean isEnabled(Logger logger, Redwood.Flag level) {
+    switch (level) {
       case ERROR:
-        if (!loggerAndLevel.first.isErrorEnabled()) {
-          return Collections.emptyList();
-        }
-        break;
+        return logger.isErrorEnabled();
       case WARN:
-        if (!loggerAndLevel.first.isWarnEnabled()) {
-          return Collections.emptyList();
-        }
-        break;
+        return logger.isWarnEnabled();
       case DEBUG:
-        if (!loggerAndLevel.first.isDebugEnabled()) {
-          return Collections.emptyList();
-        }
-        break;
+        return logger.isDebugEnabled();
       default:
-        if (!loggerAndLevel.first.isInfoEnabled()) {
-          return Collections.emptyList();
-        }
-        break;
+        return logger.isInfoEnabled();
     }
-    return super.handle(record);
   }
 
   @Override
@@ -84,46 +84,44 @@ public class VisibilityHandler extends LogRecordHandler {
   /** {@inheritDoc} */
   @Override
   public List<Record> handle(Record record) {
-    boolean isPrinting = false;
-    if(record.force()){
-      //--Case: Force Printing
-      isPrinting = true;
+    if (accepts(record.channels())) {
+      return Collections.singletonList(record);
     } else {
-      //--Case: Filter
-      switch (this.defaultState){
-        case HIDE_ALL:
-          //--Default False
-          for(Object tag : record.channels()){
-            if(this.deltaPool.contains(tag)){
-              isPrinting = true;
-              break;
-            }
+      return EMPTY;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean accepts(Object[] channels) {
+    //--Case: Force Printing
+    for (Object tag : channels) {
+      if (tag == Redwood.FORCE) {
+        return true;
+      }
+    }
+    //--Case: Filter
+    switch (this.defaultState){
+      case HIDE_ALL:
+        //--Default False
+        for(Object tag : channels){
+          if(this.deltaPool.contains(tag)){
+            return true;
           }
-          break;
-        case SHOW_ALL:
-          //--Default True
-          if (!this.deltaPool.isEmpty()) {  // Short-circuit for efficiency
-            boolean somethingSeen =  false;
-            for (Object tag : record.channels()) {
-              if (this.deltaPool.contains(tag)) {
-                somethingSeen = true;
-                break;
-              }
+        }
+        return false;
+      case SHOW_ALL:
+        //--Default True
+        if (!this.deltaPool.isEmpty()) {  // Short-circuit for efficiency
+          for (Object tag : channels) {
+            if (this.deltaPool.contains(tag)) {
+              return false;
             }
-            isPrinting = !somethingSeen;
-          } else {
-            isPrinting = true;
           }
-          break;
-        default:
-          throw new IllegalStateException("Unknown default state setting: " + this.defaultState);
-      }
-    }
-    //--Return
-    if(isPrinting){
-      return Collections.singletonList(record);
-    } else {
-      return EMPTY;
+        }
+        return true;
+      default:
+        throw new IllegalStateException("Unknown default state setting: " + this.defaultState);
     }
   }
 
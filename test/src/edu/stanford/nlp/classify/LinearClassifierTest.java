@@ -0,0 +1,85 @@
+package edu.stanford.nlp.classify;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.stanford.nlp.ling.BasicDatum;
+import edu.stanford.nlp.ling.Datum;
+import edu.stanford.nlp.ling.RVFDatum;
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.HashedFeatureIndex;
+import edu.stanford.nlp.util.Index;
+
+public class LinearClassifierTest extends TestCase {
+
+  private static LinearClassifier<String, String> classifier() {
+    Index<String> featureIndex = new HashIndex<>(Arrays.asList("a", "b", "c"));
+    Index<String> labelIndex = new HashIndex<>(Arrays.asList("x", "y"));
+    double[][] weights = {
+        { 1.0, -1.0 },
+        { 0.5, 2.0 },
+        { -3.0, 0.25 },
+    };
+    return new LinearClassifier<>(weights, featureIndex, labelIndex);
+  }
+
+  public void testBatchScoresMatchSingleScores() {
+    LinearClassifier<String, String> classifier = classifier();
+    Counter<String> rvfFeatures = new ClassicCounter<>();
+    rvfFeatures.setCount("a", 2.0);
+    rvfFeatures.setCount("c", 0.5);
+    rvfFeatures.setCount("unseen", 7.0);
+    List<Datum<String, String>> data = new ArrayList<>();
+    data.add(new RVFDatum<>(rvfFeatures));
+    data.add(new BasicDatum<>(Arrays.asList("a", "b", "b", "unseen")));
+    data.add(new BasicDatum<>(new ArrayList<>()));
+
+    double[][] scores = classifier.scoresOf(data);
+    assertEquals(data.size(), scores.length);
+    for (int i = 0; i < data.size(); ++i) {
+      Counter<String> expected = classifier.scoresOf(data.get(i));
+      for (int label = 0; label < classifier.labelIndex().size(); ++label) {
+        assertEquals(expected.getCount(classifier.labelIndex().get(label)), scores[i][label], 1e-10);
+      }
+    }
+    assertEquals(0.5, scores[0][0], 1e-10);
+    assertEquals(2.0, scores[1][0], 1e-10);
+    assertEquals(0.0, scores[2][1], 1e-10);
+  }
+
+  public void testHashedFeatures() {
+    Dataset<String, String> train = new Dataset<>();
+    for (int i = 0; i < 20; i++) {
+      train.add(new BasicDatum<>(Arrays.asList("w=good" + (i % 5), "len=" + (i % 3), "bias"), "pos"));
+      train.add(new BasicDatum<>(Arrays.asList("w=bad" + (i % 5), "len=" + (i % 3), "bias"), "neg"));
+    }
+    LinearClassifierFactory<String, String> factory = new LinearClassifierFactory<>();
+    factory.setFeatureHashing(64);
+    LinearClassifier<String, String> classifier = factory.trainClassifier(train);
+    assertTrue(classifier.featureIndex() instanceof HashedFeatureIndex);
+    assertEquals(64, classifier.featureIndex().size());
+
+    List<Datum<String, String>> data = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      data.add(new BasicDatum<>(Arrays.asList("w=good" + i, "len=1", "bias"), "pos"));
+      data.add(new BasicDatum<>(Arrays.asList("w=bad" + i, "len=2", "bias"), "neg"));
+    }
+    double[][] scores = classifier.scoresOf(data);
+    for (int i = 0; i < data.size(); ++i) {
+      Datum<String, String> datum = data.get(i);
+      assertEquals(datum.label(), classifier.classOf(datum));
+      Counter<String> expected = classifier.scoresOf(datum);
+      for (int label = 0; label < classifier.labelIndex().size(); ++label) {
+        String l = classifier.labelIndex().get(label);
+        assertEquals(expected.getCount(l), scores[i][label], 1e-10);
+        assertEquals(expected.getCount(l), classifier.scoreOf(datum, l), 1e-10);
+      }
+    }
+  }
+
+}
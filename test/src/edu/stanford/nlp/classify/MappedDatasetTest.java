@@ -0,0 +1,179 @@
+package edu.stanford.nlp.classify;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.stanford.nlp.ling.BasicDatum;
+import edu.stanford.nlp.ling.Datum;
+import edu.stanford.nlp.ling.RVFDatum;
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.stats.Counters;
+import edu.stanford.nlp.util.HashIndex;
+import junit.framework.TestCase;
+
+public class MappedDatasetTest extends TestCase {
+
+  private static List<Datum<String, String>> datums(boolean realValued) {
+    Random random = new Random(7);
+    List<Datum<String, String>> datums = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      String label = "L" + random.nextInt(3);
+      List<String> features = new ArrayList<>();
+      Counter<String> values = new ClassicCounter<>();
+      for (int j = 0, n = 1 + random.nextInt(6); j < n; j++) {
+        // features correlated with the label, and noise
+        String feature = random.nextBoolean() ? label + "-" + random.nextInt(3) : "f" + random.nextInt(20);
+        features.add(feature);
+        values.incrementCount(feature, random.nextDouble() * 2.0 - 0.5);
+      }
+      datums.add(realValued ? new RVFDatum<>(values, label) : new BasicDatum<>(features, label));
+    }
+    return datums;
+  }
+
+  /** Writes a dataset with segments small enough that datums are padded to the next one. */
+  private static MappedDataset<String, String> write(List<Datum<String, String>> datums, GeneralDataset<String, String> dataset,
+                                                     boolean realValued) throws IOException {
+    File file = File.createTempFile("MappedDatasetTest", ".data");
+    MappedDataset.Writer<String, String> writer = new MappedDataset.Writer<>(file, dataset.featureIndex(), dataset.labelIndex(), realValued, 128);
+    for (Datum<String, String> datum : datums) {
+      writer.add(datum);
+    }
+    assertEquals(datums.size(), writer.size());
+    return writer.finish();
+  }
+
+  public void testBinaryDatums() throws IOException {
+    List<Datum<String, String>> datums = datums(false);
+    Dataset<String, String> dataset = new Dataset<>();
+    dataset.addAll(datums);
+    MappedDataset<String, String> mapped = write(datums, dataset, false);
+    try {
+      assertEquals(datums.size(), mapped.size());
+      assertFalse(mapped.isRealValued());
+      assertEquals(dataset.numFeatures(), mapped.numFeatures());
+      for (int i = 0; i < datums.size(); i++) {
+        Datum<String, String> datum = mapped.getDatum(i);
+        assertEquals(datums.get(i).label(), datum.label());
+        assertEquals(new ArrayList<>(datums.get(i).asFeatures()), new ArrayList<>(datum.asFeatures()));
+      }
+      MappedDataset<String, String>.Cursor cursor = mapped.cursor();
+      for (int i = datums.size() - 1; i >= 0; i--) {
+        cursor.moveTo(i);
+        assertEquals(dataset.getLabelsArray()[i], cursor.label());
+        int[] features = dataset.getDataArray()[i];
+        assertEquals(features.length, cursor.numFeatures());
+        for (int j = 0; j < features.length; j++) {
+          assertEquals(features[j], cursor.feature(j));
+          assertEquals(1.0, cursor.value(j));
+        }
+      }
+    } finally {
+      mapped.close();
+    }
+  }
+
+  public void testRealValuedDatums() throws IOException {
+    List<Datum<String, String>> datums = datums(true);
+    RVFDataset<String, String> dataset = new RVFDataset<>();
+    for (Datum<String, String> datum : datums) {
+      dataset.add((RVFDatum<String, String>) datum);
+    }
+    MappedDataset<String, String> mapped = write(datums, dataset, true);
+    try {
+      for (int i = 0; i < datums.size(); i++) {
+        RVFDatum<String, String> datum = mapped.getRVFDatum(i);
+        assertEquals(datums.get(i).label(), datum.label());
+        // (the total counts of the counters can differ in their last bits, having been summed in different orders)
+        assertTrue(Counters.equals(((RVFDatum<String, String>) datums.get(i)).asFeaturesCounter(), datum.asFeaturesCounter(), 1e-12));
+      }
+    } finally {
+      mapped.close();
+    }
+  }
+
+  public void testTooManyFeaturesForASegment() throws IOException {
+    File file = File.createTempFile("MappedDatasetTest", ".data");
+    try (MappedDataset.Writer<String, String> writer = new MappedDataset.Writer<>(file, new HashIndex<>(), new HashIndex<>(), false, 32)) {
+      List<String> features = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        features.add("f" + i);
+      }
+      writer.add(new BasicDatum<>(features, "L"));
+      fail("A datum larger than a segment was written");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertFalse(file.exists());
+  }
+
+  /** The objective over a mapped dataset is the same as over the dataset in memory, in one thread or several. */
+  public void testObjectiveFunction() throws IOException {
+    for (boolean realValued : new boolean[] { false, true }) {
+      List<Datum<String, String>> datums = datums(realValued);
+      GeneralDataset<String, String> dataset = realValued ? new RVFDataset<>() : new Dataset<>();
+      for (Datum<String, String> datum : datums) {
+        dataset.add(datum);
+      }
+      MappedDataset<String, String> mapped = write(datums, dataset, realValued);
+      try {
+        LogPrior prior = new LogPrior(LogPrior.LogPriorType.QUADRATIC);
+        LogConditionalObjectiveFunction<String, String> inMemory = new LogConditionalObjectiveFunction<>(dataset, prior);
+        inMemory.parallelGradientCalculation = false;
+        double[] x = new double[inMemory.domainDimension()];
+        Random random = new Random(3);
+        for (int i = 0; i < x.length; i++) {
+          x[i] = random.nextGaussian();
+        }
+        double value = inMemory.valueAt(x);
+        double[] derivative = inMemory.derivativeAt(x).clone();
+
+        for (int threads : new int[] { 1, 4 }) {
+          LogConditionalObjectiveFunction<String, String> onDisk = new LogConditionalObjectiveFunction<>(mapped, prior);
+          onDisk.threads = threads;
+          assertEquals(inMemory.domainDimension(), onDisk.domainDimension());
+          assertEquals(datums.size(), onDisk.dataDimension());
+          assertEquals(value, onDisk.valueAt(x), 1e-8);
+          double[] mappedDerivative = onDisk.derivativeAt(x);
+          for (int i = 0; i < x.length; i++) {
+            assertEquals(derivative[i], mappedDerivative[i], 1e-8);
+          }
+
+          // a stochastic update over a batch of one datum is the same as in memory
+          int[] batch = { 17 };
+          double[] expected = x.clone();
+          inMemory.calculateStochasticUpdate(expected, 0.5, batch, 0.1);
+          double[] actual = x.clone();
+          onDisk.calculateStochasticUpdate(actual, 0.5, batch, 0.1);
+          for (int i = 0; i < x.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-8);
+          }
+          assertEquals(inMemory.valueAt(x, 0.5, new int[] { 3, 5, 8 }), onDisk.valueAt(x, 0.5, new int[] { 3, 5, 8 }), 1e-8);
+        }
+      } finally {
+        mapped.close();
+      }
+    }
+  }
+
+  public void testTrainClassifier() throws IOException {
+    List<Datum<String, String>> datums = datums(false);
+    Dataset<String, String> dataset = new Dataset<>();
+    dataset.addAll(datums);
+    MappedDataset<String, String> mapped = write(datums, dataset, false);
+    try {
+      LinearClassifier<String, String> inMemory = new LinearClassifierFactory<String, String>().trainClassifier(dataset);
+      LinearClassifier<String, String> onDisk = new LinearClassifierFactory<String, String>().trainClassifier(mapped);
+      for (Datum<String, String> datum : datums) {
+        assertEquals(inMemory.classOf(datum), onDisk.classOf(datum));
+      }
+    } finally {
+      mapped.close();
+    }
+  }
+
+}
@@ -133,4 +133,27 @@ public class KBPRelationExtractorTest {
     assertEquals(5.0 / 6.0, accuracy.recallMacro(), 1e-10);
   }
 
+  @Test
+  public void testTypeSignatureTables() {
+    for (KBPRelationExtractor.NERTag entityType : KBPRelationExtractor.NERTag.values()) {
+      boolean asEntity = false;
+      for (KBPRelationExtractor.NERTag slotValueType : KBPRelationExtractor.NERTag.values()) {
+        boolean expected = false;
+        for (KBPRelationExtractor.RelationType rel : KBPRelationExtractor.RelationType.values()) {
+          if (rel.entityType == entityType && rel.validNamedEntityLabels.contains(slotValueType)) {
+            expected = true;
+          }
+        }
+        assertEquals(entityType + "," + slotValueType, expected,
+            KBPRelationExtractor.RelationType.plausiblyHasRelation(entityType, slotValueType));
+        asEntity |= expected;
+      }
+      assertEquals(entityType.toString(), asEntity,
+          KBPRelationExtractor.RelationType.plausiblyHasRelationAsEntity(entityType));
+    }
+    assertTrue(KBPRelationExtractor.RelationType.plausiblyHasRelationAsEntity(KBPRelationExtractor.NERTag.PERSON));
+    assertFalse(KBPRelationExtractor.RelationType.plausiblyHasRelationAsEntity(KBPRelationExtractor.NERTag.DATE));
+    assertTrue(KBPRelationExtractor.RelationType.plausiblyHasRelationAsSlotValue(KBPRelationExtractor.NERTag.DATE));
+  }
+
 }
@@ -0,0 +1,92 @@
+package edu.stanford.nlp.ie.crf;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.HashedFeatureIndex;
+
+public class ShardedCRFObjectiveFunctionTest extends TestCase {
+
+  private static List<List<CoreLabel>> documents() {
+    Random random = new Random(42);
+    String[] words = { "the", "a", "saw", "met", "with", "Alice", "Bob", "Carol", "Paris", "Rome" };
+    List<List<CoreLabel>> docs = new ArrayList<>();
+    for (int i = 0; i < 12; i++) {
+      List<CoreLabel> doc = new ArrayList<>();
+      for (int j = 0, length = 3 + random.nextInt(8); j < length; j++) {
+        String word = words[random.nextInt(words.length)];
+        CoreLabel token = new CoreLabel();
+        token.setWord(word);
+        token.set(CoreAnnotations.AnswerAnnotation.class, Character.isUpperCase(word.charAt(0)) ? "NAME" : "O");
+        doc.add(token);
+      }
+      docs.add(doc);
+    }
+    return docs;
+  }
+
+  private static CRFClassifier<CoreLabel> train(int trainingWorkers) {
+    return train(trainingWorkers, 0);
+  }
+
+  private static CRFClassifier<CoreLabel> train(int trainingWorkers, int featureHashBuckets) {
+    Properties props = new Properties();
+    props.setProperty("useWord", "true");
+    props.setProperty("usePrev", "true");
+    props.setProperty("useNext", "true");
+    props.setProperty("useClassFeature", "true");
+    props.setProperty("maxQNItr", "10");
+    props.setProperty("multiThreadGrad", "1");
+    props.setProperty("trainingWorkers", Integer.toString(trainingWorkers));
+    props.setProperty("featureHashBuckets", Integer.toString(featureHashBuckets));
+    CRFClassifier<CoreLabel> crf = new CRFClassifier<>(props);
+    crf.train(documents());
+    return crf;
+  }
+
+  /** Training with worker processes gets the same weights as training in one process. */
+  public void testTrainingWithWorkers() {
+    assertSameWeights(train(0), train(3));
+  }
+
+  /** The same goes for hashed features, whose signs are passed to the workers. */
+  public void testTrainingWithWorkersAndHashedFeatures() {
+    CRFClassifier<CoreLabel> local = train(0, 32);
+    assertTrue(local.featureIndex instanceof HashedFeatureIndex);
+    assertEquals(local.windowSize * 32, local.weights.length);
+    int correct = 0;
+    int total = 0;
+    for (List<CoreLabel> doc : documents()) {
+      List<String> gold = new ArrayList<>();
+      for (CoreLabel token : doc) {
+        gold.add(token.get(CoreAnnotations.AnswerAnnotation.class));
+      }
+      List<CoreLabel> answers = local.classify(doc);
+      for (int i = 0; i < answers.size(); i++) {
+        if (gold.get(i).equals(answers.get(i).get(CoreAnnotations.AnswerAnnotation.class))) {
+          correct++;
+        }
+        total++;
+      }
+    }
+    assertTrue("Only " + correct + " of " + total + " right", correct * 10 >= total * 9);
+    assertSameWeights(local, train(2, 32));
+  }
+
+  private static void assertSameWeights(CRFClassifier<CoreLabel> local, CRFClassifier<CoreLabel> sharded) {
+    assertEquals(local.weights.length, sharded.weights.length);
+    for (int i = 0; i < local.weights.length; i++) {
+      assertEquals(local.weights[i].length, sharded.weights[i].length);
+      for (int j = 0; j < local.weights[i].length; j++) {
+        assertEquals(local.weights[i][j], sharded.weights[i][j], 1e-6);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+package edu.stanford.nlp.ling;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import edu.stanford.nlp.process.CoreLabelTokenFactory;
+import edu.stanford.nlp.process.PTBTokenizer;
+import edu.stanford.nlp.util.ArrayCoreMap;
+
+public class TokenTableTest extends TestCase {
+
+  private static CoreLabel token(String word, int begin, int index) {
+    CoreLabel token = new CoreLabel();
+    token.setWord(word);
+    token.setValue(word);
+    token.setOriginalText(word);
+    token.setBeginPosition(begin);
+    token.setEndPosition(begin + word.length());
+    token.setIndex(index);
+    token.setBefore(index == 1 ? "" : " ");
+    token.setAfter(" ");
+    token.set(CoreAnnotations.IsNewlineAnnotation.class, false);
+    token.set(CoreAnnotations.TokenBeginAnnotation.class, index - 1);
+    return token;
+  }
+
+  private static List<CoreLabel> tokens() {
+    List<CoreLabel> tokens = new ArrayList<>();
+    tokens.add(token("the", 0, 1));
+    tokens.add(token("dog", 4, 2));
+    tokens.add(token("saw", 8, 3));
+    tokens.add(token("the", 12, 4));
+    tokens.add(token("cat", 16, 5));
+    return tokens;
+  }
+
+  public void testRowsEqualTokens() {
+    List<CoreLabel> tokens = tokens();
+    List<CoreLabel> rows = TokenTable.compact(tokens);
+    assertEquals(tokens.size(), rows.size());
+    for (int i = 0; i < tokens.size(); ++i) {
+      CoreLabel token = tokens.get(i);
+      CoreLabel row = rows.get(i);
+      assertEquals(token, row);
+      assertEquals(row, token);
+      assertEquals(token.hashCode(), row.hashCode());
+      assertEquals(token.size(), row.size());
+      assertEquals(new HashSet<>(token.keySet()), new HashSet<>(row.keySet()));
+      assertEquals(token.word(), row.word());
+      assertEquals(token.beginPosition(), row.beginPosition());
+      assertEquals(token.endPosition(), row.endPosition());
+      assertEquals(token.index(), row.index());
+      assertEquals(-1, row.sentIndex());
+      assertEquals(token.toString(CoreLabel.OutputFormat.VALUE_INDEX), row.toString(CoreLabel.OutputFormat.VALUE_INDEX));
+      assertEquals(token, new CoreLabel(row));
+      assertEquals(token, new ArrayCoreMap(row));
+    }
+    // "the", " ", "", "dog", "saw" and "cat"
+    assertEquals(6, ((TokenTable.Row) rows.get(0)).table().numStrings());
+  }
+
+  public void testSetAndRemove() {
+    List<CoreLabel> rows = TokenTable.compact(tokens());
+    CoreLabel row = rows.get(1);
+    int size = row.size();
+
+    // column keys
+    row.setTag("NN");
+    row.setLemma("dog");
+    row.setNER("O");
+    row.setSentIndex(0);
+    assertEquals("NN", row.tag());
+    assertEquals("dog", row.lemma());
+    assertEquals("O", row.ner());
+    assertEquals(0, row.sentIndex());
+    assertEquals(size + 4, row.size());
+    assertEquals("NN", row.remove(CoreAnnotations.PartOfSpeechAnnotation.class));
+    assertNull(row.tag());
+    assertFalse(row.containsKey(CoreAnnotations.PartOfSpeechAnnotation.class));
+    assertEquals(size + 3, row.size());
+
+    // other keys
+    row.set(CoreAnnotations.CoarseTagAnnotation.class, "N");
+    assertEquals("N", row.get(CoreAnnotations.CoarseTagAnnotation.class));
+    assertEquals(size + 4, row.size());
+
+    // nulls are kept, as in any CoreLabel
+    assertEquals("O", row.set(CoreAnnotations.NamedEntityTagAnnotation.class, null));
+    assertTrue(row.containsKey(CoreAnnotations.NamedEntityTagAnnotation.class));
+    assertNull(row.ner());
+    assertEquals(size + 4, row.size());
+    assertNull(row.set(CoreAnnotations.NamedEntityTagAnnotation.class, "PERSON"));
+    assertEquals("PERSON", row.ner());
+    assertEquals(size + 4, row.size());
+
+    // booleans
+    assertEquals(Boolean.FALSE, row.get(CoreAnnotations.IsNewlineAnnotation.class));
+    row.set(CoreAnnotations.IsNewlineAnnotation.class, true);
+    assertEquals(Boolean.TRUE, row.get(CoreAnnotations.IsNewlineAnnotation.class));
+
+    // the other rows are not affected
+    assertNull(rows.get(2).tag());
+    assertEquals(Boolean.FALSE, rows.get(2).get(CoreAnnotations.IsNewlineAnnotation.class));
+
+    // removing through the key set
+    row.keySet().removeIf(key -> key == CoreAnnotations.LemmaAnnotation.class);
+    assertNull(row.lemma());
+  }
+
+  public void testSerializedAsCoreLabel() throws IOException, ClassNotFoundException {
+    List<CoreLabel> rows = TokenTable.compact(tokens());
+    rows.get(0).setTag("DT");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(rows.get(0));
+    }
+    Object read;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      read = in.readObject();
+    }
+    assertEquals(CoreLabel.class, read.getClass());
+    assertEquals(rows.get(0), read);
+  }
+
+  public void testTokenFactory() {
+    String text = "The dog saw the cat.  The cat ran.  The dog ran.";
+    String options = "invertible=true";
+    List<CoreLabel> tokens = PTBTokenizer.factory(new CoreLabelTokenFactory(), options).getTokenizer(new StringReader(text)).tokenize();
+    TokenTable table = new TokenTable();
+    List<CoreLabel> rows = PTBTokenizer.factory(table.tokenFactory(), options).getTokenizer(new StringReader(text)).tokenize();
+    assertEquals(tokens, rows);
+    for (CoreLabel row : rows) {
+      assertSame(table, ((TokenTable.Row) row).table());
+    }
+    // each distinct word and space is stored once
+    assertTrue(table.numStrings() < tokens.size());
+  }
+
+}
@@ -15,6 +15,8 @@ import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * A test of the hard-coded clause splitting rules.
@@ -34,7 +36,7 @@ public class OpenIETest {
     return w;
   }
 
-  protected Set<String> clauses(String conll) {
+  protected SemanticGraph mkTree(String conll) {
     List<CoreLabel> sentence = new ArrayList<>();
     SemanticGraph tree = new SemanticGraph();
     for (String line : conll.split("\n")) {
@@ -75,8 +77,12 @@ public class OpenIETest {
       }
       i += 1;
     }
+    return tree;
+  }
+
+  protected Set<String> clauses(String conll) {
     // Run extractor
-    ClauseSplitterSearchProblem problem = new ClauseSplitterSearchProblem(tree, true);
+    ClauseSplitterSearchProblem problem = new ClauseSplitterSearchProblem(mkTree(conll), true);
     Set<String> clauses = new HashSet<>();
     problem.search(
         triple -> {
@@ -90,6 +96,50 @@ public class OpenIETest {
     return clauses;
   }
 
+  @Test
+  public void testSearchBudget() {
+    String conll =
+        "1\tI\t2\tnsubj\tPR\n" +
+        "2\tpersuaded\t0\troot\tVBD\n" +
+        "3\tFred\t2\tdobj\tNNP\n" +
+        "4\tto\t5\taux\tTO\n" +
+        "5\tleave\t2\txcomp\tVB\n" +
+        "6\tthe\t7\tdet\tDT\n" +
+        "7\troom\t5\tdobj\tNN\n";
+    ClauseSplitterSearchProblem problem = new ClauseSplitterSearchProblem(mkTree(conll), true);
+    problem.search(
+        triple -> true,
+        new LinearClassifier<>(new ClassicCounter<>()),
+        ClauseSplitterSearchProblem.HARD_SPLITS,
+        triple -> new ClassicCounter<String>(){{setCount("__undocumented_junit_no_classifier", 1.0);}},
+        100000);
+    assertFalse(problem.budgetExhausted());
+    int fullTicks = problem.ticksUsed();
+    assertTrue(fullTicks > 1);
+
+    // Cut short by ticks
+    problem = new ClauseSplitterSearchProblem(mkTree(conll), true);
+    problem.search(
+        triple -> true,
+        new LinearClassifier<>(new ClassicCounter<>()),
+        ClauseSplitterSearchProblem.HARD_SPLITS,
+        triple -> new ClassicCounter<String>(){{setCount("__undocumented_junit_no_classifier", 1.0);}},
+        1);
+    assertTrue(problem.budgetExhausted());
+    assertTrue(problem.ticksUsed() < fullTicks);
+
+    // Cut short by a deadline in the past
+    problem = new ClauseSplitterSearchProblem(mkTree(conll), true);
+    problem.search(
+        triple -> true,
+        new LinearClassifier<>(new ClassicCounter<>()),
+        ClauseSplitterSearchProblem.HARD_SPLITS,
+        triple -> new ClassicCounter<String>(){{setCount("__undocumented_junit_no_classifier", 1.0);}},
+        100000, 0L);
+    assertTrue(problem.budgetExhausted());
+    assertTrue(problem.ticksUsed() < fullTicks);
+  }
+
   @Test
   public void testNoClauses() {
     assertEquals(new HashSet<String>() {{
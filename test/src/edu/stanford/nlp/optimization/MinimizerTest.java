@@ -1,9 +1,13 @@
 package edu.stanford.nlp.optimization;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 
 import junit.framework.TestCase;
 
+import edu.stanford.nlp.util.CallbackFunction;
+
 /**
  * @author Christopher Manning
  */
@@ -38,6 +42,42 @@ public class MinimizerTest extends TestCase {
     }
   }
 
+  /** The sum of n/2 independent Rosenbrock functions, of pairs of variables, with its minimum at (1, ..., 1). */
+  private static class ExtendedRosenbrockFunction implements DiffFunction {
+
+    private final int n;
+
+    ExtendedRosenbrockFunction(int n) {
+      this.n = n;
+    }
+
+    @Override
+    public double[] derivativeAt(double[] x) {
+      double[] derivatives = new double[n];
+      for (int i = 0; i < n; i += 2) {
+        derivatives[i] = -400.0 * x[i] * (x[i + 1] - x[i] * x[i]) - 2 * (1.0 - x[i]);
+        derivatives[i + 1] = 200.0 * (x[i + 1] - x[i] * x[i]);
+      }
+      return derivatives;
+    }
+
+    @Override
+    public double valueAt(double[] x) {
+      double value = 0.0;
+      for (int i = 0; i < n; i += 2) {
+        double t1 = (1.0 - x[i]);
+        double t2 = x[i + 1] - x[i] * x[i];
+        value += t1 * t1 + 100.0 * t2 * t2;
+      }
+      return value;
+    }
+
+    @Override
+    public int domainDimension() {
+      return n;
+    }
+  }
+
   public void testRosenbrock() {
     DiffFunction rf = new RosenbrockFunction();
     DiffFunctionTest.gradientCheck(rf);
@@ -53,4 +93,74 @@ public class MinimizerTest extends TestCase {
     assertEquals(1.0, answer[1], 1e-8);
   }
 
+  /** Parallel vector operations and a float history find the same minimum. */
+  public void testQNMinimizerVectorOpsAndFloatHistory() {
+    DiffFunction rf = new ExtendedRosenbrockFunction(1000);
+    double[] initial = new double[rf.domainDimension()];
+    for (int i = 0; i < initial.length; i += 2) {
+      initial[i] = -1.2;
+      initial[i + 1] = 1.0;
+    }
+
+    QNMinimizer qn = new QNMinimizer(15, true);
+    qn.shutUp();
+    double[] serial = qn.minimize(rf, 1e-10, initial.clone());
+
+    qn = new QNMinimizer(15, true);
+    qn.shutUp();
+    qn.setVectorOps(new ParallelVectorOps(4, 64));
+    double[] parallel = qn.minimize(rf, 1e-10, initial.clone());
+
+    qn = new QNMinimizer(15, true);
+    qn.shutUp();
+    qn.useFloatHistory(true);
+    double[] floats = qn.minimize(rf, 1e-10, initial.clone());
+
+    for (int i = 0; i < initial.length; i++) {
+      assertEquals(1.0, serial[i], 1e-6);
+      assertEquals(serial[i], parallel[i], 1e-6);
+      assertEquals(serial[i], floats[i], 1e-4);
+    }
+  }
+
+  public void testQNMinimizerResumesFromCheckpoint() throws IOException {
+    File checkpoint = File.createTempFile("MinimizerTest", ".qn");
+    try {
+      DiffFunction rf = new RosenbrockFunction();
+      QNMinimizer qn = new QNMinimizer();
+      qn.terminateOnMaxItr(20);
+      double[] uninterrupted = qn.minimize(rf, 1e-10, new double[] { 0.0, 0.0 });
+
+      // a run which dies after its checkpoint at iteration 10
+      qn = new QNMinimizer();
+      qn.terminateOnMaxItr(20);
+      qn.setCheckpoint(checkpoint.getPath(), 5);
+      qn.setIterationCallbackFunction(new CallbackFunction() {
+        @Override
+        public void callback(Object... args) {
+          if ((Integer) args[1] == 12) {
+            throw new IllegalStateException("interrupted");
+          }
+        }
+      });
+      try {
+        qn.minimize(rf, 1e-10, new double[] { 0.0, 0.0 });
+        fail("Expected the minimization to be interrupted");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+      assertTrue(checkpoint.exists());
+
+      qn = new QNMinimizer();
+      qn.terminateOnMaxItr(20);
+      qn.setCheckpoint(checkpoint.getPath(), 5);
+      double[] resumed = qn.minimize(rf, 1e-10, qn.resumeFromCheckpoint(checkpoint.getPath()));
+      assertTrue(Arrays.toString(uninterrupted) + " vs " + Arrays.toString(resumed), Arrays.equals(uninterrupted, resumed));
+      // a finished minimization leaves nothing to resume
+      assertFalse(checkpoint.exists());
+    } finally {
+      checkpoint.delete();
+    }
+  }
+
 }
\ No newline at end of file
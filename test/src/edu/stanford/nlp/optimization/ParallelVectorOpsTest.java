@@ -0,0 +1,43 @@
+package edu.stanford.nlp.optimization;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ParallelVectorOpsTest extends TestCase {
+
+  public void testSameAsSerial() {
+    VectorOps serial = SerialVectorOps.INSTANCE;
+    VectorOps parallel = new ParallelVectorOps(3, 100);
+    Random random = new Random(11);
+    for (int length : new int[] { 0, 1, 99, 100, 101, 1000, 12345 }) {
+      double[] a = new double[length];
+      double[] b = new double[length];
+      float[] f = new float[length];
+      for (int i = 0; i < length; i++) {
+        a[i] = random.nextGaussian();
+        b[i] = random.nextGaussian();
+        f[i] = (float) random.nextGaussian();
+      }
+      assertEquals(serial.innerProduct(a, b), parallel.innerProduct(a, b), 1e-9);
+      assertEquals(serial.innerProduct(f, b), parallel.innerProduct(f, b), 1e-9);
+      assertEquals(serial.norm(a), parallel.norm(a), 1e-9);
+      // the same on every call, however the chunks are scheduled
+      assertEquals(parallel.innerProduct(a, b), parallel.innerProduct(a, b));
+
+      double[] expected = new double[length];
+      double[] actual = new double[length];
+      serial.plusAndConstMult(a, b, 0.5, expected);
+      parallel.plusAndConstMult(a, b, 0.5, actual);
+      assertTrue(Arrays.equals(expected, actual));
+      serial.plusAndConstMult(expected, f, -2.0, expected);
+      parallel.plusAndConstMult(actual, f, -2.0, actual);
+      assertTrue(Arrays.equals(expected, actual));
+      serial.multiplyInPlace(expected, 3.0);
+      parallel.multiplyInPlace(actual, 3.0);
+      assertTrue(Arrays.equals(expected, actual));
+    }
+  }
+
+}
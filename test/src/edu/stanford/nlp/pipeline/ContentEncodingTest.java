@@ -0,0 +1,64 @@
+package edu.stanford.nlp.pipeline;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import edu.stanford.nlp.io.IOUtils;
+
+public class ContentEncodingTest extends TestCase {
+
+  public void testRoundTrip() throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 1000; ++i) {
+      text.append("The quick brown fox jumped over the lazy dog. ");
+    }
+    byte[] original = text.toString().getBytes(StandardCharsets.UTF_8);
+    for (ContentEncoding encoding : ContentEncoding.values()) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      try (OutputStream os = encoding.compress(compressed)) {
+        os.write(original);
+      }
+      if (encoding != ContentEncoding.IDENTITY) {
+        assertTrue(encoding + " did not compress", compressed.size() < original.length / 10);
+      }
+      try (InputStream is = encoding.decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+        assertEquals(text.toString(), IOUtils.slurpInputStream(is, "utf-8"));
+      }
+    }
+  }
+
+  public void testFromHeader() {
+    assertEquals(ContentEncoding.IDENTITY, ContentEncoding.fromHeader(null));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.fromHeader("gzip"));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.fromHeader(" X-GZIP "));
+    assertEquals(ContentEncoding.DEFLATE, ContentEncoding.fromHeader("deflate"));
+    try {
+      ContentEncoding.fromHeader("br");
+      fail("Expected an exception for an unknown coding");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testNegotiate() {
+    assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate(null));
+    assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("br"));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip, deflate"));
+    assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("deflate, gzip"));
+    assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.5, br, deflate"));
+    assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("gzip;q=0"));
+    assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("gzip;q=0.5, identity"));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip, identity;q=0"));
+    assertNull(ContentEncoding.negotiate("gzip;q=0, identity;q=0"));
+    assertNull(ContentEncoding.negotiate("br, *;q=0"));
+    assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("gzip", false));
+    assertNull(ContentEncoding.negotiate("gzip, identity;q=0", false));
+  }
+
+}
@@ -0,0 +1,161 @@
+package edu.stanford.nlp.pipeline;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import edu.stanford.nlp.io.RuntimeIOException;
+
+public class FileBatchProcessorTest extends TestCase {
+
+  private File dir;
+
+  @Override
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("FileBatchProcessorTest").toFile();
+  }
+
+  @Override
+  public void tearDown() {
+    deleteRecursively(dir);
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+
+  private static List<String> chunks(String text, int chunkSize) throws IOException {
+    FileBatchProcessor.TextChunker chunker = new FileBatchProcessor.TextChunker(new StringReader(text), chunkSize);
+    List<String> chunks = new ArrayList<>();
+    for (String chunk = chunker.next(); chunk != null; chunk = chunker.next()) {
+      assertTrue(chunk.length() <= chunkSize);
+      chunks.add(chunk);
+    }
+    assertEquals(text.replaceAll("\\s", ""), String.join("", chunks).replaceAll("\\s", ""));
+    return chunks;
+  }
+
+  public void testChunkAtParagraphs() throws IOException {
+    List<String> chunks = chunks("One two. Three four.\n\nFive six. Seven.\n  \nEight nine ten.", 30);
+    assertEquals(Arrays.asList("One two. Three four.\n\n", "Five six. Seven.\n  \n", "Eight nine ten."), chunks);
+  }
+
+  public void testChunkAtSentences() throws IOException {
+    List<String> chunks = chunks("Aa bb cc. Dd ee ff. Gg hh ii. Jj kk ll.", 20);
+    assertEquals("Aa bb cc. Dd ee ff. ", chunks.get(0));
+    assertEquals(2, chunks.size());
+    chunks = chunks("abcdefghijklmnopqrstuvwxyz", 10);
+    assertEquals(Arrays.asList("abcdefghij", "klmnopqrst", "uvwxyz"), chunks);
+  }
+
+  private int run(Properties props, List<File> files, BiConsumer<Annotation, Consumer<Annotation>> annotate) throws IOException {
+    AtomicInteger printed = new AtomicInteger();
+    BiConsumer<Annotation, OutputStream> print = (annotation, os) -> {
+      try {
+        os.write(annotation.toString().getBytes(StandardCharsets.UTF_8));
+        printed.incrementAndGet();
+      } catch (IOException e) {
+        throw new RuntimeIOException(e);
+      }
+    };
+    StanfordCoreNLP.processFiles(null, files, 3, props, annotate, print, StanfordCoreNLP.OutputFormat.TEXT, false);
+    return printed.get();
+  }
+
+  public void testChunksAndCheckpoint() throws IOException {
+    File in = new File(dir, "in");
+    File out = new File(dir, "out");
+    in.mkdirs();
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < 20; ++i) {
+      File file = new File(in, "doc" + i + ".txt");
+      Files.write(file.toPath(), ("Document " + i + ".").getBytes(StandardCharsets.UTF_8));
+      files.add(file);
+    }
+    File big = new File(in, "big.txt");
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10; ++i) {
+      text.append("Paragraph ").append(i).append(" is here.\n\n");
+    }
+    Files.write(big.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+    files.add(big);
+
+    Properties props = new Properties();
+    props.setProperty("outputDirectory", out.getPath());
+    props.setProperty("chunkSize", "50");
+    props.setProperty("batchBytes", "40");
+    props.setProperty("maxInFlightBytes", "100");
+    props.setProperty("checkpoint", new File(dir, "checkpoint").getPath());
+    props.setProperty("continueOnAnnotateError", "true");
+
+    // The first run fails on some documents
+    int printed = run(props, files, (annotation, callback) -> {
+      if (annotation.toString().contains("1")) {
+        throw new IllegalStateException("Failed on purpose");
+      }
+      callback.accept(annotation);
+    });
+    // (doc1 and doc10-19 fail, as does the first chunk of big.txt; the other 4 chunks succeed)
+    assertEquals(9 + 4, printed);
+    assertFalse(new File(out, "big.txt.chunk0.out").exists());
+    assertTrue(new File(out, "big.txt.chunk4.out").exists());
+    assertTrue(new File(out, "doc0.txt.out").exists());
+    assertFalse(new File(out, "doc1.txt.out").exists());
+    assertEquals("Document 0.", new String(Files.readAllBytes(new File(out, "doc0.txt.out").toPath()), StandardCharsets.UTF_8));
+
+    // The second run only does what failed
+    List<Annotation> rerun = Collections.synchronizedList(new ArrayList<>());
+    int printedAgain = run(props, files, (annotation, callback) -> {
+      rerun.add(annotation);
+      new Thread(() -> callback.accept(annotation)).start();
+    });
+    assertEquals(12, printedAgain);
+    assertEquals(12, rerun.size());
+    for (Annotation annotation : rerun) {
+      assertTrue(annotation.toString(), annotation.toString().contains("1"));
+    }
+    assertEquals(25, Objects.requireNonNull(out.listFiles()).length);
+  }
+
+  public void testChunkSizeInCharacters() throws IOException {
+    File in = new File(dir, "in");
+    File out = new File(dir, "out");
+    in.mkdirs();
+    // 30 characters, but 44 bytes in UTF-8
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 7; ++i) {
+      sb.append("\u00e9t\u00e9 ");
+    }
+    String text = sb.append("ok").toString();
+    File file = new File(in, "accents.txt");
+    Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    assertTrue(file.length() > 40);
+
+    Properties props = new Properties();
+    props.setProperty("outputDirectory", out.getPath());
+    props.setProperty("chunkSize", "40");
+    assertEquals(1, run(props, Collections.singletonList(file), (annotation, callback) -> callback.accept(annotation)));
+    assertEquals(text, new String(Files.readAllBytes(new File(out, "accents.txt.out").toPath()), StandardCharsets.UTF_8));
+
+    props.setProperty("chunkSize", "20");
+    deleteRecursively(out);
+    assertEquals(2, run(props, Collections.singletonList(file), (annotation, callback) -> callback.accept(annotation)));
+    assertTrue(new File(out, "accents.txt.chunk1.out").exists());
+  }
+
+}
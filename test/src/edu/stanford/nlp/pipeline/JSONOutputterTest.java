@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Properties;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * A test for {@link edu.stanford.nlp.pipeline.JSONOutputter}.
@@ -79,6 +80,20 @@ public class JSONOutputterTest extends TestCase {
         })));
   }
 
+  public void testEscapedJSON() {
+    String value = "a \"quoted\" \\ value\non\ttwo lines\u0001";
+    assertEquals(indent("{\n\t\"" + StringUtils.escapeJsonString("k\"ey") + "\": \"" + StringUtils.escapeJsonString(value) + "\"\n}"),
+        JSONOutputter.JSONWriter.objectToJSON((JSONOutputter.Writer writer) -> writer.set("k\"ey", value)));
+  }
+
+  public void testStreamJSON() {
+    assertEquals(indent("{\n\t\"foo\": [\n\t\t1.5,\n\t\t2\n\t],\n\t\"bar\": [\n\t]\n}"),
+        JSONOutputter.JSONWriter.objectToJSON((JSONOutputter.Writer writer) -> {
+          writer.set("foo", Stream.of(1.5, 2.0));
+          writer.set("bar", Stream.empty());
+        }));
+  }
+
   // -----
   // BEGIN TESTS FOR ANNOTATION WRITING
   // -----
@@ -0,0 +1,56 @@
+package edu.stanford.nlp.pipeline;
+
+import junit.framework.TestCase;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.stanford.nlp.util.LatencyHistogram;
+
+public class PipelineMetricsTest extends TestCase {
+
+  public void testPipelineRecords() {
+    Properties props = new Properties();
+    props.setProperty("annotators", "tokenize,ssplit");
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+    PipelineMetrics metrics = new PipelineMetrics("test");
+    pipeline.setMetrics(metrics);
+    pipeline.annotate(new Annotation("One sentence. And another one."));
+    pipeline.setMetrics(null);
+    pipeline.annotate(new Annotation("Not counted."));
+
+    assertEquals(1, metrics.documents());
+    LatencyHistogram tokenize = metrics.annotatorLatency("TokenizerAnnotator");
+    assertNotNull(tokenize);
+    assertEquals(1, tokenize.count());
+    String text = metrics.toPrometheus();
+    assertTrue(text, text.contains("# TYPE test_annotator_latency_seconds histogram\n"));
+    assertTrue(text, text.contains("test_annotator_latency_seconds_bucket{annotator=\"WordsToSentencesAnnotator\",le=\"+Inf\"} 1\n"));
+    assertTrue(text, text.contains("test_annotator_latency_seconds_count{annotator=\"TokenizerAnnotator\"} 1\n"));
+    assertTrue(text, text.contains("test_documents_total 1\n"));
+    assertTrue(text, text.contains("test_sentences_total 2\n"));
+    assertTrue(text, text.contains("test_tokens_total 7\n"));
+    if (PipelineMetrics.allocatedBytes() >= 0) {
+      assertTrue(text, text.contains("test_annotator_allocated_bytes_total{annotator=\"TokenizerAnnotator\"} "));
+    }
+  }
+
+  public void testRegistered() {
+    PipelineMetrics metrics = new PipelineMetrics("test");
+    AtomicLong requests = metrics.counter("requests_total", "Requests.");
+    requests.addAndGet(3);
+    metrics.gauge("queue_depth", "Queued.", () -> 1.5);
+    LatencyHistogram latency = metrics.histogram("latency_seconds", "Latency.");
+    latency.record(7);
+    latency.record(20000);
+    String text = metrics.toPrometheus();
+    assertTrue(text, text.contains("# HELP test_requests_total Requests.\n# TYPE test_requests_total counter\ntest_requests_total 3\n"));
+    assertTrue(text, text.contains("# TYPE test_queue_depth gauge\ntest_queue_depth 1.5\n"));
+    assertTrue(text, text.contains("test_latency_seconds_bucket{le=\"0.005\"} 0\n"));
+    assertTrue(text, text.contains("test_latency_seconds_bucket{le=\"0.01\"} 1\n"));
+    assertTrue(text, text.contains("test_latency_seconds_bucket{le=\"+Inf\"} 2\n"));
+    assertTrue(text, text.contains("test_latency_seconds_sum 20.007\n"));
+    assertTrue(text, text.contains("test_latency_seconds_count 2\n"));
+  }
+
+}
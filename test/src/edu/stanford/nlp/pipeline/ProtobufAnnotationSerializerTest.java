@@ -0,0 +1,201 @@
+package edu.stanford.nlp.pipeline;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.LazyCoreMap;
+import edu.stanford.nlp.util.Pair;
+
+public class ProtobufAnnotationSerializerTest extends TestCase {
+
+  private static Annotation annotate(String text) {
+    Properties props = new Properties();
+    props.setProperty("annotators", "tokenize,ssplit");
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+    Annotation ann = new Annotation(text);
+    ann.set(CoreAnnotations.DocIDAnnotation.class, "doc1");
+    pipeline.annotate(ann);
+    return ann;
+  }
+
+  private static final String TEXT = "Bill ate the blueberry muffins. They were stale!\n\nHe didn't mind.";
+
+  public void testWriteMatchesToProto() throws IOException {
+    ProtobufAnnotationSerializer serializer = new ProtobufAnnotationSerializer();
+    Annotation ann = annotate(TEXT);
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    serializer.toProto(ann).writeDelimitedTo(expected);
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    serializer.write(ann, actual);
+    assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+
+    expected = new ByteArrayOutputStream();
+    serializer.toProto(ann).writeTo(expected);
+    actual = new ByteArrayOutputStream();
+    serializer.writeUndelimited(ann, actual);
+    assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+
+    // a document without sentences
+    Annotation tokensOnly = new Annotation(ann);
+    tokensOnly.remove(CoreAnnotations.SentencesAnnotation.class);
+    expected = new ByteArrayOutputStream();
+    serializer.toProto(tokensOnly).writeDelimitedTo(expected);
+    actual = new ByteArrayOutputStream();
+    serializer.write(tokensOnly, actual);
+    assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+  }
+
+  public void testLossyDocumentKeys() throws IOException {
+    Annotation ann = annotate(TEXT);
+    ann.set(CoreAnnotations.CoarseTagAnnotation.class, "not serialized");
+    try {
+      new ProtobufAnnotationSerializer().write(ann, new ByteArrayOutputStream());
+      fail("Expected a lossy serialization exception");
+    } catch (ProtobufAnnotationSerializer.LossySerializationException e) {
+      // expected
+    }
+    new ProtobufAnnotationSerializer(false).write(ann, new ByteArrayOutputStream());
+  }
+
+  public void testReadLazily() throws IOException, ClassNotFoundException {
+    ProtobufAnnotationSerializer serializer = new ProtobufAnnotationSerializer();
+    Annotation first = annotate(TEXT);
+    Annotation second = annotate("A second document.");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    serializer.write(first, bytes);
+    serializer.write(second, bytes);
+
+    InputStream is = new ByteArrayInputStream(bytes.toByteArray());
+    Pair<ProtobufAnnotationSerializer.LazyDocument, InputStream> read = serializer.readLazily(is);
+    ProtobufAnnotationSerializer.LazyDocument doc = read.first;
+    assertEquals(TEXT, doc.header().getText());
+    assertEquals("doc1", doc.header().getDocID());
+    assertEquals(0, doc.header().getSentenceCount());
+    assertEquals(3, doc.numSentences());
+    assertEquals(serializer.toProto(first), doc.toProto());
+
+    List<CoreMap> sentences = serializer.sentences(doc);
+    assertEquals(3, sentences.size());
+    List<CoreLabel> tokens = sentences.get(2).get(CoreAnnotations.TokensAnnotation.class);
+    assertEquals("He", tokens.get(0).word());
+    assertEquals(5, tokens.size());  // He did n't mind .
+    assertSame(sentences.get(2), sentences.get(2));
+
+    Annotation full = serializer.fromProto(doc);
+    assertEquals(first.get(CoreAnnotations.TokensAnnotation.class).size(), full.get(CoreAnnotations.TokensAnnotation.class).size());
+
+    read = serializer.readLazily(read.second);
+    assertEquals("A second document.", read.first.header().getText());
+    assertEquals(1, read.first.numSentences());
+    read = serializer.readLazily(read.second);
+    assertNull(read.first);
+  }
+
+  public void testFromLazyDocumentLazily() throws IOException {
+    ProtobufAnnotationSerializer serializer = new ProtobufAnnotationSerializer();
+    Annotation ann = annotate(TEXT);
+    addParses(ann);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    serializer.writeUndelimited(ann, bytes);
+
+    ProtobufAnnotationSerializer.LazyDocument doc = ProtobufAnnotationSerializer.parseLazily(bytes.toByteArray());
+    CountingSerializer counting = new CountingSerializer();
+    Annotation lazy = counting.fromProtoLazily(doc);
+    List<CoreMap> sentences = lazy.get(CoreAnnotations.SentencesAnnotation.class);
+    assertEquals(3, sentences.size());
+    assertEquals("doc1", lazy.get(CoreAnnotations.DocIDAnnotation.class));
+    assertEquals(0, counting.sentencesRead);
+    CoreMap third = sentences.get(2);
+    assertEquals(1, counting.sentencesRead);
+    assertEquals("He didn't mind.", third.get(CoreAnnotations.TextAnnotation.class));
+    assertEquals(2, third.get(CoreAnnotations.TokensAnnotation.class).get(0).sentIndex());
+    assertSame(third, sentences.get(2));
+    assertEquals(1, counting.sentencesRead);
+
+    // the document's tokens are the sentences' tokens
+    List<CoreLabel> tokens = lazy.get(CoreAnnotations.TokensAnnotation.class);
+    assertEquals(ann.get(CoreAnnotations.TokensAnnotation.class).size(), tokens.size());
+    assertEquals(3, counting.sentencesRead);
+    assertSame(third.get(CoreAnnotations.TokensAnnotation.class).get(0), tokens.get(third.get(CoreAnnotations.TokenBeginAnnotation.class)));
+    assertEquals(serializer.toProto(serializer.fromProtoLazily(serializer.toProto(ann))), serializer.toProto(lazy));
+  }
+
+  /** Counts the sentences it reads */
+  private static class CountingSerializer extends ProtobufAnnotationSerializer {
+    private int sentencesRead; // = 0
+
+    @Override
+    protected CoreMap fromProtoNoTokens(CoreNLPProtos.Sentence proto) {
+      sentencesRead++;
+      return super.fromProtoNoTokens(proto);
+    }
+  }
+
+  /** Adds a flat parse tree and dependency graph to each sentence, headed by its first token */
+  private static void addParses(Annotation ann) {
+    for (CoreMap sentence : ann.get(CoreAnnotations.SentencesAnnotation.class)) {
+      List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+      StringBuilder tree = new StringBuilder("(ROOT (S");
+      SemanticGraph graph = new SemanticGraph();
+      IndexedWord root = new IndexedWord(tokens.get(0));
+      graph.addRoot(root);
+      for (CoreLabel token : tokens) {
+        tree.append(" (X ").append(token.word()).append(')');
+        if (token != tokens.get(0)) {
+          IndexedWord word = new IndexedWord(token);
+          graph.addVertex(word);
+          graph.addEdge(root, word, GrammaticalRelation.valueOf("dep"), 1.0, false);
+        }
+      }
+      sentence.set(TreeCoreAnnotations.TreeAnnotation.class, Tree.valueOf(tree.append("))").toString()));
+      sentence.set(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class, graph);
+    }
+  }
+
+  public void testFromProtoLazily() {
+    ProtobufAnnotationSerializer serializer = new ProtobufAnnotationSerializer();
+    Annotation ann = annotate(TEXT);
+    addParses(ann);
+    CoreNLPProtos.Document proto = serializer.toProto(ann);
+
+    Annotation eager = serializer.fromProto(proto);
+    Annotation lazy = serializer.fromProtoLazily(proto);
+    List<CoreMap> eagerSentences = eager.get(CoreAnnotations.SentencesAnnotation.class);
+    List<CoreMap> lazySentences = lazy.get(CoreAnnotations.SentencesAnnotation.class);
+    assertEquals(eagerSentences.size(), lazySentences.size());
+    for (int i = 0; i < eagerSentences.size(); ++i) {
+      LazyCoreMap sentence = (LazyCoreMap) lazySentences.get(i);
+      assertTrue(sentence.isDeferred(TreeCoreAnnotations.TreeAnnotation.class));
+      assertTrue(sentence.isDeferred(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class));
+      assertEquals(eagerSentences.get(i).size(), sentence.size());
+      assertEquals(eagerSentences.get(i).get(CoreAnnotations.TokensAnnotation.class), sentence.get(CoreAnnotations.TokensAnnotation.class));
+      assertEquals(eagerSentences.get(i).get(TreeCoreAnnotations.TreeAnnotation.class),
+                   sentence.get(TreeCoreAnnotations.TreeAnnotation.class));
+      assertFalse(sentence.isDeferred(TreeCoreAnnotations.TreeAnnotation.class));
+      assertTrue(sentence.isDeferred(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class));
+    }
+
+    // whole-document operations see every annotation
+    assertEquals(serializer.toProto(eager), serializer.toProto(lazy));
+    assertEquals(eager.get(CoreAnnotations.SentencesAnnotation.class).get(0).get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class).toString(),
+                 lazy.get(CoreAnnotations.SentencesAnnotation.class).get(0).get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class).toString());
+  }
+
+}
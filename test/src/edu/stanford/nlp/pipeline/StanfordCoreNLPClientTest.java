@@ -0,0 +1,188 @@
+package edu.stanford.nlp.pipeline;
+
+import junit.framework.TestCase;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.LatencyHistogram;
+
+public class StanfordCoreNLPClientTest extends TestCase {
+
+  /** Starts a server which sends back the serialized annotation it was sent, after the given delay */
+  private static HttpServer echoServer(AtomicLong delayMillis, AtomicInteger requests) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", exchange -> {
+      requests.incrementAndGet();
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      try (InputStream is = exchange.getRequestBody()) {
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = is.read(buffer)) >= 0) {
+          body.write(buffer, 0, read);
+        }
+      }
+      try {
+        Thread.sleep(delayMillis.get());
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      exchange.sendResponseHeaders(200, body.size());
+      try (OutputStream os = exchange.getResponseBody()) {
+        body.writeTo(os);
+      }
+    });
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+    return server;
+  }
+
+  private static Properties props(int maxInFlight, boolean hedge) {
+    Properties props = new Properties();
+    props.setProperty("annotators", "tokenize");
+    props.setProperty("client.maxInFlight", Integer.toString(maxInFlight));
+    props.setProperty("client.hedge", Boolean.toString(hedge));
+    return props;
+  }
+
+  private static String url(HttpServer server) {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  /** Annotates the given number of documents at once, and waits for all of them to come back */
+  private static void annotate(StanfordCoreNLPClient client, int n, long timeoutMillis) throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(n);
+    for (int i = 0; i < n; ++i) {
+      client.annotate(new Annotation("Document " + i + '.'), annotation -> latch.countDown());
+    }
+    assertTrue("Timed out waiting for annotations", latch.await(timeoutMillis, TimeUnit.MILLISECONDS));
+  }
+
+  public void testSingleBackend() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    HttpServer server = echoServer(new AtomicLong(0), requests);
+    try {
+      StanfordCoreNLPClient client = new StanfordCoreNLPClient(props(2, true), url(server));
+      Annotation ann = new Annotation("Some text.");
+      client.annotate(ann);
+      assertEquals("Some text.", ann.get(CoreAnnotations.TextAnnotation.class));
+      annotate(client, 20, 30000);
+      client.shutdown();
+      assertEquals(21, requests.get());
+      Map<String, LatencyHistogram> latencies = client.backendLatencies();
+      assertEquals(1, latencies.size());
+      assertEquals(21, latencies.get(url(server)).count());
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  public void testPreferFastBackend() throws Exception {
+    AtomicInteger fastRequests = new AtomicInteger();
+    AtomicInteger slowRequests = new AtomicInteger();
+    HttpServer fast = echoServer(new AtomicLong(0), fastRequests);
+    HttpServer slow = echoServer(new AtomicLong(300), slowRequests);
+    try {
+      StanfordCoreNLPClient client = new StanfordCoreNLPClient(props(4, false), url(fast) + ',' + url(slow));
+      annotate(client, 40, 30000);
+      client.shutdown();
+      assertEquals(40, fastRequests.get() + slowRequests.get());
+      assertTrue("Slow backend got " + slowRequests.get() + " requests", fastRequests.get() > 3 * slowRequests.get());
+    } finally {
+      fast.stop(0);
+      slow.stop(0);
+    }
+  }
+
+  public void testHedgeSlowRequest() throws Exception {
+    AtomicLong firstDelay = new AtomicLong(0);
+    AtomicInteger firstRequests = new AtomicInteger();
+    AtomicInteger secondRequests = new AtomicInteger();
+    HttpServer first = echoServer(firstDelay, firstRequests);
+    HttpServer second = echoServer(new AtomicLong(0), secondRequests);
+    try {
+      StanfordCoreNLPClient client = new StanfordCoreNLPClient(props(1, true), url(first) + ',' + url(second));
+      // Warm up: with one request at a time per backend, each pair goes to both backends
+      for (int i = 0; i < 25; ++i) {
+        annotate(client, 2, 30000);
+      }
+      assertEquals(50, firstRequests.get() + secondRequests.get());
+      int firstBefore = firstRequests.get();
+      int secondBefore = secondRequests.get();
+
+      // One of these goes to the first backend, which now stalls; it should be answered by the second
+      firstDelay.set(5000);
+      long start = System.currentTimeMillis();
+      annotate(client, 2, 4000);
+      assertTrue(System.currentTimeMillis() - start < 4000);
+      assertEquals(firstBefore + 1, firstRequests.get());
+      assertEquals(secondBefore + 2, secondRequests.get());
+      client.shutdown();
+    } finally {
+      first.stop(0);
+      second.stop(0);
+    }
+  }
+
+  public void testCompressedTransport() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    StanfordCoreNLPServer server = new StanfordCoreNLPServer(port, 15000, false);
+    server.quiet = true;
+    AtomicInteger served = new AtomicInteger();
+    server.run(Optional.empty(), req -> true, obj -> served.incrementAndGet(), null, false, new AtomicBoolean(true));
+    try {
+      for (String encoding : new String[]{ "identity", "gzip", "deflate" }) {
+        Properties props = props(1, false);
+        props.setProperty("annotators", "tokenize,ssplit");
+        props.setProperty("client.requestEncoding", encoding);
+        props.setProperty("client.responseEncoding", encoding);
+        StanfordCoreNLPClient client = new StanfordCoreNLPClient(props, "http://localhost:" + port);
+        Annotation ann = new Annotation("Compressed text. Two sentences.");
+        client.annotate(ann);
+        client.shutdown();
+        assertEquals(2, ann.get(CoreAnnotations.SentencesAnnotation.class).size());
+        assertEquals(6, ann.get(CoreAnnotations.TokensAnnotation.class).size());
+      }
+      assertEquals("Some annotations were not done by the server", 3, served.get());
+
+      // A plain client asking for gzip gets gzip
+      URL url = new URL("http://localhost:" + port + "/?properties=" + URLEncoder.encode("{\"annotators\": \"tokenize\", \"outputFormat\": \"json\"}", "utf-8"));
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Accept-Encoding", "gzip");
+      try (OutputStream os = connection.getOutputStream()) {
+        os.write("Hello world.".getBytes("utf-8"));
+      }
+      assertEquals("gzip", connection.getContentEncoding());
+      try (InputStream is = ContentEncoding.GZIP.decompress(connection.getInputStream())) {
+        assertTrue(IOUtils.slurpInputStream(is, "utf-8").contains("\"Hello\""));
+      }
+    } finally {
+      server.server.stop(0);
+    }
+  }
+
+}
@@ -4,6 +4,7 @@ import java.util.*;
 
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.TokenTable;
 import junit.framework.TestCase;
 
 
@@ -43,6 +44,30 @@ public class TokenizerAnnotatorTest extends TestCase {
     assertFalse("Too few tokens in new CoreLabel usage", it2.hasNext());
   }
 
+  public void testColumnar() {
+    Annotation plain = new Annotation(text);
+    new TokenizerAnnotator(false, "en").annotate(plain);
+    Properties props = new Properties();
+    props.setProperty("tokenize.language", "en");
+    props.setProperty("tokenize.columnar", "true");
+    TokenizerAnnotator annotator = new TokenizerAnnotator(false, props);
+    Annotation columnar = new Annotation(text);
+    annotator.annotate(columnar);
+    List<CoreLabel> plainTokens = plain.get(CoreAnnotations.TokensAnnotation.class);
+    List<CoreLabel> columnarTokens = columnar.get(CoreAnnotations.TokensAnnotation.class);
+    assertEquals(plainTokens, columnarTokens);
+    for (CoreLabel token : columnarTokens) {
+      assertTrue(token instanceof TokenTable.Row);
+    }
+
+    // each document gets a table of its own
+    Annotation again = new Annotation(text);
+    annotator.annotate(again);
+    List<CoreLabel> againTokens = again.get(CoreAnnotations.TokensAnnotation.class);
+    assertEquals(plainTokens, againTokens);
+    assertNotSame(((TokenTable.Row) columnarTokens.get(0)).table(), ((TokenTable.Row) againTokens.get(0)).table());
+  }
+
   public void testBadLanguage() {
     Properties props = new Properties();
     props.setProperty("annotators", "tokenize");
@@ -0,0 +1,53 @@
+package edu.stanford.nlp.pipeline;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Properties;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import nu.xom.Serializer;
+
+public class XMLOutputterTest extends TestCase {
+
+  private static String expected(Annotation ann, AnnotationOutputter.Options options) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    Serializer ser = new Serializer(os, options.encoding);
+    ser.setIndent(options.pretty ? 2 : 0);
+    ser.setMaxLength(0);
+    ser.write(XMLOutputter.annotationToDoc(ann, options));
+    ser.flush();
+    return os.toString(options.encoding);
+  }
+
+  private static String printed(Annotation ann, AnnotationOutputter.Options options) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new XMLOutputter().print(ann, os, options);
+    return os.toString(options.encoding);
+  }
+
+  public void testPrintMatchesDocument() throws IOException {
+    Properties props = new Properties();
+    props.setProperty("annotators", "tokenize,ssplit");
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+    Annotation ann = new Annotation("Bill ate the \"blueberry\" muffins. They were stale & dry!\n\nHe didn't <mind>.");
+    ann.set(CoreAnnotations.DocIDAnnotation.class, "doc1");
+    pipeline.annotate(ann);
+
+    for (boolean pretty : new boolean[]{ true, false }) {
+      AnnotationOutputter.Options options = new AnnotationOutputter.Options();
+      options.pretty = pretty;
+      options.includeText = true;
+      String printed = printed(ann, options);
+      assertTrue(printed.contains("<sentence id=\"3\">"));
+      assertEquals(expected(ann, options), printed);
+    }
+
+    ann.set(CoreAnnotations.SentencesAnnotation.class, new ArrayList<>());
+    AnnotationOutputter.Options options = new AnnotationOutputter.Options();
+    assertEquals(expected(ann, options), printed(ann, options));
+  }
+
+}
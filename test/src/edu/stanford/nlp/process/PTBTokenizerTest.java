@@ -1,6 +1,16 @@
 package edu.stanford.nlp.process;
 
+import java.io.IOException;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 
@@ -8,6 +18,7 @@ import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import edu.stanford.nlp.io.MappedFileReader;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.Label;
@@ -787,4 +798,129 @@ public class PTBTokenizerTest {
     runAgainstOrig(tokFactory, hyphenInputs);
   }
 
+  /** Reusable tokens read from a mapped file must be the same as CoreLabels read from a String */
+  private static void runReusableAgainstCoreLabels(String[] inputs, String options) throws IOException {
+    Path file = Files.createTempFile("PTBTokenizerTest", ".txt");
+    try {
+      for (String input : inputs) {
+        Files.write(file, input.getBytes(StandardCharsets.UTF_8));
+        List<CoreLabel> expected = PTBTokenizer.coreLabelFactory(options).getTokenizer(new StringReader(input)).tokenize();
+        // (a tiny chunk size, so that the lexer is fed across many chunk boundaries)
+        PTBTokenizer<ReusableToken> tokenizer = new PTBTokenizer<>(new MappedFileReader(file, StandardCharsets.UTF_8, 7),
+            new ReusableTokenFactory(), options);
+        int i = 0;
+        while (tokenizer.hasNext()) {
+          ReusableToken token = tokenizer.next();
+          assertTrue("Too many tokens for " + input, i < expected.size());
+          CoreLabel gold = expected.get(i);
+          assertEquals(gold.word(), token.word());
+          assertEquals(gold.beginPosition(), token.beginPosition());
+          assertEquals(gold.endPosition(), token.endPosition());
+          assertEquals(gold.toShorterString(), token.toCoreLabel().toShorterString());
+          i += 1;
+        }
+        assertEquals("Wrong number of tokens for " + input, expected.size(), i);
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testReusableTokens() throws IOException {
+    runReusableAgainstCoreLabels(ptbInputs, "");
+    runReusableAgainstCoreLabels(ptbInputs, "splitHyphenated=true");
+    runReusableAgainstCoreLabels(hyphenInputs, "normalizeCurrency=false");
+    runReusableAgainstCoreLabels(corpInputs, "strictTreebank3=true");
+  }
+
+  @Test
+  public void testReusableTokensNotInvertible() throws IOException {
+    Path file = Files.createTempFile("PTBTokenizerTest", ".txt");
+    try {
+      PTBTokenizer.newReusableTokenTokenizer(file, StandardCharsets.UTF_8, "invertible");
+      fail("Expected an IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    } finally {
+      Files.delete(file);
+    }
+    try {
+      PTBTokenizer.newReusableTokenTokenizer(file, StandardCharsets.UTF_8, "normalizeCurrency=false,invertible=true");
+      fail("Expected an IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected: the options are checked before the file is opened
+    }
+  }
+
+  /** A Latin-1 charset whose decoder writes "<end>" when flushed, and mustn't decode after a flush has begun */
+  private static class FlushingCharset extends Charset {
+
+    FlushingCharset() {
+      super("x-flushing-test", null);
+    }
+
+    @Override
+    public boolean contains(Charset cs) {
+      return false;
+    }
+
+    @Override
+    public CharsetDecoder newDecoder() {
+      return new CharsetDecoder(this, 1.0f, 5.0f) {
+        private int flushed = -1;
+
+        @Override
+        protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+          assertTrue("Decoded after the flush began", flushed < 0);
+          while (in.hasRemaining()) {
+            if ( ! out.hasRemaining()) {
+              return CoderResult.OVERFLOW;
+            }
+            out.put((char) (in.get() & 0xff));
+          }
+          return CoderResult.UNDERFLOW;
+        }
+
+        @Override
+        protected CoderResult implFlush(CharBuffer out) {
+          String end = "<end>";
+          for (flushed = Math.max(flushed, 0); flushed < end.length(); flushed++) {
+            if ( ! out.hasRemaining()) {
+              return CoderResult.OVERFLOW;
+            }
+            out.put(end.charAt(flushed));
+          }
+          return CoderResult.UNDERFLOW;
+        }
+      };
+    }
+
+    @Override
+    public CharsetEncoder newEncoder() {
+      throw new UnsupportedOperationException();
+    }
+
+  } // end static class FlushingCharset
+
+  @Test
+  public void testMappedFileReaderFlush() throws IOException {
+    Path file = Files.createTempFile("PTBTokenizerTest", ".txt");
+    try {
+      Files.write(file, "abc".getBytes(StandardCharsets.ISO_8859_1));
+      // (a chunk size smaller than the flushed characters, so that they take more than one chunk)
+      try (MappedFileReader reader = new MappedFileReader(file, new FlushingCharset(), 2)) {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[3];
+        for (int n; (n = reader.read(buffer, 0, buffer.length)) >= 0; ) {
+          sb.append(buffer, 0, n);
+        }
+        assertEquals("abc<end>", sb.toString());
+        assertEquals(-1, reader.read(buffer, 0, buffer.length));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
 }
@@ -0,0 +1,97 @@
+package edu.stanford.nlp.semgraph.semgrex;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.stanford.nlp.semgraph.SemanticGraph;
+
+public class SemgrexPatternSetTest extends TestCase {
+
+  private static final String[] PATTERNS = {
+    "{}",
+    "{word:ate}",
+    "{word:ate} >subj {}=subj",
+    "{word:/ate/} >dobj ({}=obj >compound {})",
+    "{word:ate} >/.*obj/=reln {}=obj",
+    "{word:/mu.*/}",
+    "!{word:ate} >compound {}",
+    "{word:Bill} <subj {word:ate}",
+    "{word:blueberry}",
+    "{}=a >> {}=b",
+    "{} ?>subj {}=s",
+    "{$}",
+    "{word:nothing}",
+  };
+
+  private static final String[] GRAPHS = {
+    "[ate subj>Bill dobj>[muffins compound>blueberry]]",
+    "[ate subj>Bill dobj>[muffins compound>blueberry] obj>[cake compound>Bill]]",
+    "[saw subj>Bill dobj>[Bill compound>muffins]]",
+  };
+
+  private static List<String> describe(SemgrexMatcher matcher) {
+    List<String> matches = new ArrayList<>();
+    while (matcher.find()) {
+      StringBuilder sb = new StringBuilder(matcher.getMatch().toString());
+      for (String name : new java.util.TreeSet<>(matcher.getNodeNames())) {
+        sb.append(' ').append(name).append('=').append(matcher.getNode(name));
+      }
+      for (String name : new java.util.TreeSet<>(matcher.getRelationNames())) {
+        sb.append(' ').append(name).append('=').append(matcher.getRelnString(name));
+      }
+      matches.add(sb.toString());
+    }
+    return matches;
+  }
+
+  public void testSharedRootPredicates() {
+    List<SemgrexPattern> patterns = new ArrayList<>();
+    for (String p : PATTERNS) {
+      patterns.add(SemgrexPattern.compile(p));
+    }
+    SemgrexPatternSet set = new SemgrexPatternSet(patterns);
+    assertEquals(PATTERNS.length, set.size());
+    // {word:ate} and {word:/ate/} share a predicate, and the negated,
+    // optional and named roots are counted separately
+    assertTrue(set.numRootPredicates() < PATTERNS.length);
+  }
+
+  public void testSameMatchesAsIndividualPatterns() {
+    List<SemgrexPattern> patterns = new ArrayList<>();
+    for (String p : PATTERNS) {
+      patterns.add(SemgrexPattern.compile(p));
+    }
+    SemgrexPatternSet set = new SemgrexPatternSet(patterns);
+    for (String g : GRAPHS) {
+      SemanticGraph graph = SemanticGraph.valueOf(g);
+      List<SemgrexMatcher> matchers = set.matchers(graph);
+      assertEquals(patterns.size(), matchers.size());
+      for (int i = 0; i < patterns.size(); ++i) {
+        assertEquals(PATTERNS[i] + " on " + g, describe(patterns.get(i).matcher(graph)), describe(matchers.get(i)));
+      }
+    }
+  }
+
+  public void testProcessInParallel() {
+    SemgrexPatternSet set = new SemgrexPatternSet(Arrays.asList(SemgrexPattern.compile("{word:Bill}"),
+                                                                SemgrexPattern.compile("{word:muffins} >compound {}")));
+    List<SemanticGraph> graphs = new ArrayList<>();
+    for (String g : GRAPHS) {
+      graphs.add(SemanticGraph.valueOf(g));
+    }
+    List<Integer> counts = set.process(graphs, matchers -> {
+      int count = 0;
+      for (SemgrexMatcher matcher : matchers) {
+        while (matcher.find()) {
+          count++;
+        }
+      }
+      return count;
+    }, 2);
+    assertEquals(Arrays.asList(2, 3, 2), counts);
+  }
+
+}
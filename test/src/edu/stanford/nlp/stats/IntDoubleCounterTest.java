@@ -0,0 +1,86 @@
+package edu.stanford.nlp.stats;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the IntDoubleCounter, and the Counters methods which read its arrays.
+ */
+public class IntDoubleCounterTest extends TestCase {
+
+  public void testSameAsClassicCounter() {
+    Random random = new Random(3);
+    IntDoubleCounter counter = new IntDoubleCounter();
+    ClassicCounter<Integer> expected = new ClassicCounter<>();
+    for (int i = 0; i < 20000; i++) {
+      // negative keys, and Integer.MIN_VALUE, are keys like any other
+      int key = (random.nextInt(10) == 0) ? Integer.MIN_VALUE : random.nextInt(4000) - 1000;
+      switch (random.nextInt(4)) {
+        case 0:
+          counter.setCount(key, i);
+          expected.setCount(key, i);
+          break;
+        case 1:
+          assertEquals(expected.remove(key), counter.remove(key));
+          break;
+        default:
+          assertEquals(expected.incrementCount(key), counter.incrementCount(key));
+      }
+    }
+    assertEquals(expected.size(), counter.size());
+    assertEquals(expected.totalCount(), counter.totalCount(), 1e-6);
+    for (int key : expected.keySet()) {
+      assertEquals(expected.getCount(key), counter.getCount(key));
+      assertTrue(counter.containsKey(key));
+    }
+    assertEquals(expected.keySet(), counter.keySet());
+    assertEquals(expected, counter);
+    assertEquals(expected.hashCode(), counter.hashCode());
+  }
+
+  public void testBoxedKeys() {
+    Counter<Integer> counter = new IntDoubleCounter();
+    counter.incrementCount(Integer.valueOf(3), 2.0);
+    counter.setCount(Integer.valueOf(7), 1.0);
+    assertEquals(2.0, counter.getCount(3));
+    assertEquals(0.0, counter.getCount("3"));
+    assertEquals(3.0, counter.totalCount());
+    assertTrue(counter.containsKey(7));
+    assertEquals(Integer.valueOf(3), Counters.argmax(counter));
+    counter.setDefaultReturnValue(-1.0);
+    assertEquals(-1.0, counter.getCount(5));
+    assertEquals(-1.0, counter.remove(5));
+  }
+
+  public void testCountersFastPaths() {
+    IntDoubleCounter a = new IntDoubleCounter();
+    IntDoubleCounter b = new IntDoubleCounter(1000);
+    ClassicCounter<Integer> classicA = new ClassicCounter<>();
+    ClassicCounter<Integer> classicB = new ClassicCounter<>();
+    Random random = new Random(9);
+    for (int i = 0; i < 500; i++) {
+      int key = random.nextInt(300);
+      double value = random.nextGaussian();
+      a.incrementCount(key, value);
+      classicA.incrementCount(key, value);
+      key = random.nextInt(300);
+      b.incrementCount(key, value);
+      classicB.incrementCount(key, value);
+    }
+    assertEquals(Counters.dotProduct(classicA, classicB), Counters.dotProduct(a, b), 1e-9);
+    assertEquals(Counters.dotProduct(classicA, classicB), Counters.dotProduct(a, classicB), 1e-9);
+    Counters.addInPlace(a, b, -1.5);
+    Counters.addInPlace(classicA, classicB, -1.5);
+    assertTrue(Counters.equals(classicA, a, 1e-9));
+    Counters.multiplyInPlace(a, 3.0);
+    Counters.multiplyInPlace(classicA, 3.0);
+    assertTrue(Counters.equals(classicA, a, 1e-9));
+    assertEquals(Counters.argmax(classicA), Counters.argmax(a));
+
+    final double[] sum = { 0.0 };
+    a.forEachEntry((key, value) -> sum[0] += value);
+    assertEquals(a.totalCount(), sum[0], 1e-9);
+  }
+
+}
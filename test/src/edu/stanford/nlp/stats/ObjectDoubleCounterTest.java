@@ -0,0 +1,139 @@
+package edu.stanford.nlp.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for the ObjectDoubleCounter, and the Counters methods which read its arrays.
+ */
+public class ObjectDoubleCounterTest extends CounterTestBase {
+
+  public ObjectDoubleCounterTest() {
+    super(new ObjectDoubleCounter<String>());
+  }
+
+  /** Random sets, increments and removes give the same counts as a ClassicCounter, as the table grows. */
+  public void testSameAsClassicCounter() {
+    Random random = new Random(11);
+    ObjectDoubleCounter<String> counter = new ObjectDoubleCounter<>();
+    ClassicCounter<String> expected = new ClassicCounter<>();
+    for (int i = 0; i < 20000; i++) {
+      String key = "k" + random.nextInt(3000);
+      switch (random.nextInt(4)) {
+        case 0:
+          counter.setCount(key, i);
+          expected.setCount(key, i);
+          break;
+        case 1:
+          assertEquals(expected.remove(key), counter.remove(key));
+          break;
+        default:
+          assertEquals(expected.incrementCount(key, 0.5), counter.incrementCount(key, 0.5));
+      }
+    }
+    assertEquals(expected.size(), counter.size());
+    assertEquals(expected.totalCount(), counter.totalCount(), 1e-6);
+    for (String key : expected.keySet()) {
+      assertEquals(expected.getCount(key), counter.getCount(key));
+    }
+    assertEquals(expected.keySet(), counter.keySet());
+    assertTrue(Counters.equals(expected, counter, 1e-6));
+  }
+
+  public void testNullKey() {
+    ObjectDoubleCounter<String> counter = new ObjectDoubleCounter<>();
+    counter.incrementCount(null, 2.0);
+    counter.incrementCount("a");
+    assertEquals(2.0, counter.getCount(null));
+    assertTrue(counter.keySet().contains(null));
+    assertEquals(2.0, counter.remove(null));
+    assertFalse(counter.containsKey(null));
+    assertEquals(1, counter.size());
+  }
+
+  public void testCountersFastPaths() {
+    ObjectDoubleCounter<String> a = new ObjectDoubleCounter<>();
+    ClassicCounter<String> classicA = new ClassicCounter<>();
+    ObjectDoubleCounter<String> b = new ObjectDoubleCounter<>();
+    ClassicCounter<String> classicB = new ClassicCounter<>();
+    Random random = new Random(5);
+    for (int i = 0; i < 500; i++) {
+      String key = "k" + random.nextInt(300);
+      double value = random.nextGaussian();
+      a.incrementCount(key, value);
+      classicA.incrementCount(key, value);
+      key = "k" + random.nextInt(300);
+      b.incrementCount(key, value);
+      classicB.incrementCount(key, value);
+    }
+    assertEquals(Counters.dotProduct(classicA, classicB), Counters.dotProduct(a, b), 1e-9);
+    assertEquals(Counters.dotProduct(classicA, classicB), Counters.dotProduct(classicA, b), 1e-9);
+    assertEquals(Counters.max(classicA), Counters.max(a));
+    assertEquals(Counters.argmax(classicA), Counters.argmax(a));
+
+    Counters.addInPlace(a, b, 2.0);
+    Counters.addInPlace(classicA, classicB, 2.0);
+    assertTrue(Counters.equals(classicA, a, 1e-9));
+    Counters.addInPlace(classicB, a);
+    Counters.addInPlace(b, a);
+    assertTrue(Counters.equals(classicB, b, 1e-9));
+
+    Counters.normalize(a);
+    Counters.normalize(classicA);
+    assertTrue(Counters.equals(classicA, a, 1e-9));
+    assertEquals(1.0, a.totalCount(), 1e-9);
+  }
+
+  /** Keys whose hash codes change between JVMs (here, an identity hash code) are rehashed when read back. */
+  public void testSerialization() throws IOException, ClassNotFoundException {
+    ObjectDoubleCounter<Object> counter = new ObjectDoubleCounter<>();
+    Map<String, Double> expected = new HashMap<>();
+    for (int i = 0; i < 100; i++) {
+      counter.setCount(new IdentityKey("k" + i), i);
+      expected.put("k" + i, (double) i);
+    }
+    counter.setCount(null, -1.0);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(counter);
+    }
+    ObjectDoubleCounter<Object> read;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      @SuppressWarnings("unchecked")
+      ObjectDoubleCounter<Object> r = (ObjectDoubleCounter<Object>) in.readObject();
+      read = r;
+    }
+    assertEquals(counter.size(), read.size());
+    assertEquals(counter.totalCount(), read.totalCount());
+    assertEquals(-1.0, read.getCount(null));
+    for (Object key : read.keySet()) {
+      if (key != null) {
+        assertEquals(expected.get(key.toString()), read.getCount(key));
+      }
+    }
+  }
+
+  private static class IdentityKey implements java.io.Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+
+    IdentityKey(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+
+  }
+
+}
@@ -0,0 +1,72 @@
+package edu.stanford.nlp.time;
+
+import edu.stanford.nlp.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests that compiled SUTime rules are shared between extractors, and recompiled when the rules change.
+ */
+public class TimeExpressionExtractorImplTest {
+
+  private File rules;
+
+  @Before
+  public void setUp() throws IOException {
+    rules = File.createTempFile("test", ".sutime.txt");
+    rules.deleteOnExit();
+    IOUtils.writeStringToFile("ENV.defaults[\"stage\"] = 1\n", rules.getPath(), "utf-8");
+    TimeExpressionExtractorImpl.clearCompiledRulesCache();
+  }
+
+  @After
+  public void tearDown() {
+    rules.delete();
+    TimeExpressionExtractorImpl.clearCompiledRulesCache();
+  }
+
+  private Properties props() {
+    Properties props = new Properties();
+    props.setProperty("sutime.rules", rules.getPath());
+    props.setProperty("sutime.binders", "0");
+    return props;
+  }
+
+  @Test
+  public void testSharedAcrossInstances() {
+    TimeExpressionExtractorImpl first = new TimeExpressionExtractorImpl("sutime", props());
+    TimeExpressionExtractorImpl second = new TimeExpressionExtractorImpl("sutime", props());
+    assertSame(first.getExpressionExtractor(), second.getExpressionExtractor());
+  }
+
+  @Test
+  public void testDifferentOptionsNotShared() {
+    TimeExpressionExtractorImpl first = new TimeExpressionExtractorImpl("sutime", props());
+    Properties props = props();
+    props.setProperty("sutime.markTimeRanges", "true");
+    TimeExpressionExtractorImpl second = new TimeExpressionExtractorImpl("sutime", props);
+    assertNotSame(first.getExpressionExtractor(), second.getExpressionExtractor());
+
+    props = props();
+    props.setProperty("sutime.cacheRules", "false");
+    TimeExpressionExtractorImpl third = new TimeExpressionExtractorImpl("sutime", props);
+    assertNotSame(first.getExpressionExtractor(), third.getExpressionExtractor());
+  }
+
+  @Test
+  public void testRecompiledWhenRulesChange() throws IOException {
+    TimeExpressionExtractorImpl first = new TimeExpressionExtractorImpl("sutime", props());
+    IOUtils.writeStringToFile("ENV.defaults[\"stage\"] = 2\n", rules.getPath(), "utf-8");
+    TimeExpressionExtractorImpl second = new TimeExpressionExtractorImpl("sutime", props());
+    assertNotSame(first.getExpressionExtractor(), second.getExpressionExtractor());
+  }
+
+}
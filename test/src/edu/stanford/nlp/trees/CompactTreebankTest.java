@@ -0,0 +1,149 @@
+package edu.stanford.nlp.trees;
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.PrintWriter;
+import java.util.List;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.trees.tregex.TregexMatcher;
+import edu.stanford.nlp.trees.tregex.TregexPattern;
+
+/**
+ * Checks that trees read into a CompactTreebank are the same as the
+ * trees a PennTreeReader makes, and that the usual tools work on them.
+ */
+public class CompactTreebankTest extends TestCase {
+
+  private static final String TREES =
+      "( (S (NP (DT The) (NN cat)) (VP (VBD sat) (PP (IN on) (NP (DT the) (NN mat)))) (. .)))\n" +
+      "(ROOT (S (NP (PRP It)) (VP (VBD was) (ADJP (JJ \\*happy\\*))) (. !)))\n" +
+      "(X (Y a) (Z b)) (W c)";
+
+  private static CompactTreebank load(String text) {
+    CompactTreebank treebank = new CompactTreebank();
+    treebank.load(new StringReader(text));
+    return treebank;
+  }
+
+  private static MemoryTreebank loadMemory(String text) {
+    MemoryTreebank treebank = new MemoryTreebank(new PennTreeReaderFactory());
+    treebank.load(new StringReader(text));
+    return treebank;
+  }
+
+  public void testSameTrees() {
+    CompactTreebank compact = load(TREES);
+    MemoryTreebank memory = loadMemory(TREES);
+    assertEquals(memory.size(), compact.size());
+    for (int i = 0; i < memory.size(); i++) {
+      Tree expected = memory.get(i);
+      Tree tree = compact.get(i);
+      assertEquals(expected.toString(), tree.toString());
+      assertEquals(expected, tree);
+      assertEquals(expected.size(), tree.size());
+      assertEquals(expected.yield(), tree.yield());
+      assertEquals(expected.taggedYield(), tree.taggedYield());
+    }
+    assertEquals("(ROOT (S (NP (PRP It)) (VP (VBD was) (ADJP (JJ *happy*))) (. !)))", compact.get(1).toString());
+  }
+
+  public void testLeafLabels() {
+    Tree tree = load(TREES).get(0);
+    List<Tree> leaves = tree.getLeaves();
+    CoreLabel mat = (CoreLabel) leaves.get(5).label();
+    assertEquals("mat", mat.word());
+    assertEquals("NN", mat.tag());
+    assertEquals(6, mat.index());
+  }
+
+  public void testParents() {
+    Tree tree = load(TREES).get(0);
+    assertNull(tree.parent());
+    assertNull(tree.parent(tree));
+    for (Tree node : tree) {
+      for (Tree kid : node.children()) {
+        assertSame(node, kid.parent());
+        assertSame(node, kid.parent(tree));
+      }
+    }
+    Tree other = load(TREES).get(0);
+    assertNull(tree.firstChild().parent(other));
+  }
+
+  public void testTregexAndHeads() {
+    Tree tree = load(TREES).get(0);
+    TregexMatcher matcher = TregexPattern.compile("NP < (NN=noun $- DT)").matcher(tree);
+    int matches = 0;
+    while (matcher.find()) {
+      matches++;
+      assertEquals("NN", matcher.getNode("noun").value());
+    }
+    assertEquals(2, matches);
+
+    Tree s = tree.firstChild();
+    assertEquals("sat", s.headTerminal(new CollinsHeadFinder()).value());
+  }
+
+  public void testTreePrint() {
+    Tree expected = loadMemory(TREES).get(1);
+    Tree tree = load(TREES).get(1);
+    TreePrint tp = new TreePrint("penn,words");
+    StringWriter expectedOut = new StringWriter();
+    tp.printTree(expected, new PrintWriter(expectedOut));
+    StringWriter out = new StringWriter();
+    tp.printTree(tree, new PrintWriter(out));
+    assertEquals(expectedOut.toString(), out.toString());
+  }
+
+  public void testReadOnly() {
+    Tree tree = load(TREES).get(0);
+    try {
+      tree.addChild(tree.firstChild());
+      fail("Expected an UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    Tree copy = tree.deepCopy();
+    assertTrue(copy instanceof LabeledScoredTreeNode);
+    assertEquals(tree, copy);
+    copy.firstChild().addChild(copy.firstChild().firstChild().deepCopy());
+    assertFalse(tree.equals(copy));
+  }
+
+  public void testAddAndNormalize() {
+    CompactTreebank treebank = new CompactTreebank(new LabeledScoredTreeReaderFactory());
+    treebank.load(new StringReader("( (S (NP-SBJ (-NONE- *T*)) (NP-SBJ (NNP John)) (VP (VBZ runs))))"));
+    assertEquals(1, treebank.size());
+    Tree expected = Tree.valueOf("(ROOT (S (NP (NNP John)) (VP (VBZ runs))))");
+    assertEquals(expected, treebank.get(0));
+
+    treebank.add(expected);
+    assertEquals(2, treebank.size());
+    assertEquals(expected, treebank.get(1));
+    assertEquals(treebank.get(0).size() * 2, treebank.numNodes());
+  }
+
+  public void testAddAfterTrimToSize() {
+    CompactTreebank treebank = new CompactTreebank();
+    treebank.trimToSize();
+    treebank.load(new StringReader(TREES));
+    assertEquals(4, treebank.size());
+    treebank.trimToSize();
+    Tree tree = Tree.valueOf("(ROOT (S (NP (NNP John)) (VP (VBZ runs))))");
+    treebank.add(tree);
+    assertEquals(5, treebank.size());
+    assertEquals(tree, treebank.get(4));
+    assertEquals(loadMemory(TREES).get(0), treebank.get(0));
+  }
+
+  public void testIncompleteTree() {
+    CompactTreebank treebank = load("(A (B b)) (C (D d)");
+    assertEquals(1, treebank.size());
+    assertEquals(3, treebank.numNodes());
+    assertEquals("(A (B b))", treebank.get(0).toString());
+  }
+
+}
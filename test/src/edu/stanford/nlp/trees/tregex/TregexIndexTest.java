@@ -0,0 +1,102 @@
+package edu.stanford.nlp.trees.tregex;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.stanford.nlp.ling.StringLabel;
+import edu.stanford.nlp.trees.StringLabeledScoredTreeReaderFactory;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.util.Pair;
+
+public class TregexIndexTest extends TestCase {
+
+  private static final String[] TREES = {
+    "(ROOT (S (NP (DT The) (NN dog)) (VP (VBD barked)) (. .)))",
+    "(ROOT (S (NP (PRP He)) (VP (VBD saw) (NP (DT a) (NNS cats))) (. .)))",
+    "(ROOT (FRAG (NP (NN nothing)) (. .)))",
+    "(ROOT (S (NP (NNP John)) (VP (VBZ runs) (ADVP (RB quickly))) (. .)))",
+  };
+
+  private File indexFile;
+  private TregexIndex index;
+  private List<Tree> trees;
+
+  @Override
+  public void setUp() throws IOException {
+    trees = Arrays.asList(TregexTest.treesFromString(TREES));
+    indexFile = File.createTempFile("tregex", ".idx");
+    indexFile.deleteOnExit();
+    TregexIndex.build(trees, indexFile.getPath());
+    index = TregexIndex.load(indexFile.getPath());
+  }
+
+  @Override
+  public void tearDown() throws IOException {
+    index.close();
+    indexFile.delete();
+  }
+
+  public void testTreesRoundTrip() {
+    assertEquals(TREES.length, index.size());
+    for (int i = 0; i < TREES.length; ++i) {
+      assertEquals(trees.get(i), index.getTree(i));
+    }
+  }
+
+  public void testTreeReaderFactory() throws IOException {
+    assertFalse(index.getTree(0).label() instanceof StringLabel);
+    File other = File.createTempFile("tregex", ".idx");
+    other.deleteOnExit();
+    TregexIndex.build(trees, other.getPath(), new StringLabeledScoredTreeReaderFactory());
+    try (TregexIndex otherIndex = TregexIndex.load(other.getPath())) {
+      for (int i = 0; i < TREES.length; ++i) {
+        Tree tree = otherIndex.getTree(i);
+        assertEquals(trees.get(i), tree);
+        assertTrue(tree.label() instanceof StringLabel);
+      }
+    } finally {
+      other.delete();
+    }
+  }
+
+  public void testCandidates() {
+    assertEquals(Arrays.toString(new int[] { 0, 1 }), Arrays.toString(index.candidates(TregexPattern.compile("NP < DT"))));
+    assertEquals(Arrays.toString(new int[] { 1 }), Arrays.toString(index.candidates(TregexPattern.compile("VP < (NP < NNS)"))));
+    assertEquals(Arrays.toString(new int[] { 0, 1 }), Arrays.toString(index.candidates(TregexPattern.compile("/^(?:DT|VBD)$/ > NP"))));
+    assertEquals(Arrays.toString(new int[] { 0, 1, 3 }), Arrays.toString(index.candidates(TregexPattern.compile("S < NP"))));
+    // an NN directly under S never occurs, even though both labels do
+    assertEquals(0, index.candidates(TregexPattern.compile("S < NN")).length);
+    assertEquals(0, index.candidates(TregexPattern.compile("NP < XYZZY")).length);
+    // negated, optional and disjunctive parts and regexes do not restrict the candidates
+    assertEquals(TREES.length, index.candidates(TregexPattern.compile("/^N/ !< DT")).length);
+    assertEquals(TREES.length, index.candidates(TregexPattern.compile("__ ?< XYZZY")).length);
+    assertEquals(TREES.length, index.candidates(TregexPattern.compile("__ [ < DT | < RB ]")).length);
+  }
+
+  public void testSearchMatchesFullScan() {
+    String[] patterns = { "NP < DT", "NP", "S < (VP < NP)", "__ !< __", "/^V/ < /^N/", "FRAG", "NP < XYZZY", "@NP < DT" };
+    for (String p : patterns) {
+      TregexPattern pattern = TregexPattern.compile(p);
+      List<Pair<Integer, List<Tree>>> expected = new ArrayList<>();
+      for (int i = 0; i < trees.size(); ++i) {
+        List<Tree> matches = new ArrayList<>();
+        TregexMatcher matcher = pattern.matcher(trees.get(i));
+        while (matcher.find()) {
+          matches.add(matcher.getMatch());
+        }
+        if ( ! matches.isEmpty()) {
+          expected.add(new Pair<>(i, matches));
+        }
+      }
+      for (int threads : new int[] { 1, 3 }) {
+        assertEquals(p, expected, index.search(pattern, threads));
+      }
+    }
+  }
+
+}
@@ -1456,6 +1456,26 @@ public class TregexTest extends TestCase {
     assertFalse(matcher.find());
   }
 
+  public void testCouldMatchValue() {
+    TregexPattern pattern = TregexPattern.compile("/^NP/ < NN");
+    assertTrue(pattern.couldMatchValue("NP"));
+    assertTrue(pattern.couldMatchValue("NP-TMP"));
+    assertFalse(pattern.couldMatchValue("VP"));
+    assertFalse(pattern.couldMatchValue(null));
+
+    // only the root of the pattern rules out values
+    assertTrue(TregexPattern.compile("__ < VP").couldMatchValue("NP"));
+    assertFalse(TregexPattern.compile("!NP < VP").couldMatchValue("NP"));
+    assertTrue(TregexPattern.compile("!NP < VP").couldMatchValue(null));
+    assertFalse(TregexPattern.compile("@NP").couldMatchValue("VP-TMP"));
+    assertTrue(TregexPattern.compile("@NP").couldMatchValue("NP-TMP"));
+
+    pattern = TregexPattern.compile("NP < NN | VP < VB");
+    assertTrue(pattern.couldMatchValue("NP"));
+    assertTrue(pattern.couldMatchValue("VP"));
+    assertFalse(pattern.couldMatchValue("S"));
+  }
+
   /**
    * Stores an input and the expected output.  Obviously this is only
    * expected to work with a given pattern, but this is a bit more
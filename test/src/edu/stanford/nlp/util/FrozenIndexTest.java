@@ -0,0 +1,83 @@
+package edu.stanford.nlp.util;
+
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+public class FrozenIndexTest extends TestCase {
+
+  public void testSameIds() {
+    Index<String> index = new HashIndex<>();
+    for (int i = 0; i < 10000; i++) {
+      index.add("feature-" + i);
+    }
+    FrozenIndex<String> frozen = new FrozenIndex<>(index);
+    assertEquals(index.size(), frozen.size());
+    for (int i = 0; i < index.size(); i++) {
+      assertEquals(index.get(i), frozen.get(i));
+      assertEquals(i, frozen.indexOf(index.get(i)));
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(-1, frozen.indexOf("unknown-" + i));
+    }
+  }
+
+  /** Items whose hash codes are the same are still told apart. */
+  public void testSameHashCodes() {
+    Index<String> index = new HashIndex<>();
+    index.add("Aa");
+    index.add("x");
+    index.add("BB");
+    index.add("AaAa");
+    index.add("BBBB");
+    index.add("AaBB");
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    FrozenIndex<String> frozen = new FrozenIndex<>(index);
+    for (int i = 0; i < index.size(); i++) {
+      assertEquals(i, frozen.indexOf(index.get(i)));
+    }
+    assertEquals(-1, frozen.indexOf("BBAa"));
+    assertTrue(frozen.contains("BBBB"));
+    assertFalse(frozen.contains("y"));
+  }
+
+  public void testSmallIndices() {
+    FrozenIndex<String> empty = new FrozenIndex<>(new HashIndex<>());
+    assertEquals(0, empty.size());
+    assertEquals(-1, empty.indexOf("The"));
+    for (int size = 1; size < 40; size++) {
+      Index<Integer> index = new HashIndex<>();
+      for (int i = 0; i < size; i++) {
+        index.add(i * 31);
+      }
+      FrozenIndex<Integer> frozen = new FrozenIndex<>(index);
+      for (int i = 0; i < size; i++) {
+        assertEquals(i, frozen.indexOf(i * 31));
+      }
+      assertEquals(-1, frozen.indexOf(1));
+    }
+  }
+
+  public void testReadOnly() throws Exception {
+    Index<String> index = new HashIndex<>();
+    index.add("The");
+    index.add("Beast");
+    FrozenIndex<String> frozen = new FrozenIndex<>(index);
+    assertTrue(frozen.isLocked());
+    assertEquals(-1, frozen.addToIndex("Beauty"));
+    assertFalse(frozen.add("Beauty"));
+    assertEquals(2, frozen.size());
+    try {
+      frozen.unlock();
+      fail("A frozen index was unlocked");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    StringWriter frozenOut = new StringWriter();
+    frozen.saveToWriter(frozenOut);
+    StringWriter out = new StringWriter();
+    index.saveToWriter(out);
+    assertEquals(out.toString(), frozenOut.toString());
+  }
+
+}
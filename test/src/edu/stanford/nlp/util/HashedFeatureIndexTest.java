@@ -0,0 +1,53 @@
+package edu.stanford.nlp.util;
+
+import junit.framework.TestCase;
+
+public class HashedFeatureIndexTest extends TestCase {
+
+  public void testBucketsAndSigns() {
+    HashedFeatureIndex index = new HashedFeatureIndex(16);
+    assertEquals(16, index.size());
+    int[] counts = new int[16];
+    int positive = 0;
+    for (int i = 0; i < 1600; i++) {
+      String feature = "WORD-" + i;
+      int bucket = index.indexOf(feature);
+      assertEquals(bucket, index.indexOf(feature));
+      assertEquals(bucket, index.addToIndex(feature));
+      counts[bucket]++;
+      double sign = index.sign(feature);
+      assertTrue(sign == 1.0 || sign == -1.0);
+      if (sign > 0) {
+        positive++;
+      }
+    }
+    for (int count : counts) {
+      assertTrue("Uneven buckets: " + count, count > 50 && count < 150);
+    }
+    assertTrue("Uneven signs: " + positive, positive > 700 && positive < 900);
+  }
+
+  public void testBlocks() {
+    HashedFeatureIndex index = new HashedFeatureIndex(10, 3);
+    assertEquals(30, index.size());
+    for (int i = 0; i < 100; i++) {
+      String feature = "f" + i;
+      int bucket = index.indexOf(feature);
+      assertTrue(bucket >= 0 && bucket < 10);
+      assertEquals(bucket + 20, index.indexOf(feature, 2));
+    }
+    assertEquals("#2:7", index.get(27));
+    assertEquals(30, index.objectsList().size());
+  }
+
+  public void testStoresNothing() {
+    HashedFeatureIndex index = new HashedFeatureIndex(8);
+    assertFalse(index.add("feature"));
+    assertTrue(index.contains("anything"));
+    assertEquals(8, index.size());
+    assertEquals("#3", index.get(3));
+    assertEquals(index, new HashedFeatureIndex(8));
+    assertFalse(index.equals(new HashedFeatureIndex(8, 2)));
+  }
+
+}
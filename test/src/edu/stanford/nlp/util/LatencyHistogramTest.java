@@ -0,0 +1,88 @@
+package edu.stanford.nlp.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LatencyHistogramTest extends TestCase {
+
+  public void testBuckets() {
+    LatencyHistogram histogram = new LatencyHistogram(new long[]{10, 100});
+    histogram.record(0);
+    histogram.record(10);
+    histogram.record(11);
+    histogram.record(1000);
+    assertEquals(4, histogram.count());
+    assertEquals(1021, histogram.sumMillis());
+    assertEquals(3, histogram.counts().length);
+    assertEquals(2, histogram.counts()[0]);
+    assertEquals(1, histogram.counts()[1]);
+    assertEquals(1, histogram.counts()[2]);
+  }
+
+  public void testRecordNanos() {
+    LatencyHistogram histogram = new LatencyHistogram(new long[]{1, 2});
+    for (int i = 0; i < 10; ++i) {
+      histogram.recordNanos(300000);  // 0.3ms
+    }
+    histogram.recordNanos(1500000);  // 1.5ms: above the 1ms bound
+    assertEquals(11, histogram.count());
+    assertEquals(4500000, histogram.sumNanos());
+    assertEquals(4, histogram.sumMillis());
+    assertEquals(10, histogram.counts()[0]);
+    assertEquals(1, histogram.counts()[1]);
+    assertEquals(0, histogram.counts()[2]);
+  }
+
+  public void testQuantile() {
+    LatencyHistogram histogram = new LatencyHistogram(new long[]{10, 20, 30});
+    assertTrue(Double.isNaN(histogram.quantile(0.5)));
+    for (int i = 0; i < 10; ++i) {
+      histogram.record(15);
+    }
+    assertEquals(15.0, histogram.quantile(0.5), 1e-9);
+    assertEquals(20.0, histogram.quantile(1.0), 1e-9);
+    histogram.record(100000);
+    assertEquals(30.0, histogram.quantile(1.0), 1e-9);
+    try {
+      histogram.quantile(1.5);
+      fail("Expected an exception for a quantile above 1");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testSnapshot() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(42);
+    LatencyHistogram snapshot = histogram.snapshot();
+    histogram.record(42);
+    assertEquals(1, snapshot.count());
+    assertEquals(2, histogram.count());
+  }
+
+  public void testConcurrentRecord() throws InterruptedException {
+    LatencyHistogram histogram = new LatencyHistogram();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; ++t) {
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 10000; ++i) {
+          histogram.record(i % 100);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(40000, histogram.count());
+    long total = 0;
+    for (long c : histogram.counts()) {
+      total += c;
+    }
+    assertEquals(40000, total);
+  }
+
+}
@@ -0,0 +1,72 @@
+package edu.stanford.nlp.util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+
+public class LazyCoreMapTest extends TestCase {
+
+  public void testComputedOnce() {
+    AtomicInteger calls = new AtomicInteger();
+    LazyCoreMap map = new LazyCoreMap();
+    map.set(CoreAnnotations.TextAnnotation.class, "text");
+    map.setLazily(CoreAnnotations.LemmaAnnotation.class, () -> { calls.incrementAndGet(); return "lemma"; });
+    assertEquals(2, map.size());
+    assertTrue(map.containsKey(CoreAnnotations.LemmaAnnotation.class));
+    assertTrue(map.keySet().contains(CoreAnnotations.LemmaAnnotation.class));
+    assertTrue(map.isDeferred(CoreAnnotations.LemmaAnnotation.class));
+    assertEquals(0, calls.get());
+
+    assertEquals("lemma", map.get(CoreAnnotations.LemmaAnnotation.class));
+    assertEquals("lemma", map.get(CoreAnnotations.LemmaAnnotation.class));
+    assertFalse(map.isDeferred(CoreAnnotations.LemmaAnnotation.class));
+    assertEquals(1, calls.get());
+  }
+
+  public void testOverwriteWithoutComputing() {
+    LazyCoreMap map = new LazyCoreMap();
+    map.setLazily(CoreAnnotations.LemmaAnnotation.class, () -> { throw new AssertionError("should not be computed"); });
+    assertNull(map.set(CoreAnnotations.LemmaAnnotation.class, "lemma"));
+    assertEquals("lemma", map.get(CoreAnnotations.LemmaAnnotation.class));
+    map.setLazily(CoreAnnotations.PartOfSpeechAnnotation.class, () -> { throw new AssertionError("should not be computed"); });
+    assertNull(map.remove(CoreAnnotations.PartOfSpeechAnnotation.class));
+    assertEquals(1, map.size());
+  }
+
+  public void testWholeMapOperations() throws IOException, ClassNotFoundException {
+    ArrayCoreMap plain = new ArrayCoreMap();
+    plain.set(CoreAnnotations.TextAnnotation.class, "text");
+    plain.set(CoreAnnotations.LemmaAnnotation.class, "lemma");
+    LazyCoreMap lazy = new LazyCoreMap();
+    lazy.set(CoreAnnotations.TextAnnotation.class, "text");
+    lazy.setLazily(CoreAnnotations.LemmaAnnotation.class, () -> "lemma");
+
+    assertEquals(plain, lazy);
+    assertEquals(lazy, plain);
+    assertEquals(plain.hashCode(), lazy.hashCode());
+    assertEquals(plain.toString(), lazy.toString());
+    assertEquals(new HashSet<>(plain.keySet()), new ArrayCoreMap(lazy).keySetNotNull());
+
+    lazy = new LazyCoreMap();
+    lazy.setLazily(CoreAnnotations.LemmaAnnotation.class, () -> "lemma");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(lazy);
+    }
+    Object read;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      read = in.readObject();
+    }
+    assertEquals(ArrayCoreMap.class, read.getClass());
+    assertEquals("lemma", ((CoreMap) read).get(CoreAnnotations.LemmaAnnotation.class));
+  }
+
+}
@@ -0,0 +1,212 @@
+package edu.stanford.nlp.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the LogStructuredCache
+ */
+public class LogStructuredCacheTest {
+
+  private File cacheDir;
+  private LogStructuredCache<String, String> cache;
+
+  private LogStructuredCache<String, String> open(long maxSegmentBytes) {
+    return new LogStructuredCache<>(cacheDir, LogStructuredCache.STRING_SERIALIZER, LogStructuredCache.STRING_SERIALIZER,
+        maxSegmentBytes, 1024);
+  }
+
+  private File[] segmentFiles() {
+    return cacheDir.listFiles((dir, name) -> name.endsWith(".log"));
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    cacheDir = File.createTempFile("cache", ".dir");
+    assertTrue(cacheDir.delete());
+    cache = open(LogStructuredCache.DEFAULT_MAX_SEGMENT_BYTES);
+  }
+
+  @After
+  public void tearDown() {
+    cache.close();
+    File[] files = cacheDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        assertTrue(file.delete());
+      }
+    }
+    assertTrue(cacheDir.delete());
+  }
+
+  @Test
+  public void testPutGetRemove() {
+    assertNull(cache.get("a"));
+    assertNull(cache.put("a", "1"));
+    assertEquals("1", cache.get("a"));
+    assertTrue(cache.containsKey("a"));
+    assertEquals(1, cache.size());
+    assertEquals("1", cache.put("a", "2"));
+    assertEquals("2", cache.get("a"));
+    assertEquals(1, cache.size());
+    assertEquals("2", cache.remove("a"));
+    assertNull(cache.get("a"));
+    assertFalse(cache.containsKey("a"));
+    assertEquals(0, cache.size());
+    assertNull(cache.remove("a"));
+  }
+
+  @Test
+  public void testReopen() {
+    Map<String, String> expected = new HashMap<>();
+    for (int i = 0; i < 1000; i++) {
+      cache.put("key" + i, "value" + i);
+      expected.put("key" + i, "value" + i);
+    }
+    for (int i = 0; i < 1000; i += 3) {
+      cache.remove("key" + i);
+      expected.remove("key" + i);
+    }
+    cache.put("key1", "changed");
+    expected.put("key1", "changed");
+    cache.close();
+
+    cache = open(LogStructuredCache.DEFAULT_MAX_SEGMENT_BYTES);
+    assertEquals(expected.size(), cache.size());
+    assertEquals(expected, new HashMap<>(cache));
+  }
+
+  @Test
+  public void testManySegments() {
+    cache.close();
+    cache = open(256);
+    for (int i = 0; i < 200; i++) {
+      cache.put("key" + i, "value" + i);
+    }
+    assertTrue(segmentFiles().length > 10);
+    for (int i = 0; i < 200; i++) {
+      assertEquals("value" + i, cache.get("key" + i));
+    }
+    cache.close();
+    cache = open(256);
+    assertEquals(200, cache.size());
+    assertEquals("value150", cache.get("key150"));
+  }
+
+  @Test
+  public void testTornTail() throws IOException {
+    cache.put("a", "1");
+    cache.put("b", "2");
+    cache.close();
+    File segment = segmentFiles()[0];
+    try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+      file.setLength(file.length() - 3);  // as if the process died while writing "b"
+    }
+
+    cache = open(LogStructuredCache.DEFAULT_MAX_SEGMENT_BYTES);
+    assertEquals("1", cache.get("a"));
+    assertNull(cache.get("b"));
+    cache.put("c", "3");
+    cache.close();
+    cache = open(LogStructuredCache.DEFAULT_MAX_SEGMENT_BYTES);
+    assertEquals("1", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals("3", cache.get("c"));
+  }
+
+  @Test
+  public void testCompact() {
+    cache.close();
+    cache = open(4096);
+    for (int round = 0; round < 20; round++) {
+      for (int i = 0; i < 100; i++) {
+        cache.put("key" + i, "value" + i + '.' + round);
+      }
+    }
+    for (int i = 0; i < 100; i += 2) {
+      cache.remove("key" + i);
+    }
+    cache.compact();
+    assertTrue(cache.diskBytes() <= 2 * cache.liveBytes());
+    assertEquals(50, cache.size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i % 2 == 0 ? null : "value" + i + ".19", cache.get("key" + i));
+    }
+    cache.close();
+    cache = open(4096);
+    assertEquals(50, cache.size());
+    assertEquals("value1.19", cache.get("key1"));
+    assertNull(cache.get("key0"));
+  }
+
+  @Test
+  public void testTwoCaches() {
+    LogStructuredCache<String, String> other = open(1024);
+    try {
+      cache.put("a", "1");
+      assertEquals("1", other.get("a"));
+      other.put("a", "2");
+      other.put("b", "3");
+      assertEquals("3", cache.get("b"));
+      assertEquals("2", cache.put("a", "4"));
+      other.compact();
+      assertEquals("4", other.get("a"));
+      assertEquals("4", cache.get("a"));
+      assertEquals("3", cache.get("b"));
+      other.remove("b");
+      assertNull(cache.put("b", "5"));
+    } finally {
+      other.close();
+    }
+  }
+
+  @Test
+  public void testConcurrentPuts() throws InterruptedException {
+    final int numThreads = 4;
+    final int perThread = 500;
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Throwable> errors = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < numThreads; t++) {
+      final int thread = t;
+      threads.add(new Thread(() -> {
+        try {
+          start.await();
+          for (int i = 0; i < perThread; i++) {
+            cache.put(thread + ":" + i, Integer.toString(i));
+            if (i % 50 == 0) {
+              cache.compact();
+            }
+            assertEquals(Integer.toString(i), cache.get(thread + ":" + i));
+          }
+        } catch (Throwable e) {
+          synchronized (errors) {
+            errors.add(e);
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(new ArrayList<Throwable>(), errors);
+    assertEquals(numThreads * perThread, cache.size());
+  }
+
+}
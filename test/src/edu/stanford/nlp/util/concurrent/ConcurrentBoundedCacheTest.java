@@ -0,0 +1,102 @@
+package edu.stanford.nlp.util.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class ConcurrentBoundedCacheTest extends TestCase {
+
+  public void testGetAndPut() {
+    ConcurrentBoundedCache<String,Integer> cache = new ConcurrentBoundedCache<>(10);
+    assertNull(cache.get("a"));
+    cache.put("a", 1);
+    cache.put("b", 2);
+    assertEquals(Integer.valueOf(1), cache.get("a"));
+    cache.put("a", 3);
+    assertEquals(Integer.valueOf(3), cache.get("a"));
+    assertEquals(2, cache.size());
+    assertEquals(2, cache.weightedSize());
+    assertEquals(Integer.valueOf(2), cache.putIfAbsent("b", 4));
+    assertEquals(Integer.valueOf(2), cache.remove("b"));
+    assertNull(cache.get("b"));
+    assertEquals(2, cache.hitCount());
+    assertEquals(2, cache.missCount());
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.weightedSize());
+  }
+
+  /** Entries used since the clock last passed them outlive those which weren't. */
+  public void testEvictsUnusedEntries() {
+    ConcurrentBoundedCache<Integer,Integer> cache = new ConcurrentBoundedCache<>(100);
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    for (int i = 0; i < 10; i++) {
+      cache.get(i);
+    }
+    for (int i = 100; i < 150; i++) {
+      cache.put(i, i);
+    }
+    assertEquals(100, cache.size());
+    assertEquals(50, cache.evictionCount());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Integer.valueOf(i), cache.get(i));
+    }
+    for (int i = 10; i < 60; i++) {
+      assertNull(cache.get(i));
+    }
+  }
+
+  public void testWeights() {
+    ConcurrentBoundedCache<String,String> cache = new ConcurrentBoundedCache<>(10, (key, value) -> value.length());
+    cache.put("a", "12345");
+    cache.put("b", "1234");
+    assertEquals(9, cache.weightedSize());
+    cache.put("c", "123");
+    assertTrue(cache.weightedSize() <= 10);
+    assertNull(cache.get("a"));
+    // too heavy to cache at all
+    cache.put("d", "12345678901");
+    assertNull(cache.get("d"));
+    assertTrue(cache.weightedSize() <= 10);
+  }
+
+  public void testComputeIfAbsent() {
+    ConcurrentBoundedCache<String,String> cache = new ConcurrentBoundedCache<>(10);
+    AtomicInteger computed = new AtomicInteger();
+    assertEquals("A", cache.computeIfAbsent("a", key -> { computed.incrementAndGet(); return key.toUpperCase(); }));
+    assertEquals("A", cache.computeIfAbsent("a", key -> { computed.incrementAndGet(); return key.toUpperCase(); }));
+    assertEquals(1, computed.get());
+  }
+
+  /** Many threads using the cache at once keep it within its bound, with consistent values. */
+  public void testConcurrentUse() throws InterruptedException {
+    final ConcurrentBoundedCache<Integer,String> cache = new ConcurrentBoundedCache<>(500);
+    final int numThreads = 8;
+    final CountDownLatch latch = new CountDownLatch(numThreads);
+    final AtomicInteger wrong = new AtomicInteger();
+    for (int t = 0; t < numThreads; t++) {
+      final int thread = t;
+      new Thread(() -> {
+        for (int i = 0; i < 50000; i++) {
+          int key = (i * 31 + thread * 17) % 2000;
+          if ( ! cache.computeIfAbsent(key, String::valueOf).equals(String.valueOf(key))) {
+            wrong.incrementAndGet();
+          }
+          if (i % 100 == 0) {
+            cache.remove(key);
+          }
+        }
+        latch.countDown();
+      }).start();
+    }
+    latch.await();
+    assertEquals(0, wrong.get());
+    assertTrue(cache.size() <= 500);
+    assertEquals(cache.size(), cache.weightedSize());
+    assertEquals(8 * 50000, cache.hitCount() + cache.missCount());
+  }
+
+}
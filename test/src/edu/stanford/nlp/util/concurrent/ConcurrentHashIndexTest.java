@@ -4,7 +4,9 @@ import junit.framework.TestCase;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
+import edu.stanford.nlp.util.FrozenIndex;
 import edu.stanford.nlp.util.Index;
 
 /**
@@ -81,4 +83,52 @@ public class ConcurrentHashIndexTest extends TestCase  {
     assertEquals("Beast", foo.get(1));
   }
 
+  /** Items added from several threads at once each get one id, and the ids have no gaps. */
+  public void testConcurrentAdds() throws InterruptedException {
+    final ConcurrentHashIndex<String> concurrentIndex = new ConcurrentHashIndex<>(10);
+    final int numThreads = 8;
+    final int numItems = 5000;
+    final int[][] ids = new int[numThreads][numItems];
+    final CountDownLatch latch = new CountDownLatch(numThreads);
+    for (int t = 0; t < numThreads; t++) {
+      final int thread = t;
+      new Thread(() -> {
+        // each thread adds the same items, in a different order
+        for (int i = 0; i < numItems; i++) {
+          int item = (thread % 2 == 0) ? (i + thread * 613) % numItems : numItems - 1 - i;
+          ids[thread][item] = concurrentIndex.addToIndex("item" + item);
+        }
+        latch.countDown();
+      }).start();
+    }
+    latch.await();
+    assertEquals(numItems, concurrentIndex.size());
+    boolean[] seen = new boolean[numItems];
+    for (int item = 0; item < numItems; item++) {
+      int id = ids[0][item];
+      for (int t = 1; t < numThreads; t++) {
+        assertEquals(id, ids[t][item]);
+      }
+      assertFalse(seen[id]);
+      seen[id] = true;
+      assertEquals("item" + item, concurrentIndex.get(id));
+      assertEquals(id, concurrentIndex.indexOf("item" + item));
+    }
+  }
+
+  public void testFreeze() {
+    FrozenIndex<String> frozen = ((ConcurrentHashIndex<String>) index2).freeze();
+    assertEquals(index2.objectsList(), frozen.objectsList());
+    assertEquals(3, frozen.indexOf("Beast"));
+    assertEquals(-1, frozen.indexOf("Markov"));
+    assertTrue(frozen.isLocked());
+  }
+
+  public void testClear() {
+    index2.clear();
+    assertEquals(0, index2.size());
+    assertEquals(-1, index2.indexOf("Beast"));
+    assertEquals(0, index2.addToIndex("Beast"));
+  }
+
 }
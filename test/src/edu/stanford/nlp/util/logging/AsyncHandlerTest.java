@@ -0,0 +1,101 @@
+package edu.stanford.nlp.util.logging;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncHandlerTest extends TestCase {
+
+  /** Collects the content of the records it is handed, after waiting for the gate to open */
+  private static class Collector extends LogRecordHandler {
+    private final List<Object> seen = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch gate;
+
+    private Collector(CountDownLatch gate) {
+      this.gate = gate;
+    }
+
+    @Override
+    public List<Redwood.Record> handle(Redwood.Record record) {
+      try {
+        gate.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      seen.add(record.content);
+      return EMPTY;
+    }
+  }
+
+  private static Redwood.Record record(Object content, Object... channels) {
+    return new Redwood.Record(content, channels, 0, System.currentTimeMillis());
+  }
+
+  public void testPassesOnInOrder() throws InterruptedException {
+    Collector collector = new Collector(new CountDownLatch(0));
+    Redwood.RecordHandlerTree downstream = new Redwood.RecordHandlerTree();
+    downstream.addChild(collector);
+    AsyncHandler handler = new AsyncHandler(downstream, 16, AsyncHandler.DropPolicy.BLOCK);
+    List<Object> expected = new ArrayList<>();
+    for (int i = 0; i < 100; ++i) {
+      handler.handle(record(i));
+      expected.add(i);
+    }
+    assertTrue(handler.flush(10, TimeUnit.SECONDS));
+    assertEquals(expected, collector.seen);
+    assertEquals(0, handler.dropped());
+  }
+
+  public void testDropNewestKeepsForced() throws InterruptedException {
+    CountDownLatch gate = new CountDownLatch(1);
+    Collector collector = new Collector(gate);
+    Redwood.RecordHandlerTree downstream = new Redwood.RecordHandlerTree();
+    downstream.addChild(collector);
+    AsyncHandler handler = new AsyncHandler(downstream, 2, AsyncHandler.DropPolicy.DROP_NEWEST);
+    for (int i = 0; i < 10; ++i) {
+      handler.handle(record(i));
+    }
+    assertTrue(handler.dropped() > 0);
+    gate.countDown();
+    handler.handle(record("error", Redwood.FORCE, Redwood.ERR));
+    assertTrue(handler.flush(10, TimeUnit.SECONDS));
+    assertTrue(collector.seen.contains(0));
+    assertFalse(collector.seen.contains(9));
+    assertEquals("error", collector.seen.get(collector.seen.size() - 1));
+    assertTrue(collector.seen.stream().anyMatch(x -> x.toString().contains("dropped")));
+  }
+
+  public void testDropOldestKeepsPendingFlush() throws InterruptedException {
+    CountDownLatch gate = new CountDownLatch(1);
+    Collector collector = new Collector(gate);
+    Redwood.RecordHandlerTree downstream = new Redwood.RecordHandlerTree();
+    downstream.addChild(collector);
+    AsyncHandler handler = new AsyncHandler(downstream, 2, AsyncHandler.DropPolicy.DROP_OLDEST);
+    handler.handle(record("a"));
+    assertFalse(handler.flush(0, TimeUnit.MILLISECONDS));  // queued, but not handled while the gate is shut
+    for (int i = 0; i < 10; ++i) {
+      handler.handle(record(i));  // the flush is at the head of a full queue
+    }
+    assertTrue(handler.dropped() > 0);
+    gate.countDown();
+    assertTrue(handler.flush(10, TimeUnit.SECONDS));
+    assertTrue(collector.seen.contains(0));
+    assertFalse(collector.seen.contains(9));
+  }
+
+  public void testAcceptsFollowsDownstream() {
+    Redwood.RecordHandlerTree downstream = new Redwood.RecordHandlerTree();
+    Redwood.RecordHandlerTree visibility = new Redwood.RecordHandlerTree(RedwoodConfiguration.Handlers.hideDebug);
+    visibility.addChild(new Collector(new CountDownLatch(0)));
+    downstream.addChildTree(visibility);
+    AsyncHandler handler = new AsyncHandler(downstream, 2, AsyncHandler.DropPolicy.BLOCK);
+    assertTrue(handler.accepts(new Object[]{ Redwood.WARN }));
+    assertFalse(handler.accepts(new Object[]{ Redwood.DBG }));
+    assertTrue(handler.accepts(new Object[]{ Redwood.FORCE, Redwood.DBG }));
+  }
+
+}